@@ -14,6 +14,7 @@ import org.springframework.transaction.annotation.Transactional;
 public class DatabaseMigrationConfig {
     
     private final JdbcTemplate jdbcTemplate;
+    private final OneTimeMigrations oneTimeMigrations;
     
     @Bean
     @Transactional
@@ -65,6 +66,28 @@ public class DatabaseMigrationConfig {
                     log.warn("Could not set intention column to NOT NULL: {}", e.getMessage());
                 }
                 
+                // Allow the WAITLISTED attendance status and seed the per-event seat counters
+                jdbcTemplate.execute("ALTER TABLE event_attendance DROP CONSTRAINT IF EXISTS event_attendance_status_check");
+                // Seeded once: afterwards the counters are kept by reserveSeat/releaseSeat alone
+                oneTimeMigrations.runOnce("seed_event_registered_count", () -> {
+                    int seededEvents = jdbcTemplate.update("UPDATE events SET registered_count = " +
+                            "(SELECT COUNT(*) FROM event_attendance a WHERE a.event_id = events.id AND a.occurrence_start IS NULL " +
+                            "AND a.status IN ('REGISTERED', 'ATTENDED'))");
+                    log.info("Seeded registered_count for {} events", seededEvents);
+                });
+                
+                // Allow the penalty settlement entry types
+                jdbcTemplate.execute("ALTER TABLE ledger_entries DROP CONSTRAINT IF EXISTS ledger_entries_entry_type_check");
+                
+                // Billed dues and equb payments no longer get a gateway method before they are paid
+                jdbcTemplate.execute("ALTER TABLE payments ALTER COLUMN method DROP NOT NULL");
+                oneTimeMigrations.runOnce("clear_billed_payment_method", () -> {
+                    int cleared = jdbcTemplate.update("UPDATE payments SET method = NULL, version = version + 1 " +
+                            "WHERE status = 'PENDING' AND method = 'TELEBIRR' " +
+                            "AND (dues_period IS NOT NULL OR equb_round_id IS NOT NULL)");
+                    log.info("Cleared the default method of {} unpaid billed payments", cleared);
+                });
+                
                 log.info("Database migration completed successfully");
                 
             } catch (Exception e) {
@@ -0,0 +1,20 @@
+package com.mahiberawi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.dues.billing")
+public class DuesBillingConfig {
+    private boolean enabled = true;
+    // Groups billed at the same time
+    private int workers = 4;
+    // Members billed per transaction
+    private int chunkSize = 500;
+    // Due groups read per query when a run collects its work
+    private int groupPageSize = 500;
+    // Days between reminders of dues left unpaid; 0 turns the follow-ups off
+    private int followUpDays = 7;
+}
@@ -0,0 +1,18 @@
+package com.mahiberawi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.email.dispatch")
+public class EmailDispatchConfig {
+    private int workerCount = 2;
+    private int queueCapacity = 1000;
+    private int batchSize = 20;
+    private int maxAttempts = 4;
+    private long initialBackoffMs = 2000;
+    private long maxBackoffMs = 60000;
+    private long idleTimeoutMs = 30000;
+}
@@ -0,0 +1,22 @@
+package com.mahiberawi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.equb.late-payments")
+public class EqubLatePaymentConfig {
+    private boolean enabled = true;
+    // Groups processed at the same time
+    private int workers = 4;
+    // Members whose overdue payments are flagged per transaction
+    private int chunkSize = 200;
+    // Past-deadline rounds read per query when a run collects its work
+    private int roundPageSize = 500;
+    // An unfinished run is resumed for this long; after that a new run with a fresh cutoff starts
+    private Duration resumeWithin = Duration.ofHours(24);
+}
@@ -0,0 +1,22 @@
+package com.mahiberawi.config;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * HTTP client limits of one payment gateway, bound under {@code <gateway>.client}.
+ */
+@Data
+public class GatewayClientSettings {
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    private Duration readTimeout = Duration.ofSeconds(10);
+
+    // Calls in flight to the gateway at once, and how long a call waits for a free slot
+    private int maxConcurrentCalls = 20;
+    private Duration maxWait = Duration.ZERO;
+
+    // Consecutive failures that open the circuit, and how long it stays open
+    private int failureThreshold = 5;
+    private Duration openDuration = Duration.ofSeconds(30);
+}
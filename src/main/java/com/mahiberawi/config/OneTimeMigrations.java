@@ -0,0 +1,50 @@
+package com.mahiberawi.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+/**
+ * Data migrations that must run once per database rather than on every boot. Each one is
+ * recorded by name in data_migrations, and the marker row is inserted before the migration
+ * runs in the same transaction, so an instance starting at the same time blocks on it and
+ * then skips the migration instead of running it a second time.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OneTimeMigrations {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Run the migration unless it has already run. Returns true when it ran now.
+     */
+    public boolean runOnce(String name, Runnable migration) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS data_migrations " +
+                "(name VARCHAR(100) PRIMARY KEY, applied_at TIMESTAMP NOT NULL)");
+
+        Boolean ran = new TransactionTemplate(transactionManager).execute(status -> {
+            try {
+                jdbcTemplate.update("INSERT INTO data_migrations (name, applied_at) VALUES (?, ?)",
+                        name, LocalDateTime.now());
+            } catch (DataIntegrityViolationException e) {
+                status.setRollbackOnly();
+                return false;
+            }
+            migration.run();
+            return true;
+        });
+        if (Boolean.TRUE.equals(ran)) {
+            log.info("Applied data migration {}", name);
+        }
+        return Boolean.TRUE.equals(ran);
+    }
+}
@@ -0,0 +1,20 @@
+package com.mahiberawi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.payments.reconciliation")
+public class PaymentReconciliationConfig {
+    private boolean enabled = true;
+    // Pending payments younger than this are left to the callbacks
+    private Duration staleAfter = Duration.ofMinutes(15);
+    private int pageSize = 200;
+    // Status checks in flight per gateway; kept below the gateway client's bulkhead so user traffic still gets through
+    private int teleBirrConcurrency = 8;
+    private int vippsConcurrency = 8;
+}
@@ -0,0 +1,18 @@
+package com.mahiberawi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.payments.webhooks")
+public class PaymentWebhookConfig {
+    // Callbacks of one transaction always go to the same worker, so they are applied in order
+    private int workerCount = 4;
+    private int queueCapacityPerWorker = 2000;
+    // Recently accepted idempotency keys kept in memory to drop retries without a database round trip
+    private int recentKeyCapacity = 10000;
+    private int sweepBatchSize = 500;
+    private long sweepDelayMs = 60000;
+}
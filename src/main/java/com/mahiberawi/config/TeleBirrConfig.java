@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "telebirr")
@@ -15,4 +17,14 @@ public class TeleBirrConfig {
     private String verifyUrl;
     private String notifyUrl;
     private String returnUrl;
-} 
\ No newline at end of file
+
+    // Access tokens are refreshed this long before they expire
+    private Duration tokenRefreshMargin = Duration.ofSeconds(60);
+    // Lifetime assumed when the token response has no expires_in
+    private Duration tokenDefaultLifetime = Duration.ofMinutes(5);
+
+    // Shared secret the gateway signs its callbacks with (HMAC-SHA256 of the body)
+    private String webhookSecret;
+
+    private GatewayClientSettings client = new GatewayClientSettings();
+}
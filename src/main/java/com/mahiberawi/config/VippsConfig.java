@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "vipps")
@@ -20,4 +22,14 @@ public class VippsConfig {
     private String returnUrl;
     private String cancelUrl;
     private String fallbackUrl;
-} 
\ No newline at end of file
+
+    // Access tokens are refreshed this long before they expire
+    private Duration tokenRefreshMargin = Duration.ofSeconds(60);
+    // Lifetime assumed when the token response has no expires_in
+    private Duration tokenDefaultLifetime = Duration.ofMinutes(5);
+
+    // Shared secret the gateway signs its callbacks with (HMAC-SHA256 of the body)
+    private String webhookSecret;
+
+    private GatewayClientSettings client = new GatewayClientSettings();
+}
@@ -2,21 +2,36 @@ package com.mahiberawi.controller;
 
 import com.mahiberawi.dto.ApiResponse;
 import com.mahiberawi.dto.UserResponse;
+import com.mahiberawi.dto.payment.PaymentExportFormat;
+import com.mahiberawi.entity.PaymentStatus;
 import com.mahiberawi.entity.User;
 import com.mahiberawi.entity.UserRole;
 import com.mahiberawi.service.UserService;
 import com.mahiberawi.service.GroupService;
 import com.mahiberawi.service.EventService;
 import com.mahiberawi.service.PaymentService;
+import com.mahiberawi.service.PaymentGatewayService;
+import com.mahiberawi.service.PaymentExportService;
+import com.mahiberawi.service.PaymentReconciliationService;
+import com.mahiberawi.service.EqubLatePaymentService;
+import com.mahiberawi.service.DuesBillingService;
 import com.mahiberawi.exception.UnauthorizedException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
+import java.time.LocalDate;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -29,6 +44,11 @@ public class AdminController {
     private final GroupService groupService;
     private final EventService eventService;
     private final PaymentService paymentService;
+    private final PaymentGatewayService paymentGatewayService;
+    private final PaymentReconciliationService paymentReconciliationService;
+    private final PaymentExportService paymentExportService;
+    private final EqubLatePaymentService equbLatePaymentService;
+    private final DuesBillingService duesBillingService;
     
     // ========== ADMIN DASHBOARD ENDPOINTS ==========
     
@@ -113,6 +133,160 @@ public class AdminController {
         }
     }
     
+    @GetMapping("/gateways")
+    public ResponseEntity<ApiResponse> getGatewayMetrics(@AuthenticationPrincipal User currentUser) {
+        // Check if user is super admin
+        if (!userService.isSuperAdmin(currentUser)) {
+            throw new UnauthorizedException("Only super admins can access gateway metrics");
+        }
+        
+        return ResponseEntity.ok(ApiResponse.builder()
+                .success(true)
+                .message("Gateway metrics retrieved successfully")
+                .data(paymentGatewayService.getGatewayMetrics())
+                .build());
+    }
+    
+    @GetMapping("/payments/reconciliation")
+    public ResponseEntity<ApiResponse> getReconciliationReport(@AuthenticationPrincipal User currentUser) {
+        // Check if user is super admin
+        if (!userService.isSuperAdmin(currentUser)) {
+            throw new UnauthorizedException("Only super admins can access payment reconciliation");
+        }
+        
+        return ResponseEntity.ok(ApiResponse.builder()
+                .success(true)
+                .message(paymentReconciliationService.isRunning()
+                        ? "Reconciliation is running, showing the previous run"
+                        : "Last reconciliation run retrieved successfully")
+                .data(paymentReconciliationService.getLastReport())
+                .build());
+    }
+    
+    @PostMapping("/payments/reconciliation")
+    public ResponseEntity<ApiResponse> runReconciliation(@AuthenticationPrincipal User currentUser) {
+        // Check if user is super admin
+        if (!userService.isSuperAdmin(currentUser)) {
+            throw new UnauthorizedException("Only super admins can run payment reconciliation");
+        }
+        
+        PaymentReconciliationService.Report report = paymentReconciliationService.reconcile();
+        if (report == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ApiResponse.builder()
+                    .success(false)
+                    .message("A reconciliation run is already in progress")
+                    .build());
+        }
+        
+        log.info("Payment reconciliation run by: {}", currentUser.getEmail());
+        return ResponseEntity.ok(ApiResponse.builder()
+                .success(true)
+                .message("Reconciliation completed")
+                .data(report)
+                .build());
+    }
+    
+    @GetMapping("/equb/late-payments")
+    public ResponseEntity<ApiResponse> getLatePaymentReport(@AuthenticationPrincipal User currentUser) {
+        // Check if user is super admin
+        if (!userService.isSuperAdmin(currentUser)) {
+            throw new UnauthorizedException("Only super admins can access Equb late payment runs");
+        }
+        
+        return ResponseEntity.ok(ApiResponse.builder()
+                .success(true)
+                .message(equbLatePaymentService.isRunning()
+                        ? "A late payment run is in progress, showing the previous run"
+                        : "Last late payment run retrieved successfully")
+                .data(equbLatePaymentService.getLastReport())
+                .build());
+    }
+    
+    @PostMapping("/equb/late-payments")
+    public ResponseEntity<ApiResponse> runLatePayments(@AuthenticationPrincipal User currentUser) {
+        // Check if user is super admin
+        if (!userService.isSuperAdmin(currentUser)) {
+            throw new UnauthorizedException("Only super admins can run Equb late payment processing");
+        }
+        
+        EqubLatePaymentService.Report report = equbLatePaymentService.run();
+        if (report == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ApiResponse.builder()
+                    .success(false)
+                    .message("A late payment run is already in progress")
+                    .build());
+        }
+        
+        log.info("Equb late payment run started by: {}", currentUser.getEmail());
+        return ResponseEntity.ok(ApiResponse.builder()
+                .success(true)
+                .message("Late payment run completed")
+                .data(report)
+                .build());
+    }
+    
+    @GetMapping("/dues/billing")
+    public ResponseEntity<ApiResponse> getDuesBillingReport(@AuthenticationPrincipal User currentUser) {
+        // Check if user is super admin
+        if (!userService.isSuperAdmin(currentUser)) {
+            throw new UnauthorizedException("Only super admins can access dues billing runs");
+        }
+        
+        return ResponseEntity.ok(ApiResponse.builder()
+                .success(true)
+                .message(duesBillingService.isRunning()
+                        ? "A dues billing run is in progress, showing the previous run"
+                        : "Last dues billing run retrieved successfully")
+                .data(duesBillingService.getLastReport())
+                .build());
+    }
+    
+    @PostMapping("/dues/billing")
+    public ResponseEntity<ApiResponse> runDuesBilling(@AuthenticationPrincipal User currentUser) {
+        // Check if user is super admin
+        if (!userService.isSuperAdmin(currentUser)) {
+            throw new UnauthorizedException("Only super admins can run dues billing");
+        }
+        
+        DuesBillingService.Report report = duesBillingService.run();
+        if (report == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ApiResponse.builder()
+                    .success(false)
+                    .message("A dues billing run is already in progress")
+                    .build());
+        }
+        
+        log.info("Dues billing run started by: {}", currentUser.getEmail());
+        return ResponseEntity.ok(ApiResponse.builder()
+                .success(true)
+                .message("Dues billing run completed")
+                .data(report)
+                .build());
+    }
+    
+    @GetMapping("/payments/export")
+    public ResponseEntity<StreamingResponseBody> exportPayments(
+            @RequestParam(defaultValue = "CSV") PaymentExportFormat format,
+            @RequestParam(required = false) List<PaymentStatus> status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @AuthenticationPrincipal User currentUser) {
+        // Check if user is super admin
+        if (!userService.isSuperAdmin(currentUser)) {
+            throw new UnauthorizedException("Only super admins can export all payments");
+        }
+        
+        log.info("Payment export ({}) requested by: {}", format, currentUser.getEmail());
+        PaymentExportService.Filter filter = PaymentExportService.Filter.of(null, status, from, to);
+        String filename = "payments." + format.getExtension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip")
+                        : MediaType.parseMediaType(format.getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(out -> paymentExportService.write(filter, format, gzip, out));
+    }
+    
     // ========== USER MANAGEMENT ENDPOINTS ==========
     
     @GetMapping("/users")
@@ -1,10 +1,14 @@
 package com.mahiberawi.controller;
 
 import com.mahiberawi.dto.equb.EqubGroupRequest;
+import com.mahiberawi.dto.equb.EqubProjectionResponse;
+import com.mahiberawi.dto.equb.EqubRoundProgressResponse;
 import com.mahiberawi.dto.equb.EqubRoundResponse;
+import com.mahiberawi.dto.equb.EqubWhatIfRequest;
 import com.mahiberawi.entity.EqubRound;
 import com.mahiberawi.entity.Group;
 import com.mahiberawi.entity.User;
+import com.mahiberawi.service.EqubProjectionService;
 import com.mahiberawi.service.EqubService;
 import com.mahiberawi.service.GroupService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -32,6 +36,7 @@ import java.util.stream.Collectors;
 @SecurityRequirement(name = "Bearer Authentication")
 public class EqubController {
     private final EqubService equbService;
+    private final EqubProjectionService equbProjectionService;
     private final GroupService groupService;
 
     @Operation(
@@ -175,6 +180,84 @@ public class EqubController {
         return ResponseEntity.ok(mapToEqubRoundResponse(round));
     }
 
+    @Operation(
+        summary = "Get current Equb round progress",
+        description = "Retrieves paid, unpaid and late counts and the amount collected so far for the current Equb round"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Round progress retrieved successfully",
+            content = @Content(schema = @Schema(implementation = EqubRoundProgressResponse.class))
+        ),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "404", description = "Group or active round not found")
+    })
+    @GetMapping("/groups/{groupId}/rounds/current/progress")
+    public ResponseEntity<EqubRoundProgressResponse> getCurrentEqubRoundProgress(
+            @Parameter(description = "Group ID", required = true)
+            @PathVariable String groupId,
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal User user) {
+
+        EqubRoundProgressResponse progress = equbService.getCurrentRoundProgress(groupId, user);
+        if (progress == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(progress);
+    }
+
+    @Operation(
+        summary = "Get Equb cycle projection",
+        description = "Projects the payout calendar of the current cycle and each member's contributions and payout"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Projection computed successfully",
+            content = @Content(schema = @Schema(implementation = EqubProjectionResponse.class))
+        ),
+        @ApiResponse(responseCode = "400", description = "Group is not an Equb group"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "404", description = "Group not found")
+    })
+    @GetMapping("/groups/{groupId}/projection")
+    public ResponseEntity<EqubProjectionResponse> getEqubProjection(
+            @Parameter(description = "Group ID", required = true)
+            @PathVariable String groupId,
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal User user) {
+
+        return ResponseEntity.ok(equbProjectionService.getProjection(groupId, user));
+    }
+
+    @Operation(
+        summary = "Get what-if Equb cycle projection",
+        description = "Projects the current cycle as if members left, paid late, or the amount or round length changed"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Projection computed successfully",
+            content = @Content(schema = @Schema(implementation = EqubProjectionResponse.class))
+        ),
+        @ApiResponse(responseCode = "400", description = "Invalid what-if inputs"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "404", description = "Group not found")
+    })
+    @PostMapping("/groups/{groupId}/projection/what-if")
+    public ResponseEntity<EqubProjectionResponse> getEqubWhatIfProjection(
+            @Parameter(description = "Group ID", required = true)
+            @PathVariable String groupId,
+            @Parameter(description = "What-if inputs", required = true)
+            @Valid @RequestBody EqubWhatIfRequest request,
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal User user) {
+
+        return ResponseEntity.ok(equbProjectionService.getWhatIfProjection(groupId, request, user));
+    }
+
     private EqubRoundResponse mapToEqubRoundResponse(EqubRound round) {
         return EqubRoundResponse.builder()
                 .id(round.getId())
@@ -192,6 +275,8 @@ public class EqubController {
                 .paymentDeadline(round.getPaymentDeadline())
                 .gracePeriodDays(round.getGracePeriodDays())
                 .penaltyAmount(round.getPenaltyAmount())
+                .paidMembersCount(round.getPaidCount())
+                .totalMembersCount(round.getMemberCount())
                 .createdAt(round.getCreatedAt())
                 .updatedAt(round.getUpdatedAt())
                 .build();
@@ -3,6 +3,7 @@ package com.mahiberawi.controller;
 import com.mahiberawi.dto.event.*;
 import com.mahiberawi.entity.User;
 import com.mahiberawi.entity.AttendanceStatus;
+import com.mahiberawi.service.EventCheckInService;
 import com.mahiberawi.service.EventService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -21,6 +22,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/events")
@@ -29,6 +31,7 @@ import java.util.List;
 @SecurityRequirement(name = "Bearer Authentication")
 public class EventController {
     private final EventService eventService;
+    private final EventCheckInService eventCheckInService;
 
     @Operation(
         summary = "Create a new event",
@@ -75,7 +78,7 @@ public class EventController {
 
     @Operation(
         summary = "Get events by group",
-        description = "Retrieves all events associated with a specific group"
+        description = "Retrieves the events of a group; recurring events are expanded into their occurrences within the time window"
     )
     @ApiResponses(value = {
         @ApiResponse(
@@ -88,14 +91,18 @@ public class EventController {
     @GetMapping("/group/{groupId}")
     public ResponseEntity<List<EventResponse>> getEventsByGroup(
             @Parameter(description = "ID of the group", required = true)
-            @PathVariable String groupId) {
-        List<EventResponse> events = eventService.getEventsByGroup(groupId);
+            @PathVariable String groupId,
+            @Parameter(description = "Only events starting at or after this time")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Only events starting before this time")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        List<EventResponse> events = eventService.getEventsByGroup(groupId, from, to);
         return ResponseEntity.ok(events);
     }
 
     @Operation(
         summary = "Get upcoming events",
-        description = "Retrieves all upcoming events"
+        description = "Retrieves upcoming events; recurring events are expanded into their occurrences within the time window"
     )
     @ApiResponses(value = {
         @ApiResponse(
@@ -105,11 +112,121 @@ public class EventController {
         )
     })
     @GetMapping("/upcoming")
-    public ResponseEntity<List<EventResponse>> getUpcomingEvents() {
-        List<EventResponse> events = eventService.getUpcomingEvents();
+    public ResponseEntity<List<EventResponse>> getUpcomingEvents(
+            @Parameter(description = "Start of the window (default now)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "End of the window")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        List<EventResponse> events = eventService.getUpcomingEvents(from, to);
         return ResponseEntity.ok(events);
     }
 
+    @Operation(
+        summary = "Get upcoming events page by page",
+        description = "Retrieves upcoming events in start order, optionally for some groups only, one page at a time"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Events retrieved successfully",
+            content = @Content(schema = @Schema(implementation = UpcomingEventPageResponse.class))
+        )
+    })
+    @GetMapping("/upcoming/page")
+    public ResponseEntity<UpcomingEventPageResponse> getUpcomingEventsPage(
+            @Parameter(description = "Start of the window (default now)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "End of the window")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @Parameter(description = "Only events of these groups")
+            @RequestParam(required = false) Set<String> groupIds,
+            @Parameter(description = "Cursor returned with the previous page")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size (at most 100)")
+            @RequestParam(defaultValue = "20") int limit) {
+        UpcomingEventPageResponse page = eventService.getUpcomingEventsPage(from, to, groupIds, cursor, limit);
+        return ResponseEntity.ok(page);
+    }
+
+    @Operation(
+        summary = "Get nearby events",
+        description = "Retrieves events with a location within the radius of a point and the time window, nearest first"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Events retrieved successfully",
+            content = @Content(schema = @Schema(implementation = EventResponse.class))
+        )
+    })
+    @GetMapping("/nearby")
+    public ResponseEntity<List<EventResponse>> getNearbyEvents(
+            @Parameter(description = "Latitude of the point")
+            @RequestParam double lat,
+            @Parameter(description = "Longitude of the point")
+            @RequestParam double lon,
+            @Parameter(description = "Search radius in kilometres (at most 200)")
+            @RequestParam(defaultValue = "10") double radiusKm,
+            @Parameter(description = "Start of the window (default now)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "End of the window")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @Parameter(description = "Maximum number of events (at most 100)")
+            @RequestParam(defaultValue = "50") int limit) {
+        List<EventResponse> events = eventService.getNearbyEvents(lat, lon, radiusKm, from, to, limit);
+        return ResponseEntity.ok(events);
+    }
+
+    @Operation(
+        summary = "Get event occurrences",
+        description = "Expands a recurring event into its occurrences within the time window"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Occurrences retrieved successfully",
+            content = @Content(schema = @Schema(implementation = EventResponse.class))
+        ),
+        @ApiResponse(responseCode = "404", description = "Event not found")
+    })
+    @GetMapping("/{id}/occurrences")
+    public ResponseEntity<List<EventResponse>> getEventOccurrences(
+            @Parameter(description = "ID of the event", required = true)
+            @PathVariable String id,
+            @Parameter(description = "Start of the window (default now)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "End of the window")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        List<EventResponse> occurrences = eventService.getEventOccurrences(id, from, to);
+        return ResponseEntity.ok(occurrences);
+    }
+
+    @Operation(
+        summary = "Update an occurrence",
+        description = "Cancels, moves or retitles one occurrence of a recurring event; an empty request restores it"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Occurrence updated successfully",
+            content = @Content(schema = @Schema(implementation = EventResponse.class))
+        ),
+        @ApiResponse(responseCode = "400", description = "Invalid input data"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "404", description = "Event or occurrence not found")
+    })
+    @PutMapping("/{id}/occurrences")
+    public ResponseEntity<EventResponse> updateOccurrence(
+            @Parameter(description = "ID of the event", required = true)
+            @PathVariable String id,
+            @Parameter(description = "Original start of the occurrence", required = true)
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime occurrence,
+            @Parameter(description = "Changes to the occurrence", required = true)
+            @Valid @RequestBody EventOccurrenceRequest request) {
+        EventResponse event = eventService.updateOccurrence(id, occurrence, request);
+        return ResponseEntity.ok(event);
+    }
+
     @Operation(
         summary = "Update event details",
         description = "Updates the information of an existing event"
@@ -155,7 +272,7 @@ public class EventController {
 
     @Operation(
         summary = "Register for an event",
-        description = "Registers the current user as a participant in the event"
+        description = "Registers the current user as a participant in the event, or in one occurrence of a recurring event"
     )
     @ApiResponses(value = {
         @ApiResponse(
@@ -171,12 +288,41 @@ public class EventController {
     public ResponseEntity<EventResponse> registerParticipant(
             @Parameter(description = "ID of the event", required = true)
             @PathVariable String id,
+            @Parameter(description = "Original start of the occurrence, required for recurring events")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime occurrence,
             @Parameter(hidden = true)
             @AuthenticationPrincipal User user) {
-        EventResponse event = eventService.registerParticipant(id, user);
+        EventResponse event = eventService.registerParticipant(id, occurrence, user);
         return ResponseEntity.ok(event);
     }
 
+    @Operation(
+        summary = "Get event participants",
+        description = "Retrieves the participants of an event one page at a time, oldest registration first"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Participants retrieved successfully",
+            content = @Content(schema = @Schema(implementation = EventParticipantPageResponse.class))
+        ),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "404", description = "Event not found")
+    })
+    @GetMapping("/{id}/participants")
+    public ResponseEntity<EventParticipantPageResponse> getEventParticipants(
+            @Parameter(description = "ID of the event", required = true)
+            @PathVariable String id,
+            @Parameter(description = "Only participants of this occurrence of a recurring event")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime occurrence,
+            @Parameter(description = "Zero-based page number")
+            @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Page size (at most 100)")
+            @RequestParam(defaultValue = "20") int size) {
+        EventParticipantPageResponse participants = eventService.getEventParticipants(id, occurrence, page, size);
+        return ResponseEntity.ok(participants);
+    }
+
     @Operation(
         summary = "Update participant status",
         description = "Updates the attendance status of a participant in the event"
@@ -199,11 +345,91 @@ public class EventController {
             @Parameter(description = "ID of the participant", required = true)
             @PathVariable String userId,
             @Parameter(description = "New attendance status", required = true)
-            @RequestParam AttendanceStatus status) {
-        EventResponse event = eventService.updateParticipantStatus(id, userId, status);
+            @RequestParam AttendanceStatus status,
+            @Parameter(description = "Original start of the occurrence, required for recurring events")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime occurrence) {
+        EventResponse event = eventService.updateParticipantStatus(id, occurrence, userId, status);
         return ResponseEntity.ok(event);
     }
 
+    @Operation(
+        summary = "Get my check-in token",
+        description = "Returns the signed check-in token of the current user's registration, to be shown as a QR code"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Token issued successfully",
+            content = @Content(schema = @Schema(implementation = CheckInTokenResponse.class))
+        ),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "404", description = "Event or registration not found")
+    })
+    @GetMapping("/{id}/check-in/token")
+    public ResponseEntity<CheckInTokenResponse> getCheckInToken(
+            @Parameter(description = "ID of the event", required = true)
+            @PathVariable String id,
+            @Parameter(description = "Original start of the occurrence, required for recurring events")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime occurrence,
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal User user) {
+        CheckInTokenResponse token = eventCheckInService.issueToken(id, occurrence, user);
+        return ResponseEntity.ok(token);
+    }
+
+    @Operation(
+        summary = "Check in participants",
+        description = "Checks in the participants of one or more scanned check-in tokens and returns the live counters"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Tokens processed; see the outcome of each",
+            content = @Content(schema = @Schema(implementation = CheckInResponse.class))
+        ),
+        @ApiResponse(responseCode = "400", description = "Invalid input data"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "403", description = "Not the event organizer"),
+        @ApiResponse(responseCode = "404", description = "Event not found")
+    })
+    @PostMapping("/{id}/check-in")
+    public ResponseEntity<CheckInResponse> checkIn(
+            @Parameter(description = "ID of the event", required = true)
+            @PathVariable String id,
+            @Parameter(description = "Scanned check-in tokens", required = true)
+            @Valid @RequestBody CheckInRequest request,
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal User user) {
+        CheckInResponse response = eventCheckInService.checkIn(id, request.getTokens(), user);
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(
+        summary = "Get check-in counters",
+        description = "Returns how many participants of the event or occurrence are expected and checked in"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Counters retrieved successfully",
+            content = @Content(schema = @Schema(implementation = CheckInStatsResponse.class))
+        ),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "403", description = "Not the event organizer"),
+        @ApiResponse(responseCode = "404", description = "Event not found")
+    })
+    @GetMapping("/{id}/check-in/stats")
+    public ResponseEntity<CheckInStatsResponse> getCheckInStats(
+            @Parameter(description = "ID of the event", required = true)
+            @PathVariable String id,
+            @Parameter(description = "Original start of the occurrence, required for recurring events")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime occurrence,
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal User user) {
+        CheckInStatsResponse stats = eventCheckInService.getStats(id, occurrence, user);
+        return ResponseEntity.ok(stats);
+    }
+
     @Operation(
         summary = "Update event time",
         description = "Updates the start and end time of an event"
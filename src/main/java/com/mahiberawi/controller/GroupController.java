@@ -23,6 +23,7 @@ import com.mahiberawi.exception.ResourceNotFoundException;
 import com.mahiberawi.exception.UnauthorizedException;
 import com.mahiberawi.repository.GroupRepository;
 import com.mahiberawi.repository.GroupMemberRepository;
+import com.mahiberawi.service.CalendarFeedService;
 import com.mahiberawi.service.GroupService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -34,10 +35,15 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
@@ -54,6 +60,7 @@ public class GroupController {
     private final GroupService groupService;
     private final GroupRepository groupRepository;
     private final GroupMemberRepository groupMemberRepository;
+    private final CalendarFeedService calendarFeedService;
 
     @Operation(
         summary = "Create a new group",
@@ -695,6 +702,37 @@ public class GroupController {
                 .build());
     }
 
+    @Operation(
+        summary = "Get group calendar feed",
+        description = "Streams the group's events as an iCalendar (.ics) feed for calendar subscriptions. " +
+                     "Accepts a bearer token or, for calendar clients, the user's feed token as the token parameter. " +
+                     "Supports conditional GET through ETag/If-None-Match and Last-Modified/If-Modified-Since."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Calendar feed", content = @Content(mediaType = "text/calendar")),
+        @ApiResponse(responseCode = "304", description = "Feed has not changed"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "403", description = "Not a member of the group"),
+        @ApiResponse(responseCode = "404", description = "Group not found")
+    })
+    @GetMapping("/{groupId}/events.ics")
+    public ResponseEntity<StreamingResponseBody> getGroupCalendarFeed(
+            @Parameter(description = "ID of the group", required = true)
+            @PathVariable String groupId,
+            @Parameter(description = "Feed token from /groups/user/calendar-feed-token")
+            @RequestParam(required = false) String token,
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal User user,
+            @Parameter(hidden = true)
+            WebRequest webRequest) {
+        User reader = feedReader(token, user);
+        if (reader == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        CalendarFeedService.CalendarFeed feed = calendarFeedService.getGroupFeed(groupId, reader);
+        return calendarResponse(feed, webRequest, out -> calendarFeedService.writeGroupFeed(groupId, feed.name(), out));
+    }
+
     @Operation(
         summary = "Create group event",
         description = "Creates a new event for a specific group. Only admins and moderators can create events."
@@ -943,6 +981,58 @@ public class GroupController {
 
     // ========== USER AGGREGATED ENDPOINTS (HOME SCREEN) ==========
 
+    @Operation(
+        summary = "Get user's calendar feed",
+        description = "Streams the events of all groups the user is an active member of as an iCalendar (.ics) feed. " +
+                     "Accepts a bearer token or, for calendar clients, the user's feed token as the token parameter. " +
+                     "Supports conditional GET through ETag/If-None-Match and Last-Modified/If-Modified-Since."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Calendar feed", content = @Content(mediaType = "text/calendar")),
+        @ApiResponse(responseCode = "304", description = "Feed has not changed"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping("/user/events.ics")
+    public ResponseEntity<StreamingResponseBody> getUserCalendarFeed(
+            @Parameter(description = "Feed token from /groups/user/calendar-feed-token")
+            @RequestParam(required = false) String token,
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal User user,
+            @Parameter(hidden = true)
+            WebRequest webRequest) {
+        User reader = feedReader(token, user);
+        if (reader == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        CalendarFeedService.CalendarFeed feed = calendarFeedService.getUserFeed(reader);
+        String userId = reader.getId();
+        return calendarResponse(feed, webRequest, out -> calendarFeedService.writeUserFeed(userId, feed.name(), out));
+    }
+
+    @Operation(
+        summary = "Get user's calendar feed token",
+        description = "Returns the token to add as the token parameter to the .ics feed URLs, " +
+                     "so calendar clients can subscribe without a bearer token."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Feed token",
+            content = @Content(schema = @Schema(implementation = com.mahiberawi.dto.ApiResponse.class))
+        ),
+        @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping("/user/calendar-feed-token")
+    public ResponseEntity<com.mahiberawi.dto.ApiResponse> getCalendarFeedToken(
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(com.mahiberawi.dto.ApiResponse.builder()
+                .success(true)
+                .message("Calendar feed token retrieved successfully")
+                .data(calendarFeedService.getFeedToken(user))
+                .build());
+    }
+
     @Operation(
         summary = "Get user's group events",
         description = "Retrieves all events from groups the user is a member of for the home screen."
@@ -1464,4 +1554,27 @@ public class GroupController {
                 .data(invitationLink)
                 .build());
     }
-} 
\ No newline at end of file
+
+    // The feeds are open to unauthenticated requests so calendar clients can fetch them with a feed
+    // token; without a valid token they need the bearer token's user
+    private User feedReader(String token, User user) {
+        return token != null ? calendarFeedService.getFeedTokenUser(token) : user;
+    }
+
+    // A streamed body is written without Spring's conditional GET handling, so If-None-Match and
+    // If-Modified-Since are checked here and answered with a 304 before any event is read
+    private ResponseEntity<StreamingResponseBody> calendarResponse(CalendarFeedService.CalendarFeed feed,
+                                                                   WebRequest webRequest,
+                                                                   StreamingResponseBody body) {
+        if (webRequest.checkNotModified(feed.etag(), feed.lastModified())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(new MediaType("text", "calendar", StandardCharsets.UTF_8))
+                .eTag(feed.etag());
+        if (feed.lastModified() >= 0) {
+            response.lastModified(feed.lastModified());
+        }
+        return response.body(body);
+    }
+}
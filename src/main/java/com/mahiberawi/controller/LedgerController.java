@@ -0,0 +1,105 @@
+package com.mahiberawi.controller;
+
+import com.mahiberawi.dto.ledger.LedgerBalanceResponse;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.service.LedgerService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/ledger")
+@RequiredArgsConstructor
+@Tag(name = "Ledger", description = "Group and member balances from the group ledger")
+@SecurityRequirement(name = "Bearer Authentication")
+public class LedgerController {
+    private final LedgerService ledgerService;
+
+    @Operation(
+        summary = "Get group balances",
+        description = "Retrieves the balances of a group's accounts, now or at a point in time. Only admins and moderators can view group balances."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Balances retrieved successfully",
+            content = @Content(schema = @Schema(implementation = LedgerBalanceResponse.class))
+        ),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "403", description = "Not authorized to view group balances"),
+        @ApiResponse(responseCode = "404", description = "Group not found")
+    })
+    @GetMapping("/groups/{groupId}/balances")
+    public ResponseEntity<LedgerBalanceResponse> getGroupBalances(
+            @Parameter(description = "Group ID", required = true)
+            @PathVariable String groupId,
+            @Parameter(description = "Point in time, e.g. 2026-01-31T23:59:59; current balances when omitted")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf,
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(ledgerService.getGroupBalances(groupId, asOf, user));
+    }
+
+    @Operation(
+        summary = "Get my balances",
+        description = "Retrieves what the current user owes and has received in a group, now or at a point in time"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Balances retrieved successfully",
+            content = @Content(schema = @Schema(implementation = LedgerBalanceResponse.class))
+        ),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "404", description = "Group not found")
+    })
+    @GetMapping("/groups/{groupId}/me")
+    public ResponseEntity<LedgerBalanceResponse> getMyBalances(
+            @Parameter(description = "Group ID", required = true)
+            @PathVariable String groupId,
+            @Parameter(description = "Point in time; current balances when omitted")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf,
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(ledgerService.getMemberBalances(groupId, user.getId(), asOf, user));
+    }
+
+    @Operation(
+        summary = "Get member balances",
+        description = "Retrieves what a member owes and has received in a group. Members can view their own; admins and moderators can view anyone's."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Balances retrieved successfully",
+            content = @Content(schema = @Schema(implementation = LedgerBalanceResponse.class))
+        ),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "403", description = "Not authorized to view this member's balances"),
+        @ApiResponse(responseCode = "404", description = "Group not found")
+    })
+    @GetMapping("/groups/{groupId}/members/{userId}")
+    public ResponseEntity<LedgerBalanceResponse> getMemberBalances(
+            @Parameter(description = "Group ID", required = true)
+            @PathVariable String groupId,
+            @Parameter(description = "User ID", required = true)
+            @PathVariable String userId,
+            @Parameter(description = "Point in time; current balances when omitted")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf,
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(ledgerService.getMemberBalances(groupId, userId, asOf, user));
+    }
+}
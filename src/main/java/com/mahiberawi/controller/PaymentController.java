@@ -3,12 +3,17 @@ package com.mahiberawi.controller;
 import com.mahiberawi.dto.payment.PaymentRequest;
 import com.mahiberawi.dto.payment.PaymentResponse;
 import com.mahiberawi.dto.payment.GroupPaymentRequest;
+import com.mahiberawi.dto.payment.GroupPaymentStatisticsResponse;
+import com.mahiberawi.dto.payment.GroupPaymentSummary;
+import com.mahiberawi.dto.payment.PaymentExportFormat;
 import com.mahiberawi.entity.User;
 import com.mahiberawi.entity.Payment;
+import com.mahiberawi.entity.PaymentStatus;
 import com.mahiberawi.service.PaymentService;
 import com.mahiberawi.service.TeleBirrService;
 import com.mahiberawi.service.VippsService;
 import com.mahiberawi.service.GroupPaymentService;
+import com.mahiberawi.service.PaymentExportService;
 import java.util.Map;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -20,10 +25,16 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -37,6 +48,7 @@ public class PaymentController {
     private final TeleBirrService teleBirrService;
     private final VippsService vippsService;
     private final GroupPaymentService groupPaymentService;
+    private final PaymentExportService paymentExportService;
 
     @Operation(
         summary = "Create a new payment",
@@ -373,19 +385,13 @@ public class PaymentController {
             @Valid @RequestBody GroupPaymentRequest request,
             @Parameter(hidden = true)
             @AuthenticationPrincipal User user) {
-        List<PaymentResponse> createdPayments = groupPaymentService.createGroupPaymentRequest(request, user);
+        GroupPaymentSummary summary = groupPaymentService.createGroupPaymentRequest(request, user);
         return ResponseEntity.ok(com.mahiberawi.dto.ApiResponse.builder()
-                .success(true)
-                .message("Group payment request created successfully")
-                .data(Map.of(
-                    "groupId", request.getGroupId(),
-                    "amount", request.getAmount(),
-                    "method", request.getMethod(),
-                    "description", request.getDescription(),
-                    "createdBy", user.getId(),
-                    "createdPayments", createdPayments.size(),
-                    "payments", createdPayments
-                ))
+                .success(summary.isComplete())
+                .message(summary.isComplete()
+                        ? "Group payment request created successfully"
+                        : "Group payment request partially created")
+                .data(summary)
                 .build());
     }
 
@@ -442,7 +448,7 @@ public class PaymentController {
 
     @Operation(
         summary = "Get group payment statistics",
-        description = "Retrieves payment statistics for a specific group. Only admins and moderators can view statistics."
+        description = "Retrieves payment counts and amounts for a group per status, method, month and member. Only admins and moderators can view statistics."
     )
     @ApiResponses(value = {
         @ApiResponse(
@@ -460,11 +466,85 @@ public class PaymentController {
             @PathVariable String groupId,
             @Parameter(hidden = true)
             @AuthenticationPrincipal User user) {
-        List<PaymentResponse> payments = groupPaymentService.getGroupPaymentStatistics(groupId, user);
+        GroupPaymentStatisticsResponse statistics = groupPaymentService.getGroupPaymentStatistics(groupId, user);
         return ResponseEntity.ok(com.mahiberawi.dto.ApiResponse.builder()
                 .success(true)
                 .message("Group payment statistics retrieved successfully")
-                .data(payments)
+                .data(statistics)
+                .build());
+    }
+
+    @Operation(
+        summary = "Get group payment summary",
+        description = "Retrieves payment counts and amounts per status for a group from its running totals. Only admins and moderators can view the summary."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Payment summary retrieved successfully",
+            content = @Content(schema = @Schema(implementation = com.mahiberawi.dto.ApiResponse.class))
+        ),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "403", description = "Not authorized to view statistics"),
+        @ApiResponse(responseCode = "404", description = "Group not found")
+    })
+    @GetMapping("/group/{groupId}/summary")
+    public ResponseEntity<com.mahiberawi.dto.ApiResponse> getGroupPaymentSummary(
+            @Parameter(description = "Group ID", required = true)
+            @PathVariable String groupId,
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal User user) {
+        GroupPaymentStatisticsResponse summary = groupPaymentService.getGroupPaymentSummary(groupId, user);
+        return ResponseEntity.ok(com.mahiberawi.dto.ApiResponse.builder()
+                .success(true)
+                .message("Group payment summary retrieved successfully")
+                .data(summary)
                 .build());
     }
-} 
\ No newline at end of file
+
+    @Operation(
+        summary = "Export group payments",
+        description = "Streams a group's payments as CSV or JSON lines, optionally gzip-compressed, filtered by status and creation date. Only admins and moderators can export payments."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Payment export", content = {
+            @Content(mediaType = "text/csv"),
+            @Content(mediaType = "application/x-ndjson"),
+            @Content(mediaType = "application/gzip")
+        }),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "403", description = "Not authorized to export payments"),
+        @ApiResponse(responseCode = "404", description = "Group not found")
+    })
+    @GetMapping("/group/{groupId}/export")
+    public ResponseEntity<StreamingResponseBody> exportGroupPayments(
+            @Parameter(description = "Group ID", required = true)
+            @PathVariable String groupId,
+            @Parameter(description = "Export format")
+            @RequestParam(defaultValue = "CSV") PaymentExportFormat format,
+            @Parameter(description = "Statuses to include; all when omitted")
+            @RequestParam(required = false) List<PaymentStatus> status,
+            @Parameter(description = "First creation date to include, e.g. 2026-01-01")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Last creation date to include")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @Parameter(description = "Compress the export with gzip")
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal User user) {
+        paymentExportService.checkGroupExport(groupId, user);
+        PaymentExportService.Filter filter = PaymentExportService.Filter.of(groupId, status, from, to);
+        return exportResponse("payments-" + groupId, format, gzip,
+                out -> paymentExportService.write(filter, format, gzip, out));
+    }
+
+    private ResponseEntity<StreamingResponseBody> exportResponse(String name, PaymentExportFormat format, boolean gzip,
+                                                                 StreamingResponseBody body) {
+        String filename = name + "." + format.getExtension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip")
+                        : MediaType.parseMediaType(format.getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+}
@@ -0,0 +1,71 @@
+package com.mahiberawi.controller;
+
+import com.mahiberawi.dto.ApiResponse;
+import com.mahiberawi.entity.PaymentMethod;
+import com.mahiberawi.service.PaymentWebhookService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/payments")
+@RequiredArgsConstructor
+@Tag(name = "Payment callbacks", description = "Status notifications from payment gateways")
+public class PaymentWebhookController {
+
+    private static final String SIGNATURE_HEADER = "X-Signature";
+
+    private final PaymentWebhookService paymentWebhookService;
+
+    @Operation(
+        summary = "TeleBirr payment notification",
+        description = "Receives a signed TeleBirr status callback; the status change is applied asynchronously"
+    )
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Callback received"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Malformed callback"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Invalid signature")
+    })
+    @PostMapping("/telebirr/notify")
+    public ResponseEntity<ApiResponse> teleBirrNotify(
+            @RequestBody String body,
+            @RequestHeader(value = SIGNATURE_HEADER, required = false) String signature) {
+        return acknowledge(paymentWebhookService.receive(PaymentMethod.TELEBIRR, body, signature));
+    }
+
+    @Operation(
+        summary = "Vipps payment notification",
+        description = "Receives a signed Vipps status callback; the status change is applied asynchronously"
+    )
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Callback received"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Malformed callback"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Invalid signature")
+    })
+    @PostMapping("/vipps/notify")
+    public ResponseEntity<ApiResponse> vippsNotify(
+            @RequestBody String body,
+            @RequestHeader(value = SIGNATURE_HEADER, required = false) String signature) {
+        return acknowledge(paymentWebhookService.receive(PaymentMethod.VIPPS, body, signature));
+    }
+
+    private ResponseEntity<ApiResponse> acknowledge(PaymentWebhookService.Receipt receipt) {
+        HttpStatus status = switch (receipt) {
+            case ACCEPTED, DUPLICATE -> HttpStatus.OK;
+            case INVALID_SIGNATURE -> HttpStatus.UNAUTHORIZED;
+            case MALFORMED -> HttpStatus.BAD_REQUEST;
+        };
+        return ResponseEntity.status(status).body(ApiResponse.builder()
+                .success(status == HttpStatus.OK)
+                .message(receipt.name())
+                .build());
+    }
+}
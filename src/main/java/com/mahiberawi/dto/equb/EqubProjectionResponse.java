@@ -0,0 +1,71 @@
+package com.mahiberawi.dto.equb;
+
+import com.mahiberawi.entity.enums.EqubSelectionMethod;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class EqubProjectionResponse {
+    private String groupId;
+    private EqubSelectionMethod selectionMethod;
+    private int memberCount;
+    private BigDecimal contributionPerRound;
+    private BigDecimal potPerRound;
+    // Rounds in the current cycle, in which every member receives the pot once
+    private int cycleRounds;
+    private int completedRounds;
+    private int remainingRounds;
+    private LocalDateTime cycleEndDate;
+    // True when computed with what-if inputs rather than the group as it is
+    private boolean whatIf;
+    private LocalDateTime computedAt;
+    private List<ProjectedRound> rounds;
+    private List<MemberSchedule> members;
+
+    public enum RoundPhase {
+        COMPLETED,
+        CURRENT,
+        PROJECTED
+    }
+
+    @Data
+    @Builder
+    public static class ProjectedRound {
+        private int roundNumber;
+        private RoundPhase phase;
+        private LocalDateTime startDate;
+        private LocalDateTime paymentDeadline;
+        private LocalDateTime payoutDate;
+        private BigDecimal potAmount;
+        private BigDecimal expectedPenalties;
+        // Known for completed rounds and, with fixed turns, for the rest of the cycle
+        private String winnerId;
+        private String winnerName;
+    }
+
+    @Data
+    @Builder
+    public static class MemberSchedule {
+        private String userId;
+        private String name;
+        private boolean received;
+        // Set when the round is known; with a lottery only the expected round and range are
+        private Integer payoutRound;
+        private LocalDateTime payoutDate;
+        private Double expectedPayoutRound;
+        private Integer earliestPayoutRound;
+        private Integer latestPayoutRound;
+        private BigDecimal payoutAmount;
+        private BigDecimal contributionPerRound;
+        private BigDecimal totalContribution;
+        private BigDecimal remainingContribution;
+        private BigDecimal projectedPenalties;
+        // Payout less contributions and penalties over the cycle
+        private BigDecimal netPosition;
+    }
+}
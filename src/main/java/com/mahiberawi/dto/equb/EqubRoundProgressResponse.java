@@ -0,0 +1,26 @@
+package com.mahiberawi.dto.equb;
+
+import com.mahiberawi.entity.enums.EqubRoundStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class EqubRoundProgressResponse {
+    private String roundId;
+    private String groupId;
+    private Integer roundNumber;
+    private EqubRoundStatus status;
+    private int memberCount;
+    private int paidCount;
+    private int unpaidCount;
+    private int lateCount;
+    private BigDecimal expectedAmount;
+    private BigDecimal collectedAmount;
+    private LocalDateTime paymentDeadline;
+    // True once every billed member has paid, so a winner can be selected
+    private boolean readyForDraw;
+}
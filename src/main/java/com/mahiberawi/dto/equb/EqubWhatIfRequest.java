@@ -0,0 +1,22 @@
+package com.mahiberawi.dto.equb;
+
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+@Data
+public class EqubWhatIfRequest {
+    // Members assumed to leave before the next round
+    private Set<String> leavingUserIds;
+
+    // Members assumed to pay late, after the deadline, in every remaining round
+    private Set<String> lateUserIds;
+
+    @Positive(message = "Equb amount must be positive")
+    private BigDecimal equbAmount;
+
+    @Positive(message = "Payment deadline days must be positive")
+    private Integer paymentDeadlineDays;
+}
@@ -0,0 +1,10 @@
+package com.mahiberawi.dto.event;
+
+public enum CheckInOutcome {
+    CHECKED_IN,
+    ALREADY_CHECKED_IN,
+    NOT_REGISTERED,
+    WRONG_EVENT,
+    EXPIRED,
+    INVALID_TOKEN
+}
@@ -0,0 +1,15 @@
+package com.mahiberawi.dto.event;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CheckInRequest {
+    // One scan, or a batch queued by a scanner that was offline
+    @NotEmpty(message = "At least one token is required")
+    @Size(max = 500, message = "At most 500 tokens can be checked in at once")
+    private List<String> tokens;
+}
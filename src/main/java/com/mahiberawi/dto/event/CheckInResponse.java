@@ -0,0 +1,26 @@
+package com.mahiberawi.dto.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class CheckInResponse {
+    // One result per token, in request order
+    private List<Result> results;
+    private int checkedIn;
+    // Counters of each occurrence touched by the batch
+    private List<CheckInStatsResponse> stats;
+
+    @Data
+    @AllArgsConstructor
+    public static class Result {
+        private CheckInOutcome outcome;
+        private String userId;
+        private LocalDateTime occurrenceStart;
+    }
+}
@@ -0,0 +1,18 @@
+package com.mahiberawi.dto.event;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class CheckInStatsResponse {
+    private String eventId;
+    private LocalDateTime occurrenceStart;
+    // Participants holding a seat, checked in or not
+    private int expected;
+    private int checkedIn;
+    private int remaining;
+    private LocalDateTime lastCheckInAt;
+}
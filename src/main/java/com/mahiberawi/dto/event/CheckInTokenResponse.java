@@ -0,0 +1,16 @@
+package com.mahiberawi.dto.event;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class CheckInTokenResponse {
+    // Shown to the organizer as a QR code
+    private String token;
+    private String eventId;
+    private LocalDateTime occurrenceStart;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,20 @@
+package com.mahiberawi.dto.event;
+
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class EventOccurrenceRequest {
+    private Boolean cancelled;
+
+    // Leave the time, title or location null to keep the series value
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+
+    @Size(min = 3, max = 100, message = "Title must be between 3 and 100 characters")
+    private String title;
+
+    private String location;
+}
@@ -0,0 +1,17 @@
+package com.mahiberawi.dto.event;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class EventParticipantPageResponse {
+    private String eventId;
+    private List<EventParticipantResponse> participants;
+    private int page;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+}
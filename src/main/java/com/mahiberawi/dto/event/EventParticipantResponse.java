@@ -14,6 +14,7 @@ public class EventParticipantResponse {
     private String userEmail;
     private String userFullName;
     private String userProfilePicture;
+    private LocalDateTime occurrenceStart;
     private AttendanceStatus status;
     private LocalDateTime registeredAt;
     private LocalDateTime updatedAt;
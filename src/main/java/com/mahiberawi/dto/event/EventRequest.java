@@ -1,5 +1,7 @@
 package com.mahiberawi.dto.event;
 
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -26,6 +28,20 @@ public class EventRequest {
     @NotBlank(message = "Location is required")
     private String location;
 
+    // Optional; give both to make the event discoverable by location
+    @DecimalMin(value = "-90.0", message = "Latitude must be between -90 and 90")
+    @DecimalMax(value = "90.0", message = "Latitude must be between -90 and 90")
+    private Double latitude;
+
+    @DecimalMin(value = "-180.0", message = "Longitude must be between -180 and 180")
+    @DecimalMax(value = "180.0", message = "Longitude must be between -180 and 180")
+    private Double longitude;
+
     private Integer maxParticipants;
+    private Boolean waitlistEnabled;
+
+    // e.g. FREQ=WEEKLY;BYDAY=SA or FREQ=MONTHLY;COUNT=12; the start and end times give the first occurrence
+    @Size(max = 255, message = "Recurrence rule must be at most 255 characters")
+    private String recurrenceRule;
     private String groupId;
 } 
\ No newline at end of file
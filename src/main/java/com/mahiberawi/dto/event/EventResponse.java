@@ -1,11 +1,12 @@
 package com.mahiberawi.dto.event;
 
+import com.mahiberawi.entity.AttendanceStatus;
 import com.mahiberawi.entity.EventStatus;
 import lombok.Builder;
 import lombok.Data;
 
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.Map;
 
 @Data
 @Builder
@@ -15,14 +16,22 @@ public class EventResponse {
     private String description;
     private LocalDateTime startTime;
     private LocalDateTime endTime;
+    // Set for an occurrence of a recurring event: the original start that identifies it
+    private LocalDateTime occurrenceStart;
+    private String recurrenceRule;
     private String location;
+    private Double latitude;
+    private Double longitude;
+    // Set in nearby search results
+    private Double distanceKm;
     private Integer maxParticipants;
     private Integer currentParticipants;
+    private Boolean waitlistEnabled;
     private String groupId;
     private String groupName;
     private String creatorId;
     private String creatorName;
     private LocalDateTime createdAt;
     private EventStatus status;
-    private List<EventParticipantResponse> participants;
+    private Map<AttendanceStatus, Integer> attendanceCounts;
 } 
\ No newline at end of file
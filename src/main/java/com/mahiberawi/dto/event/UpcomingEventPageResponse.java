@@ -0,0 +1,14 @@
+package com.mahiberawi.dto.event;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class UpcomingEventPageResponse {
+    private List<EventResponse> events;
+    // Pass back as the cursor parameter for the next page; null on the last page
+    private String nextCursor;
+}
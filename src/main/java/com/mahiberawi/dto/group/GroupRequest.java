@@ -2,6 +2,9 @@ package com.mahiberawi.dto.group;
 
 import com.mahiberawi.entity.enums.GroupType;
 import com.mahiberawi.entity.enums.GroupPrivacy;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -26,6 +29,7 @@ public class GroupRequest {
     private String profilePicture;
 
     // Group settings
+    @Valid
     private GroupSettings settings;
 
     @Data
@@ -36,5 +40,9 @@ public class GroupRequest {
         private Boolean paymentRequired = false;
         private Boolean requireApproval = false;
         private BigDecimal monthlyDues;
+
+        @Min(value = 1, message = "Dues billing day must be between 1 and 28")
+        @Max(value = 28, message = "Dues billing day must be between 1 and 28")
+        private Integer duesBillingDay;
     }
 } 
\ No newline at end of file
@@ -30,4 +30,5 @@ public class GroupResponse {
     private Boolean paymentRequired;
     private Boolean requireApproval;
     private BigDecimal monthlyDues;
+    private Integer duesBillingDay;
 } 
\ No newline at end of file
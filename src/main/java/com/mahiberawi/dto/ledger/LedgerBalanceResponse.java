@@ -0,0 +1,22 @@
+package com.mahiberawi.dto.ledger;
+
+import com.mahiberawi.entity.LedgerAccountType;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@Builder
+public class LedgerBalanceResponse {
+    private String groupId;
+    // Null for the group's own accounts
+    private String userId;
+    // Null for current balances
+    private LocalDateTime asOf;
+    private Map<LedgerAccountType, BigDecimal> balances;
+    // What the member owes, or what all members owe the group
+    private BigDecimal outstanding;
+}
@@ -0,0 +1,8 @@
+package com.mahiberawi.dto.payment;
+
+public enum GroupPaymentMode {
+    // Every member gets a payment or, on any failure, none does
+    ALL_OR_NOTHING,
+    // Chunks are committed one by one; an interrupted request is resumed by sending its batch id again
+    RESUMABLE
+}
@@ -33,4 +33,9 @@ public class GroupPaymentRequest {
     private List<String> targetUserIds; // If null, applies to all group members
     private String paymentInstructions;
     private Boolean isMandatory;
+
+    // ALL_OR_NOTHING when not given
+    private GroupPaymentMode mode;
+    // Batch id of an earlier, interrupted request to resume; members it already covers are skipped
+    private String batchId;
 } 
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.mahiberawi.dto.payment;
+
+import com.mahiberawi.entity.PaymentMethod;
+import com.mahiberawi.entity.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+public class GroupPaymentStatisticsResponse {
+    private String groupId;
+    private long totalCount;
+    private BigDecimal totalAmount;
+    private Map<PaymentStatus, Totals> byStatus;
+    // The breakdowns below are left out of the summary
+    private Map<PaymentMethod, Map<PaymentStatus, Totals>> byMethod;
+    // Keyed by year and month, e.g. "2026-10"
+    private Map<String, Map<PaymentStatus, Totals>> byMonth;
+    private List<MemberTotals> byMember;
+
+    @Data
+    @AllArgsConstructor
+    public static class Totals {
+        private long count;
+        private BigDecimal amount;
+    }
+
+    @Data
+    @Builder
+    public static class MemberTotals {
+        private String userId;
+        private String name;
+        private Map<PaymentStatus, Totals> byStatus;
+    }
+}
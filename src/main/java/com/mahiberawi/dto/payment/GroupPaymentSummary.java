@@ -0,0 +1,23 @@
+package com.mahiberawi.dto.payment;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class GroupPaymentSummary {
+    private String batchId;
+    private String groupId;
+    private GroupPaymentMode mode;
+    // Members the request covers, including those created by an earlier attempt
+    private int targeted;
+    private int created;
+    private int alreadyCreated;
+    private int remaining;
+    private boolean complete;
+    private String error;
+    // Only listed for small requests
+    private List<PaymentResponse> payments;
+}
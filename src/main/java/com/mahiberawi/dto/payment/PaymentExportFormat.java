@@ -0,0 +1,23 @@
+package com.mahiberawi.dto.payment;
+
+public enum PaymentExportFormat {
+    CSV("text/csv", "csv"),
+    // One JSON object per line
+    JSONL("application/x-ndjson", "jsonl");
+
+    private final String contentType;
+    private final String extension;
+
+    PaymentExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -2,6 +2,7 @@ package com.mahiberawi.entity;
 
 public enum AttendanceStatus {
     REGISTERED,
+    WAITLISTED,
     ATTENDED,
     CANCELLED
 } 
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.mahiberawi.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the monthly dues billing through one group for one period. Members are
+ * billed in user id order; each chunk moves last_user_id forward in the same transaction
+ * that inserts its payments, so a later run carries on after the last committed chunk
+ * and skips the group once it is completed.
+ */
+@Data
+@Entity
+@Table(name = "dues_billing_checkpoints",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"period", "group_id"}))
+public class DuesBillingCheckpoint {
+    @Id
+    private String id;
+
+    // Month billed, as yyyy-MM
+    @Column(nullable = false, length = 7)
+    private String period;
+
+    @Column(name = "group_id", nullable = false)
+    private String groupId;
+
+    @Column(name = "last_user_id", nullable = false)
+    private String lastUserId;
+
+    @Column(name = "payments_created", nullable = false)
+    private int paymentsCreated;
+
+    @Column(name = "amount_total", nullable = false, precision = 14, scale = 2)
+    private BigDecimal amountTotal;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
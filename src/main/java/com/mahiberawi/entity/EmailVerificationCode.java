@@ -1,5 +1,6 @@
 package com.mahiberawi.entity;
 
+import com.mahiberawi.util.TimeOrderedId;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.Builder;
@@ -19,7 +20,7 @@ import java.time.LocalDateTime;
 @EntityListeners(AuditingEntityListener.class)
 public class EmailVerificationCode {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private String id;
 
     @Column(nullable = false)
@@ -1,5 +1,6 @@
 package com.mahiberawi.entity;
 
+import com.mahiberawi.util.TimeOrderedId;
 import com.mahiberawi.entity.enums.EqubRoundStatus;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -18,11 +19,12 @@ import java.time.LocalDateTime;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "equb_rounds")
+@Table(name = "equb_rounds",
+        indexes = @Index(name = "idx_equb_rounds_status_deadline", columnList = "status, payment_deadline"))
 @EntityListeners(AuditingEntityListener.class)
 public class EqubRound {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private String id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -64,6 +66,20 @@ public class EqubRound {
     @Column(name = "penalty_amount", precision = 10, scale = 2)
     private BigDecimal penaltyAmount;
 
+    // Progress counters, kept up to date by EqubRoundProgressService as the round's payments change.
+    // Not updatable through JPA, so saving a round never overwrites counts with stale values.
+    @Column(name = "member_count", updatable = false)
+    private Integer memberCount;
+
+    @Column(name = "paid_count", updatable = false)
+    private Integer paidCount;
+
+    @Column(name = "late_count", updatable = false)
+    private Integer lateCount;
+
+    @Column(name = "collected_amount", precision = 12, scale = 2, updatable = false)
+    private BigDecimal collectedAmount;
+
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
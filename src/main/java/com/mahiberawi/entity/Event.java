@@ -1,8 +1,10 @@
 package com.mahiberawi.entity;
 
+import com.mahiberawi.util.TimeOrderedId;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDateTime;
@@ -11,11 +13,12 @@ import java.util.Set;
 
 @Data
 @Entity
-@Table(name = "events")
+@Table(name = "events",
+        indexes = @Index(name = "idx_events_updated_at", columnList = "updated_at"))
 @EntityListeners(AuditingEntityListener.class)
 public class Event {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private String id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -35,8 +38,33 @@ public class Event {
     private LocalDateTime endTime;
 
     private String location;
+
+    // Optional coordinates of the location, used for nearby search
+    private Double latitude;
+    private Double longitude;
     private int maxParticipants;
 
+    // Seats held by REGISTERED and ATTENDED participants. Only changed through
+    // EventRepository.reserveSeat/releaseSeat so concurrent registrations cannot overshoot.
+    @Column(name = "registered_count", columnDefinition = "integer default 0", updatable = false)
+    private int registeredCount;
+
+    // Set once the creator has been warned that the event is almost full; only changed
+    // through EventRepository.markCapacityWarningSent so the warning is sent once
+    @Column(name = "capacity_warning_sent", columnDefinition = "boolean default false", updatable = false)
+    private boolean capacityWarningSent;
+
+    @Column(name = "waitlist_enabled")
+    private Boolean waitlistEnabled = false;
+
+    // RRULE subset (see RecurrenceRule); null for a single event. Occurrences are expanded
+    // on read, and recurrenceUntil holds the last possible start (null if open-ended).
+    @Column(name = "recurrence_rule")
+    private String recurrenceRule;
+
+    @Column(name = "recurrence_until")
+    private LocalDateTime recurrenceUntil;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "created_by", nullable = false)
     private User creator;
@@ -49,9 +77,17 @@ public class Event {
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    @LastModifiedDate
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
     @OneToMany(mappedBy = "event", cascade = CascadeType.ALL)
     private Set<EventAttendance> attendees = new HashSet<>();
 
     @OneToMany(mappedBy = "event", cascade = CascadeType.ALL)
     private Set<EventParticipant> participants = new HashSet<>();
+
+    public boolean isRecurring() {
+        return recurrenceRule != null;
+    }
 } 
\ No newline at end of file
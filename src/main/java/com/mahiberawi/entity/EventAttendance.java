@@ -1,5 +1,6 @@
 package com.mahiberawi.entity;
 
+import com.mahiberawi.util.TimeOrderedId;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.springframework.data.annotation.CreatedDate;
@@ -13,7 +14,7 @@ import java.time.LocalDateTime;
 @EntityListeners(AuditingEntityListener.class)
 public class EventAttendance {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private String id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -24,10 +25,18 @@ public class EventAttendance {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
+    // Start of the occurrence attended, for recurring events; null for a single event
+    @Column(name = "occurrence_start")
+    private LocalDateTime occurrenceStart;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private AttendanceStatus status = AttendanceStatus.REGISTERED;
 
+    // Set when the participant is checked in by scanning their check-in token
+    @Column(name = "checked_in_at")
+    private LocalDateTime checkedInAt;
+
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
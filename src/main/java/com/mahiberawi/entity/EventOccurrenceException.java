@@ -0,0 +1,53 @@
+package com.mahiberawi.entity;
+
+import com.mahiberawi.util.TimeOrderedId;
+import jakarta.persistence.*;
+import lombok.Data;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * A change to one occurrence of a recurring event: either cancelled, or moved and/or
+ * retitled. Identified by the occurrence's original start; fields left null keep the
+ * series value.
+ */
+@Data
+@Entity
+@Table(name = "event_occurrence_exceptions",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"event_id", "occurrence_start"}))
+@EntityListeners(AuditingEntityListener.class)
+public class EventOccurrenceException {
+    @Id
+    @TimeOrderedId
+    private String id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "event_id", nullable = false)
+    private Event event;
+
+    @Column(name = "occurrence_start", nullable = false)
+    private LocalDateTime occurrenceStart;
+
+    @Column(nullable = false)
+    private boolean cancelled;
+
+    @Column(name = "start_time")
+    private LocalDateTime startTime;
+
+    @Column(name = "end_time")
+    private LocalDateTime endTime;
+
+    private String title;
+    private String location;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,43 @@
+package com.mahiberawi.entity;
+
+import com.mahiberawi.util.TimeOrderedId;
+import jakarta.persistence.*;
+import lombok.Data;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "event_reminders",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"event_id", "type"}),
+        indexes = @Index(name = "idx_event_reminders_due", columnList = "sent_at, due_at"))
+@EntityListeners(AuditingEntityListener.class)
+public class EventReminder {
+    @Id
+    @TimeOrderedId
+    private String id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "event_id", nullable = false)
+    private Event event;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EventReminderType type;
+
+    @Column(name = "due_at", nullable = false)
+    private LocalDateTime dueAt;
+
+    // Occurrence the reminder is for, for recurring events
+    @Column(name = "occurrence_start")
+    private LocalDateTime occurrenceStart;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,24 @@
+package com.mahiberawi.entity;
+
+import java.time.Duration;
+
+public enum EventReminderType {
+    WEEK_BEFORE(Duration.ofDays(7), "1 week"),
+    DAY_BEFORE(Duration.ofDays(1), "1 day");
+
+    private final Duration leadTime;
+    private final String label;
+
+    EventReminderType(Duration leadTime, String label) {
+        this.leadTime = leadTime;
+        this.label = label;
+    }
+
+    public Duration getLeadTime() {
+        return leadTime;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
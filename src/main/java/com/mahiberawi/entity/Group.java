@@ -1,5 +1,6 @@
 package com.mahiberawi.entity;
 
+import com.mahiberawi.util.TimeOrderedId;
 import com.mahiberawi.entity.enums.GroupType;
 import com.mahiberawi.entity.enums.GroupPrivacy;
 import jakarta.persistence.*;
@@ -25,7 +26,7 @@ import java.util.Set;
 @EntityListeners(AuditingEntityListener.class)
 public class Group {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private String id;
 
     @Column(nullable = false)
@@ -82,6 +83,10 @@ public class Group {
     @Column(name = "monthly_dues", precision = 10, scale = 2)
     private BigDecimal monthlyDues;
 
+    // Day of the month monthly dues are billed on, 1 to 28; the 1st when not set
+    @Column(name = "dues_billing_day")
+    private Integer duesBillingDay;
+
     @ManyToOne
     @JoinColumn(name = "creator_id", nullable = false)
     private User creator;
@@ -1,5 +1,6 @@
 package com.mahiberawi.entity;
 
+import com.mahiberawi.util.TimeOrderedId;
 import com.mahiberawi.entity.enums.InvitationStatus;
 import jakarta.persistence.*;
 import lombok.Data;
@@ -20,7 +21,7 @@ import java.time.LocalDateTime;
 @EntityListeners(AuditingEntityListener.class)
 public class GroupInvitation {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private String id;
 
     @Column(name = "group_id", nullable = false)
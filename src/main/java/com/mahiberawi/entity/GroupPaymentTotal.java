@@ -0,0 +1,36 @@
+package com.mahiberawi.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Running count and amount of a group's payments in one status, kept up to date as
+ * payments are created and change status so group dashboards never scan payments.
+ */
+@Data
+@Entity
+@Table(name = "group_payment_totals",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"group_id", "status"}))
+public class GroupPaymentTotal {
+    @Id
+    private String id;
+
+    @Column(name = "group_id", nullable = false)
+    private String groupId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PaymentStatus status;
+
+    @Column(name = "payment_count", nullable = false)
+    private long paymentCount;
+
+    @Column(name = "amount_total", nullable = false, precision = 14, scale = 2)
+    private BigDecimal amountTotal;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,42 @@
+package com.mahiberawi.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a late payment run through one group. Members are processed in payer id
+ * order; each chunk moves last_payer_id forward in the same transaction that flags
+ * its payments, so a resumed run carries on after the last committed chunk.
+ */
+@Data
+@Entity
+@Table(name = "equb_late_payment_checkpoints",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"run_id", "group_id"}))
+public class LatePaymentCheckpoint {
+    @Id
+    private String id;
+
+    @Column(name = "run_id", nullable = false)
+    private String runId;
+
+    @Column(name = "group_id", nullable = false)
+    private String groupId;
+
+    @Column(name = "last_payer_id", nullable = false)
+    private String lastPayerId;
+
+    @Column(name = "payments_flagged", nullable = false)
+    private int paymentsFlagged;
+
+    @Column(name = "penalties_total", nullable = false, precision = 14, scale = 2)
+    private BigDecimal penaltiesTotal;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
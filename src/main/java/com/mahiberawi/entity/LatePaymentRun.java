@@ -0,0 +1,41 @@
+package com.mahiberawi.entity;
+
+import com.mahiberawi.util.TimeOrderedId;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One pass of the equb late payment engine. A run that never finished is resumed by
+ * the next pass with the same cutoff, skipping the groups its checkpoints mark done.
+ */
+@Data
+@Entity
+@Table(name = "equb_late_payment_runs",
+        indexes = @Index(name = "idx_equb_late_payment_runs_finished", columnList = "finished_at, started_at"))
+public class LatePaymentRun {
+    @Id
+    @TimeOrderedId
+    private String id;
+
+    // Payments of rounds whose deadline plus grace period passed before this are late
+    @Column(nullable = false)
+    private LocalDateTime cutoff;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "groups_processed")
+    private int groupsProcessed;
+
+    @Column(name = "payments_flagged")
+    private int paymentsFlagged;
+
+    @Column(name = "penalties_total", precision = 14, scale = 2)
+    private BigDecimal penaltiesTotal;
+}
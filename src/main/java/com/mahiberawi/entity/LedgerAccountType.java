@@ -0,0 +1,30 @@
+package com.mahiberawi.entity;
+
+/**
+ * Accounts of the group ledger. Balances are debit-positive: a member's receivable is
+ * what they owe the group, the group's cash is what it has collected and still holds.
+ */
+public enum LedgerAccountType {
+    // Charges billed by the group, credited when a payment is requested
+    GROUP_BILLED(false),
+    // Funds collected by the group
+    GROUP_CASH(false),
+    // What a member owes the group
+    MEMBER_RECEIVABLE(true),
+    // What the group has paid out to a member, such as an equb pot
+    MEMBER_PAYOUTS(true);
+
+    private final boolean memberAccount;
+
+    LedgerAccountType(boolean memberAccount) {
+        this.memberAccount = memberAccount;
+    }
+
+    public boolean isMemberAccount() {
+        return memberAccount;
+    }
+
+    public String key(String groupId, String userId) {
+        return memberAccount ? name() + ":" + groupId + ":" + userId : name() + ":" + groupId;
+    }
+}
@@ -0,0 +1,43 @@
+package com.mahiberawi.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Current balance of one ledger account, updated with every line posted to it.
+ */
+@Data
+@Entity
+@Table(name = "ledger_balances",
+        uniqueConstraints = @UniqueConstraint(columnNames = "account_key"),
+        indexes = @Index(name = "idx_ledger_balances_group", columnList = "group_id"))
+public class LedgerBalance {
+    @Id
+    private String id;
+
+    @Column(name = "account_key", nullable = false)
+    private String accountKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "account_type", nullable = false)
+    private LedgerAccountType accountType;
+
+    @Column(name = "group_id", nullable = false)
+    private String groupId;
+
+    @Column(name = "user_id")
+    private String userId;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal balance;
+
+    // Sequence number of the latest line posted to the account
+    @Column(name = "last_sequence", nullable = false, columnDefinition = "bigint default 0")
+    private Long lastSequence;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
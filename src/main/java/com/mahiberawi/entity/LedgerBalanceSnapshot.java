@@ -0,0 +1,34 @@
+package com.mahiberawi.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Balance of a ledger account at a point in time, through the line numbered
+ * through_sequence. Snapshots are only written for accounts that changed since the
+ * previous one, so the latest snapshot at or before a time plus the account's later
+ * lines posted by then gives the balance at that time.
+ */
+@Data
+@Entity
+@Table(name = "ledger_balance_snapshots",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"account_key", "as_of"}))
+public class LedgerBalanceSnapshot {
+    @Id
+    private String id;
+
+    @Column(name = "account_key", nullable = false)
+    private String accountKey;
+
+    @Column(name = "as_of", nullable = false)
+    private LocalDateTime asOf;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal balance;
+
+    @Column(name = "through_sequence")
+    private Long throughSequence;
+}
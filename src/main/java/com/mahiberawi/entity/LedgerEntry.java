@@ -0,0 +1,62 @@
+package com.mahiberawi.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One line of the append-only group ledger. Lines are posted in journals of two or more
+ * sharing a journal id and summing to zero; they are never updated or deleted, and a
+ * correction is posted as a new journal.
+ */
+@Data
+@Entity
+@Immutable
+@Table(name = "ledger_entries", indexes = {
+        @Index(name = "idx_ledger_entries_account_sequence", columnList = "account_key, account_sequence", unique = true),
+        @Index(name = "idx_ledger_entries_group_posted", columnList = "group_id, posted_at"),
+        @Index(name = "idx_ledger_entries_source", columnList = "source_id")
+})
+public class LedgerEntry {
+    @Id
+    private String id;
+
+    @Column(name = "journal_id", nullable = false)
+    private String journalId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entry_type", nullable = false)
+    private LedgerEntryType entryType;
+
+    @Column(name = "account_key", nullable = false)
+    private String accountKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "account_type", nullable = false)
+    private LedgerAccountType accountType;
+
+    @Column(name = "group_id", nullable = false)
+    private String groupId;
+
+    // Set on member accounts only
+    @Column(name = "user_id")
+    private String userId;
+
+    // Debit positive, credit negative
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal amount;
+
+    // Payment or equb round the journal was posted for
+    @Column(name = "source_id")
+    private String sourceId;
+
+    @Column(name = "posted_at", nullable = false)
+    private LocalDateTime postedAt;
+
+    // Position in the account's lines, in the order their postings committed
+    @Column(name = "account_sequence")
+    private Long accountSequence;
+}
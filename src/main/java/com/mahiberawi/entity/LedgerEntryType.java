@@ -0,0 +1,14 @@
+package com.mahiberawi.entity;
+
+public enum LedgerEntryType {
+    OPENING_BALANCE,
+    PAYMENT_BILLED,
+    PAYMENT_COLLECTED,
+    PAYMENT_CANCELLED,
+    PAYMENT_REFUNDED,
+    EQUB_PAYOUT,
+    LATE_PENALTY,
+    PENALTY_COLLECTED,
+    PENALTY_WAIVED,
+    PENALTY_REFUNDED
+}
@@ -1,5 +1,6 @@
 package com.mahiberawi.entity;
 
+import com.mahiberawi.util.TimeOrderedId;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.springframework.data.annotation.CreatedDate;
@@ -10,18 +11,24 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "payments")
-@EntityListeners(AuditingEntityListener.class)
+@Table(name = "payments", indexes = {
+        @Index(name = "idx_payments_equb_round_status", columnList = "equb_round_id, status, payer_id")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_payments_dues_period", columnNames = {"group_id", "payer_id", "dues_period"}),
+        // A resumed group payment request bills each member once, however many resumes run at the same time
+        @UniqueConstraint(name = "uk_payments_request_batch_payer", columnNames = {"request_batch_id", "payer_id"})
+})
+@EntityListeners({AuditingEntityListener.class, PaymentChangeListener.class})
 public class Payment {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private String id;
 
     @Column(nullable = false, precision = 10, scale = 2)
     private BigDecimal amount;
 
+    // Null on billed dues and equb payments until the member pays
     @Enumerated(EnumType.STRING)
-    @Column(nullable = false)
     private PaymentMethod method;
 
     @Enumerated(EnumType.STRING)
@@ -54,6 +61,14 @@ public class Payment {
     @Column(name = "transaction_id", unique = true)
     private String transactionId;
 
+    // Group payment request this payment was created by, one per member
+    @Column(name = "request_batch_id")
+    private String requestBatchId;
+
+    // Month billed by the monthly dues run, as yyyy-MM; at most one dues payment per member and month
+    @Column(name = "dues_period", length = 7)
+    private String duesPeriod;
+
     // Equb-specific fields
     @Column(name = "equb_round")
     private Integer equbRound;
@@ -71,10 +86,27 @@ public class Payment {
     @Column(name = "is_late_payment")
     private Boolean isLatePayment = false;
 
+    // Last follow-up reminder of unpaid dues; only written by DuesBillingService
+    @Column(name = "reminded_at", insertable = false, updatable = false)
+    private LocalDateTime remindedAt;
+
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
+
+    // Bulk updates bump it too, so a status change read before one of them fails instead of being posted twice
+    @Version
+    @Column(name = "version", columnDefinition = "bigint default 0")
+    private Long version;
+
+    // Status as last loaded or written, so group totals can tell status changes from other updates
+    @Transient
+    private PaymentStatus persistedStatus;
+
+    // Late flag as last loaded or written, so equb round progress can tell when it changes
+    @Transient
+    private Boolean persistedLate;
 } 
\ No newline at end of file
@@ -0,0 +1,95 @@
+package com.mahiberawi.entity;
+
+import com.mahiberawi.service.EqubRoundProgressService;
+import com.mahiberawi.service.GroupPaymentTotalsService;
+import com.mahiberawi.service.LedgerService;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps group payment totals, the group ledger and equb round progress in step with
+ * payments written through JPA.
+ */
+@Component
+public class PaymentChangeListener {
+
+    private final GroupPaymentTotalsService totalsService;
+    private final LedgerService ledgerService;
+    private final EqubRoundProgressService progressService;
+
+    public PaymentChangeListener(@Lazy GroupPaymentTotalsService totalsService, @Lazy LedgerService ledgerService,
+                                 @Lazy EqubRoundProgressService progressService) {
+        this.totalsService = totalsService;
+        this.ledgerService = ledgerService;
+        this.progressService = progressService;
+    }
+
+    @PostLoad
+    public void loaded(Payment payment) {
+        payment.setPersistedStatus(payment.getStatus());
+        payment.setPersistedLate(isLate(payment));
+    }
+
+    @PostPersist
+    public void created(Payment payment) {
+        if (payment.getGroup() != null) {
+            totalsService.add(payment.getGroup().getId(), payment.getStatus(), 1, payment.getAmount());
+            post(payment, null, payment.getStatus());
+        }
+        progress(payment, null, false);
+        payment.setPersistedStatus(payment.getStatus());
+        payment.setPersistedLate(isLate(payment));
+    }
+
+    @PostUpdate
+    public void updated(Payment payment) {
+        PaymentStatus previous = payment.getPersistedStatus();
+        if (payment.getGroup() != null && previous != null && previous != payment.getStatus()) {
+            totalsService.move(payment.getGroup().getId(), previous, payment.getStatus(), 1, payment.getAmount());
+            post(payment, previous, payment.getStatus());
+        }
+        if (previous != null) {
+            progress(payment, previous, Boolean.TRUE.equals(payment.getPersistedLate()));
+        }
+        payment.setPersistedStatus(payment.getStatus());
+        payment.setPersistedLate(isLate(payment));
+    }
+
+    @PostRemove
+    public void removed(Payment payment) {
+        PaymentStatus status = payment.getPersistedStatus() != null ? payment.getPersistedStatus() : payment.getStatus();
+        if (payment.getGroup() != null) {
+            totalsService.add(payment.getGroup().getId(), status, -1,
+                    payment.getAmount() != null ? payment.getAmount().negate() : null);
+            post(payment, status, null);
+        }
+        if (payment.getEqubRoundEntity() != null) {
+            String roundId = payment.getEqubRoundEntity().getId();
+            progressService.statusChanged(roundId, status, null, 1, payment.getAmount());
+            progressService.lateChanged(roundId, Boolean.TRUE.equals(payment.getPersistedLate()) ? -1 : 0);
+        }
+    }
+
+    private void post(Payment payment, PaymentStatus from, PaymentStatus to) {
+        ledgerService.postPaymentChange(payment.getId(), payment.getGroup().getId(),
+                payment.getPayer() != null ? payment.getPayer().getId() : null, from, to, payment.getAmount(),
+                payment.getPenaltyAmount());
+    }
+
+    private void progress(Payment payment, PaymentStatus previous, boolean wasLate) {
+        if (payment.getEqubRoundEntity() == null) {
+            return;
+        }
+        String roundId = payment.getEqubRoundEntity().getId();
+        progressService.statusChanged(roundId, previous, payment.getStatus(), 1, payment.getAmount());
+        progressService.lateChanged(roundId, (isLate(payment) ? 1 : 0) - (wasLate ? 1 : 0));
+    }
+
+    private static boolean isLate(Payment payment) {
+        return Boolean.TRUE.equals(payment.getIsLatePayment());
+    }
+}
@@ -0,0 +1,42 @@
+package com.mahiberawi.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "payment_webhooks",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"gateway", "idempotency_key"}),
+        indexes = @Index(name = "idx_payment_webhooks_pending", columnList = "processed_at, received_at"))
+public class PaymentWebhook {
+    @Id
+    private String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PaymentMethod gateway;
+
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+
+    @Column(name = "transaction_id", nullable = false)
+    private String transactionId;
+
+    // Status as the gateway reported it
+    @Column(name = "reported_status", nullable = false)
+    private String reportedStatus;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    @Column(name = "received_at", nullable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    @Enumerated(EnumType.STRING)
+    private PaymentWebhookOutcome outcome;
+}
@@ -0,0 +1,9 @@
+package com.mahiberawi.entity;
+
+public enum PaymentWebhookOutcome {
+    APPLIED,
+    // The payment already had the reported status, or cannot move to it from its current one
+    IGNORED,
+    UNKNOWN_STATUS,
+    UNKNOWN_PAYMENT
+}
@@ -0,0 +1,7 @@
+package com.mahiberawi.exception;
+
+public class GatewayUnavailableException extends RuntimeException {
+    public GatewayUnavailableException(String message) {
+        super(message);
+    }
+}
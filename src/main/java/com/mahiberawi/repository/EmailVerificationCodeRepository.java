@@ -19,9 +19,12 @@ public interface EmailVerificationCodeRepository extends JpaRepository<EmailVeri
     
     List<EmailVerificationCode> findByEmailAndUsedFalse(String email);
     
+    List<EmailVerificationCode> findByUsedFalseAndExpiresAtAfter(LocalDateTime now);
+    
+    // Returns the number of codes marked, 0 if another request used them first
     @Modifying
     @Query("UPDATE EmailVerificationCode e SET e.used = true WHERE e.email = :email AND e.used = false")
-    void markAllCodesAsUsedForEmail(@Param("email") String email);
+    int markAllCodesAsUsedForEmail(@Param("email") String email);
     
     @Modifying
     @Query("DELETE FROM EmailVerificationCode e WHERE e.expiresAt < :now")
@@ -3,9 +3,13 @@ package com.mahiberawi.repository;
 import com.mahiberawi.entity.EqubRound;
 import com.mahiberawi.entity.Group;
 import com.mahiberawi.entity.enums.EqubRoundStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -18,4 +22,41 @@ public interface EqubRoundRepository extends JpaRepository<EqubRound, String> {
     Optional<EqubRound> findByGroupAndStatusAndStartDateBefore(Group group, EqubRoundStatus status, LocalDateTime date);
     List<EqubRound> findByGroupAndEndDateBefore(Group group, LocalDateTime date);
     Optional<EqubRound> findFirstByGroupOrderByRoundNumberDesc(Group group);
-} 
\ No newline at end of file
+
+    // Active rounds whose payment deadline has passed, a page at a time in id order
+    @Query("SELECT r.id AS id, g.id AS groupId, g.name AS groupName, r.roundNumber AS roundNumber, " +
+           "r.paymentDeadline AS paymentDeadline, r.gracePeriodDays AS gracePeriodDays, " +
+           "COALESCE(r.penaltyAmount, g.equbPenaltyAmount) AS penaltyAmount " +
+           "FROM EqubRound r JOIN r.group g " +
+           "WHERE r.status = com.mahiberawi.entity.enums.EqubRoundStatus.ACTIVE " +
+           "AND r.paymentDeadline < :before AND r.id > :afterId ORDER BY r.id")
+    List<PastDeadlineRound> findPastDeadline(@Param("before") LocalDateTime before,
+                                             @Param("afterId") String afterId,
+                                             Pageable pageable);
+
+    // Every round of a group in order, with its winner, for cycle and payout projections
+    @Query("SELECT r.roundNumber AS roundNumber, r.status AS status, w.id AS winnerId, r.startDate AS startDate, " +
+           "r.paymentDeadline AS paymentDeadline, r.winnerSelectedAt AS winnerSelectedAt, r.totalAmount AS totalAmount " +
+           "FROM EqubRound r LEFT JOIN r.winner w WHERE r.group.id = :groupId ORDER BY r.roundNumber")
+    List<RoundHistory> findHistory(@Param("groupId") String groupId);
+
+    interface RoundHistory {
+        Integer getRoundNumber();
+        EqubRoundStatus getStatus();
+        String getWinnerId();
+        LocalDateTime getStartDate();
+        LocalDateTime getPaymentDeadline();
+        LocalDateTime getWinnerSelectedAt();
+        BigDecimal getTotalAmount();
+    }
+
+    interface PastDeadlineRound {
+        String getId();
+        String getGroupId();
+        String getGroupName();
+        Integer getRoundNumber();
+        LocalDateTime getPaymentDeadline();
+        Integer getGracePeriodDays();
+        BigDecimal getPenaltyAmount();
+    }
+}
@@ -3,15 +3,108 @@ package com.mahiberawi.repository;
 import com.mahiberawi.entity.Event;
 import com.mahiberawi.entity.EventAttendance;
 import com.mahiberawi.entity.AttendanceStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface EventAttendanceRepository extends JpaRepository<EventAttendance, String> {
     List<EventAttendance> findByEvent(Event event);
-    Optional<EventAttendance> findByEventAndUserId(Event event, String userId);
+    List<EventAttendance> findByEventAndStatusIn(Event event, Collection<AttendanceStatus> statuses);
+    List<EventAttendance> findByEventAndOccurrenceStartAndStatusIn(Event event, LocalDateTime occurrenceStart,
+                                                                   Collection<AttendanceStatus> statuses);
+    boolean existsByEvent(Event event);
     int countByEventAndStatus(Event event, AttendanceStatus status);
-} 
\ No newline at end of file
+
+    // A null occurrenceStart matches the attendance of a single (non-recurring) event
+    Optional<EventAttendance> findByEventAndUserIdAndOccurrenceStart(Event event, String userId, LocalDateTime occurrenceStart);
+    int countByEventAndOccurrenceStartAndStatusIn(Event event, LocalDateTime occurrenceStart, Collection<AttendanceStatus> statuses);
+    Optional<EventAttendance> findFirstByEventAndOccurrenceStartAndStatusOrderByCreatedAtAsc(
+            Event event, LocalDateTime occurrenceStart, AttendanceStatus status);
+
+    @Query("SELECT DISTINCT a.occurrenceStart FROM EventAttendance a WHERE a.event = :event " +
+           "AND a.status = com.mahiberawi.entity.AttendanceStatus.WAITLISTED AND a.occurrenceStart >= :from")
+    List<LocalDateTime> findWaitlistedOccurrences(@Param("event") Event event, @Param("from") LocalDateTime from);
+
+    @Query("SELECT DISTINCT a.occurrenceStart FROM EventAttendance a WHERE a.event = :event AND a.occurrenceStart IS NOT NULL")
+    List<LocalDateTime> findOccurrenceStarts(@Param("event") Event event);
+
+    @Modifying
+    @Query("UPDATE EventAttendance a SET a.occurrenceStart = :to WHERE a.event = :event AND a.occurrenceStart = :from")
+    int moveOccurrence(@Param("event") Event event, @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Changes the status only if nobody else changed it first; returns 0 otherwise
+    @Modifying
+    @Query("UPDATE EventAttendance a SET a.status = :newStatus WHERE a.id = :id AND a.status = :expectedStatus")
+    int updateStatusIfCurrent(@Param("id") String id,
+                              @Param("expectedStatus") AttendanceStatus expectedStatus,
+                              @Param("newStatus") AttendanceStatus newStatus);
+
+    // Status of the attendance rows named by a batch of check-in tokens
+    @Query("SELECT a.id AS id, a.occurrenceStart AS occurrenceStart, a.status AS status FROM EventAttendance a " +
+           "WHERE a.id IN :ids AND a.event.id = :eventId")
+    List<CheckInState> findCheckInStates(@Param("eventId") String eventId, @Param("ids") Collection<String> ids);
+
+    // Checks in a batch of registered participants in one statement; returns how many changed
+    @Modifying
+    @Query("UPDATE EventAttendance a SET a.status = :attended, a.checkedInAt = :checkedInAt " +
+           "WHERE a.id IN :ids AND a.status = :registered")
+    int checkIn(@Param("ids") Collection<String> ids,
+                @Param("registered") AttendanceStatus registered,
+                @Param("attended") AttendanceStatus attended,
+                @Param("checkedInAt") LocalDateTime checkedInAt);
+
+    // Attendance counts per event and status, for a whole page of events at once
+    @Query("SELECT a.event.id, a.status, COUNT(a) FROM EventAttendance a " +
+           "WHERE a.event IN :events AND a.occurrenceStart IS NULL GROUP BY a.event.id, a.status")
+    List<Object[]> countByEventsGroupedByStatus(@Param("events") Collection<Event> events);
+
+    // Check-in counters of a single event, and of one occurrence of a recurring event, by status
+    @Query("SELECT a.status AS status, COUNT(a) AS count, MAX(a.checkedInAt) AS lastCheckedInAt " +
+           "FROM EventAttendance a WHERE a.event = :event AND a.occurrenceStart IS NULL GROUP BY a.status")
+    List<StatusCount> countCheckInsByStatus(@Param("event") Event event);
+
+    @Query("SELECT a.status AS status, COUNT(a) AS count, MAX(a.checkedInAt) AS lastCheckedInAt " +
+           "FROM EventAttendance a WHERE a.event = :event AND a.occurrenceStart = :occurrenceStart GROUP BY a.status")
+    List<StatusCount> countCheckInsByStatus(@Param("event") Event event,
+                                            @Param("occurrenceStart") LocalDateTime occurrenceStart);
+
+    // The same per occurrence of recurring events, limited to the occurrences being shown
+    @Query("SELECT a.event.id, a.occurrenceStart, a.status, COUNT(a) FROM EventAttendance a " +
+           "WHERE a.event IN :events AND a.occurrenceStart BETWEEN :from AND :to " +
+           "GROUP BY a.event.id, a.occurrenceStart, a.status")
+    List<Object[]> countByOccurrencesGroupedByStatus(@Param("events") Collection<Event> events,
+                                                     @Param("from") LocalDateTime from,
+                                                     @Param("to") LocalDateTime to);
+
+    @Query(value = "SELECT a FROM EventAttendance a JOIN FETCH a.user WHERE a.event = :event",
+           countQuery = "SELECT COUNT(a) FROM EventAttendance a WHERE a.event = :event")
+    Page<EventAttendance> findByEventWithUser(@Param("event") Event event, Pageable pageable);
+
+    @Query(value = "SELECT a FROM EventAttendance a JOIN FETCH a.user WHERE a.event = :event AND a.occurrenceStart = :occurrenceStart",
+           countQuery = "SELECT COUNT(a) FROM EventAttendance a WHERE a.event = :event AND a.occurrenceStart = :occurrenceStart")
+    Page<EventAttendance> findByEventAndOccurrenceWithUser(@Param("event") Event event,
+                                                           @Param("occurrenceStart") LocalDateTime occurrenceStart,
+                                                           Pageable pageable);
+
+    interface CheckInState {
+        String getId();
+        LocalDateTime getOccurrenceStart();
+        AttendanceStatus getStatus();
+    }
+
+    interface StatusCount {
+        AttendanceStatus getStatus();
+        long getCount();
+        LocalDateTime getLastCheckedInAt();
+    }
+}
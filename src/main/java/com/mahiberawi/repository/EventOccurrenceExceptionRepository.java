@@ -0,0 +1,39 @@
+package com.mahiberawi.repository;
+
+import com.mahiberawi.entity.Event;
+import com.mahiberawi.entity.EventOccurrenceException;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface EventOccurrenceExceptionRepository extends JpaRepository<EventOccurrenceException, String> {
+    Optional<EventOccurrenceException> findByEventAndOccurrenceStart(Event event, LocalDateTime occurrenceStart);
+    List<EventOccurrenceException> findByEventOrderByOccurrenceStartAsc(Event event);
+
+    // Exceptions that can affect a window: the original occurrence or its new time falls inside it
+    @Query("SELECT x FROM EventOccurrenceException x WHERE x.event IN :events AND " +
+           "((x.occurrenceStart >= :from AND x.occurrenceStart < :to) OR (x.startTime >= :from AND x.startTime < :to))")
+    List<EventOccurrenceException> findByEventsInWindow(@Param("events") Collection<Event> events,
+                                                        @Param("from") LocalDateTime from,
+                                                        @Param("to") LocalDateTime to);
+
+    // Exceptions from a point on, used to find the next occurrence that actually takes place
+    List<EventOccurrenceException> findByEventAndOccurrenceStartGreaterThanEqualOrderByOccurrenceStartAsc(
+            Event event, LocalDateTime from);
+
+    @Modifying
+    @Query("UPDATE EventOccurrenceException x SET x.occurrenceStart = :to WHERE x.event = :event AND x.occurrenceStart = :from")
+    int moveOccurrence(@Param("event") Event event, @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Modifying
+    @Query("DELETE FROM EventOccurrenceException x WHERE x.event = :event")
+    void deleteByEvent(@Param("event") Event event);
+}
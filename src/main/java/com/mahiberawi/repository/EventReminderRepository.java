@@ -0,0 +1,29 @@
+package com.mahiberawi.repository;
+
+import com.mahiberawi.entity.Event;
+import com.mahiberawi.entity.EventReminder;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface EventReminderRepository extends JpaRepository<EventReminder, String> {
+    List<EventReminder> findByEvent(Event event);
+    boolean existsByEvent(Event event);
+    List<EventReminder> findBySentAtIsNullAndDueAtBefore(LocalDateTime dueBefore);
+
+    // Recurring series with a sent reminder, which then moves on to the next occurrence
+    @Query("SELECT DISTINCT r.event FROM EventReminder r WHERE r.sentAt IS NOT NULL " +
+           "AND r.event.recurrenceRule IS NOT NULL AND (r.event.recurrenceUntil IS NULL OR r.event.recurrenceUntil > :now)")
+    List<Event> findRecurringEventsWithSentReminders(@Param("now") LocalDateTime now);
+
+    // Claims a reminder for sending; returns 0 if it was already sent or rescheduled
+    @Modifying
+    @Query("UPDATE EventReminder r SET r.sentAt = :now WHERE r.id = :id AND r.sentAt IS NULL AND r.dueAt <= :now")
+    int markSent(@Param("id") String id, @Param("now") LocalDateTime now);
+}
@@ -1,18 +1,107 @@
 package com.mahiberawi.repository;
 
 import com.mahiberawi.entity.Event;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface EventRepository extends JpaRepository<Event, String> {
     List<Event> findByGroupId(String groupId);
     List<Event> findByStartTimeAfter(LocalDateTime startTime);
     List<Event> findByStartTimeBetween(LocalDateTime startTime, LocalDateTime endTime);
+
+    // Keys of upcoming single events, for the in-memory UpcomingEventIndex
+    @Query("SELECT e.id AS id, g.id AS groupId, e.startTime AS startTime, e.latitude AS latitude, " +
+           "e.longitude AS longitude FROM Event e LEFT JOIN e.group g " +
+           "WHERE e.recurrenceRule IS NULL AND e.startTime >= :from")
+    List<UpcomingEventKey> findUpcomingEventKeys(@Param("from") LocalDateTime from);
+
+    @Query("SELECT e.id AS id, g.id AS groupId, e.startTime AS startTime, e.latitude AS latitude, " +
+           "e.longitude AS longitude FROM Event e LEFT JOIN e.group g " +
+           "WHERE e.recurrenceRule IS NULL AND e.startTime >= :from AND e.startTime < :to")
+    List<UpcomingEventKey> findUpcomingEventKeysBefore(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Events created or changed after the given time, for the UpcomingEventIndex refresh
+    List<Event> findByUpdatedAtAfter(LocalDateTime since);
+
+    // Recurring series that can have occurrences in [from, to); expanded by EventOccurrenceService
+    @Query("SELECT e FROM Event e WHERE e.recurrenceRule IS NOT NULL AND e.startTime < :to " +
+           "AND (e.recurrenceUntil IS NULL OR e.recurrenceUntil >= :from)")
+    List<Event> findSeriesInWindow(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Row lock that serializes seat changes on the occurrences of a recurring event, whose
+    // seats are counted per occurrence rather than kept in registeredCount
+    @Modifying
+    @Query("UPDATE Event e SET e.registeredCount = e.registeredCount WHERE e.id = :eventId")
+    int lockForSeatChange(@Param("eventId") String eventId);
+
+    @Query("SELECT e FROM Event e WHERE (e.startTime > :now OR (e.recurrenceRule IS NOT NULL " +
+           "AND (e.recurrenceUntil IS NULL OR e.recurrenceUntil > :now))) " +
+           "AND NOT EXISTS (SELECT r FROM EventReminder r WHERE r.event = e)")
+    List<Event> findUpcomingEventsWithoutReminders(@Param("now") LocalDateTime now);
+
+    // Takes a seat only while the event has room; returns 0 when it is full
+    @Modifying
+    @Query("UPDATE Event e SET e.registeredCount = e.registeredCount + 1 " +
+           "WHERE e.id = :eventId AND (e.maxParticipants <= 0 OR e.registeredCount < e.maxParticipants)")
+    int reserveSeat(@Param("eventId") String eventId);
+
+    @Modifying
+    @Query("UPDATE Event e SET e.registeredCount = e.registeredCount - 1 WHERE e.id = :eventId AND e.registeredCount > 0")
+    int releaseSeat(@Param("eventId") String eventId);
+
+    // Read after reserveSeat, while this transaction still holds the row
+    @Query("SELECT e.registeredCount FROM Event e WHERE e.id = :eventId")
+    int findRegisteredCount(@Param("eventId") String eventId);
+
+    // Claims the almost-full warning; returns 0 when it was already sent
+    @Modifying
+    @Query("UPDATE Event e SET e.capacityWarningSent = true WHERE e.id = :eventId AND e.capacityWarningSent = false")
+    int markCapacityWarningSent(@Param("eventId") String eventId);
     
+    // Calendar feeds: streamed with a fetch size so large calendars are never loaded as one list
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"))
+    @Query("SELECT e FROM Event e WHERE e.group.id = :groupId ORDER BY e.startTime")
+    Stream<Event> streamByGroupId(@Param("groupId") String groupId);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"))
+    @Query("SELECT e FROM Event e WHERE e.group.id IN " +
+           "(SELECT m.groupId FROM GroupMember m WHERE m.userId = :userId AND m.status = com.mahiberawi.entity.enums.GroupMemberStatus.ACTIVE) " +
+           "ORDER BY e.startTime")
+    Stream<Event> streamByMemberId(@Param("userId") String userId);
+
+    @Query("SELECT COUNT(e) AS eventCount, MAX(COALESCE(e.updatedAt, e.createdAt)) AS lastModified " +
+           "FROM Event e WHERE e.group.id = :groupId")
+    FeedVersion getGroupFeedVersion(@Param("groupId") String groupId);
+
+    @Query("SELECT COUNT(e) AS eventCount, MAX(COALESCE(e.updatedAt, e.createdAt)) AS lastModified " +
+           "FROM Event e WHERE e.group.id IN " +
+           "(SELECT m.groupId FROM GroupMember m WHERE m.userId = :userId AND m.status = com.mahiberawi.entity.enums.GroupMemberStatus.ACTIVE)")
+    FeedVersion getMemberFeedVersion(@Param("userId") String userId);
+
     // Admin methods
     List<Event> findTop10ByOrderByCreatedAtDesc();
-} 
\ No newline at end of file
+
+    interface UpcomingEventKey {
+        String getId();
+        String getGroupId();
+        LocalDateTime getStartTime();
+        Double getLatitude();
+        Double getLongitude();
+    }
+
+    interface FeedVersion {
+        long getEventCount();
+        LocalDateTime getLastModified();
+    }
+}
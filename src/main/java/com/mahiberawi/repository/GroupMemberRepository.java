@@ -4,7 +4,10 @@ import com.mahiberawi.entity.Group;
 import com.mahiberawi.entity.GroupMember;
 import com.mahiberawi.entity.User;
 import com.mahiberawi.entity.enums.GroupMemberStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -16,9 +19,33 @@ public interface GroupMemberRepository extends JpaRepository<GroupMember, String
     List<GroupMember> findByUser(User user);
     List<GroupMember> findByGroupAndStatus(Group group, GroupMemberStatus status);
     Optional<GroupMember> findByGroupAndUser(Group group, User user);
+
+    @Query("SELECT m.userId FROM GroupMember m WHERE m.groupId = :groupId AND m.status = :status")
+    List<String> findUserIdsByGroupIdAndStatus(@Param("groupId") String groupId, @Param("status") GroupMemberStatus status);
+
+    // A page of members in user id order after afterUserId, for chunked billing
+    @Query("SELECT m.userId FROM GroupMember m WHERE m.groupId = :groupId AND m.status = :status " +
+           "AND m.userId > :afterUserId ORDER BY m.userId")
+    List<String> findUserIdsAfter(@Param("groupId") String groupId,
+                                  @Param("status") GroupMemberStatus status,
+                                  @Param("afterUserId") String afterUserId,
+                                  Pageable pageable);
+
+    // Members in equb turn order: when they joined, then user id
+    @Query("SELECT m.userId AS userId, u.firstName AS firstName, u.lastName AS lastName FROM GroupMember m " +
+           "JOIN m.user u WHERE m.groupId = :groupId AND m.status = :status " +
+           "ORDER BY COALESCE(m.joinedAt, m.createdAt), m.userId")
+    List<TurnOrderMember> findInTurnOrder(@Param("groupId") String groupId, @Param("status") GroupMemberStatus status);
+
     boolean existsByGroupAndUser(Group group, User user);
     boolean existsByUserAndStatus(User user, GroupMemberStatus status);
     
     // Count methods
     int countByUserId(String userId);
-} 
\ No newline at end of file
+
+    interface TurnOrderMember {
+        String getUserId();
+        String getFirstName();
+        String getLastName();
+    }
+}
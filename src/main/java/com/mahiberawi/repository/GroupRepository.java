@@ -3,11 +3,15 @@ package com.mahiberawi.repository;
 import com.mahiberawi.entity.Group;
 import com.mahiberawi.entity.User;
 import com.mahiberawi.entity.enums.GroupPrivacy;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -33,4 +37,38 @@ public interface GroupRepository extends JpaRepository<Group, String> {
     
     // Admin methods
     List<Group> findTop10ByOrderByCreatedAtDesc();
-} 
\ No newline at end of file
+
+    // Moves the group to its next equb round; returns 0 if another request already did
+    @Modifying
+    @Query("UPDATE Group g SET g.currentEqubRound = :next, g.updatedAt = :now " +
+           "WHERE g.id = :groupId AND COALESCE(g.currentEqubRound, 0) = :current")
+    int advanceEqubRound(@Param("groupId") String groupId,
+                         @Param("current") int current,
+                         @Param("next") int next,
+                         @Param("now") LocalDateTime now);
+
+    // Groups billing monthly dues by the given day of the month that are not yet billed for the period
+    @Query("SELECT g.id AS id, g.name AS name, g.monthlyDues AS monthlyDues FROM Group g " +
+           "WHERE g.paymentRequired = true AND g.monthlyDues > 0 AND COALESCE(g.duesBillingDay, 1) <= :day " +
+           "AND g.id > :afterId AND NOT EXISTS (SELECT c.id FROM DuesBillingCheckpoint c " +
+           "WHERE c.period = :period AND c.groupId = g.id AND c.completedAt IS NOT NULL) ORDER BY g.id")
+    List<DuesGroup> findDuesBillingDue(@Param("day") int day,
+                                       @Param("period") String period,
+                                       @Param("afterId") String afterId,
+                                       Pageable pageable);
+
+    // Groups with unpaid dues last reminded at or before the cutoff, a page at a time in id order
+    @Query("SELECT g.id AS id, g.name AS name, g.monthlyDues AS monthlyDues FROM Group g " +
+           "WHERE g.id > :afterId AND EXISTS (SELECT p.id FROM Payment p WHERE p.group = g " +
+           "AND p.duesPeriod IS NOT NULL AND p.status = com.mahiberawi.entity.PaymentStatus.PENDING " +
+           "AND COALESCE(p.remindedAt, p.createdAt) <= :cutoff) ORDER BY g.id")
+    List<DuesGroup> findDuesFollowUpDue(@Param("cutoff") LocalDateTime cutoff,
+                                        @Param("afterId") String afterId,
+                                        Pageable pageable);
+
+    interface DuesGroup {
+        String getId();
+        String getName();
+        BigDecimal getMonthlyDues();
+    }
+}
@@ -0,0 +1,13 @@
+package com.mahiberawi.repository;
+
+import com.mahiberawi.entity.LatePaymentRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface LatePaymentRunRepository extends JpaRepository<LatePaymentRun, String> {
+    Optional<LatePaymentRun> findFirstByFinishedAtIsNullAndStartedAtAfterOrderByStartedAtDesc(LocalDateTime startedAfter);
+}
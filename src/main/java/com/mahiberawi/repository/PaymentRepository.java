@@ -4,10 +4,23 @@ import com.mahiberawi.entity.Payment;
 import com.mahiberawi.entity.PaymentStatus;
 import com.mahiberawi.entity.User;
 import com.mahiberawi.entity.EqubRound;
+import com.mahiberawi.entity.PaymentMethod;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, String> {
@@ -19,6 +32,18 @@ public interface PaymentRepository extends JpaRepository<Payment, String> {
     List<Payment> findByPayerAndStatus(User payer, PaymentStatus status);
     List<Payment> findByGroupId(String groupId);
     List<Payment> findByPayer_Phone(String phoneNumber);
+    Optional<Payment> findByTransactionId(String transactionId);
+
+    // For a status change read from a callback, so concurrent writers wait for it instead of overwriting it
+    @Query(value = "SELECT * FROM payments WHERE transaction_id = :transactionId FOR UPDATE", nativeQuery = true)
+    Optional<Payment> findByTransactionIdForUpdate(@Param("transactionId") String transactionId);
+
+    // Members a group payment request was already created for, to resume it
+    @Query("SELECT p.payer.id FROM Payment p WHERE p.requestBatchId = :batchId AND p.group.id = :groupId")
+    List<String> findPayerIdsByRequestBatch(@Param("batchId") String batchId, @Param("groupId") String groupId);
+
+    @Query("SELECT p FROM Payment p JOIN FETCH p.payer WHERE p.requestBatchId = :batchId ORDER BY p.createdAt")
+    List<Payment> findByRequestBatchIdWithPayer(@Param("batchId") String batchId);
     
     // Equb-specific methods
     List<Payment> findByGroupIdAndIsEqubPaymentTrue(String groupId);
@@ -26,4 +51,180 @@ public interface PaymentRepository extends JpaRepository<Payment, String> {
     List<Payment> findByGroupIdAndEqubRoundAndStatus(String groupId, Integer equbRound, PaymentStatus status);
     List<Payment> findByEqubRoundEntity(EqubRound equbRound);
     List<Payment> findByGroupIdAndIsLatePaymentTrue(String groupId);
+
+    // Keyset page of gateway payments still pending, oldest first, for PaymentReconciliationService
+    @Query("SELECT p.id AS id, p.transactionId AS transactionId, p.method AS method, p.createdAt AS createdAt " +
+           "FROM Payment p WHERE p.status = com.mahiberawi.entity.PaymentStatus.PENDING AND p.method IN :methods " +
+           "AND p.transactionId IS NOT NULL AND p.createdAt < :createdBefore " +
+           "AND (p.createdAt > :afterCreatedAt OR (p.createdAt = :afterCreatedAt AND p.id > :afterId)) " +
+           "ORDER BY p.createdAt, p.id")
+    List<PendingPaymentKey> findPendingPage(@Param("methods") Collection<PaymentMethod> methods,
+                                            @Param("createdBefore") LocalDateTime createdBefore,
+                                            @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                            @Param("afterId") String afterId,
+                                            Pageable pageable);
+
+    // Moves still-pending payments to a new status; rows changed in the meantime are left alone
+    @Modifying
+    @Query("UPDATE Payment p SET p.status = :status, p.updatedAt = :now, p.version = p.version + 1 " +
+           "WHERE p.id IN :ids AND p.status = com.mahiberawi.entity.PaymentStatus.PENDING")
+    int updatePendingStatus(@Param("ids") Collection<String> ids,
+                            @Param("status") PaymentStatus status,
+                            @Param("now") LocalDateTime now);
+
+    // Locks the still-pending group payments among ids, so their totals, ledger and round progress can move with updatePendingStatus
+    @Query(value = "SELECT id AS id, group_id AS groupId, payer_id AS payerId, amount AS amount, " +
+                   "penalty_amount AS penaltyAmount, equb_round_id AS equbRoundId FROM payments " +
+                   "WHERE id IN (:ids) AND status = 'PENDING' AND group_id IS NOT NULL FOR UPDATE",
+           nativeQuery = true)
+    List<PendingGroupPayment> lockPendingGroupPayments(@Param("ids") Collection<String> ids);
+
+    // Members with pending payments not yet flagged late in the given rounds, a chunk at a time in payer id order
+    @Query("SELECT DISTINCT p.payer.id FROM Payment p WHERE p.equbRoundEntity.id IN :roundIds " +
+           "AND p.status = com.mahiberawi.entity.PaymentStatus.PENDING " +
+           "AND (p.isLatePayment = false OR p.isLatePayment IS NULL) AND p.payer.id > :afterPayerId " +
+           "ORDER BY p.payer.id")
+    List<String> findUnflaggedPayerIds(@Param("roundIds") Collection<String> roundIds,
+                                       @Param("afterPayerId") String afterPayerId,
+                                       Pageable pageable);
+
+    // Locks those members' pending payments that are not yet flagged late, so each is flagged and penalised once
+    @Query(value = "SELECT id AS id, group_id AS groupId, payer_id AS payerId, amount AS amount, " +
+                   "penalty_amount AS penaltyAmount, equb_round_id AS equbRoundId FROM payments " +
+                   "WHERE equb_round_id IN (:roundIds) AND payer_id IN (:payerIds) AND status = 'PENDING' " +
+                   "AND (is_late_payment = FALSE OR is_late_payment IS NULL) FOR UPDATE",
+           nativeQuery = true)
+    List<PendingGroupPayment> lockUnflaggedPayments(@Param("roundIds") Collection<String> roundIds,
+                                                    @Param("payerIds") Collection<String> payerIds);
+
+    // Members already billed monthly dues for the period, so a rerun skips them
+    @Query("SELECT p.payer.id FROM Payment p WHERE p.group.id = :groupId AND p.duesPeriod = :period " +
+           "AND p.payer.id IN :payerIds")
+    List<String> findDuesPayerIds(@Param("groupId") String groupId,
+                                  @Param("period") String period,
+                                  @Param("payerIds") Collection<String> payerIds);
+
+    // Members of the group with unpaid dues last reminded at or before the cutoff, a chunk at a time in payer id order
+    @Query("SELECT DISTINCT p.payer.id FROM Payment p WHERE p.group.id = :groupId AND p.duesPeriod IS NOT NULL " +
+           "AND p.status = com.mahiberawi.entity.PaymentStatus.PENDING " +
+           "AND COALESCE(p.remindedAt, p.createdAt) <= :cutoff AND p.payer.id > :afterPayerId ORDER BY p.payer.id")
+    List<String> findDuesFollowUpPayerIds(@Param("groupId") String groupId,
+                                          @Param("cutoff") LocalDateTime cutoff,
+                                          @Param("afterPayerId") String afterPayerId,
+                                          Pageable pageable);
+
+    // All dues those members have not paid yet
+    @Query("SELECT p.payer.id AS payerId, COUNT(p) AS paymentCount, SUM(p.amount) AS amountTotal FROM Payment p " +
+           "WHERE p.group.id = :groupId AND p.duesPeriod IS NOT NULL " +
+           "AND p.status = com.mahiberawi.entity.PaymentStatus.PENDING AND p.payer.id IN :payerIds " +
+           "GROUP BY p.payer.id")
+    List<UnpaidDues> sumUnpaidDues(@Param("groupId") String groupId,
+                                   @Param("payerIds") Collection<String> payerIds);
+
+    // Dues of earlier periods those members have not paid yet
+    @Query("SELECT p.payer.id AS payerId, COUNT(p) AS paymentCount, SUM(p.amount) AS amountTotal FROM Payment p " +
+           "WHERE p.group.id = :groupId AND p.duesPeriod < :period " +
+           "AND p.status = com.mahiberawi.entity.PaymentStatus.PENDING AND p.payer.id IN :payerIds " +
+           "GROUP BY p.payer.id")
+    List<UnpaidDues> sumUnpaidDuesBefore(@Param("groupId") String groupId,
+                                         @Param("period") String period,
+                                         @Param("payerIds") Collection<String> payerIds);
+
+    // Grouped aggregates for group payment statistics
+    @Query("SELECT p.method AS method, p.status AS status, COUNT(p) AS paymentCount, SUM(p.amount) AS amountTotal " +
+           "FROM Payment p WHERE p.group.id = :groupId GROUP BY p.method, p.status")
+    List<MethodTotals> sumByMethodAndStatus(@Param("groupId") String groupId);
+
+    @Query("SELECT YEAR(p.createdAt) AS paymentYear, MONTH(p.createdAt) AS paymentMonth, p.status AS status, " +
+           "COUNT(p) AS paymentCount, SUM(p.amount) AS amountTotal " +
+           "FROM Payment p WHERE p.group.id = :groupId " +
+           "GROUP BY YEAR(p.createdAt), MONTH(p.createdAt), p.status")
+    List<MonthTotals> sumByMonthAndStatus(@Param("groupId") String groupId);
+
+    @Query("SELECT u.id AS userId, u.firstName AS firstName, u.lastName AS lastName, p.status AS status, " +
+           "COUNT(p) AS paymentCount, SUM(p.amount) AS amountTotal " +
+           "FROM Payment p JOIN p.payer u WHERE p.group.id = :groupId " +
+           "GROUP BY u.id, u.firstName, u.lastName, p.status ORDER BY u.firstName, u.lastName")
+    List<MemberTotals> sumByPayerAndStatus(@Param("groupId") String groupId);
+
+    // Payment exports: a forward-only cursor over flat rows, so neither entities nor lazy associations are loaded
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p.id AS id, p.transactionId AS transactionId, p.createdAt AS createdAt, p.updatedAt AS updatedAt, " +
+           "p.status AS status, p.method AS method, p.amount AS amount, p.description AS description, " +
+           "u.id AS payerId, u.firstName AS payerFirstName, u.lastName AS payerLastName, u.email AS payerEmail, " +
+           "g.id AS groupId, e.id AS eventId, e.title AS eventTitle " +
+           "FROM Payment p JOIN p.payer u LEFT JOIN p.group g LEFT JOIN p.event e " +
+           "WHERE (:groupId IS NULL OR g.id = :groupId) AND p.status IN :statuses " +
+           "AND p.createdAt >= :from AND p.createdAt < :to ORDER BY p.createdAt, p.id")
+    Stream<PaymentExportRow> streamForExport(@Param("groupId") String groupId,
+                                             @Param("statuses") Collection<PaymentStatus> statuses,
+                                             @Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to);
+
+    interface PaymentExportRow {
+        String getId();
+        String getTransactionId();
+        LocalDateTime getCreatedAt();
+        LocalDateTime getUpdatedAt();
+        PaymentStatus getStatus();
+        PaymentMethod getMethod();
+        BigDecimal getAmount();
+        String getDescription();
+        String getPayerId();
+        String getPayerFirstName();
+        String getPayerLastName();
+        String getPayerEmail();
+        String getGroupId();
+        String getEventId();
+        String getEventTitle();
+    }
+
+    interface PendingGroupPayment {
+        String getId();
+        String getGroupId();
+        String getPayerId();
+        BigDecimal getAmount();
+        BigDecimal getPenaltyAmount();
+        String getEqubRoundId();
+    }
+
+    interface UnpaidDues {
+        String getPayerId();
+        Long getPaymentCount();
+        BigDecimal getAmountTotal();
+    }
+
+    interface MethodTotals {
+        PaymentMethod getMethod();
+        PaymentStatus getStatus();
+        Long getPaymentCount();
+        BigDecimal getAmountTotal();
+    }
+
+    interface MonthTotals {
+        Integer getPaymentYear();
+        Integer getPaymentMonth();
+        PaymentStatus getStatus();
+        Long getPaymentCount();
+        BigDecimal getAmountTotal();
+    }
+
+    interface MemberTotals {
+        String getUserId();
+        String getFirstName();
+        String getLastName();
+        PaymentStatus getStatus();
+        Long getPaymentCount();
+        BigDecimal getAmountTotal();
+    }
+
+    interface PendingPaymentKey {
+        String getId();
+        String getTransactionId();
+        PaymentMethod getMethod();
+        LocalDateTime getCreatedAt();
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,48 @@
+package com.mahiberawi.repository;
+
+import com.mahiberawi.entity.PaymentMethod;
+import com.mahiberawi.entity.PaymentWebhook;
+import com.mahiberawi.entity.PaymentWebhookOutcome;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PaymentWebhookRepository extends JpaRepository<PaymentWebhook, String> {
+
+    // Stores a callback unless one with the same key was already stored; returns 0 for a duplicate.
+    // Two copies racing past the NOT EXISTS check are caught by the unique constraint.
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO payment_webhooks (id, gateway, idempotency_key, transaction_id, reported_status, payload, received_at) " +
+                   "SELECT :id, :gateway, :idempotencyKey, :transactionId, :reportedStatus, :payload, :receivedAt " +
+                   "WHERE NOT EXISTS (SELECT 1 FROM payment_webhooks w WHERE w.gateway = :gateway AND w.idempotency_key = :idempotencyKey)",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("id") String id,
+                       @Param("gateway") String gateway,
+                       @Param("idempotencyKey") String idempotencyKey,
+                       @Param("transactionId") String transactionId,
+                       @Param("reportedStatus") String reportedStatus,
+                       @Param("payload") String payload,
+                       @Param("receivedAt") LocalDateTime receivedAt);
+
+    boolean existsByGatewayAndIdempotencyKey(PaymentMethod gateway, String idempotencyKey);
+
+    @Query("SELECT w FROM PaymentWebhook w WHERE w.processedAt IS NULL AND w.receivedAt < :receivedBefore ORDER BY w.receivedAt, w.id")
+    List<PaymentWebhook> findUnprocessed(@Param("receivedBefore") LocalDateTime receivedBefore, Pageable pageable);
+
+    // Callbacks of one transaction not yet applied, in the order they arrived
+    @Query("SELECT w FROM PaymentWebhook w WHERE w.processedAt IS NULL AND w.transactionId = :transactionId ORDER BY w.receivedAt, w.id")
+    List<PaymentWebhook> findUnprocessedByTransactionId(@Param("transactionId") String transactionId);
+
+    @Modifying
+    @Query("UPDATE PaymentWebhook w SET w.processedAt = :now, w.outcome = :outcome WHERE w.id = :id AND w.processedAt IS NULL")
+    int markProcessed(@Param("id") String id, @Param("outcome") PaymentWebhookOutcome outcome, @Param("now") LocalDateTime now);
+}
@@ -14,7 +14,6 @@ import com.mahiberawi.entity.UserRole;
 import com.mahiberawi.entity.UserStatus;
 import com.mahiberawi.entity.UserIntention;
 import com.mahiberawi.repository.UserRepository;
-import com.mahiberawi.repository.EmailVerificationCodeRepository;
 import com.mahiberawi.security.JwtService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -37,7 +36,7 @@ public class AuthService {
     private final JwtService jwtService;
     private final AuthenticationManager authenticationManager;
     private final EmailService emailService;
-    private final EmailVerificationCodeRepository emailVerificationCodeRepository;
+    private final VerificationCodeStore verificationCodeStore;
 
     @Transactional
     public RegistrationResponse register(RegisterRequest request) {
@@ -332,7 +331,7 @@ public class AuthService {
             }
             
             // Delete verification codes first
-            emailVerificationCodeRepository.markAllCodesAsUsedForEmail(email);
+            verificationCodeStore.invalidate(email);
             
             // Delete the user
             userRepository.delete(user);
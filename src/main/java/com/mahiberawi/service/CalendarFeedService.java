@@ -0,0 +1,237 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.entity.Event;
+import com.mahiberawi.entity.EventOccurrenceException;
+import com.mahiberawi.entity.EventStatus;
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.exception.ResourceNotFoundException;
+import com.mahiberawi.exception.UnauthorizedException;
+import com.mahiberawi.repository.EventRepository;
+import com.mahiberawi.repository.GroupMemberRepository;
+import com.mahiberawi.repository.GroupRepository;
+import com.mahiberawi.repository.UserRepository;
+import com.mahiberawi.util.ICalendarWriter;
+import com.mahiberawi.util.RecurrenceRule;
+import com.mahiberawi.util.SubKeys;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Builds the .ics subscription feeds for a group and for all of a user's groups.
+ * Events are written from a database cursor as they are read, and each feed has a
+ * version (event count plus latest modification) used for ETag/Last-Modified.
+ * Recurring events are written with their rule and exceptions rather than expanded,
+ * so the calendar client expands them for whatever range it shows.
+ *
+ * Calendar clients subscribe by URL and cannot send a bearer token, so each user is
+ * also issued a feed token to put in the URL: their user id signed with a key derived
+ * from the JWT secret for this use only.
+ */
+@Service
+@RequiredArgsConstructor
+public class CalendarFeedService {
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final EventRepository eventRepository;
+    private final GroupRepository groupRepository;
+    private final GroupMemberRepository groupMemberRepository;
+    private final UserRepository userRepository;
+    private final UserService userService;
+    private final EventOccurrenceService eventOccurrenceService;
+    private final EntityManager entityManager;
+
+    @Value("${app.email.app-name:Dewel}")
+    private String appName;
+
+    @Value("${app.calendar.uid-domain:dewel.com}")
+    private String uidDomain;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    private byte[] feedKey;
+
+    @PostConstruct
+    public void init() {
+        feedKey = SubKeys.derive(jwtSecret, "calendar-feed");
+    }
+
+    /**
+     * The token for the user's feed URLs, passed as the token query parameter.
+     */
+    public String getFeedToken(User user) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        byte[] payload = user.getId().getBytes(StandardCharsets.UTF_8);
+        return encoder.encodeToString(payload) + "." + encoder.encodeToString(hmac(payload));
+    }
+
+    /**
+     * The user a feed token was issued to, or null if the token is not valid.
+     */
+    @Transactional(readOnly = true)
+    public User getFeedTokenUser(String token) {
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            byte[] payload = decoder.decode(token.substring(0, dot));
+            if (!MessageDigest.isEqual(hmac(payload), decoder.decode(token.substring(dot + 1)))) {
+                return null;
+            }
+            return userRepository.findById(new String(payload, StandardCharsets.UTF_8)).orElse(null);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public CalendarFeed getGroupFeed(String groupId, User currentUser) {
+        Group group = groupRepository.findById(groupId)
+                .orElseThrow(() -> new ResourceNotFoundException("Group not found with id: " + groupId));
+
+        if (!userService.isSuperAdmin(currentUser) && !groupMemberRepository.existsByGroupAndUser(group, currentUser)) {
+            throw new UnauthorizedException("You are not a member of this group");
+        }
+
+        return toFeed(group.getName(), "g-" + groupId, eventRepository.getGroupFeedVersion(groupId));
+    }
+
+    @Transactional(readOnly = true)
+    public CalendarFeed getUserFeed(User currentUser) {
+        return toFeed(appName + " events", "u-" + currentUser.getId(),
+                eventRepository.getMemberFeedVersion(currentUser.getId()));
+    }
+
+    @Transactional(readOnly = true)
+    public void writeGroupFeed(String groupId, String calendarName, OutputStream out) throws IOException {
+        write(calendarName, eventRepository.streamByGroupId(groupId), out);
+    }
+
+    @Transactional(readOnly = true)
+    public void writeUserFeed(String userId, String calendarName, OutputStream out) throws IOException {
+        write(calendarName, eventRepository.streamByMemberId(userId), out);
+    }
+
+    private void write(String calendarName, Stream<Event> events, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        ICalendarWriter calendar = new ICalendarWriter(writer, uidDomain);
+        calendar.begin(calendarName);
+
+        try (events) {
+            Iterator<Event> iterator = events.iterator();
+            while (iterator.hasNext()) {
+                Event event = iterator.next();
+                if (event.isRecurring()) {
+                    writeSeries(calendar, event);
+                } else {
+                    calendar.event(new ICalendarWriter.CalendarEvent(
+                            event.getId(),
+                            event.getTitle(),
+                            event.getDescription(),
+                            event.getLocation(),
+                            event.getStartTime(),
+                            event.getEndTime(),
+                            event.getStatus() == EventStatus.CANCELLED,
+                            lastModified(event)));
+                }
+                // Keep the persistence context from growing with the feed
+                entityManager.detach(event);
+            }
+        }
+
+        calendar.end();
+    }
+
+    private void writeSeries(ICalendarWriter calendar, Event event) throws IOException {
+        List<EventOccurrenceException> exceptions = eventOccurrenceService.getExceptions(event);
+        List<LocalDateTime> cancelled = new ArrayList<>();
+        for (EventOccurrenceException exception : exceptions) {
+            if (exception.isCancelled()) {
+                cancelled.add(exception.getOccurrenceStart());
+            }
+        }
+
+        calendar.event(new ICalendarWriter.CalendarEvent(
+                event.getId(),
+                event.getTitle(),
+                event.getDescription(),
+                event.getLocation(),
+                event.getStartTime(),
+                event.getEndTime(),
+                event.getStatus() == EventStatus.CANCELLED,
+                lastModified(event),
+                RecurrenceRule.parse(event.getRecurrenceRule()).toICalendar(ZoneId.systemDefault()),
+                cancelled,
+                null));
+
+        for (EventOccurrenceException exception : exceptions) {
+            if (!exception.isCancelled()) {
+                EventOccurrenceService.Occurrence occurrence =
+                        eventOccurrenceService.toOccurrence(event, exception.getOccurrenceStart(), exception);
+                calendar.event(new ICalendarWriter.CalendarEvent(
+                        event.getId(),
+                        occurrence.title(),
+                        event.getDescription(),
+                        occurrence.location(),
+                        occurrence.startTime(),
+                        occurrence.endTime(),
+                        false,
+                        exception.getUpdatedAt() != null ? exception.getUpdatedAt() : exception.getCreatedAt(),
+                        null,
+                        null,
+                        exception.getOccurrenceStart()));
+            }
+            entityManager.detach(exception);
+        }
+    }
+
+    private LocalDateTime lastModified(Event event) {
+        return event.getUpdatedAt() != null ? event.getUpdatedAt() : event.getCreatedAt();
+    }
+
+    private CalendarFeed toFeed(String name, String scope, EventRepository.FeedVersion version) {
+        long lastModified = version.getLastModified() != null
+                ? version.getLastModified().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : -1;
+        String etag = "W/\"" + scope + "-" + version.getEventCount() + "-" + Math.max(lastModified, 0) + "\"";
+        return new CalendarFeed(name, etag, lastModified);
+    }
+
+    private byte[] hmac(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(feedKey, HMAC_ALGORITHM));
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not sign feed token", e);
+        }
+    }
+
+    public record CalendarFeed(String name, String etag, long lastModified) {
+    }
+}
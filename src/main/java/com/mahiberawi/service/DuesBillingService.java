@@ -0,0 +1,362 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.config.DuesBillingConfig;
+import com.mahiberawi.entity.enums.GroupMemberStatus;
+import com.mahiberawi.repository.GroupMemberRepository;
+import com.mahiberawi.repository.GroupRepository;
+import com.mahiberawi.repository.GroupRepository.DuesGroup;
+import com.mahiberawi.repository.PaymentRepository;
+import com.mahiberawi.repository.PaymentRepository.UnpaidDues;
+import com.mahiberawi.util.TimeOrderedIds;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Bills monthly dues: once a group with payment required and monthly dues set reaches its
+ * billing day in a month, every active member gets a pending dues payment for that month.
+ *
+ * A run collects the groups due page by page, then bills them in parallel on a bounded
+ * pool. Within a group, members are taken a chunk at a time in user id order; each chunk
+ * skips members already billed for the month, inserts the payments, posts them to the
+ * group totals and ledger, writes one reminder per member billed and moves the group's
+ * checkpoint for the month, all in one transaction. Payments carry their month, unique
+ * per group and member, so a member is billed at most once a month however often runs
+ * are repeated. A group that failed part way is resumed from its checkpoint by the next
+ * run, and a run that missed the billing day still bills the group later in the month.
+ *
+ * Each run then follows up on dues left unpaid: a member whose unpaid dues were billed or
+ * last reminded app.dues.billing.follow-up-days ago or more gets one reminder covering
+ * all of them. The payments are stamped with the reminder time by a guarded update, so
+ * a member is reminded once per interval even if runs overlap.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DuesBillingService {
+
+    private static final String FIRST = "";
+    private static final DateTimeFormatter PERIOD = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("MMMM yyyy", Locale.ENGLISH);
+    private static final String INSERT_CHECKPOINT = "INSERT INTO dues_billing_checkpoints " +
+            "(id, period, group_id, last_user_id, payments_created, amount_total, updated_at) " +
+            "SELECT ?, ?, ?, ?, 0, 0, ? WHERE NOT EXISTS " +
+            "(SELECT 1 FROM dues_billing_checkpoints WHERE period = ? AND group_id = ?)";
+    private static final String ADVANCE_CHECKPOINT = "UPDATE dues_billing_checkpoints SET last_user_id = ?, " +
+            "payments_created = payments_created + ?, amount_total = amount_total + ?, completed_at = ?, " +
+            "updated_at = ? WHERE period = ? AND group_id = ?";
+    private static final String CLAIM_FOLLOW_UP = "UPDATE payments SET reminded_at = ? WHERE group_id = ? " +
+            "AND payer_id = ? AND dues_period IS NOT NULL AND status = 'PENDING' " +
+            "AND COALESCE(reminded_at, created_at) <= ?";
+
+    private final GroupRepository groupRepository;
+    private final GroupMemberRepository groupMemberRepository;
+    private final PaymentRepository paymentRepository;
+    private final PaymentBatchWriter paymentBatchWriter;
+    private final DuesBillingConfig duesBillingConfig;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService workers;
+    private volatile Report lastReport;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(duesBillingConfig.getWorkers(), runnable -> {
+            Thread thread = new Thread(runnable, "dues-billing-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.shutdownNow();
+    }
+
+    @Scheduled(cron = "${app.dues.billing.cron:0 30 0 * * *}")
+    public void billScheduled() {
+        if (duesBillingConfig.isEnabled()) {
+            run();
+        }
+    }
+
+    /**
+     * Bill the groups due today. Returns null if a run is already in progress.
+     */
+    public Report run() {
+        return run(LocalDate.now());
+    }
+
+    /**
+     * Bill the groups whose billing day in the month of date is on or before date.
+     * Returns null if a run is already in progress.
+     */
+    public Report run(LocalDate date) {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            Report report = runPass(date);
+            lastReport = report;
+            log.info("Dues billing run for {} processed {} groups: {} payments created for {}, {} reminders, " +
+                            "{} follow-ups, {} groups failed, {} ms",
+                    report.period(), report.groups(), report.paymentsCreated(), report.amountTotal(),
+                    report.reminders(), report.followUps(), report.failedGroups(), report.durationMillis());
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    private Report runPass(LocalDate date) {
+        long startNanos = System.nanoTime();
+        YearMonth month = YearMonth.from(date);
+        String period = month.format(PERIOD);
+        List<DuesGroup> groups = findDueGroups(date.getDayOfMonth(), period);
+
+        Tally tally = new Tally();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(groups.size());
+        for (DuesGroup group : groups) {
+            tasks.add(CompletableFuture.runAsync(() -> {
+                try {
+                    billGroup(period, month, group, tally);
+                } catch (Exception e) {
+                    // Left unfinished; the next run resumes the group from its checkpoint
+                    log.error("Dues billing for {} stopped in group {}: {}", period, group.getId(), e.getMessage());
+                    tally.failedGroups.incrementAndGet();
+                }
+            }, workers));
+        }
+        CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+
+        if (duesBillingConfig.getFollowUpDays() > 0) {
+            followUp(date.atTime(LocalTime.now()), tally);
+        }
+
+        return new Report(period, groups.size(), tally.created.get(), tally.amount(), tally.reminders.get(),
+                tally.followUps.get(), tally.failedGroups.get(),
+                Math.max((System.nanoTime() - startNanos) / 1_000_000, 1));
+    }
+
+    private void followUp(LocalDateTime now, Tally tally) {
+        LocalDateTime cutoff = now.minusDays(duesBillingConfig.getFollowUpDays());
+        List<DuesGroup> groups = new ArrayList<>();
+        String afterId = FIRST;
+        while (true) {
+            List<DuesGroup> page = groupRepository.findDuesFollowUpDue(cutoff, afterId,
+                    PageRequest.of(0, duesBillingConfig.getGroupPageSize()));
+            groups.addAll(page);
+            if (page.size() < duesBillingConfig.getGroupPageSize()) {
+                break;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(groups.size());
+        for (DuesGroup group : groups) {
+            tasks.add(CompletableFuture.runAsync(() -> {
+                try {
+                    String afterUserId = FIRST;
+                    int members = duesBillingConfig.getChunkSize();
+                    while (members == duesBillingConfig.getChunkSize()) {
+                        String after = afterUserId;
+                        FollowUpChunk chunk = transactionTemplate.execute(status -> followUpChunk(group, now, cutoff, after));
+                        tally.followUps.addAndGet(chunk.reminded());
+                        afterUserId = chunk.lastUserId();
+                        members = chunk.members();
+                    }
+                } catch (Exception e) {
+                    // The members not reminded yet are still due, so the next run reminds them
+                    log.error("Dues follow-ups stopped in group {}: {}", group.getId(), e.getMessage());
+                    tally.failedGroups.incrementAndGet();
+                }
+            }, workers));
+        }
+        CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private FollowUpChunk followUpChunk(DuesGroup group, LocalDateTime now, LocalDateTime cutoff, String afterUserId) {
+        List<String> memberIds = paymentRepository.findDuesFollowUpPayerIds(group.getId(), cutoff, afterUserId,
+                PageRequest.of(0, duesBillingConfig.getChunkSize()));
+        if (memberIds.isEmpty()) {
+            return new FollowUpChunk(0, afterUserId, 0);
+        }
+
+        // Only members whose payments this update stamped are reminded; a concurrent run stamped the others
+        int[][] counts = jdbcTemplate.batchUpdate(CLAIM_FOLLOW_UP, memberIds, memberIds.size(), (statement, userId) -> {
+            statement.setTimestamp(1, Timestamp.valueOf(now));
+            statement.setString(2, group.getId());
+            statement.setString(3, userId);
+            statement.setTimestamp(4, Timestamp.valueOf(cutoff));
+        });
+        int[] claimed = Arrays.stream(counts).flatMapToInt(Arrays::stream).toArray();
+        List<String> userIds = new ArrayList<>(memberIds.size());
+        for (int i = 0; i < memberIds.size(); i++) {
+            if (claimed[i] != 0) {
+                userIds.add(memberIds.get(i));
+            }
+        }
+
+        if (!userIds.isEmpty()) {
+            Map<String, UnpaidDues> unpaid = paymentRepository.sumUnpaidDues(group.getId(), userIds).stream()
+                    .collect(Collectors.toMap(UnpaidDues::getPayerId, dues -> dues));
+            paymentBatchWriter.notify(userIds, userId -> followUpMessage(group, unpaid.get(userId)));
+        }
+        return new FollowUpChunk(memberIds.size(), memberIds.get(memberIds.size() - 1), userIds.size());
+    }
+
+    private List<DuesGroup> findDueGroups(int day, String period) {
+        List<DuesGroup> groups = new ArrayList<>();
+        String afterId = FIRST;
+        while (true) {
+            List<DuesGroup> page = groupRepository.findDuesBillingDue(day, period, afterId,
+                    PageRequest.of(0, duesBillingConfig.getGroupPageSize()));
+            groups.addAll(page);
+            if (page.size() < duesBillingConfig.getGroupPageSize()) {
+                return groups;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    private void billGroup(String period, YearMonth month, DuesGroup group, Tally tally) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(INSERT_CHECKPOINT, TimeOrderedIds.uuid(), period, group.getId(), FIRST, now,
+                period, group.getId());
+        String afterUserId = jdbcTemplate.queryForObject("SELECT last_user_id FROM dues_billing_checkpoints " +
+                "WHERE period = ? AND group_id = ?", String.class, period, group.getId());
+
+        boolean done = false;
+        while (!done) {
+            String after = afterUserId;
+            ChunkResult chunk = transactionTemplate.execute(status -> billChunk(period, month, group, after));
+            tally.add(chunk);
+            afterUserId = chunk.lastUserId();
+            done = chunk.members() < duesBillingConfig.getChunkSize();
+        }
+    }
+
+    private ChunkResult billChunk(String period, YearMonth month, DuesGroup group, String afterUserId) {
+        int chunkSize = duesBillingConfig.getChunkSize();
+        List<String> memberIds = groupMemberRepository.findUserIdsAfter(group.getId(), GroupMemberStatus.ACTIVE,
+                afterUserId, PageRequest.of(0, chunkSize));
+        String lastUserId = memberIds.isEmpty() ? afterUserId : memberIds.get(memberIds.size() - 1);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        List<String> userIds = new ArrayList<>(memberIds);
+        if (!userIds.isEmpty()) {
+            userIds.removeAll(new HashSet<>(paymentRepository.findDuesPayerIds(group.getId(), period, userIds)));
+        }
+        BigDecimal amount = group.getMonthlyDues();
+
+        // One reminder per member billed, covering any dues of earlier months still unpaid
+        Map<String, UnpaidDues> unpaid = userIds.isEmpty()
+                ? Map.of()
+                : paymentRepository.sumUnpaidDuesBefore(group.getId(), period, userIds).stream()
+                        .collect(Collectors.toMap(UnpaidDues::getPayerId, dues -> dues));
+        paymentBatchWriter.insertPending(PaymentBatchWriter.PendingPayments.builder()
+                .groupId(group.getId())
+                .duesPeriod(period)
+                .amount(amount)
+                .description("Monthly dues for " + month.format(MONTH))
+                .notification(userId -> reminderMessage(group, month, unpaid.get(userId)))
+                .build(), userIds, chunkSize);
+        BigDecimal total = amount.multiply(BigDecimal.valueOf(userIds.size()));
+
+        boolean completed = memberIds.size() < chunkSize;
+        jdbcTemplate.update(ADVANCE_CHECKPOINT, lastUserId, userIds.size(), total,
+                new SqlParameterValue(Types.TIMESTAMP, completed ? now : null), now, period, group.getId());
+        return new ChunkResult(memberIds.size(), lastUserId, userIds.size(), total, userIds.size());
+    }
+
+    private static String reminderMessage(DuesGroup group, YearMonth month, UnpaidDues earlier) {
+        String message = String.format("Your monthly dues of %s for %s in group '%s' are due.",
+                group.getMonthlyDues(), month.format(MONTH), group.getName());
+        if (earlier == null || earlier.getPaymentCount() == 0) {
+            return message;
+        }
+        return message + String.format(" You also have %d unpaid earlier %s totalling %s.",
+                earlier.getPaymentCount(), earlier.getPaymentCount() == 1 ? "month" : "months",
+                earlier.getAmountTotal());
+    }
+
+    private static String followUpMessage(DuesGroup group, UnpaidDues unpaid) {
+        return String.format("Reminder: you have %d unpaid %s of dues in group '%s' totalling %s.",
+                unpaid.getPaymentCount(), unpaid.getPaymentCount() == 1 ? "month" : "months", group.getName(),
+                unpaid.getAmountTotal());
+    }
+
+    private record ChunkResult(int members, String lastUserId, int created, BigDecimal amount, int reminders) {
+    }
+
+    private record FollowUpChunk(int members, String lastUserId, int reminded) {
+    }
+
+    private static class Tally {
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger reminders = new AtomicInteger();
+        final AtomicInteger followUps = new AtomicInteger();
+        final AtomicInteger failedGroups = new AtomicInteger();
+        private BigDecimal amount = BigDecimal.ZERO;
+
+        synchronized void add(ChunkResult chunk) {
+            created.addAndGet(chunk.created());
+            reminders.addAndGet(chunk.reminders());
+            amount = amount.add(chunk.amount());
+        }
+
+        synchronized BigDecimal amount() {
+            return amount;
+        }
+    }
+
+    /**
+     * Outcome of one pass over the groups due for the period. Groups already billed for
+     * the period are not counted again. followUps counts the reminders of unpaid dues.
+     */
+    public record Report(String period, int groups, int paymentsCreated, BigDecimal amountTotal, int reminders,
+                         int followUps, int failedGroups, long durationMillis) {
+    }
+}
@@ -0,0 +1,305 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.config.EmailDispatchConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMailMessage;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Queues outgoing mail and delivers it from a small pool of workers.
+ * Each worker keeps its SMTP transport open between batches and only closes it
+ * after the queue has been idle, so a burst of mails shares one handshake.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EmailDispatchService {
+
+    private static final long POLL_INTERVAL_MS = 500;
+
+    private final JavaMailSender mailSender;
+    private final EmailDispatchConfig dispatchConfig;
+
+    private BlockingQueue<PendingEmail> queue;
+    private ExecutorService workers;
+    private ScheduledExecutorService retryScheduler;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(dispatchConfig.getQueueCapacity());
+        running = true;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(dispatchConfig.getWorkerCount(), runnable -> {
+            Thread thread = new Thread(runnable, "email-dispatch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "email-dispatch-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (int i = 0; i < dispatchConfig.getWorkerCount(); i++) {
+            workers.submit(this::runWorker);
+        }
+        log.info("Email dispatch started with {} workers", dispatchConfig.getWorkerCount());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        retryScheduler.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Email dispatch stopped with {} undelivered messages", queue.size());
+        }
+    }
+
+    /**
+     * Queue a message for delivery. Inside a transaction the message is only
+     * queued once the transaction commits, so rolled back work never sends mail.
+     */
+    public boolean dispatch(SimpleMailMessage message) {
+        return dispatch(message, null);
+    }
+
+    /**
+     * Queue a message with an optional HTML alternative to the plain-text body.
+     */
+    public boolean dispatch(SimpleMailMessage message, String htmlBody) {
+        PendingEmail pending = new PendingEmail(message, htmlBody, 0);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(pending);
+                }
+            });
+            return true;
+        }
+
+        return enqueue(pending);
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    private boolean enqueue(PendingEmail pending) {
+        if (!running) {
+            log.warn("Email dispatch is stopped, dropping message to: {}", recipients(pending));
+            return false;
+        }
+        if (!queue.offer(pending)) {
+            log.error("Email dispatch queue is full, dropping message to: {}", recipients(pending));
+            return false;
+        }
+        return true;
+    }
+
+    private void runWorker() {
+        Transport transport = null;
+        List<PendingEmail> batch = new ArrayList<>(dispatchConfig.getBatchSize());
+        long pollTimeoutMs = Math.min(dispatchConfig.getIdleTimeoutMs(), POLL_INTERVAL_MS);
+        long idleSinceMs = System.currentTimeMillis();
+
+        try {
+            while (running || !queue.isEmpty()) {
+                PendingEmail first = queue.poll(pollTimeoutMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (transport != null && System.currentTimeMillis() - idleSinceMs >= dispatchConfig.getIdleTimeoutMs()) {
+                        transport = closeQuietly(transport);
+                    }
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, dispatchConfig.getBatchSize() - 1);
+
+                transport = deliverBatch(transport, batch);
+                batch.clear();
+                idleSinceMs = System.currentTimeMillis();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Email dispatch worker stopped unexpectedly", e);
+        } finally {
+            closeQuietly(transport);
+        }
+    }
+
+    private Transport deliverBatch(Transport transport, List<PendingEmail> batch) {
+        if (!(mailSender instanceof JavaMailSenderImpl senderImpl)) {
+            deliverWithSender(batch);
+            return transport;
+        }
+
+        try {
+            transport = ensureConnected(senderImpl, transport);
+        } catch (MessagingException e) {
+            log.error("Could not connect to SMTP server: {}", e.getMessage());
+            batch.forEach(pending -> scheduleRetry(pending, e));
+            return closeQuietly(transport);
+        }
+
+        for (PendingEmail pending : batch) {
+            if (transport == null) {
+                scheduleRetry(pending, new MessagingException("SMTP connection lost"));
+                continue;
+            }
+            try {
+                MimeMessage mimeMessage = toMimeMessage(pending);
+                transport.sendMessage(mimeMessage, mimeMessage.getAllRecipients());
+                log.debug("Email delivered to: {}", recipients(pending));
+            } catch (MessagingException e) {
+                scheduleRetry(pending, e);
+                if (!transport.isConnected()) {
+                    transport = closeQuietly(transport);
+                    try {
+                        transport = ensureConnected(senderImpl, null);
+                    } catch (MessagingException reconnectError) {
+                        log.error("Could not reconnect to SMTP server: {}", reconnectError.getMessage());
+                    }
+                }
+            }
+        }
+
+        return transport;
+    }
+
+    private void deliverWithSender(List<PendingEmail> batch) {
+        List<PendingEmail> prepared = new ArrayList<>(batch.size());
+        List<MimeMessage> messages = new ArrayList<>(batch.size());
+        for (PendingEmail pending : batch) {
+            try {
+                messages.add(toMimeMessage(pending));
+                prepared.add(pending);
+            } catch (MessagingException e) {
+                log.error("Could not build email to: {}", recipients(pending), e);
+            }
+        }
+
+        try {
+            mailSender.send(messages.toArray(MimeMessage[]::new));
+        } catch (MailSendException e) {
+            for (int i = 0; i < prepared.size(); i++) {
+                if (e.getFailedMessages().containsKey(messages.get(i))) {
+                    scheduleRetry(prepared.get(i), e);
+                }
+            }
+        } catch (MailException e) {
+            prepared.forEach(pending -> scheduleRetry(pending, e));
+        }
+    }
+
+    private MimeMessage toMimeMessage(PendingEmail pending) throws MessagingException {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        SimpleMailMessage message = pending.message();
+
+        if (pending.html() == null) {
+            message.copyTo(new MimeMailMessage(mimeMessage));
+        } else {
+            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+            if (message.getFrom() != null) {
+                helper.setFrom(message.getFrom());
+            }
+            if (message.getTo() != null) {
+                helper.setTo(message.getTo());
+            }
+            if (message.getSubject() != null) {
+                helper.setSubject(message.getSubject());
+            }
+            helper.setText(message.getText() != null ? message.getText() : "", pending.html());
+        }
+
+        mimeMessage.saveChanges();
+        return mimeMessage;
+    }
+
+    private Transport ensureConnected(JavaMailSenderImpl senderImpl, Transport transport) throws MessagingException {
+        if (transport != null && transport.isConnected()) {
+            return transport;
+        }
+
+        String protocol = senderImpl.getProtocol() != null ? senderImpl.getProtocol() : "smtp";
+        Transport connected = senderImpl.getSession().getTransport(protocol);
+        connected.connect(senderImpl.getHost(), senderImpl.getPort(), senderImpl.getUsername(), senderImpl.getPassword());
+        log.debug("Opened SMTP connection to {}:{}", senderImpl.getHost(), senderImpl.getPort());
+        return connected;
+    }
+
+    private void scheduleRetry(PendingEmail pending, Exception cause) {
+        int nextAttempt = pending.attempt() + 1;
+        if (nextAttempt >= dispatchConfig.getMaxAttempts()) {
+            log.error("Giving up on email to: {} after {} attempts", recipients(pending), nextAttempt, cause);
+            return;
+        }
+
+        long delay = Math.min(dispatchConfig.getInitialBackoffMs() << pending.attempt(), dispatchConfig.getMaxBackoffMs());
+        log.warn("Email to: {} failed (attempt {}), retrying in {} ms: {}",
+                recipients(pending), nextAttempt, delay, cause.getMessage());
+
+        try {
+            retryScheduler.schedule(() -> enqueue(new PendingEmail(pending.message(), pending.html(), nextAttempt)),
+                    delay, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.error("Could not schedule retry for email to: {}", recipients(pending), e);
+        }
+    }
+
+    private Transport closeQuietly(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Error closing SMTP connection: {}", e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private String recipients(PendingEmail pending) {
+        String[] to = pending.message().getTo();
+        return to != null ? String.join(",", to) : "";
+    }
+
+    private record PendingEmail(SimpleMailMessage message, String html, int attempt) {
+    }
+}
@@ -1,17 +1,18 @@
 package com.mahiberawi.service;
 
 import com.mahiberawi.entity.EmailVerificationCode;
-import com.mahiberawi.repository.EmailVerificationCodeRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
 
 @Slf4j
@@ -20,7 +21,9 @@ import java.util.Random;
 public class EmailService {
     
     private final JavaMailSender mailSender;
-    private final EmailVerificationCodeRepository emailVerificationCodeRepository;
+    private final EmailDispatchService emailDispatchService;
+    private final EmailTemplateService emailTemplateService;
+    private final VerificationCodeStore verificationCodeStore;
     
     @Value("${spring.mail.username}")
     private String fromEmail;
@@ -57,7 +60,7 @@ public class EmailService {
                     .used(false)
                     .build();
             
-            emailVerificationCodeRepository.save(codeEntity);
+            verificationCodeStore.save(codeEntity);
             log.info("Verification code saved for email: {}", email);
             
             // Send email
@@ -65,11 +68,14 @@ public class EmailService {
             message.setFrom(fromEmail);
             message.setTo(email);
             message.setSubject("Verify Your Email - Dewel");
-            message.setText(buildVerificationEmailContent(userName, verificationCode));
+            EmailTemplateService.RenderedEmail content = buildVerificationEmailContent(userName, verificationCode);
+            message.setText(content.text());
             
-            log.debug("Attempting to send email from: {} to: {}", fromEmail, email);
-            mailSender.send(message);
-            log.info("Verification email sent successfully to: {}", email);
+            log.debug("Queueing email from: {} to: {}", fromEmail, email);
+            if (!emailDispatchService.dispatch(message, content.html())) {
+                return false;
+            }
+            log.info("Verification email queued for: {}", email);
             
             return true;
             
@@ -99,7 +105,7 @@ public class EmailService {
                     .used(false)
                     .build();
             
-            emailVerificationCodeRepository.save(codeEntity);
+            verificationCodeStore.save(codeEntity);
             log.info("Password reset code saved for email: {}", email);
             
             // Send email
@@ -107,10 +113,13 @@ public class EmailService {
             message.setFrom(fromEmail);
             message.setTo(email);
             message.setSubject("Reset Your Password - Dewel");
-            message.setText(buildPasswordResetEmailContent(userName, resetCode));
+            EmailTemplateService.RenderedEmail content = buildPasswordResetEmailContent(userName, resetCode);
+            message.setText(content.text());
             
-            mailSender.send(message);
-            log.info("Password reset email sent successfully to: {}", email);
+            if (!emailDispatchService.dispatch(message, content.html())) {
+                return false;
+            }
+            log.info("Password reset email queued for: {}", email);
             
             return true;
             
@@ -128,13 +137,8 @@ public class EmailService {
         try {
             log.info("Verifying email code for: {}", email);
             
-            EmailVerificationCode verificationCode = emailVerificationCodeRepository
-                    .findByEmailAndCodeAndUsedFalseAndExpiresAtAfter(email, code, LocalDateTime.now())
-                    .orElse(null);
-            
-            if (verificationCode != null) {
-                // Mark all codes for this email as used
-                emailVerificationCodeRepository.markAllCodesAsUsedForEmail(email);
+            // Served from memory; a match marks all codes for this email as used
+            if (verificationCodeStore.consume(email, code)) {
                 log.info("Email verification successful for: {}", email);
                 return true;
             } else {
@@ -156,8 +160,8 @@ public class EmailService {
         try {
             log.info("Resending verification email to: {}", email);
             
-            // Delete any existing unused codes for this email
-            emailVerificationCodeRepository.markAllCodesAsUsedForEmail(email);
+            // Invalidate any existing unused codes for this email
+            verificationCodeStore.invalidate(email);
             
             // Send new verification email
             return sendVerificationEmail(email, userName);
@@ -169,22 +173,8 @@ public class EmailService {
     }
 
     /**
-     * Clean up expired verification codes (runs every hour)
-     */
-    @Scheduled(cron = "0 0 * * * *") // Every hour
-    @Transactional
-    public void cleanupExpiredCodes() {
-        try {
-            log.info("Cleaning up expired verification codes");
-            int deletedCount = emailVerificationCodeRepository.deleteExpiredCodes(LocalDateTime.now());
-            log.info("Deleted {} expired verification codes", deletedCount);
-        } catch (Exception e) {
-            log.error("Error cleaning up expired verification codes", e);
-        }
-    }
-
-    /**
-     * Send test email (for debugging SMTP configuration)
+     * Send test email (for debugging SMTP configuration).
+     * Sent synchronously, bypassing the dispatch queue, so SMTP errors surface to the caller.
      */
     public boolean sendTestEmail(String email) {
         try {
@@ -230,33 +220,21 @@ public class EmailService {
     /**
      * Build email verification content
      */
-    private String buildVerificationEmailContent(String userName, String code) {
-        return String.format(
-            "Hello %s,\n\n" +
-            "Thank you for registering with Dewel! Please use the following verification code to complete your registration:\n\n" +
-            "Verification Code: %s\n\n" +
-            "This code will expire in %d minutes.\n\n" +
-            "If you didn't create an account with us, please ignore this email.\n\n" +
-            "Best regards,\n" +
-            "The Dewel Team",
-            userName, code, verificationCodeExpiryMinutes
-        );
+    private EmailTemplateService.RenderedEmail buildVerificationEmailContent(String userName, String code) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", userName);
+        variables.put("code", code);
+        return emailTemplateService.render("verification", LocaleContextHolder.getLocale(), variables);
     }
 
     /**
      * Build password reset email content
      */
-    private String buildPasswordResetEmailContent(String userName, String code) {
-        return String.format(
-            "Hello %s,\n\n" +
-            "You requested to reset your password. Please use the following reset code:\n\n" +
-            "Reset Code: %s\n\n" +
-            "This code will expire in %d minutes.\n\n" +
-            "If you didn't request a password reset, please ignore this email.\n\n" +
-            "Best regards,\n" +
-            "The Dewel Team",
-            userName, code, verificationCodeExpiryMinutes
-        );
+    private EmailTemplateService.RenderedEmail buildPasswordResetEmailContent(String userName, String code) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", userName);
+        variables.put("code", code);
+        return emailTemplateService.render("password-reset", LocaleContextHolder.getLocale(), variables);
     }
 
     /**
@@ -279,18 +257,20 @@ public class EmailService {
             message.setTo(email);
             message.setSubject("You're Invited to Join a Group - Dewel");
             
-            String emailContent;
+            EmailTemplateService.RenderedEmail emailContent;
             if (groupCode != null && !groupCode.trim().isEmpty()) {
                 emailContent = buildGroupInvitationEmailContent(inviterName, groupCode);
             } else {
                 emailContent = buildGeneralGroupInvitationEmailContent(inviterName);
             }
             
-            message.setText(emailContent);
+            message.setText(emailContent.text());
             
-            log.debug("Attempting to send group invitation email from: {} to: {}", fromEmail, email);
-            mailSender.send(message);
-            log.info("Group invitation email sent successfully to: {}", email);
+            log.debug("Queueing group invitation email from: {} to: {}", fromEmail, email);
+            if (!emailDispatchService.dispatch(message, emailContent.html())) {
+                return false;
+            }
+            log.info("Group invitation email queued for: {}", email);
             
             return true;
             
@@ -319,11 +299,14 @@ public class EmailService {
             message.setFrom(fromEmail);
             message.setTo(email);
             message.setSubject("Verify Your Group Invitation - Dewel");
-            message.setText(buildGroupInvitationVerificationEmailContent(userName, invitationToken));
+            EmailTemplateService.RenderedEmail content = buildGroupInvitationVerificationEmailContent(userName, invitationToken);
+            message.setText(content.text());
             
-            log.debug("Attempting to send group invitation verification email from: {} to: {}", fromEmail, email);
-            mailSender.send(message);
-            log.info("Group invitation verification email sent successfully to: {}", email);
+            log.debug("Queueing group invitation verification email from: {} to: {}", fromEmail, email);
+            if (!emailDispatchService.dispatch(message, content.html())) {
+                return false;
+            }
+            log.info("Group invitation verification email queued for: {}", email);
             
             return true;
             
@@ -333,41 +316,24 @@ public class EmailService {
         }
     }
 
-    private String buildGroupInvitationEmailContent(String inviterName, String groupCode) {
-        return String.format(
-            "Hello!\n\n" +
-            "%s has invited you to join a group on Dewel.\n\n" +
-            "To join the group, please use the following code in the Dewel app:\n" +
-            "Group Code: %s\n\n" +
-            "If you don't have the Dewel app, you can download it from your app store.\n\n" +
-            "Best regards,\n" +
-            "The Dewel Team",
-            inviterName, groupCode
-        );
+    private EmailTemplateService.RenderedEmail buildGroupInvitationEmailContent(String inviterName, String groupCode) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("inviterName", inviterName);
+        variables.put("groupCode", groupCode);
+        return emailTemplateService.render("group-invitation", LocaleContextHolder.getLocale(), variables);
     }
 
-    private String buildGeneralGroupInvitationEmailContent(String inviterName) {
-        return String.format(
-            "Hello!\n\n" +
-            "%s has invited you to join Dewel, a platform for managing groups and events.\n\n" +
-            "To get started, please download the Dewel app from your app store and create an account.\n\n" +
-            "Best regards,\n" +
-            "The Dewel Team",
-            inviterName
-        );
+    private EmailTemplateService.RenderedEmail buildGeneralGroupInvitationEmailContent(String inviterName) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("inviterName", inviterName);
+        return emailTemplateService.render("general-invitation", LocaleContextHolder.getLocale(), variables);
     }
 
-    private String buildGroupInvitationVerificationEmailContent(String userName, String invitationToken) {
-        return String.format(
-            "Hello %s!\n\n" +
-            "You requested to join a group on Dewel. To complete the process, please click the link below:\n\n" +
-            "Verification Link: https://dewel.com/verify-invitation?token=%s\n\n" +
-            "This link will expire in 24 hours.\n\n" +
-            "If you didn't request this invitation, please ignore this email.\n\n" +
-            "Best regards,\n" +
-            "The Dewel Team",
-            userName, invitationToken
-        );
+    private EmailTemplateService.RenderedEmail buildGroupInvitationVerificationEmailContent(String userName, String invitationToken) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", userName);
+        variables.put("token", invitationToken);
+        return emailTemplateService.render("invitation-verification", LocaleContextHolder.getLocale(), variables);
     }
 
     /**
@@ -390,11 +356,15 @@ public class EmailService {
             message.setFrom(fromEmail);
             message.setTo(email);
             message.setSubject("You're Invited to Join " + groupName + " - Dewel");
-            message.setText(buildEnhancedGroupInvitationEmailContent(inviterName, groupName, invitationCode, expiresAt, customMessage));
+            EmailTemplateService.RenderedEmail content = buildEnhancedGroupInvitationEmailContent(
+                    inviterName, groupName, invitationCode, expiresAt, customMessage);
+            message.setText(content.text());
             
-            log.debug("Attempting to send enhanced group invitation email from: {} to: {}", fromEmail, email);
-            mailSender.send(message);
-            log.info("Enhanced group invitation email sent successfully to: {}", email);
+            log.debug("Queueing enhanced group invitation email from: {} to: {}", fromEmail, email);
+            if (!emailDispatchService.dispatch(message, content.html())) {
+                return false;
+            }
+            log.info("Enhanced group invitation email queued for: {}", email);
             
             return true;
             
@@ -445,25 +415,15 @@ public class EmailService {
         return code.toString();
     }
 
-    private String buildEnhancedGroupInvitationEmailContent(String inviterName, String groupName, 
+    private EmailTemplateService.RenderedEmail buildEnhancedGroupInvitationEmailContent(String inviterName, String groupName, 
                                                           String invitationCode, LocalDateTime expiresAt, String customMessage) {
-        StringBuilder content = new StringBuilder();
-        content.append("Hello!\n\n");
-        content.append(inviterName).append(" has invited you to join the group \"").append(groupName).append("\" on Dewel.\n\n");
-        
-        if (customMessage != null && !customMessage.trim().isEmpty()) {
-            content.append("Message from ").append(inviterName).append(": ").append(customMessage).append("\n\n");
-        }
-        
-        content.append("To join the group, please use the following invitation code in the Dewel app:\n");
-        content.append("Invitation Code: ").append(invitationCode).append("\n\n");
-        
-        content.append("This invitation will expire on: ").append(expiresAt.toString()).append("\n\n");
-        
-        content.append("If you don't have the Dewel app, you can download it from your app store.\n\n");
-        content.append("Best regards,\nThe Dewel Team");
-        
-        return content.toString();
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("inviterName", inviterName);
+        variables.put("groupName", groupName);
+        variables.put("invitationCode", invitationCode);
+        variables.put("expiresAt", expiresAt);
+        variables.put("customMessage", customMessage);
+        return emailTemplateService.render("enhanced-invitation", LocaleContextHolder.getLocale(), variables);
     }
 
     private String buildSMSInvitationContent(String inviterName, String groupName, 
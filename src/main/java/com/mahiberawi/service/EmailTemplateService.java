@@ -0,0 +1,104 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.util.EmailTemplate;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads the email templates under templates/email once at startup and renders
+ * plain-text and HTML bodies from them. Localized variants are named
+ * {@code <template>_<language>.<ext>} and fall back to {@code <template>.<ext>}.
+ */
+@Slf4j
+@Service
+public class EmailTemplateService {
+
+    private static final String TEMPLATE_LOCATION = "classpath*:templates/email/*.*";
+
+    private final Map<String, EmailTemplate> templates = new HashMap<>();
+    private final Map<String, EmailTemplate> boundTemplates = new ConcurrentHashMap<>();
+
+    @Value("${app.email.app-name:Dewel}")
+    private String appName;
+
+    @Value("${app.email.verification.expiry-minutes:15}")
+    private int verificationCodeExpiryMinutes;
+
+    @Value("${app.email.invitation-verify-url:https://dewel.com/verify-invitation}")
+    private String invitationVerifyUrl;
+
+    @PostConstruct
+    public void loadTemplates() throws IOException {
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(TEMPLATE_LOCATION);
+        for (Resource resource : resources) {
+            String filename = resource.getFilename();
+            if (filename == null || !(filename.endsWith(".txt") || filename.endsWith(".html"))) {
+                continue;
+            }
+            String source = resource.getContentAsString(StandardCharsets.UTF_8);
+            if (source.endsWith("\n")) {
+                source = source.substring(0, source.length() - 1);
+            }
+            templates.put(filename, EmailTemplate.compile(source, filename.endsWith(".html")));
+        }
+        log.info("Loaded {} email templates", templates.size());
+    }
+
+    public RenderedEmail render(String name, Locale locale, Map<String, ?> variables) {
+        String text = resolve(name, locale, "txt").render(variables);
+        EmailTemplate html = resolveOptional(name, locale, "html");
+        return new RenderedEmail(text, html != null ? html.render(variables) : null);
+    }
+
+    private EmailTemplate resolve(String name, Locale locale, String extension) {
+        EmailTemplate template = resolveOptional(name, locale, extension);
+        if (template == null) {
+            throw new IllegalStateException("Email template not found: " + name + "." + extension);
+        }
+        return template;
+    }
+
+    private EmailTemplate resolveOptional(String name, Locale locale, String extension) {
+        String language = locale != null ? locale.getLanguage() : "";
+        String cacheKey = name + "|" + language + "|" + extension;
+
+        EmailTemplate cached = boundTemplates.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        EmailTemplate source = language.isEmpty() ? null : templates.get(name + "_" + language + "." + extension);
+        if (source == null) {
+            source = templates.get(name + "." + extension);
+        }
+        if (source == null) {
+            return null;
+        }
+
+        EmailTemplate bound = source.bind(staticVariables());
+        boundTemplates.putIfAbsent(cacheKey, bound);
+        return bound;
+    }
+
+    private Map<String, Object> staticVariables() {
+        return Map.of(
+                "appName", appName,
+                "expiryMinutes", verificationCodeExpiryMinutes,
+                "invitationVerifyUrl", invitationVerifyUrl
+        );
+    }
+
+    public record RenderedEmail(String text, String html) {
+    }
+}
@@ -0,0 +1,297 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.config.EqubLatePaymentConfig;
+import com.mahiberawi.entity.LatePaymentRun;
+import com.mahiberawi.repository.EqubRoundRepository;
+import com.mahiberawi.repository.EqubRoundRepository.PastDeadlineRound;
+import com.mahiberawi.repository.LatePaymentRunRepository;
+import com.mahiberawi.repository.PaymentRepository;
+import com.mahiberawi.repository.PaymentRepository.PendingGroupPayment;
+import com.mahiberawi.util.TimeOrderedIds;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Flags equb payments that are still pending once their round's deadline and grace
+ * period have passed, charges the round's penalty on them and reminds the members.
+ *
+ * A run collects the past-deadline rounds page by page, then processes their groups in
+ * parallel on a bounded pool. Within a group, members are taken a chunk at a time in
+ * payer id order; each chunk locks the members' unflagged pending payments, flags them,
+ * records penalties, posts them to the ledger, writes one reminder per member and moves
+ * the group's checkpoint, all in one transaction. Only unflagged payments are ever
+ * picked up, so a payment is penalised at most once however often a run is repeated,
+ * and a run that stopped part way is resumed with its cutoff from the checkpoints.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EqubLatePaymentService {
+
+    private static final String FIRST = "";
+    private static final String INSERT_CHECKPOINT = "INSERT INTO equb_late_payment_checkpoints " +
+            "(id, run_id, group_id, last_payer_id, payments_flagged, penalties_total, updated_at) " +
+            "SELECT ?, ?, ?, ?, 0, 0, ? WHERE NOT EXISTS " +
+            "(SELECT 1 FROM equb_late_payment_checkpoints WHERE run_id = ? AND group_id = ?)";
+    private static final String ADVANCE_CHECKPOINT = "UPDATE equb_late_payment_checkpoints SET last_payer_id = ?, " +
+            "payments_flagged = payments_flagged + ?, penalties_total = penalties_total + ?, completed_at = ?, " +
+            "updated_at = ? WHERE run_id = ? AND group_id = ?";
+
+    private final EqubRoundRepository equbRoundRepository;
+    private final PaymentRepository paymentRepository;
+    private final LatePaymentRunRepository latePaymentRunRepository;
+    private final PaymentBatchWriter paymentBatchWriter;
+    private final EqubLatePaymentConfig latePaymentConfig;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService workers;
+    private volatile Report lastReport;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(latePaymentConfig.getWorkers(), runnable -> {
+            Thread thread = new Thread(runnable, "equb-late-payments-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.shutdownNow();
+    }
+
+    @Scheduled(cron = "${app.equb.late-payments.cron:0 0 * * * *}")
+    public void processScheduled() {
+        if (latePaymentConfig.isEnabled()) {
+            run();
+        }
+    }
+
+    /**
+     * Run the engine now, resuming the last run if it did not finish. Returns null if a
+     * run is already in progress.
+     */
+    public Report run() {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            Report report = runPass();
+            lastReport = report;
+            log.info("Equb late payment run {} ({}) processed {} groups: {} payments flagged, {} in penalties, " +
+                            "{} reminders, {} groups failed, {} ms",
+                    report.runId(), report.resumed() ? "resumed" : "new", report.groups(), report.paymentsFlagged(),
+                    report.penaltiesTotal(), report.reminders(), report.failedGroups(), report.durationMillis());
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    private Report runPass() {
+        long startNanos = System.nanoTime();
+        LatePaymentRun run = latePaymentRunRepository.findFirstByFinishedAtIsNullAndStartedAtAfterOrderByStartedAtDesc(
+                LocalDateTime.now().minus(latePaymentConfig.getResumeWithin())).orElse(null);
+        boolean resumed = run != null;
+        if (run == null) {
+            run = new LatePaymentRun();
+            run.setCutoff(LocalDateTime.now());
+            run.setStartedAt(run.getCutoff());
+            run = latePaymentRunRepository.save(run);
+        }
+
+        Map<String, List<PastDeadlineRound>> overdueByGroup = findOverdueRounds(run.getCutoff());
+        Tally tally = new Tally();
+        String runId = run.getId();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(overdueByGroup.size());
+        overdueByGroup.forEach((groupId, rounds) -> tasks.add(CompletableFuture.runAsync(() -> {
+            try {
+                processGroup(runId, groupId, rounds, tally);
+            } catch (Exception e) {
+                // Left unfinished; the next run resumes the group from its checkpoint
+                log.error("Equb late payment run {} stopped in group {}: {}", runId, groupId, e.getMessage());
+                tally.failedGroups.incrementAndGet();
+            }
+        }, workers)));
+        CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+
+        Totals totals = jdbcTemplate.queryForObject("SELECT COUNT(*), COALESCE(SUM(payments_flagged), 0), " +
+                        "COALESCE(SUM(penalties_total), 0) FROM equb_late_payment_checkpoints WHERE run_id = ?",
+                (row, rowNum) -> new Totals(row.getInt(1), row.getInt(2), row.getBigDecimal(3)), runId);
+        run.setGroupsProcessed(totals.groups());
+        run.setPaymentsFlagged(totals.paymentsFlagged());
+        run.setPenaltiesTotal(totals.penaltiesTotal());
+        if (tally.failedGroups.get() == 0) {
+            run.setFinishedAt(LocalDateTime.now());
+        }
+        latePaymentRunRepository.save(run);
+
+        return new Report(runId, run.getCutoff(), resumed, overdueByGroup.size(), tally.flagged.get(),
+                tally.penalties(), tally.reminders.get(), tally.failedGroups.get(), run.getFinishedAt() != null,
+                Math.max((System.nanoTime() - startNanos) / 1_000_000, 1));
+    }
+
+    // Active rounds of each group whose deadline plus grace period is before the cutoff
+    private Map<String, List<PastDeadlineRound>> findOverdueRounds(LocalDateTime cutoff) {
+        Map<String, List<PastDeadlineRound>> byGroup = new LinkedHashMap<>();
+        String afterId = FIRST;
+        while (true) {
+            List<PastDeadlineRound> page = equbRoundRepository.findPastDeadline(cutoff, afterId,
+                    PageRequest.of(0, latePaymentConfig.getRoundPageSize()));
+            for (PastDeadlineRound round : page) {
+                int graceDays = round.getGracePeriodDays() != null ? round.getGracePeriodDays() : 0;
+                if (round.getPaymentDeadline().plusDays(graceDays).isBefore(cutoff)) {
+                    byGroup.computeIfAbsent(round.getGroupId(), key -> new ArrayList<>()).add(round);
+                }
+            }
+            if (page.size() < latePaymentConfig.getRoundPageSize()) {
+                return byGroup;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    private void processGroup(String runId, String groupId, List<PastDeadlineRound> rounds, Tally tally) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(INSERT_CHECKPOINT, TimeOrderedIds.uuid(), runId, groupId, FIRST, now, runId, groupId);
+        Checkpoint checkpoint = jdbcTemplate.queryForObject("SELECT last_payer_id, completed_at " +
+                        "FROM equb_late_payment_checkpoints WHERE run_id = ? AND group_id = ?",
+                (row, rowNum) -> new Checkpoint(row.getString(1), row.getTimestamp(2) != null), runId, groupId);
+        if (checkpoint.completed()) {
+            return;
+        }
+
+        Map<String, PastDeadlineRound> roundsById = rounds.stream()
+                .collect(Collectors.toMap(PastDeadlineRound::getId, round -> round));
+        String afterPayerId = checkpoint.lastPayerId();
+        boolean done = false;
+        while (!done) {
+            String after = afterPayerId;
+            ChunkResult chunk = transactionTemplate.execute(status -> processChunk(runId, groupId, roundsById, after));
+            tally.add(chunk);
+            afterPayerId = chunk.lastPayerId();
+            done = chunk.members() < latePaymentConfig.getChunkSize();
+        }
+    }
+
+    private ChunkResult processChunk(String runId, String groupId, Map<String, PastDeadlineRound> rounds,
+                                     String afterPayerId) {
+        int chunkSize = latePaymentConfig.getChunkSize();
+        List<String> payerIds = paymentRepository.findUnflaggedPayerIds(rounds.keySet(), afterPayerId,
+                PageRequest.of(0, chunkSize));
+        String lastPayerId = payerIds.isEmpty() ? afterPayerId : payerIds.get(payerIds.size() - 1);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        List<PendingGroupPayment> payments = payerIds.isEmpty()
+                ? List.of()
+                : paymentRepository.lockUnflaggedPayments(rounds.keySet(), payerIds);
+        BigDecimal penaltiesTotal = paymentBatchWriter.flagLate(groupId, payments,
+                payment -> penalty(rounds.get(payment.getEqubRoundId())));
+
+        // One reminder per member, covering all of their payments flagged in this chunk
+        Map<String, List<PendingGroupPayment>> byPayer = payments.stream()
+                .collect(Collectors.groupingBy(PendingGroupPayment::getPayerId, LinkedHashMap::new, Collectors.toList()));
+        paymentBatchWriter.notify(new ArrayList<>(byPayer.keySet()), payerId -> reminderMessage(byPayer.get(payerId), rounds));
+
+        boolean completed = payerIds.size() < chunkSize;
+        jdbcTemplate.update(ADVANCE_CHECKPOINT, lastPayerId, payments.size(), penaltiesTotal,
+                new SqlParameterValue(Types.TIMESTAMP, completed ? now : null), now, runId, groupId);
+        return new ChunkResult(payerIds.size(), lastPayerId, payments.size(), penaltiesTotal, byPayer.size());
+    }
+
+    private static BigDecimal penalty(PastDeadlineRound round) {
+        return round != null && round.getPenaltyAmount() != null ? round.getPenaltyAmount() : BigDecimal.ZERO;
+    }
+
+    private static String reminderMessage(List<PendingGroupPayment> payments, Map<String, PastDeadlineRound> rounds) {
+        PastDeadlineRound first = rounds.get(payments.get(0).getEqubRoundId());
+        TreeSet<Integer> roundNumbers = new TreeSet<>();
+        BigDecimal due = BigDecimal.ZERO;
+        BigDecimal penalties = BigDecimal.ZERO;
+        for (PendingGroupPayment payment : payments) {
+            PastDeadlineRound round = rounds.get(payment.getEqubRoundId());
+            roundNumbers.add(round.getRoundNumber());
+            due = due.add(payment.getAmount());
+            penalties = penalties.add(penalty(round));
+        }
+        String roundList = roundNumbers.stream().map(String::valueOf).collect(Collectors.joining(", "));
+        String message = String.format("Your Equb payment for %s %s in group '%s' is overdue. Amount due: %s",
+                roundNumbers.size() == 1 ? "round" : "rounds", roundList, first.getGroupName(), due);
+        return penalties.signum() > 0 ? message + ". A late penalty of " + penalties + " has been added." : message + ".";
+    }
+
+    private record Checkpoint(String lastPayerId, boolean completed) {
+    }
+
+    private record ChunkResult(int members, String lastPayerId, int flagged, BigDecimal penalties, int reminders) {
+    }
+
+    private record Totals(int groups, int paymentsFlagged, BigDecimal penaltiesTotal) {
+    }
+
+    private static class Tally {
+        final AtomicInteger flagged = new AtomicInteger();
+        final AtomicInteger reminders = new AtomicInteger();
+        final AtomicInteger failedGroups = new AtomicInteger();
+        private BigDecimal penalties = BigDecimal.ZERO;
+
+        synchronized void add(ChunkResult chunk) {
+            flagged.addAndGet(chunk.flagged());
+            reminders.addAndGet(chunk.reminders());
+            penalties = penalties.add(chunk.penalties());
+        }
+
+        synchronized BigDecimal penalties() {
+            return penalties;
+        }
+    }
+
+    /**
+     * Outcome of one pass. The counts cover what this pass did; a resumed run's earlier
+     * work is included in the totals stored on the run itself. A run is finished once
+     * every group it found completed.
+     */
+    public record Report(String runId, LocalDateTime cutoff, boolean resumed, int groups, int paymentsFlagged,
+                         BigDecimal penaltiesTotal, int reminders, int failedGroups, boolean finished,
+                         long durationMillis) {
+    }
+}
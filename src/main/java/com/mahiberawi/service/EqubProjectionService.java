@@ -0,0 +1,326 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.dto.equb.EqubProjectionResponse;
+import com.mahiberawi.dto.equb.EqubProjectionResponse.MemberSchedule;
+import com.mahiberawi.dto.equb.EqubProjectionResponse.ProjectedRound;
+import com.mahiberawi.dto.equb.EqubProjectionResponse.RoundPhase;
+import com.mahiberawi.dto.equb.EqubWhatIfRequest;
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.entity.enums.EqubRoundStatus;
+import com.mahiberawi.entity.enums.EqubSelectionMethod;
+import com.mahiberawi.entity.enums.GroupMemberStatus;
+import com.mahiberawi.exception.ResourceNotFoundException;
+import com.mahiberawi.exception.UnauthorizedException;
+import com.mahiberawi.repository.EqubRoundRepository;
+import com.mahiberawi.repository.EqubRoundRepository.RoundHistory;
+import com.mahiberawi.repository.GroupMemberRepository;
+import com.mahiberawi.repository.GroupMemberRepository.TurnOrderMember;
+import com.mahiberawi.repository.GroupRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Projects an equb group's current cycle: the payout calendar of its remaining rounds and
+ * each member's contributions, payout and net position. In a cycle every member receives
+ * the pot once; with fixed turns the remaining members receive it in turn order, with a
+ * lottery each remaining round is equally likely to go to any of them.
+ *
+ * The projection itself is a single pass over the members and rounds. Projections of the
+ * group as it is are cached and recomputed when a cheap fingerprint of the group, its
+ * members or its rounds changes; what-if projections are computed on each request.
+ */
+@Service
+@RequiredArgsConstructor
+public class EqubProjectionService {
+
+    private static final String FINGERPRINT = "SELECT " +
+            "(SELECT COUNT(*) FROM group_members WHERE group_id = ?), " +
+            "(SELECT MAX(updated_at) FROM group_members WHERE group_id = ?), " +
+            "(SELECT COUNT(*) FROM equb_rounds WHERE group_id = ?), " +
+            "(SELECT MAX(updated_at) FROM equb_rounds WHERE group_id = ?)";
+
+    private final GroupRepository groupRepository;
+    private final GroupMemberRepository groupMemberRepository;
+    private final EqubRoundRepository equbRoundRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<String, CachedProjection> cache = new ConcurrentHashMap<>();
+
+    @Transactional(readOnly = true)
+    public EqubProjectionResponse getProjection(String groupId, User user) {
+        Group group = requireEqubMember(groupId, user);
+        Fingerprint fingerprint = fingerprint(group);
+        CachedProjection cached = cache.get(groupId);
+        if (cached != null && cached.fingerprint().equals(fingerprint)) {
+            return cached.projection();
+        }
+        EqubProjectionResponse projection = project(inputs(group), null, LocalDateTime.now());
+        cache.put(groupId, new CachedProjection(fingerprint, projection));
+        return projection;
+    }
+
+    @Transactional(readOnly = true)
+    public EqubProjectionResponse getWhatIfProjection(String groupId, EqubWhatIfRequest whatIf, User user) {
+        Group group = requireEqubMember(groupId, user);
+        return project(inputs(group), whatIf, LocalDateTime.now());
+    }
+
+    /**
+     * Project the cycle from the given inputs, adjusted by whatIf when it is not null.
+     */
+    public static EqubProjectionResponse project(Inputs inputs, EqubWhatIfRequest whatIf, LocalDateTime now) {
+        Set<String> leaving = whatIf != null && whatIf.getLeavingUserIds() != null ? whatIf.getLeavingUserIds() : Set.of();
+        Set<String> late = whatIf != null && whatIf.getLateUserIds() != null ? whatIf.getLateUserIds() : Set.of();
+        BigDecimal contribution = whatIf != null && whatIf.getEqubAmount() != null ? whatIf.getEqubAmount() : inputs.equbAmount();
+        int roundDays = whatIf != null && whatIf.getPaymentDeadlineDays() != null
+                ? whatIf.getPaymentDeadlineDays() : inputs.paymentDeadlineDays();
+        BigDecimal penalty = inputs.penaltyAmount() != null ? inputs.penaltyAmount() : BigDecimal.ZERO;
+
+        List<Member> members = new ArrayList<>(inputs.members().size());
+        Map<String, String> names = new HashMap<>();
+        for (Member member : inputs.members()) {
+            names.put(member.userId(), member.name());
+            if (!leaving.contains(member.userId())) {
+                members.add(member);
+            }
+        }
+        int memberCount = members.size();
+        BigDecimal pot = contribution.multiply(BigDecimal.valueOf(memberCount));
+
+        List<String> memberIds = members.stream().map(Member::userId).toList();
+        List<Round> cycle = currentCycle(memberIds, inputs.rounds());
+        Map<String, Round> received = new HashMap<>();
+        for (Round round : cycle) {
+            received.put(round.winnerId(), round);
+        }
+        List<Member> remaining = members.stream().filter(member -> !received.containsKey(member.userId())).toList();
+        int remainingRounds = remaining.size();
+        long lateMembers = members.stream().filter(member -> late.contains(member.userId())).count();
+        BigDecimal penaltiesPerRound = penalty.multiply(BigDecimal.valueOf(lateMembers));
+        // The draw waits for every payment, so late payers push the payout to the end of the grace period
+        int payoutDelayDays = lateMembers > 0 ? inputs.gracePeriodDays() : 0;
+
+        Round current = inputs.rounds().stream()
+                .filter(round -> round.status() == EqubRoundStatus.ACTIVE)
+                .reduce((first, second) -> second)
+                .orElse(null);
+        int lastNumber = inputs.rounds().isEmpty() ? 0 : inputs.rounds().get(inputs.rounds().size() - 1).roundNumber();
+        int firstRemaining = current != null ? current.roundNumber() : lastNumber + 1;
+        LocalDateTime firstStart = current != null && current.startDate() != null ? current.startDate() : now;
+
+        List<ProjectedRound> rounds = new ArrayList<>(cycle.size() + remainingRounds);
+        for (Round round : cycle) {
+            rounds.add(ProjectedRound.builder()
+                    .roundNumber(round.roundNumber())
+                    .phase(RoundPhase.COMPLETED)
+                    .startDate(round.startDate())
+                    .paymentDeadline(round.paymentDeadline())
+                    .payoutDate(round.payoutDate())
+                    .potAmount(round.totalAmount())
+                    .expectedPenalties(BigDecimal.ZERO)
+                    .winnerId(round.winnerId())
+                    .winnerName(names.get(round.winnerId()))
+                    .build());
+        }
+
+        boolean fixedTurns = inputs.selectionMethod() != EqubSelectionMethod.LOTTERY;
+        LocalDateTime cycleEnd = cycle.isEmpty() ? null : cycle.get(cycle.size() - 1).payoutDate();
+        Map<String, Integer> payoutRounds = new HashMap<>();
+        Map<String, LocalDateTime> payoutDates = new HashMap<>();
+        for (int i = 0; i < remainingRounds; i++) {
+            LocalDateTime start = firstStart.plusDays((long) i * roundDays);
+            LocalDateTime deadline = i == 0 && current != null && current.paymentDeadline() != null
+                    ? current.paymentDeadline()
+                    : start.plusDays(roundDays);
+            LocalDateTime payout = deadline.plusDays(payoutDelayDays);
+            Member winner = fixedTurns ? remaining.get(i) : null;
+            if (winner != null) {
+                payoutRounds.put(winner.userId(), firstRemaining + i);
+                payoutDates.put(winner.userId(), payout);
+            }
+            rounds.add(ProjectedRound.builder()
+                    .roundNumber(firstRemaining + i)
+                    .phase(i == 0 && current != null ? RoundPhase.CURRENT : RoundPhase.PROJECTED)
+                    .startDate(start)
+                    .paymentDeadline(deadline)
+                    .payoutDate(payout)
+                    .potAmount(pot)
+                    .expectedPenalties(penaltiesPerRound)
+                    .winnerId(winner != null ? winner.userId() : null)
+                    .winnerName(winner != null ? winner.name() : null)
+                    .build());
+            cycleEnd = payout;
+        }
+
+        int cycleRounds = cycle.size() + remainingRounds;
+        BigDecimal totalContribution = contribution.multiply(BigDecimal.valueOf(cycleRounds));
+        BigDecimal remainingContribution = contribution.multiply(BigDecimal.valueOf(remainingRounds));
+        Double expectedRound = remainingRounds > 0 ? firstRemaining + (remainingRounds - 1) / 2.0 : null;
+
+        List<MemberSchedule> schedules = new ArrayList<>(memberCount);
+        for (Member member : members) {
+            Round receivedIn = received.get(member.userId());
+            BigDecimal payout = receivedIn != null && receivedIn.totalAmount() != null ? receivedIn.totalAmount() : pot;
+            BigDecimal penalties = late.contains(member.userId())
+                    ? penalty.multiply(BigDecimal.valueOf(remainingRounds))
+                    : BigDecimal.ZERO;
+            MemberSchedule.MemberScheduleBuilder schedule = MemberSchedule.builder()
+                    .userId(member.userId())
+                    .name(member.name())
+                    .received(receivedIn != null)
+                    .payoutAmount(payout)
+                    .contributionPerRound(contribution)
+                    .totalContribution(totalContribution)
+                    .remainingContribution(remainingContribution)
+                    .projectedPenalties(penalties)
+                    .netPosition(payout.subtract(totalContribution).subtract(penalties));
+            if (receivedIn != null) {
+                schedule.payoutRound(receivedIn.roundNumber())
+                        .payoutDate(receivedIn.payoutDate())
+                        .earliestPayoutRound(receivedIn.roundNumber())
+                        .latestPayoutRound(receivedIn.roundNumber());
+            } else if (fixedTurns) {
+                Integer round = payoutRounds.get(member.userId());
+                schedule.payoutRound(round)
+                        .payoutDate(payoutDates.get(member.userId()))
+                        .expectedPayoutRound(round != null ? round.doubleValue() : null)
+                        .earliestPayoutRound(round)
+                        .latestPayoutRound(round);
+            } else {
+                schedule.expectedPayoutRound(expectedRound)
+                        .earliestPayoutRound(firstRemaining)
+                        .latestPayoutRound(firstRemaining + remainingRounds - 1);
+            }
+            schedules.add(schedule.build());
+        }
+
+        return EqubProjectionResponse.builder()
+                .groupId(inputs.groupId())
+                .selectionMethod(inputs.selectionMethod())
+                .memberCount(memberCount)
+                .contributionPerRound(contribution)
+                .potPerRound(pot)
+                .cycleRounds(cycleRounds)
+                .completedRounds(cycle.size())
+                .remainingRounds(remainingRounds)
+                .cycleEndDate(cycleEnd)
+                .whatIf(whatIf != null)
+                .computedAt(now)
+                .rounds(rounds)
+                .members(schedules)
+                .build();
+    }
+
+    /**
+     * Completed rounds of the current cycle, oldest first. A cycle ends once every one of
+     * the members has received the pot, and the next completed round starts a new one.
+     */
+    public static List<Round> currentCycle(Collection<String> memberIds, List<Round> history) {
+        Set<String> members = new HashSet<>(memberIds);
+        Set<String> winners = new LinkedHashSet<>();
+        List<Round> cycle = new ArrayList<>();
+        for (Round round : history) {
+            if (round.status() != EqubRoundStatus.COMPLETED || round.winnerId() == null) {
+                continue;
+            }
+            if (!members.isEmpty() && winners.containsAll(members)) {
+                winners.clear();
+                cycle.clear();
+            }
+            // Winners who have since left no longer hold a turn, but their round stays in the cycle
+            if (members.contains(round.winnerId())) {
+                winners.add(round.winnerId());
+            }
+            cycle.add(round);
+        }
+        if (!members.isEmpty() && winners.containsAll(members)) {
+            cycle.clear();
+        }
+        return cycle;
+    }
+
+    /**
+     * Active members of the group in turn order, with the rounds the group has had.
+     */
+    public Inputs inputs(Group group) {
+        List<Member> members = groupMemberRepository.findInTurnOrder(group.getId(), GroupMemberStatus.ACTIVE).stream()
+                .map(member -> new Member(member.getUserId(), name(member)))
+                .toList();
+        List<Round> rounds = equbRoundRepository.findHistory(group.getId()).stream()
+                .map(EqubProjectionService::round)
+                .toList();
+        return new Inputs(group.getId(), group.getEqubAmount() != null ? group.getEqubAmount() : BigDecimal.ZERO,
+                group.getEqubPenaltyAmount(), group.getEqubSelectionMethod(),
+                group.getEqubPaymentDeadlineDays() != null ? group.getEqubPaymentDeadlineDays() : 15,
+                group.getEqubGracePeriodDays() != null ? group.getEqubGracePeriodDays() : 0,
+                members, rounds);
+    }
+
+    private Group requireEqubMember(String groupId, User user) {
+        Group group = groupRepository.findById(groupId)
+                .orElseThrow(() -> new ResourceNotFoundException("Group not found"));
+
+        if (!Boolean.TRUE.equals(group.getIsEqubGroup())) {
+            throw new IllegalStateException("This group is not configured for Equb");
+        }
+
+        if (!groupMemberRepository.existsByGroupAndUser(group, user)) {
+            throw new UnauthorizedException("You are not a member of this group");
+        }
+        return group;
+    }
+
+    private Fingerprint fingerprint(Group group) {
+        String id = group.getId();
+        return jdbcTemplate.queryForObject(FINGERPRINT, (row, rowNum) -> new Fingerprint(LocalDate.now(),
+                group.getUpdatedAt(), row.getLong(1), row.getTimestamp(2), row.getLong(3), row.getTimestamp(4)),
+                id, id, id, id);
+    }
+
+    private static String name(TurnOrderMember member) {
+        return member.getFirstName() + " " + member.getLastName();
+    }
+
+    private static Round round(RoundHistory round) {
+        return new Round(round.getRoundNumber(), round.getStatus(), round.getWinnerId(), round.getStartDate(),
+                round.getPaymentDeadline(),
+                round.getWinnerSelectedAt() != null ? round.getWinnerSelectedAt() : round.getPaymentDeadline(),
+                round.getTotalAmount());
+    }
+
+    public record Inputs(String groupId, BigDecimal equbAmount, BigDecimal penaltyAmount,
+                         EqubSelectionMethod selectionMethod, int paymentDeadlineDays, int gracePeriodDays,
+                         List<Member> members, List<Round> rounds) {
+    }
+
+    public record Member(String userId, String name) {
+    }
+
+    public record Round(int roundNumber, EqubRoundStatus status, String winnerId, LocalDateTime startDate,
+                        LocalDateTime paymentDeadline, LocalDateTime payoutDate, BigDecimal totalAmount) {
+    }
+
+    // Day included so projections anchored on today move on even if nothing changes
+    private record Fingerprint(LocalDate day, LocalDateTime groupUpdatedAt, long members, Object membersUpdatedAt,
+                               long rounds, Object roundsUpdatedAt) {
+    }
+
+    private record CachedProjection(Fingerprint fingerprint, EqubProjectionResponse projection) {
+    }
+}
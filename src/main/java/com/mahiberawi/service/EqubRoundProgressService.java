@@ -0,0 +1,86 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.entity.PaymentStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Maintains the progress counters on equb_rounds: members expected to pay, payments
+ * completed, amount collected and payments flagged late. A cancelled or failed payment
+ * is no longer expected, so it leaves the member count until it moves back. Payment entity writes are applied through
+ * PaymentChangeListener; bulk status updates report their changes here directly. Each
+ * change is a single relative UPDATE in the caller's transaction, so concurrent payments
+ * never overwrite each other's counts.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EqubRoundProgressService {
+
+    private static final String ADD = "UPDATE equb_rounds SET member_count = COALESCE(member_count, 0) + ?, " +
+            "paid_count = COALESCE(paid_count, 0) + ?, " +
+            "collected_amount = COALESCE(collected_amount, 0) + ?, late_count = COALESCE(late_count, 0) + ?, " +
+            "updated_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Apply count payments of the round, worth amount in total, moving from one status to another.
+     * Either status may be null for payments created or removed.
+     */
+    public void statusChanged(String roundId, PaymentStatus from, PaymentStatus to, long count, BigDecimal amount) {
+        long paid = (to == PaymentStatus.COMPLETED ? count : 0) - (from == PaymentStatus.COMPLETED ? count : 0);
+        // New payments are counted when the round starts
+        long members = from == null ? 0 : (isExpected(to) ? count : 0) - (isExpected(from) ? count : 0);
+        if (roundId == null || (paid == 0 && members == 0)) {
+            return;
+        }
+        BigDecimal total = amount != null ? amount : BigDecimal.ZERO;
+        apply(roundId, members, paid, paid > 0 ? total : paid < 0 ? total.negate() : BigDecimal.ZERO, 0);
+    }
+
+    /**
+     * Apply count payments of the round being flagged late, or unflagged when negative.
+     */
+    public void lateChanged(String roundId, long count) {
+        if (roundId != null && count != 0) {
+            apply(roundId, 0, 0, BigDecimal.ZERO, count);
+        }
+    }
+
+    /**
+     * Fill the counters of rounds started before they existed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillMissing() {
+        int rounds = jdbcTemplate.update("UPDATE equb_rounds SET " +
+                "member_count = (SELECT COUNT(*) FROM payments p WHERE p.equb_round_id = equb_rounds.id " +
+                "AND p.status NOT IN ('CANCELLED', 'FAILED')), " +
+                "paid_count = (SELECT COUNT(*) FROM payments p WHERE p.equb_round_id = equb_rounds.id " +
+                "AND p.status = 'COMPLETED'), " +
+                "collected_amount = (SELECT COALESCE(SUM(p.amount), 0) FROM payments p " +
+                "WHERE p.equb_round_id = equb_rounds.id AND p.status = 'COMPLETED'), " +
+                "late_count = (SELECT COUNT(*) FROM payments p WHERE p.equb_round_id = equb_rounds.id " +
+                "AND p.is_late_payment = TRUE) " +
+                "WHERE member_count IS NULL");
+        if (rounds > 0) {
+            log.info("Backfilled progress counters for {} equb rounds", rounds);
+        }
+    }
+
+    private void apply(String roundId, long members, long paid, BigDecimal collected, long late) {
+        jdbcTemplate.update(ADD, members, paid, collected, late, Timestamp.valueOf(LocalDateTime.now()), roundId);
+    }
+
+    private static boolean isExpected(PaymentStatus status) {
+        return status != null && status != PaymentStatus.CANCELLED && status != PaymentStatus.FAILED;
+    }
+}
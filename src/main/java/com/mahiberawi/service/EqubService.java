@@ -1,25 +1,27 @@
 package com.mahiberawi.service;
 
+import com.mahiberawi.dto.equb.EqubRoundProgressResponse;
 import com.mahiberawi.entity.*;
 import com.mahiberawi.entity.enums.EqubRoundStatus;
 import com.mahiberawi.entity.enums.EqubSelectionMethod;
 import com.mahiberawi.entity.enums.GroupMemberStatus;
-import com.mahiberawi.entity.PaymentStatus;
 import com.mahiberawi.exception.ResourceNotFoundException;
 import com.mahiberawi.exception.UnauthorizedException;
 import com.mahiberawi.repository.EqubRoundRepository;
 import com.mahiberawi.repository.GroupMemberRepository;
 import com.mahiberawi.repository.GroupRepository;
-import com.mahiberawi.repository.PaymentRepository;
+import com.mahiberawi.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.security.SecureRandom;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Random;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -28,10 +30,25 @@ import java.util.stream.Collectors;
 public class EqubService {
     private final GroupRepository groupRepository;
     private final EqubRoundRepository equbRoundRepository;
-    private final PaymentRepository paymentRepository;
     private final GroupMemberRepository groupMemberRepository;
+    private final UserRepository userRepository;
+    private final EqubProjectionService equbProjectionService;
     private final NotificationService notificationService;
+    private final LedgerService ledgerService;
+    private final PaymentBatchWriter paymentBatchWriter;
 
+    private static final SecureRandom LOTTERY = new SecureRandom();
+
+    // Members written per batch insert when a round starts
+    @Value("${app.equb.round-start.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * Open the group's next round and bill every active member for it. The group and
+     * the round are written with one statement each, and the members' payments and
+     * notifications with JDBC batch inserts, a chunk of members at a time, all in
+     * one transaction.
+     */
     @Transactional
     public EqubRound startNewRound(String groupId, User admin) {
         Group group = groupRepository.findById(groupId)
@@ -50,35 +67,42 @@ public class EqubService {
         }
 
         // Get next round number
-        Integer nextRoundNumber = group.getCurrentEqubRound() + 1;
+        int currentRound = group.getCurrentEqubRound() != null ? group.getCurrentEqubRound() : 0;
+        Integer nextRoundNumber = currentRound + 1;
 
         // Calculate expected amount (number of members * equb amount)
-        List<GroupMember> activeMembers = groupMemberRepository.findByGroupAndStatus(group, GroupMemberStatus.ACTIVE);
-        BigDecimal expectedAmount = group.getEqubAmount().multiply(new BigDecimal(activeMembers.size()));
+        List<String> memberIds = groupMemberRepository.findUserIdsByGroupIdAndStatus(group.getId(), GroupMemberStatus.ACTIVE);
+        BigDecimal expectedAmount = group.getEqubAmount().multiply(new BigDecimal(memberIds.size()));
+
+        // Update group current round, unless a concurrent request started this round first
+        LocalDateTime now = LocalDateTime.now();
+        if (groupRepository.advanceEqubRound(group.getId(), currentRound, nextRoundNumber, now) == 0) {
+            throw new IllegalStateException("Equb round " + nextRoundNumber + " has already been started");
+        }
 
-        // Create new round
+        // Create new round; flushed so the payments below can reference it
         EqubRound newRound = EqubRound.builder()
                 .group(group)
                 .roundNumber(nextRoundNumber)
                 .expectedAmount(expectedAmount)
                 .status(EqubRoundStatus.ACTIVE)
-                .startDate(LocalDateTime.now())
-                .endDate(LocalDateTime.now().plusDays(group.getEqubPaymentDeadlineDays()))
-                .paymentDeadline(LocalDateTime.now().plusDays(group.getEqubPaymentDeadlineDays()))
+                .startDate(now)
+                .endDate(now.plusDays(group.getEqubPaymentDeadlineDays()))
+                .paymentDeadline(now.plusDays(group.getEqubPaymentDeadlineDays()))
                 .gracePeriodDays(group.getEqubGracePeriodDays())
                 .penaltyAmount(group.getEqubPenaltyAmount())
+                .memberCount(memberIds.size())
+                .paidCount(0)
+                .lateCount(0)
+                .collectedAmount(BigDecimal.ZERO)
                 .build();
 
-        EqubRound savedRound = equbRoundRepository.save(newRound);
-
-        // Update group current round
-        group.setCurrentEqubRound(nextRoundNumber);
-        groupRepository.save(group);
+        EqubRound savedRound = equbRoundRepository.saveAndFlush(newRound);
 
         // Create payment requests for all members
-        createEqubPaymentsForRound(savedRound, activeMembers);
+        createEqubPaymentsForRound(savedRound, memberIds);
 
-        log.info("Started Equb round {} for group {}", nextRoundNumber, groupId);
+        log.info("Started Equb round {} for group {} with {} members", nextRoundNumber, groupId, memberIds.size());
         return savedRound;
     }
 
@@ -106,20 +130,23 @@ public class EqubService {
         }
         EqubRound currentRound = activeRounds.get(0);
 
-        // Verify minimum payment threshold
-        List<Payment> roundPayments = paymentRepository.findByEqubRoundEntity(currentRound);
-        long paidMembers = roundPayments.stream()
-                .filter(p -> p.getStatus() == PaymentStatus.COMPLETED)
-                .count();
-
-        List<GroupMember> activeMembers = groupMemberRepository.findByGroupAndStatus(group, GroupMemberStatus.ACTIVE);
-        
-        if (paidMembers < activeMembers.size()) {
+        // Verify minimum payment threshold from the round's progress counters
+        if (!isReadyForDraw(currentRound)) {
             throw new IllegalStateException("Not all members have paid. Cannot select winner yet.");
         }
 
-        // Select winner based on method
-        User winner = selectWinnerByMethod(group, currentRound, activeMembers);
+        // Select winner based on method, among the members who have not received the pot this cycle
+        EqubProjectionService.Inputs inputs = equbProjectionService.inputs(group);
+        List<String> memberIds = inputs.members().stream().map(EqubProjectionService.Member::userId).toList();
+        if (memberIds.isEmpty()) {
+            throw new IllegalStateException("The group has no active members");
+        }
+        Set<String> received = EqubProjectionService.currentCycle(memberIds, inputs.rounds()).stream()
+                .map(EqubProjectionService.Round::winnerId)
+                .collect(Collectors.toSet());
+        List<String> eligible = memberIds.stream().filter(id -> !received.contains(id)).toList();
+        User winner = userRepository.findById(selectWinnerByMethod(group, eligible))
+                .orElseThrow(() -> new ResourceNotFoundException("Winner not found"));
         
         // Update round with winner
         currentRound.setWinner(winner);
@@ -128,6 +155,7 @@ public class EqubService {
         currentRound.setTotalAmount(currentRound.getExpectedAmount());
 
         EqubRound savedRound = equbRoundRepository.save(currentRound);
+        ledgerService.postEqubPayout(savedRound);
 
         // Update group
         group.setCurrentWinner(winner);
@@ -142,47 +170,35 @@ public class EqubService {
         return savedRound;
     }
 
-    private User selectWinnerByMethod(Group group, EqubRound round, List<GroupMember> members) {
+    private String selectWinnerByMethod(Group group, List<String> eligible) {
         if (group.getEqubSelectionMethod() == EqubSelectionMethod.LOTTERY) {
-            return selectWinnerByLottery(members);
+            return selectWinnerByLottery(eligible);
         } else {
-            return selectWinnerByFixedTurn(group, round, members);
+            return selectWinnerByFixedTurn(eligible);
         }
     }
 
-    private User selectWinnerByLottery(List<GroupMember> members) {
-        Random random = new Random();
-        int randomIndex = random.nextInt(members.size());
-        return members.get(randomIndex).getUser();
+    private String selectWinnerByLottery(List<String> eligible) {
+        int randomIndex = LOTTERY.nextInt(eligible.size());
+        return eligible.get(randomIndex);
     }
 
-    private User selectWinnerByFixedTurn(Group group, EqubRound round, List<GroupMember> members) {
-        // For fixed turn, winner is based on round number and member count
-        int memberCount = members.size();
-        int winnerIndex = (round.getRoundNumber() - 1) % memberCount;
-        return members.get(winnerIndex).getUser();
+    private String selectWinnerByFixedTurn(List<String> eligible) {
+        // For fixed turn, the pot goes to the next member in turn order who has not received it this cycle
+        return eligible.get(0);
     }
 
-    private void createEqubPaymentsForRound(EqubRound round, List<GroupMember> members) {
-        for (GroupMember member : members) {
-            Payment payment = new Payment();
-            payment.setAmount(round.getGroup().getEqubAmount());
-            payment.setMethod(com.mahiberawi.entity.PaymentMethod.TELEBIRR); // Default method
-            payment.setStatus(PaymentStatus.PENDING);
-            payment.setPayer(member.getUser());
-            payment.setGroup(round.getGroup());
-            payment.setDescription("Equb Round " + round.getRoundNumber() + " Payment");
-            payment.setTransactionId(generateTransactionId());
-            payment.setEqubRound(round.getRoundNumber());
-            payment.setIsEqubPayment(true);
-            payment.setEqubRoundEntity(round);
-
-            paymentRepository.save(payment);
-
-            // Send notification
-            notificationService.createGroupNotification(member.getUser(), round.getGroup(),
-                "New Equb payment request for Round " + round.getRoundNumber() + ". Amount: " + round.getGroup().getEqubAmount());
-        }
+    private void createEqubPaymentsForRound(EqubRound round, List<String> memberIds) {
+        Group group = round.getGroup();
+        String notification = "New Equb payment request for Round " + round.getRoundNumber() + ". Amount: " + group.getEqubAmount();
+        paymentBatchWriter.insertPending(PaymentBatchWriter.PendingPayments.builder()
+                .groupId(group.getId())
+                .equbRoundId(round.getId())
+                .equbRound(round.getRoundNumber())
+                .amount(group.getEqubAmount())
+                .description("Equb Round " + round.getRoundNumber() + " Payment")
+                .notification(userId -> notification)
+                .build(), memberIds, chunkSize);
     }
 
     @Transactional(readOnly = true)
@@ -210,15 +226,39 @@ public class EqubService {
         return activeRounds.isEmpty() ? null : activeRounds.get(0);
     }
 
-    @Transactional
-    public void processLatePayments() {
-        // Find all active rounds that have passed their deadline
-        // Note: This method needs to be implemented in the repository
-        // For now, we'll skip this functionality
-        log.info("Late payment processing would be implemented here");
+    /**
+     * Progress of the group's active round, read from its counters. Returns null if no
+     * round is active.
+     */
+    @Transactional(readOnly = true)
+    public EqubRoundProgressResponse getCurrentRoundProgress(String groupId, User user) {
+        EqubRound round = getCurrentRound(groupId, user);
+        if (round == null) {
+            return null;
+        }
+        int memberCount = count(round.getMemberCount());
+        int paidCount = count(round.getPaidCount());
+        return EqubRoundProgressResponse.builder()
+                .roundId(round.getId())
+                .groupId(groupId)
+                .roundNumber(round.getRoundNumber())
+                .status(round.getStatus())
+                .memberCount(memberCount)
+                .paidCount(paidCount)
+                .unpaidCount(Math.max(memberCount - paidCount, 0))
+                .lateCount(count(round.getLateCount()))
+                .expectedAmount(round.getExpectedAmount())
+                .collectedAmount(round.getCollectedAmount() != null ? round.getCollectedAmount() : BigDecimal.ZERO)
+                .paymentDeadline(round.getPaymentDeadline())
+                .readyForDraw(isReadyForDraw(round))
+                .build();
+    }
+
+    private static boolean isReadyForDraw(EqubRound round) {
+        return count(round.getMemberCount()) > 0 && count(round.getPaidCount()) >= count(round.getMemberCount());
     }
 
-    private String generateTransactionId() {
-        return java.util.UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+    private static int count(Integer counter) {
+        return counter != null ? counter : 0;
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,358 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.dto.event.CheckInOutcome;
+import com.mahiberawi.dto.event.CheckInResponse;
+import com.mahiberawi.dto.event.CheckInStatsResponse;
+import com.mahiberawi.dto.event.CheckInTokenResponse;
+import com.mahiberawi.entity.AttendanceStatus;
+import com.mahiberawi.entity.Event;
+import com.mahiberawi.entity.EventAttendance;
+import com.mahiberawi.entity.GroupMember;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.entity.enums.GroupMemberRole;
+import com.mahiberawi.exception.ResourceNotFoundException;
+import com.mahiberawi.exception.UnauthorizedException;
+import com.mahiberawi.repository.EventAttendanceRepository;
+import com.mahiberawi.repository.EventRepository;
+import com.mahiberawi.repository.GroupMemberRepository;
+import com.mahiberawi.util.AfterCommit;
+import com.mahiberawi.util.SubKeys;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * QR check-in for event attendance. A participant's token is an HMAC-signed payload
+ * naming their attendance row, so a scan is verified in memory and a batch of scans
+ * is applied with one conditional update. Check-in counters per event or occurrence
+ * are kept in memory for the organizer view: seeded from a grouped count, advanced by
+ * each committed check-in and re-read when stale or after other attendance changes.
+ * Stale counters are also swept, so only events checked in or viewed recently are held.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EventCheckInService {
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final EventRepository eventRepository;
+    private final EventAttendanceRepository eventAttendanceRepository;
+    private final GroupMemberRepository groupMemberRepository;
+    private final EventOccurrenceService eventOccurrenceService;
+
+    // Used through an HKDF subkey, so a check-in token is never valid as any other token
+    // even where this falls back to the JWT secret
+    @Value("${app.events.check-in.secret:${jwt.secret}}")
+    private String secret;
+
+    private byte[] signingKey;
+
+    // How long after the event ends a token is still accepted
+    @Value("${app.events.check-in.token-grace-hours:12}")
+    private long tokenGraceHours;
+
+    @Value("${app.events.check-in.counter-ttl-seconds:30}")
+    private long counterTtlSeconds;
+
+    private final Map<CounterKey, Counter> counters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        signingKey = SubKeys.derive(secret, "check-in");
+    }
+
+    /**
+     * The check-in token of the user's registration for the event or occurrence.
+     */
+    public CheckInTokenResponse issueToken(String eventId, LocalDateTime occurrenceStart, User user) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new ResourceNotFoundException("Event", "id", eventId));
+        LocalDateTime endTime = event.getEndTime();
+        if (event.isRecurring()) {
+            if (occurrenceStart == null) {
+                throw new IllegalArgumentException("An occurrence is required for a recurring event");
+            }
+            endTime = eventOccurrenceService.getOccurrence(event, occurrenceStart).endTime();
+        } else if (occurrenceStart != null) {
+            throw new IllegalArgumentException("Event is not recurring");
+        }
+
+        EventAttendance attendance = eventAttendanceRepository
+                .findByEventAndUserIdAndOccurrenceStart(event, user.getId(), occurrenceStart)
+                .orElseThrow(() -> new ResourceNotFoundException("EventAttendance", "userId", user.getId()));
+        if (attendance.getStatus() != AttendanceStatus.REGISTERED && attendance.getStatus() != AttendanceStatus.ATTENDED) {
+            throw new IllegalStateException("Only registered participants can check in");
+        }
+
+        LocalDateTime expiresAt = endTime.plusHours(tokenGraceHours);
+        return CheckInTokenResponse.builder()
+                .token(sign(new Claims(attendance.getId(), eventId, occurrenceStart, user.getId(), expiresAt)))
+                .eventId(eventId)
+                .occurrenceStart(occurrenceStart)
+                .expiresAt(expiresAt)
+                .build();
+    }
+
+    /**
+     * Check in the participants of the scanned tokens. Tokens are verified without a
+     * database read; the valid ones are applied with one update per occurrence.
+     */
+    @Transactional
+    public CheckInResponse checkIn(String eventId, List<String> tokens, User scanner) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new ResourceNotFoundException("Event", "id", eventId));
+        requireOrganizer(event, scanner);
+
+        LocalDateTime now = LocalDateTime.now();
+        CheckInResponse.Result[] results = new CheckInResponse.Result[tokens.size()];
+        Claims[] claimed = new Claims[tokens.size()];
+        Set<String> attendanceIds = new LinkedHashSet<>();
+        Set<CounterKey> keys = new LinkedHashSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            Claims claims = verify(tokens.get(i));
+            if (claims == null) {
+                results[i] = new CheckInResponse.Result(CheckInOutcome.INVALID_TOKEN, null, null);
+            } else if (!claims.eventId().equals(eventId)) {
+                results[i] = new CheckInResponse.Result(CheckInOutcome.WRONG_EVENT, claims.userId(), claims.occurrenceStart());
+            } else if (claims.expiresAt().isBefore(now)) {
+                results[i] = new CheckInResponse.Result(CheckInOutcome.EXPIRED, claims.userId(), claims.occurrenceStart());
+            } else {
+                claimed[i] = claims;
+                attendanceIds.add(claims.attendanceId());
+                keys.add(new CounterKey(eventId, claims.occurrenceStart()));
+            }
+        }
+        if (keys.isEmpty() && !event.isRecurring()) {
+            keys.add(new CounterKey(eventId, null));
+        }
+        // Load the counters before the update so they do not already include this batch
+        Map<CounterKey, Counter> touched = new LinkedHashMap<>();
+        for (CounterKey key : keys) {
+            touched.put(key, counter(event, key.occurrenceStart()));
+        }
+
+        Map<String, AttendanceStatus> statuses = new HashMap<>();
+        Map<CounterKey, List<String>> registered = new LinkedHashMap<>();
+        if (!attendanceIds.isEmpty()) {
+            for (EventAttendanceRepository.CheckInState state : eventAttendanceRepository.findCheckInStates(eventId, attendanceIds)) {
+                statuses.put(state.getId(), state.getStatus());
+                if (state.getStatus() == AttendanceStatus.REGISTERED) {
+                    registered.computeIfAbsent(new CounterKey(eventId, state.getOccurrenceStart()), key -> new ArrayList<>())
+                            .add(state.getId());
+                }
+            }
+        }
+
+        // Another scanner may check in the same row concurrently; the update only counts rows it changed
+        Map<CounterKey, Integer> changed = new HashMap<>();
+        for (Map.Entry<CounterKey, List<String>> batch : registered.entrySet()) {
+            changed.put(batch.getKey(), eventAttendanceRepository.checkIn(batch.getValue(),
+                    AttendanceStatus.REGISTERED, AttendanceStatus.ATTENDED, now));
+        }
+
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            Claims claims = claimed[i];
+            if (claims == null) {
+                continue;
+            }
+            AttendanceStatus status = statuses.get(claims.attendanceId());
+            CheckInOutcome outcome;
+            if (status == AttendanceStatus.REGISTERED && seen.add(claims.attendanceId())) {
+                outcome = CheckInOutcome.CHECKED_IN;
+            } else if (status == AttendanceStatus.REGISTERED || status == AttendanceStatus.ATTENDED) {
+                outcome = CheckInOutcome.ALREADY_CHECKED_IN;
+            } else {
+                outcome = CheckInOutcome.NOT_REGISTERED;
+            }
+            results[i] = new CheckInResponse.Result(outcome, claims.userId(), claims.occurrenceStart());
+        }
+
+        int checkedIn = changed.values().stream().mapToInt(Integer::intValue).sum();
+        AfterCommit.run(() -> changed.forEach((key, count) -> counters.computeIfPresent(key, (k, counter) -> {
+            counter.checkedIn.addAndGet(count);
+            counter.lastCheckInAt = now;
+            return counter;
+        })));
+        log.info("Checked in {} of {} scanned tokens for event {}", checkedIn, tokens.size(), eventId);
+
+        List<CheckInStatsResponse> stats = new ArrayList<>();
+        touched.forEach((key, counter) -> stats.add(toStats(key, counter, changed.getOrDefault(key, 0), now)));
+        return CheckInResponse.builder()
+                .results(List.of(results))
+                .checkedIn(checkedIn)
+                .stats(stats)
+                .build();
+    }
+
+    /**
+     * Live check-in counters of an event or one occurrence, for the organizer.
+     */
+    public CheckInStatsResponse getStats(String eventId, LocalDateTime occurrenceStart, User user) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new ResourceNotFoundException("Event", "id", eventId));
+        requireOrganizer(event, user);
+        if (event.isRecurring() != (occurrenceStart != null)) {
+            throw new IllegalArgumentException(event.isRecurring()
+                    ? "An occurrence is required for a recurring event" : "Event is not recurring");
+        }
+        return toStats(new CounterKey(eventId, occurrenceStart), counter(event, occurrenceStart), 0, null);
+    }
+
+    /**
+     * Drop counters that are due to be re-read anyway, including those of events that
+     * have ended or were deleted on another instance.
+     */
+    @Scheduled(fixedDelayString = "${app.events.check-in.counter-sweep-ms:60000}")
+    public void evictStaleCounters() {
+        long staleBefore = System.currentTimeMillis() - counterTtlSeconds * 1000;
+        counters.values().removeIf(counter -> counter.loadedAt <= staleBefore);
+    }
+
+    /**
+     * Drop the counters of an event after its attendance changed outside check-in, so
+     * they are re-read once the change commits.
+     */
+    public void invalidate(String eventId) {
+        AfterCommit.run(() -> counters.keySet().removeIf(key -> key.eventId().equals(eventId)));
+    }
+
+    private Counter counter(Event event, LocalDateTime occurrenceStart) {
+        CounterKey key = new CounterKey(event.getId(), occurrenceStart);
+        Counter counter = counters.get(key);
+        if (counter != null && counter.loadedAt > System.currentTimeMillis() - counterTtlSeconds * 1000) {
+            return counter;
+        }
+
+        Map<AttendanceStatus, Integer> counts = new EnumMap<>(AttendanceStatus.class);
+        LocalDateTime lastCheckInAt = null;
+        List<EventAttendanceRepository.StatusCount> rows = occurrenceStart != null
+                ? eventAttendanceRepository.countCheckInsByStatus(event, occurrenceStart)
+                : eventAttendanceRepository.countCheckInsByStatus(event);
+        for (EventAttendanceRepository.StatusCount count : rows) {
+            counts.put(count.getStatus(), (int) count.getCount());
+            if (count.getStatus() == AttendanceStatus.ATTENDED) {
+                lastCheckInAt = count.getLastCheckedInAt();
+            }
+        }
+        Counter loaded = new Counter(counts.getOrDefault(AttendanceStatus.REGISTERED, 0)
+                + counts.getOrDefault(AttendanceStatus.ATTENDED, 0), counts.getOrDefault(AttendanceStatus.ATTENDED, 0));
+        loaded.lastCheckInAt = lastCheckInAt;
+        counters.put(key, loaded);
+        return loaded;
+    }
+
+    private CheckInStatsResponse toStats(CounterKey key, Counter counter, int pending, LocalDateTime now) {
+        // Check-ins of the current transaction are not in the counter until it commits
+        int checkedIn = counter.checkedIn.get() + pending;
+        return CheckInStatsResponse.builder()
+                .eventId(key.eventId())
+                .occurrenceStart(key.occurrenceStart())
+                .expected(counter.expected)
+                .checkedIn(checkedIn)
+                .remaining(Math.max(counter.expected - checkedIn, 0))
+                .lastCheckInAt(pending > 0 ? now : counter.lastCheckInAt)
+                .build();
+    }
+
+    private void requireOrganizer(Event event, User user) {
+        if (event.getCreator() != null && event.getCreator().getId().equals(user.getId())) {
+            return;
+        }
+        if (event.getGroup() != null) {
+            GroupMember member = groupMemberRepository.findByGroupAndUser(event.getGroup(), user).orElse(null);
+            if (member != null && (member.getRole() == GroupMemberRole.ADMIN || member.getRole() == GroupMemberRole.MODERATOR)) {
+                return;
+            }
+        }
+        throw new UnauthorizedException("Only the event organizer can check in participants");
+    }
+
+    private String sign(Claims claims) {
+        String payload = String.join("|", claims.attendanceId(), claims.eventId(),
+                claims.occurrenceStart() != null ? claims.occurrenceStart().toString() : "", claims.userId(),
+                Long.toString(claims.expiresAt().atZone(ZONE).toEpochSecond()));
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(hmac(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // The token's claims, or null when it is malformed or its signature does not match
+    private Claims verify(String token) {
+        int dot = token != null ? token.indexOf('.') : -1;
+        if (dot <= 0) {
+            return null;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            byte[] payload = decoder.decode(token.substring(0, dot));
+            if (!MessageDigest.isEqual(hmac(payload), decoder.decode(token.substring(dot + 1)))) {
+                return null;
+            }
+            String[] parts = new String(payload, StandardCharsets.UTF_8).split("\\|", -1);
+            if (parts.length != 5) {
+                return null;
+            }
+            return new Claims(parts[0], parts[1], parts[2].isEmpty() ? null : LocalDateTime.parse(parts[2]), parts[3],
+                    LocalDateTime.ofInstant(Instant.ofEpochSecond(Long.parseLong(parts[4])), ZONE));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private byte[] hmac(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(signingKey, HMAC_ALGORITHM));
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not sign check-in token", e);
+        }
+    }
+
+    private record Claims(String attendanceId, String eventId, LocalDateTime occurrenceStart, String userId,
+                          LocalDateTime expiresAt) {
+    }
+
+    private record CounterKey(String eventId, LocalDateTime occurrenceStart) {
+    }
+
+    private static final class Counter {
+        private final int expected;
+        private final AtomicInteger checkedIn;
+        private final long loadedAt = System.currentTimeMillis();
+        private volatile LocalDateTime lastCheckInAt;
+
+        private Counter(int expected, int checkedIn) {
+            this.expected = expected;
+            this.checkedIn = new AtomicInteger(checkedIn);
+        }
+    }
+}
@@ -1,117 +1,142 @@
 package com.mahiberawi.service;
 
+import com.mahiberawi.entity.AttendanceStatus;
 import com.mahiberawi.entity.Event;
 import com.mahiberawi.entity.EventAttendance;
+import com.mahiberawi.entity.EventReminder;
 import com.mahiberawi.entity.Notification;
 import com.mahiberawi.entity.User;
 import com.mahiberawi.entity.NotificationType;
+import com.mahiberawi.repository.EventAttendanceRepository;
+import com.mahiberawi.repository.EventReminderRepository;
+import com.mahiberawi.repository.EventRepository;
 import com.mahiberawi.repository.NotificationRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.scheduling.annotation.Scheduled;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.List;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class EventNotificationService {
+    private static final double CAPACITY_WARNING_RATIO = 0.9;
+
     private final NotificationRepository notificationRepository;
-    private final EventService eventService;
+    private final EventAttendanceRepository eventAttendanceRepository;
+    private final EventReminderRepository eventReminderRepository;
+    private final EventRepository eventRepository;
 
-    @Scheduled(cron = "0 0 9 * * *") // Run at 9 AM every day
+    /**
+     * Send a due reminder to the event's registered participants. The reminder is
+     * claimed first, so it is sent once even if it fires on more than one instance.
+     */
     @Transactional
-    public void sendEventReminders() {
+    public void sendReminder(String reminderId) {
         LocalDateTime now = LocalDateTime.now();
-        List<Event> upcomingEvents = eventService.getUpcomingEventsForReminders(now);
-
-        for (Event event : upcomingEvents) {
-            long daysUntilEvent = ChronoUnit.DAYS.between(now, event.getStartTime());
-            
-            if (daysUntilEvent == 1) {
-                sendDayBeforeReminder(event);
-            } else if (daysUntilEvent == 7) {
-                sendWeekBeforeReminder(event);
-            }
+        if (eventReminderRepository.markSent(reminderId, now) == 0) {
+            return;
         }
-    }
 
-    @Scheduled(cron = "0 0 * * * *") // Run every hour
-    @Transactional
-    public void sendEventUpdates() {
-        LocalDateTime now = LocalDateTime.now();
-        List<Event> activeEvents = eventService.getActiveEvents(now);
+        EventReminder reminder = eventReminderRepository.findById(reminderId).orElse(null);
+        if (reminder == null) {
+            return;
+        }
+        // The due time was derived from the (occurrence) start, so this is the start being announced
+        LocalDateTime startsAt = reminder.getDueAt().plus(reminder.getType().getLeadTime());
+        if (!startsAt.isAfter(now)) {
+            return;
+        }
 
-        for (Event event : activeEvents) {
-            checkAndNotifyCapacity(event);
-            checkAndNotifyTimeChanges(event);
+        Event event = reminder.getEvent();
+        String message = String.format("Event '%s' is starting in %s at %s",
+            event.getTitle(), reminder.getType().getLabel(), startsAt.toString());
+
+        List<AttendanceStatus> registered = List.of(AttendanceStatus.REGISTERED);
+        List<EventAttendance> attendees = reminder.getOccurrenceStart() != null
+            ? eventAttendanceRepository.findByEventAndOccurrenceStartAndStatusIn(event, reminder.getOccurrenceStart(), registered)
+            : eventAttendanceRepository.findByEventAndStatusIn(event, registered);
+        for (EventAttendance attendee : attendees) {
+            createNotification(attendee.getUser(), event, message, NotificationType.EVENT_REMINDER);
         }
+        log.info("Sent {} reminder for event {}", reminder.getType(), event.getId());
     }
 
-    private void sendDayBeforeReminder(Event event) {
-        String message = String.format("Event '%s' is starting in 1 day at %s",
+    /**
+     * Tell participants that the event time was edited. Called only when the time actually changes.
+     */
+    public void notifyTimeChanged(Event event) {
+        String message = String.format("The time for '%s' has been updated to %s", 
             event.getTitle(), event.getStartTime().toString());
-        
-        for (EventAttendance attendee : event.getAttendees()) {
-            createNotification(
-                attendee.getUser(),
-                event,
-                message,
-                NotificationType.EVENT_REMINDER
-            );
-        }
+
+        notifyAttendees(event, message, NotificationType.EVENT_UPDATE,
+            List.of(AttendanceStatus.REGISTERED, AttendanceStatus.WAITLISTED));
     }
 
-    private void sendWeekBeforeReminder(Event event) {
-        String message = String.format("Event '%s' is starting in 1 week at %s",
-            event.getTitle(), event.getStartTime().toString());
-        
-        for (EventAttendance attendee : event.getAttendees()) {
-            createNotification(
-                attendee.getUser(),
-                event,
-                message,
-                NotificationType.EVENT_REMINDER
-            );
-        }
+    public void notifyOccurrenceCancelled(EventOccurrenceService.Occurrence occurrence) {
+        String message = String.format("'%s' on %s has been cancelled",
+            occurrence.title(), occurrence.occurrenceStart().toString());
+        notifyOccurrenceAttendees(occurrence, message);
+    }
+
+    public void notifyOccurrenceTimeChanged(EventOccurrenceService.Occurrence occurrence) {
+        String message = String.format("The time for '%s' on %s has been updated to %s",
+            occurrence.title(), occurrence.occurrenceStart().toString(), occurrence.startTime().toString());
+        notifyOccurrenceAttendees(occurrence, message);
     }
 
-    private void checkAndNotifyCapacity(Event event) {
+    /**
+     * Warn the creator when a registration takes the seats to 90% of capacity. Called with
+     * the seat count returned under the event's lock, so only the registration that crosses
+     * the threshold sends it; for a single event the persisted flag also keeps it to once
+     * after seats are released and taken again.
+     */
+    public void notifyIfAlmostFull(Event event, LocalDateTime occurrenceStart, int seatsTaken) {
         int maxParticipants = event.getMaxParticipants();
-        if (maxParticipants > 0) {
-            int currentParticipants = event.getAttendees().size();
-            
-            if (currentParticipants >= maxParticipants * 0.9) { // 90% capacity
-                String message = String.format("'%s' is almost full! Only %d spots remaining.", 
-                    event.getTitle(), maxParticipants - currentParticipants);
-                
-                createNotification(
-                    event.getCreator(),
-                    event,
-                    message,
-                    NotificationType.EVENT_CAPACITY
-                );
-            }
+        int threshold = (int) Math.ceil(maxParticipants * CAPACITY_WARNING_RATIO);
+        if (maxParticipants <= 0 || seatsTaken - 1 >= threshold || seatsTaken < threshold) {
+            return;
         }
+        if (occurrenceStart == null && eventRepository.markCapacityWarningSent(event.getId()) == 0) {
+            return;
+        }
+
+        String message = occurrenceStart == null
+            ? String.format("'%s' is almost full! Only %d spots remaining.",
+                event.getTitle(), maxParticipants - seatsTaken)
+            : String.format("'%s' on %s is almost full! Only %d spots remaining.",
+                event.getTitle(), occurrenceStart.toString(), maxParticipants - seatsTaken);
+
+        createNotification(
+            event.getCreator(),
+            event,
+            message,
+            NotificationType.EVENT_CAPACITY
+        );
     }
 
-    private void checkAndNotifyTimeChanges(Event event) {
-        // This would be called when event time is updated
-        String message = String.format("The time for '%s' has been updated to %s", 
-            event.getTitle(), event.getStartTime().toString());
-        
-        for (EventAttendance attendee : event.getAttendees()) {
+    private void notifyAttendees(Event event, String message, NotificationType type, List<AttendanceStatus> statuses) {
+        for (EventAttendance attendee : eventAttendanceRepository.findByEventAndStatusIn(event, statuses)) {
             createNotification(
                 attendee.getUser(),
                 event,
                 message,
-                NotificationType.EVENT_UPDATE
+                type
             );
         }
     }
 
+    private void notifyOccurrenceAttendees(EventOccurrenceService.Occurrence occurrence, String message) {
+        List<EventAttendance> attendees = eventAttendanceRepository.findByEventAndOccurrenceStartAndStatusIn(
+            occurrence.event(), occurrence.occurrenceStart(), List.of(AttendanceStatus.REGISTERED, AttendanceStatus.WAITLISTED));
+        for (EventAttendance attendee : attendees) {
+            createNotification(attendee.getUser(), occurrence.event(), message, NotificationType.EVENT_UPDATE);
+        }
+    }
+
     private void createNotification(User user, NotificationType type, String message) {
         Notification notification = new Notification();
         notification.setUser(user);
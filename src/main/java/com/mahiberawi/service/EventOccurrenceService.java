@@ -0,0 +1,219 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.dto.event.EventOccurrenceRequest;
+import com.mahiberawi.entity.Event;
+import com.mahiberawi.entity.EventOccurrenceException;
+import com.mahiberawi.exception.ResourceNotFoundException;
+import com.mahiberawi.repository.EventOccurrenceExceptionRepository;
+import com.mahiberawi.repository.EventRepository;
+import com.mahiberawi.util.RecurrenceRule;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Expands recurring events into occurrences on demand. Only the series row and its
+ * exceptions are stored; occurrences for a window are computed from the rule each
+ * time, so the cost of a query depends on the window and not on the series' age.
+ */
+@Service
+@RequiredArgsConstructor
+public class EventOccurrenceService {
+    // Upper bound per series and window, so a daily rule over a wide window stays cheap
+    private static final int MAX_OCCURRENCES_PER_SERIES = 500;
+    private static final int MAX_SKIPPED_OCCURRENCES = 1000;
+
+    private final EventOccurrenceExceptionRepository exceptionRepository;
+    private final EventRepository eventRepository;
+
+    /**
+     * Set or clear the recurrence of an event from an RRULE string.
+     */
+    public void applyRecurrence(Event event, String rule) {
+        if (rule == null || rule.isBlank()) {
+            event.setRecurrenceRule(null);
+            event.setRecurrenceUntil(null);
+            return;
+        }
+        RecurrenceRule recurrence = RecurrenceRule.parse(rule);
+        event.setRecurrenceRule(recurrence.toString());
+        event.setRecurrenceUntil(recurrence.lastStart(event.getStartTime()));
+    }
+
+    /**
+     * Occurrences of the given series that start within [from, to), in start order.
+     * Cancelled occurrences are included and marked as such.
+     */
+    public List<Occurrence> expand(Collection<Event> series, LocalDateTime from, LocalDateTime to) {
+        if (series.isEmpty()) {
+            return List.of();
+        }
+
+        Map<String, Map<LocalDateTime, EventOccurrenceException>> exceptions = new HashMap<>();
+        for (EventOccurrenceException exception : exceptionRepository.findByEventsInWindow(series, from, to)) {
+            exceptions.computeIfAbsent(exception.getEvent().getId(), id -> new HashMap<>())
+                    .put(exception.getOccurrenceStart(), exception);
+        }
+
+        List<Occurrence> occurrences = new ArrayList<>();
+        for (Event event : series) {
+            RecurrenceRule rule = RecurrenceRule.parse(event.getRecurrenceRule());
+            Map<LocalDateTime, EventOccurrenceException> own = exceptions.getOrDefault(event.getId(), Map.of());
+
+            Iterator<LocalDateTime> starts = rule.startsFrom(event.getStartTime(), from);
+            for (int i = 0; i < MAX_OCCURRENCES_PER_SERIES && starts.hasNext(); i++) {
+                LocalDateTime start = starts.next();
+                if (!start.isBefore(to)) {
+                    break;
+                }
+                Occurrence occurrence = toOccurrence(event, start, own.get(start));
+                if (inWindow(occurrence.startTime(), from, to)) {
+                    occurrences.add(occurrence);
+                }
+            }
+
+            // Occurrences moved into the window from outside it
+            for (EventOccurrenceException exception : own.values()) {
+                LocalDateTime original = exception.getOccurrenceStart();
+                if (!inWindow(original, from, to) && !exception.isCancelled()
+                        && exception.getStartTime() != null && inWindow(exception.getStartTime(), from, to)
+                        && rule.isOccurrence(event.getStartTime(), original)) {
+                    occurrences.add(toOccurrence(event, original, exception));
+                }
+            }
+        }
+
+        occurrences.sort(Comparator.comparing(Occurrence::startTime));
+        return occurrences;
+    }
+
+    /**
+     * A single occurrence by its original start, with any exception applied.
+     */
+    public Occurrence getOccurrence(Event event, LocalDateTime occurrenceStart) {
+        if (!event.isRecurring() || occurrenceStart == null
+                || !RecurrenceRule.parse(event.getRecurrenceRule()).isOccurrence(event.getStartTime(), occurrenceStart)) {
+            throw new ResourceNotFoundException("Occurrence", "start", occurrenceStart);
+        }
+        return toOccurrence(event, occurrenceStart,
+                exceptionRepository.findByEventAndOccurrenceStart(event, occurrenceStart).orElse(null));
+    }
+
+    /**
+     * The first occurrence that is not cancelled and starts after the given time.
+     */
+    public Optional<Occurrence> nextOccurrence(Event event, LocalDateTime after) {
+        Map<LocalDateTime, EventOccurrenceException> exceptions = new HashMap<>();
+        exceptionRepository.findByEventAndOccurrenceStartGreaterThanEqualOrderByOccurrenceStartAsc(event, after)
+                .forEach(exception -> exceptions.put(exception.getOccurrenceStart(), exception));
+
+        Iterator<LocalDateTime> starts = RecurrenceRule.parse(event.getRecurrenceRule())
+                .startsFrom(event.getStartTime(), after);
+        for (int i = 0; i < MAX_SKIPPED_OCCURRENCES && starts.hasNext(); i++) {
+            LocalDateTime start = starts.next();
+            Occurrence occurrence = toOccurrence(event, start, exceptions.get(start));
+            if (!occurrence.cancelled() && occurrence.startTime().isAfter(after)) {
+                return Optional.of(occurrence);
+            }
+        }
+        return Optional.empty();
+    }
+
+    public List<EventOccurrenceException> getExceptions(Event event) {
+        return exceptionRepository.findByEventOrderByOccurrenceStartAsc(event);
+    }
+
+    /**
+     * Move the exceptions of a series whose start moved, so each stays with its occurrence.
+     * They are moved starting from the far end of the shift, so none lands on the original
+     * start of one that has not moved yet.
+     */
+    @Transactional
+    public void shiftExceptions(Event event, Duration shift) {
+        List<LocalDateTime> starts = new ArrayList<>();
+        getExceptions(event).forEach(exception -> starts.add(exception.getOccurrenceStart()));
+        starts.sort(shift.isNegative() ? Comparator.naturalOrder() : Comparator.reverseOrder());
+        for (LocalDateTime start : starts) {
+            exceptionRepository.moveOccurrence(event, start, start.plus(shift));
+        }
+    }
+
+    @Transactional
+    public void deleteExceptions(Event event) {
+        exceptionRepository.deleteByEvent(event);
+    }
+
+    /**
+     * Cancel, move or retitle one occurrence. A request that changes nothing removes the
+     * exception and restores the occurrence to the series values.
+     */
+    @Transactional
+    public Occurrence updateOccurrence(Event event, LocalDateTime occurrenceStart, EventOccurrenceRequest request) {
+        getOccurrence(event, occurrenceStart);
+        if ((request.getStartTime() == null) != (request.getEndTime() == null)) {
+            throw new IllegalArgumentException("Start and end time must be changed together");
+        }
+        if (request.getStartTime() != null && !request.getEndTime().isAfter(request.getStartTime())) {
+            throw new IllegalArgumentException("End time must be after start time");
+        }
+
+        EventOccurrenceException exception = exceptionRepository.findByEventAndOccurrenceStart(event, occurrenceStart)
+                .orElseGet(EventOccurrenceException::new);
+        exception.setEvent(event);
+        exception.setOccurrenceStart(occurrenceStart);
+        exception.setCancelled(Boolean.TRUE.equals(request.getCancelled()));
+        exception.setStartTime(request.getStartTime());
+        exception.setEndTime(request.getEndTime());
+        exception.setTitle(request.getTitle());
+        exception.setLocation(request.getLocation());
+
+        boolean unchanged = !exception.isCancelled() && exception.getStartTime() == null
+                && exception.getTitle() == null && exception.getLocation() == null;
+        if (unchanged) {
+            if (exception.getId() != null) {
+                exceptionRepository.delete(exception);
+            }
+            exception = null;
+        } else {
+            exception = exceptionRepository.save(exception);
+        }
+
+        // Bump the series so calendar feed versions change
+        event.setUpdatedAt(LocalDateTime.now());
+        eventRepository.save(event);
+        return toOccurrence(event, occurrenceStart, exception);
+    }
+
+    Occurrence toOccurrence(Event event, LocalDateTime occurrenceStart, EventOccurrenceException exception) {
+        Duration duration = Duration.between(event.getStartTime(), event.getEndTime());
+        if (exception == null) {
+            return new Occurrence(event, occurrenceStart, occurrenceStart, occurrenceStart.plus(duration),
+                    event.getTitle(), event.getLocation(), false);
+        }
+        LocalDateTime start = exception.getStartTime() != null ? exception.getStartTime() : occurrenceStart;
+        LocalDateTime end = exception.getEndTime() != null ? exception.getEndTime() : start.plus(duration);
+        return new Occurrence(event, occurrenceStart, start, end,
+                exception.getTitle() != null ? exception.getTitle() : event.getTitle(),
+                exception.getLocation() != null ? exception.getLocation() : event.getLocation(),
+                exception.isCancelled());
+    }
+
+    private boolean inWindow(LocalDateTime time, LocalDateTime from, LocalDateTime to) {
+        return !time.isBefore(from) && time.isBefore(to);
+    }
+
+    public record Occurrence(Event event, LocalDateTime occurrenceStart, LocalDateTime startTime,
+                             LocalDateTime endTime, String title, String location, boolean cancelled) {
+    }
+}
@@ -0,0 +1,225 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.entity.Event;
+import com.mahiberawi.entity.EventReminder;
+import com.mahiberawi.entity.EventReminderType;
+import com.mahiberawi.repository.EventReminderRepository;
+import com.mahiberawi.repository.EventRepository;
+import com.mahiberawi.util.AfterCommit;
+import com.mahiberawi.util.TimingWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends event reminders at their due time. Due times are stored in event_reminders
+ * when an event is created, rescheduled or first joined; reminders due within the
+ * loading horizon are held on an in-memory timing wheel and fired from it, so
+ * nothing scans the events table. Reminders missed while the application was down
+ * are picked up by the next load. A recurring event keeps one reminder of each type,
+ * which moves on to the next occurrence once sent.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EventReminderScheduler {
+
+    private final EventReminderRepository eventReminderRepository;
+    private final EventRepository eventRepository;
+    private final EventNotificationService eventNotificationService;
+    private final EventOccurrenceService eventOccurrenceService;
+
+    @Value("${app.events.reminders.tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${app.events.reminders.wheel-slots:3600}")
+    private int wheelSlots;
+
+    @Value("${app.events.reminders.horizon-minutes:60}")
+    private long horizonMinutes;
+
+    // reminder id -> due time of the wheel entry that will fire it
+    private final Map<String, Long> scheduled = new ConcurrentHashMap<>();
+    private TimingWheel<ScheduledReminder> wheel;
+    private ScheduledExecutorService ticker;
+
+    @PostConstruct
+    public void start() {
+        wheel = new TimingWheel<>(tickMs, wheelSlots, System.currentTimeMillis());
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-reminders");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::fireDueReminders, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * Create reminders for upcoming events that were created before reminders were stored.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillReminders() {
+        List<Event> events = eventRepository.findUpcomingEventsWithoutReminders(LocalDateTime.now());
+        events.forEach(this::scheduleReminders);
+        if (!events.isEmpty()) {
+            log.info("Scheduled reminders for {} existing events", events.size());
+        }
+    }
+
+    /**
+     * Move the sent reminders of recurring events on to their next occurrence, then load
+     * the reminders that fall due within the horizon onto the wheel.
+     */
+    @Scheduled(fixedDelayString = "${app.events.reminders.refresh-ms:600000}")
+    @Transactional
+    public void loadUpcomingReminders() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            eventReminderRepository.findRecurringEventsWithSentReminders(now).forEach(this::scheduleReminders);
+
+            LocalDateTime horizon = now.plusMinutes(horizonMinutes);
+            for (EventReminder reminder : eventReminderRepository.findBySentAtIsNullAndDueAtBefore(horizon)) {
+                enqueue(reminder.getId(), reminder.getDueAt());
+            }
+        } catch (Exception e) {
+            log.error("Error loading upcoming event reminders", e);
+        }
+    }
+
+    /**
+     * Create or move the reminders of an event to match its start time, or for a recurring
+     * event the next occurrence still far enough away. Reminders whose due time is unchanged
+     * are left alone, so one that was already sent is not repeated.
+     */
+    @Transactional
+    public void scheduleReminders(Event event) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<EventReminderType, EventReminder> existing = new EnumMap<>(EventReminderType.class);
+        eventReminderRepository.findByEvent(event).forEach(reminder -> existing.put(reminder.getType(), reminder));
+
+        List<EventReminder> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (EventReminderType type : EventReminderType.values()) {
+            LocalDateTime startsAt = event.getStartTime();
+            LocalDateTime occurrenceStart = null;
+            if (event.isRecurring()) {
+                EventOccurrenceService.Occurrence next = eventOccurrenceService
+                        .nextOccurrence(event, now.plus(type.getLeadTime())).orElse(null);
+                startsAt = next != null ? next.startTime() : null;
+                occurrenceStart = next != null ? next.occurrenceStart() : null;
+            }
+            LocalDateTime dueAt = startsAt != null ? startsAt.minus(type.getLeadTime()) : null;
+            EventReminder reminder = existing.get(type);
+
+            if (dueAt == null || !dueAt.isAfter(now)) {
+                if (reminder != null && reminder.getSentAt() == null) {
+                    eventReminderRepository.delete(reminder);
+                    removed.add(reminder.getId());
+                }
+                continue;
+            }
+            if (reminder != null && dueAt.equals(reminder.getDueAt())) {
+                continue;
+            }
+
+            if (reminder == null) {
+                reminder = new EventReminder();
+                reminder.setEvent(event);
+                reminder.setType(type);
+            }
+            reminder.setDueAt(dueAt);
+            reminder.setOccurrenceStart(occurrenceStart);
+            reminder.setSentAt(null);
+            changed.add(eventReminderRepository.save(reminder));
+        }
+
+        AfterCommit.run(() -> {
+            removed.forEach(scheduled::remove);
+            changed.forEach(reminder -> enqueue(reminder.getId(), reminder.getDueAt()));
+        });
+    }
+
+    /**
+     * Schedule reminders for an event that has none yet.
+     */
+    @Transactional
+    public void ensureScheduled(Event event) {
+        if (!eventReminderRepository.existsByEvent(event)) {
+            scheduleReminders(event);
+        }
+    }
+
+    @Transactional
+    public void cancelReminders(Event event) {
+        // Deleted as entities so none stay managed and refer to an event being deleted
+        List<EventReminder> reminders = eventReminderRepository.findByEvent(event);
+        List<String> ids = reminders.stream()
+                .map(EventReminder::getId)
+                .toList();
+        eventReminderRepository.deleteAll(reminders);
+        AfterCommit.run(() -> ids.forEach(scheduled::remove));
+    }
+
+    private void enqueue(String reminderId, LocalDateTime dueAt) {
+        long dueAtMillis = dueAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (dueAtMillis > System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(horizonMinutes)) {
+            // Beyond the horizon; a later load will put it on the wheel
+            scheduled.remove(reminderId);
+            return;
+        }
+        Long previous = scheduled.put(reminderId, dueAtMillis);
+        if (!Objects.equals(previous, dueAtMillis)) {
+            wheel.schedule(new ScheduledReminder(reminderId, dueAtMillis), dueAtMillis);
+        }
+    }
+
+    private void fireDueReminders() {
+        List<ScheduledReminder> due;
+        try {
+            due = wheel.advance(System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("Error advancing event reminder wheel", e);
+            return;
+        }
+
+        for (ScheduledReminder reminder : due) {
+            // Entries left behind by a reschedule or cancellation no longer match
+            if (!scheduled.remove(reminder.id(), reminder.dueAtMillis())) {
+                continue;
+            }
+            try {
+                eventNotificationService.sendReminder(reminder.id());
+            } catch (Exception e) {
+                log.error("Error sending event reminder {}", reminder.id(), e);
+            }
+        }
+    }
+
+    private record ScheduledReminder(String id, long dueAtMillis) {
+    }
+}
@@ -1,8 +1,11 @@
 package com.mahiberawi.service;
 
+import com.mahiberawi.dto.event.EventOccurrenceRequest;
+import com.mahiberawi.dto.event.EventParticipantPageResponse;
 import com.mahiberawi.dto.event.EventRequest;
 import com.mahiberawi.dto.event.EventResponse;
 import com.mahiberawi.dto.event.EventParticipantResponse;
+import com.mahiberawi.dto.event.UpcomingEventPageResponse;
 import com.mahiberawi.entity.*;
 import com.mahiberawi.entity.AttendanceStatus;
 import com.mahiberawi.exception.ResourceNotFoundException;
@@ -11,20 +14,56 @@ import com.mahiberawi.repository.EventAttendanceRepository;
 import com.mahiberawi.repository.GroupRepository;
 import com.mahiberawi.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class EventService {
+    private static final int MAX_PARTICIPANT_PAGE_SIZE = 100;
+    private static final int MAX_UPCOMING_PAGE_SIZE = 100;
+    private static final int MAX_UPCOMING_EVENTS = 1000;
+    private static final int MAX_NEARBY_RESULTS = 100;
+    private static final double MAX_NEARBY_RADIUS_KM = 200;
+    private static final List<AttendanceStatus> SEAT_STATUSES = List.of(AttendanceStatus.REGISTERED, AttendanceStatus.ATTENDED);
+
     private final EventRepository eventRepository;
     private final EventAttendanceRepository eventAttendanceRepository;
     private final GroupRepository groupRepository;
     private final UserRepository userRepository;
+    private final EventReminderScheduler eventReminderScheduler;
+    private final EventNotificationService eventNotificationService;
+    private final EventOccurrenceService eventOccurrenceService;
+    private final EventCheckInService eventCheckInService;
+    private final UpcomingEventIndex upcomingEventIndex;
+
+    // How far ahead recurring events are expanded when a list request gives no end
+    @Value("${app.events.recurrence.default-window-days:90}")
+    private long defaultWindowDays;
+
+    // Events per grouped attendance count or lookup by id, which keeps the IN list within driver limits
+    @Value("${app.events.count-chunk-size:500}")
+    private int countChunkSize;
 
     @Transactional
     public EventResponse createEvent(EventRequest request, User creator) {
@@ -40,11 +79,16 @@ public class EventService {
         event.setStartTime(request.getStartTime());
         event.setEndTime(request.getEndTime());
         event.setLocation(request.getLocation());
+        applyCoordinates(event, request);
         event.setMaxParticipants(request.getMaxParticipants());
+        event.setWaitlistEnabled(Boolean.TRUE.equals(request.getWaitlistEnabled()));
+        eventOccurrenceService.applyRecurrence(event, request.getRecurrenceRule());
         event.setGroup(group);
         event.setCreator(creator);
 
         Event savedEvent = eventRepository.save(event);
+        eventReminderScheduler.scheduleReminders(savedEvent);
+        upcomingEventIndex.update(savedEvent);
         return mapToEventResponse(savedEvent);
     }
 
@@ -55,30 +99,159 @@ public class EventService {
     }
 
     public List<EventResponse> getEventsByGroup(String groupId) {
-        List<Event> events = eventRepository.findByGroupId(groupId);
-        return events.stream()
-                .map(this::mapToEventResponse)
-                .collect(Collectors.toList());
+        return getEventsByGroup(groupId, null, null);
+    }
+
+    /**
+     * Events of a group, with recurring events expanded into their occurrences within
+     * [from, to). Without bounds all single events are returned and series are expanded
+     * from now over the default window.
+     */
+    public List<EventResponse> getEventsByGroup(String groupId, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime windowFrom = from != null ? from : LocalDateTime.now();
+        LocalDateTime windowTo = to != null ? to : windowFrom.plusDays(defaultWindowDays);
+
+        List<Event> single = new ArrayList<>();
+        List<Event> series = new ArrayList<>();
+        for (Event event : eventRepository.findByGroupId(groupId)) {
+            if (event.isRecurring()) {
+                if (event.getStartTime().isBefore(windowTo)
+                        && (event.getRecurrenceUntil() == null || !event.getRecurrenceUntil().isBefore(windowFrom))) {
+                    series.add(event);
+                }
+            } else if ((from == null || !event.getStartTime().isBefore(from))
+                    && (to == null || event.getStartTime().isBefore(to))) {
+                single.add(event);
+            }
+        }
+        return mapWithOccurrences(single, series, windowFrom, windowTo);
     }
 
     public List<EventResponse> getUpcomingEvents() {
-        List<Event> events = eventRepository.findByStartTimeAfter(LocalDateTime.now());
-        return events.stream()
-                .map(this::mapToEventResponse)
-                .collect(Collectors.toList());
+        return getUpcomingEvents(null, null);
+    }
+
+    /**
+     * Upcoming events from {@code from} (default now), with recurring events expanded into
+     * their occurrences up to {@code to} (default the configured window). Served from the
+     * in-memory upcoming events index and limited to the first 1000; the paged listing
+     * returns the rest.
+     */
+    public List<EventResponse> getUpcomingEvents(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime windowFrom = from != null ? from : LocalDateTime.now();
+        return mapIndexedEvents(upcomingEventIndex.find(windowFrom, to, null, null, MAX_UPCOMING_EVENTS));
+    }
+
+    /**
+     * One page of upcoming events, optionally limited to some groups. The cursor comes from
+     * the previous page, so pages stay stable while events are added before them.
+     */
+    public UpcomingEventPageResponse getUpcomingEventsPage(LocalDateTime from, LocalDateTime to,
+                                                           Collection<String> groupIds, String cursor, int limit) {
+        LocalDateTime windowFrom = from != null ? from : LocalDateTime.now();
+        int pageSize = Math.min(Math.max(limit, 1), MAX_UPCOMING_PAGE_SIZE);
+        UpcomingEventIndex.Entry after = cursor != null && !cursor.isBlank() ? UpcomingEventIndex.decodeCursor(cursor) : null;
+
+        List<UpcomingEventIndex.Entry> entries = upcomingEventIndex.find(windowFrom, to,
+                groupIds != null && !groupIds.isEmpty() ? groupIds : null, after, pageSize + 1);
+        String nextCursor = null;
+        if (entries.size() > pageSize) {
+            entries = entries.subList(0, pageSize);
+            nextCursor = UpcomingEventIndex.encodeCursor(entries.get(pageSize - 1));
+        }
+
+        return UpcomingEventPageResponse.builder()
+                .events(mapIndexedEvents(entries))
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Located events and occurrences within the radius of a point and starting within
+     * [from, to), nearest first. The window defaults to now and the configured window.
+     */
+    public List<EventResponse> getNearbyEvents(double latitude, double longitude, double radiusKm,
+                                               LocalDateTime from, LocalDateTime to, int limit) {
+        if (radiusKm <= 0 || radiusKm > MAX_NEARBY_RADIUS_KM) {
+            throw new IllegalArgumentException("Radius must be between 0 and " + (int) MAX_NEARBY_RADIUS_KM + " km");
+        }
+        LocalDateTime windowFrom = from != null ? from : LocalDateTime.now();
+        LocalDateTime windowTo = to != null ? to : windowFrom.plusDays(defaultWindowDays);
+
+        List<UpcomingEventIndex.Nearby> nearby = upcomingEventIndex.findNear(latitude, longitude, radiusKm,
+                windowFrom, windowTo, Math.min(Math.max(limit, 1), MAX_NEARBY_RESULTS));
+        Map<OccurrenceKey, Double> distances = new HashMap<>();
+        for (UpcomingEventIndex.Nearby match : nearby) {
+            distances.put(new OccurrenceKey(match.entry().eventId(), match.entry().occurrenceStart()), match.distanceKm());
+        }
+
+        List<EventResponse> responses = mapIndexedEvents(nearby.stream().map(UpcomingEventIndex.Nearby::entry).toList());
+        for (EventResponse response : responses) {
+            response.setDistanceKm(distances.get(new OccurrenceKey(response.getId(), response.getOccurrenceStart())));
+        }
+        return responses;
+    }
+
+    /**
+     * Occurrences of one recurring event within [from, to); a single event is returned as is.
+     */
+    public List<EventResponse> getEventOccurrences(String eventId, LocalDateTime from, LocalDateTime to) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new ResourceNotFoundException("Event", "id", eventId));
+        if (!event.isRecurring()) {
+            return List.of(mapToEventResponse(event));
+        }
+        LocalDateTime windowFrom = from != null ? from : LocalDateTime.now();
+        LocalDateTime windowTo = to != null ? to : windowFrom.plusDays(defaultWindowDays);
+        return mapToOccurrenceResponses(eventOccurrenceService.expand(List.of(event), windowFrom, windowTo));
+    }
+
+    /**
+     * Cancel, move or retitle one occurrence of a recurring event.
+     */
+    @Transactional
+    public EventResponse updateOccurrence(String eventId, LocalDateTime occurrenceStart, EventOccurrenceRequest request) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new ResourceNotFoundException("Event", "id", eventId));
+
+        EventOccurrenceService.Occurrence before = eventOccurrenceService.getOccurrence(event, occurrenceStart);
+        EventOccurrenceService.Occurrence after = eventOccurrenceService.updateOccurrence(event, occurrenceStart, request);
+
+        eventReminderScheduler.scheduleReminders(event);
+        upcomingEventIndex.update(event);
+        if (after.cancelled() && !before.cancelled()) {
+            eventNotificationService.notifyOccurrenceCancelled(after);
+        } else if (!after.cancelled() && !after.startTime().equals(before.startTime())) {
+            eventNotificationService.notifyOccurrenceTimeChanged(after);
+        }
+        return mapToOccurrenceResponses(List.of(after)).get(0);
     }
 
     @Transactional
     public EventResponse updateEvent(String id, EventRequest request) {
         Event event = eventRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Event", "id", id));
+        boolean timeChanged = !request.getStartTime().equals(event.getStartTime())
+                || !request.getEndTime().equals(event.getEndTime());
+        String previousRule = event.getRecurrenceRule();
+        LocalDateTime previousStart = event.getStartTime();
 
         event.setTitle(request.getTitle());
         event.setDescription(request.getDescription());
         event.setStartTime(request.getStartTime());
         event.setEndTime(request.getEndTime());
         event.setLocation(request.getLocation());
+        applyCoordinates(event, request);
         event.setMaxParticipants(request.getMaxParticipants());
+        if (request.getWaitlistEnabled() != null) {
+            event.setWaitlistEnabled(request.getWaitlistEnabled());
+        }
+        eventOccurrenceService.applyRecurrence(event, request.getRecurrenceRule());
+        if (event.isRecurring() != (previousRule != null) && eventAttendanceRepository.existsByEvent(event)) {
+            // Attendance is kept per occurrence for a series and per event otherwise
+            throw new IllegalStateException("Recurrence cannot be added to or removed from an event that has participants");
+        }
+        timeChanged |= !Objects.equals(previousRule, event.getRecurrenceRule());
 
         if (request.getGroupId() != null) {
             Group group = groupRepository.findById(request.getGroupId())
@@ -86,7 +259,16 @@ public class EventService {
             event.setGroup(group);
         }
 
-        Event updatedEvent = eventRepository.save(event);
+        Event updatedEvent = eventRepository.saveAndFlush(event);
+        if (previousRule != null && updatedEvent.isRecurring()) {
+            shiftOccurrences(updatedEvent, Duration.between(previousStart, updatedEvent.getStartTime()));
+        }
+        promoteFromWaitlist(updatedEvent);
+        eventCheckInService.invalidate(id);
+        upcomingEventIndex.update(updatedEvent);
+        if (timeChanged) {
+            onTimeChanged(updatedEvent);
+        }
         return mapToEventResponse(updatedEvent);
     }
 
@@ -94,44 +276,381 @@ public class EventService {
     public void deleteEvent(String id) {
         Event event = eventRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Event", "id", id));
+        eventReminderScheduler.cancelReminders(event);
+        eventOccurrenceService.deleteExceptions(event);
         eventRepository.delete(event);
+        upcomingEventIndex.remove(id);
+        eventCheckInService.invalidate(id);
     }
 
     @Transactional
     public EventResponse registerParticipant(String eventId, User user) {
+        return registerParticipant(eventId, null, user);
+    }
+
+    /**
+     * Register the user for the event, or for one occurrence of a recurring event. A seat
+     * is taken with a conditional update on the event's counter (or, for an occurrence, a
+     * count under a lock on the series), so concurrent registrations cannot exceed
+     * maxParticipants. When the event is full the user is waitlisted if the event allows it.
+     */
+    @Transactional
+    public EventResponse registerParticipant(String eventId, LocalDateTime occurrenceStart, User user) {
         Event event = eventRepository.findById(eventId)
                 .orElseThrow(() -> new ResourceNotFoundException("Event", "id", eventId));
+        EventOccurrenceService.Occurrence occurrence = resolveOccurrence(event, occurrenceStart);
+        if (occurrence != null && occurrence.cancelled()) {
+            throw new IllegalStateException("This occurrence has been cancelled");
+        }
 
-        if (event.getMaxParticipants() > 0 && 
-             eventAttendanceRepository.countByEventAndStatus(event, AttendanceStatus.REGISTERED) >= event.getMaxParticipants()) {
-            throw new IllegalStateException("Event is full");
+        EventAttendance existing = eventAttendanceRepository
+                .findByEventAndUserIdAndOccurrenceStart(event, user.getId(), occurrenceStart).orElse(null);
+        if (existing != null) {
+            if (existing.getStatus() != AttendanceStatus.CANCELLED) {
+                return mapToEventResponse(event, occurrence);
+            }
+            // Re-registering after a cancellation joins the back of the queue
+            eventAttendanceRepository.delete(existing);
+            eventAttendanceRepository.flush();
         }
 
         EventAttendance participant = new EventAttendance();
         participant.setEvent(event);
         participant.setUser(user);
-        participant.setStatus(AttendanceStatus.REGISTERED);
+        participant.setOccurrenceStart(occurrenceStart);
+
+        if (takeSeat(event, occurrenceStart)) {
+            participant.setStatus(AttendanceStatus.REGISTERED);
+        } else if (Boolean.TRUE.equals(event.getWaitlistEnabled())) {
+            participant.setStatus(AttendanceStatus.WAITLISTED);
+        } else {
+            throw new IllegalStateException("Event is full");
+        }
 
         eventAttendanceRepository.save(participant);
-        return mapToEventResponse(event);
+        eventCheckInService.invalidate(eventId);
+
+        EventResponse response = mapToEventResponse(event, occurrence);
+        if (participant.getStatus() == AttendanceStatus.REGISTERED) {
+            // Taking the seat locked the event row, so concurrent joins do not race here
+            eventReminderScheduler.ensureScheduled(event);
+            eventNotificationService.notifyIfAlmostFull(event, occurrenceStart, seatsTaken(event, occurrenceStart));
+        }
+        return response;
     }
 
     @Transactional
     public EventResponse updateParticipantStatus(String eventId, String userId, AttendanceStatus status) {
+        return updateParticipantStatus(eventId, null, userId, status);
+    }
+
+    @Transactional
+    public EventResponse updateParticipantStatus(String eventId, LocalDateTime occurrenceStart, String userId,
+                                                 AttendanceStatus status) {
         Event event = eventRepository.findById(eventId)
                 .orElseThrow(() -> new ResourceNotFoundException("Event", "id", eventId));
+        EventOccurrenceService.Occurrence occurrence = resolveOccurrence(event, occurrenceStart);
 
-        EventAttendance participant = eventAttendanceRepository.findByEventAndUserId(event, userId)
+        EventAttendance participant = eventAttendanceRepository
+                .findByEventAndUserIdAndOccurrenceStart(event, userId, occurrenceStart)
                 .orElseThrow(() -> new ResourceNotFoundException("EventAttendance", "userId", userId));
 
-        participant.setStatus(status);
-        eventAttendanceRepository.save(participant);
-        return mapToEventResponse(event);
+        AttendanceStatus currentStatus = participant.getStatus();
+        if (currentStatus == status) {
+            return mapToEventResponse(event, occurrence);
+        }
+
+        boolean heldSeat = holdsSeat(currentStatus);
+        boolean needsSeat = holdsSeat(status);
+
+        if (!heldSeat && needsSeat && !takeSeat(event, occurrenceStart)) {
+            throw new IllegalStateException("Event is full");
+        }
+        if (eventAttendanceRepository.updateStatusIfCurrent(participant.getId(), currentStatus, status) == 0) {
+            throw new IllegalStateException("Participant status was changed concurrently, please retry");
+        }
+        eventCheckInService.invalidate(eventId);
+
+        if (!heldSeat && needsSeat) {
+            eventNotificationService.notifyIfAlmostFull(event, occurrenceStart, seatsTaken(event, occurrenceStart));
+        }
+        if (heldSeat && !needsSeat) {
+            releaseSeat(event, occurrenceStart);
+            promoteFromWaitlist(event, occurrenceStart);
+        }
+        return mapToEventResponse(event, occurrence);
+    }
+
+    public EventParticipantPageResponse getEventParticipants(String eventId, int page, int size) {
+        return getEventParticipants(eventId, null, page, size);
+    }
+
+    /**
+     * Participants of an event one page at a time; for a recurring event, optionally only
+     * those of one occurrence.
+     */
+    public EventParticipantPageResponse getEventParticipants(String eventId, LocalDateTime occurrenceStart, int page, int size) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new ResourceNotFoundException("Event", "id", eventId));
+
+        PageRequest pageRequest = PageRequest.of(Math.max(page, 0),
+                Math.min(Math.max(size, 1), MAX_PARTICIPANT_PAGE_SIZE), Sort.by("createdAt"));
+        Page<EventAttendance> participants = occurrenceStart != null
+                ? eventAttendanceRepository.findByEventAndOccurrenceWithUser(event, occurrenceStart, pageRequest)
+                : eventAttendanceRepository.findByEventWithUser(event, pageRequest);
+
+        return EventParticipantPageResponse.builder()
+                .eventId(eventId)
+                .participants(participants.getContent().stream()
+                        .map(this::mapToParticipantResponse)
+                        .collect(Collectors.toList()))
+                .page(participants.getNumber())
+                .size(participants.getSize())
+                .totalElements(participants.getTotalElements())
+                .totalPages(participants.getTotalPages())
+                .build();
+    }
+
+    /**
+     * Fill free seats from the waitlist, for every upcoming occurrence of a recurring event.
+     */
+    private void promoteFromWaitlist(Event event) {
+        if (!event.isRecurring()) {
+            promoteFromWaitlist(event, null);
+            return;
+        }
+        for (LocalDateTime occurrenceStart : eventAttendanceRepository.findWaitlistedOccurrences(event, LocalDateTime.now())) {
+            promoteFromWaitlist(event, occurrenceStart);
+        }
+    }
+
+    /**
+     * Move waitlisted participants, oldest first, into any seats that are free.
+     */
+    private void promoteFromWaitlist(Event event, LocalDateTime occurrenceStart) {
+        if (!Boolean.TRUE.equals(event.getWaitlistEnabled())) {
+            return;
+        }
+        while (takeSeat(event, occurrenceStart)) {
+            if (!promoteNextWaitlisted(event, occurrenceStart)) {
+                releaseSeat(event, occurrenceStart);
+                return;
+            }
+        }
+    }
+
+    private boolean promoteNextWaitlisted(Event event, LocalDateTime occurrenceStart) {
+        while (true) {
+            EventAttendance next = eventAttendanceRepository
+                    .findFirstByEventAndOccurrenceStartAndStatusOrderByCreatedAtAsc(event, occurrenceStart, AttendanceStatus.WAITLISTED)
+                    .orElse(null);
+            if (next == null) {
+                return false;
+            }
+            // A concurrent promotion may have taken this entry already; move on to the next one
+            if (eventAttendanceRepository.updateStatusIfCurrent(
+                    next.getId(), AttendanceStatus.WAITLISTED, AttendanceStatus.REGISTERED) == 1) {
+                log.info("Promoted attendance {} from the waitlist of event {}", next.getId(), event.getId());
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Take a seat if one is free. A single event keeps a seat counter on its row; an
+     * occurrence's seats are counted from its attendance while the series row is locked.
+     */
+    private boolean takeSeat(Event event, LocalDateTime occurrenceStart) {
+        if (occurrenceStart == null) {
+            return eventRepository.reserveSeat(event.getId()) == 1;
+        }
+        eventRepository.lockForSeatChange(event.getId());
+        return event.getMaxParticipants() <= 0 || eventAttendanceRepository
+                .countByEventAndOccurrenceStartAndStatusIn(event, occurrenceStart, SEAT_STATUSES) < event.getMaxParticipants();
+    }
+
+    // Seats held after takeSeat, counted under the lock it took
+    private int seatsTaken(Event event, LocalDateTime occurrenceStart) {
+        if (occurrenceStart == null) {
+            return eventRepository.findRegisteredCount(event.getId());
+        }
+        return eventAttendanceRepository.countByEventAndOccurrenceStartAndStatusIn(event, occurrenceStart, SEAT_STATUSES);
+    }
+
+    private void releaseSeat(Event event, LocalDateTime occurrenceStart) {
+        if (occurrenceStart == null) {
+            eventRepository.releaseSeat(event.getId());
+        }
+    }
+
+    /**
+     * The occurrence an attendance request refers to: required for a recurring event and
+     * not allowed otherwise.
+     */
+    private EventOccurrenceService.Occurrence resolveOccurrence(Event event, LocalDateTime occurrenceStart) {
+        if (!event.isRecurring()) {
+            if (occurrenceStart != null) {
+                throw new IllegalArgumentException("Event is not recurring");
+            }
+            return null;
+        }
+        if (occurrenceStart == null) {
+            throw new IllegalArgumentException("An occurrence is required for a recurring event");
+        }
+        return eventOccurrenceService.getOccurrence(event, occurrenceStart);
+    }
+
+    private void applyCoordinates(Event event, EventRequest request) {
+        if ((request.getLatitude() == null) != (request.getLongitude() == null)) {
+            throw new IllegalArgumentException("Latitude and longitude must be given together");
+        }
+        event.setLatitude(request.getLatitude());
+        event.setLongitude(request.getLongitude());
+    }
+
+    /**
+     * Exceptions and attendance of a series are keyed by the original start of their
+     * occurrence, so when the series start moves they move by the same amount.
+     */
+    private void shiftOccurrences(Event event, Duration shift) {
+        if (shift.isZero()) {
+            return;
+        }
+        eventOccurrenceService.shiftExceptions(event, shift);
+
+        // Moved from the far end of the shift, so no occurrence's registrations join another's
+        List<LocalDateTime> starts = new ArrayList<>(eventAttendanceRepository.findOccurrenceStarts(event));
+        starts.sort(shift.isNegative() ? Comparator.naturalOrder() : Comparator.reverseOrder());
+        for (LocalDateTime start : starts) {
+            eventAttendanceRepository.moveOccurrence(event, start, start.plus(shift));
+        }
+    }
+
+    private void onTimeChanged(Event event) {
+        eventReminderScheduler.scheduleReminders(event);
+        eventNotificationService.notifyTimeChanged(event);
+    }
+
+    private boolean holdsSeat(AttendanceStatus status) {
+        return SEAT_STATUSES.contains(status);
     }
 
     private EventResponse mapToEventResponse(Event event) {
-        List<EventAttendance> participants = eventAttendanceRepository.findByEvent(event);
-        
+        return mapToEventResponse(event, countAttendance(List.of(event)).get(event.getId()));
+    }
+
+    private EventResponse mapToEventResponse(Event event, EventOccurrenceService.Occurrence occurrence) {
+        return occurrence != null ? mapToOccurrenceResponses(List.of(occurrence)).get(0) : mapToEventResponse(event);
+    }
+
+    private List<EventResponse> mapWithOccurrences(List<Event> single, List<Event> series,
+                                                   LocalDateTime from, LocalDateTime to) {
+        List<EventResponse> responses = new ArrayList<>(mapToEventResponses(single));
+        responses.addAll(mapToOccurrenceResponses(eventOccurrenceService.expand(series, from, to)));
+        responses.sort(Comparator.comparing(EventResponse::getStartTime));
+        return responses;
+    }
+
+    /**
+     * Responses for index entries, in index order. Single events are read by id; occurrences
+     * take their time and overrides from the entry.
+     */
+    private List<EventResponse> mapIndexedEvents(List<UpcomingEventIndex.Entry> entries) {
+        Map<String, Event> events = new HashMap<>();
+        List<String> ids = entries.stream().map(UpcomingEventIndex.Entry::eventId).distinct().toList();
+        for (int from = 0; from < ids.size(); from += countChunkSize) {
+            eventRepository.findAllById(ids.subList(from, Math.min(from + countChunkSize, ids.size())))
+                    .forEach(event -> events.put(event.getId(), event));
+        }
+
+        List<Event> single = new ArrayList<>();
+        List<EventOccurrenceService.Occurrence> occurrences = new ArrayList<>();
+        for (UpcomingEventIndex.Entry entry : entries) {
+            Event event = events.get(entry.eventId());
+            if (event == null) {
+                // Deleted since it was indexed
+                continue;
+            }
+            if (entry.occurrenceStart() == null) {
+                single.add(event);
+            } else {
+                occurrences.add(new EventOccurrenceService.Occurrence(event, entry.occurrenceStart(), entry.startTime(),
+                        entry.endTime(), entry.title(), entry.location(), entry.cancelled()));
+            }
+        }
+
+        Map<String, EventResponse> singleResponses = new HashMap<>();
+        mapToEventResponses(single).forEach(response -> singleResponses.put(response.getId(), response));
+        Iterator<EventResponse> occurrenceResponses = mapToOccurrenceResponses(occurrences).iterator();
+
+        List<EventResponse> responses = new ArrayList<>(entries.size());
+        for (UpcomingEventIndex.Entry entry : entries) {
+            if (!events.containsKey(entry.eventId())) {
+                continue;
+            }
+            responses.add(entry.occurrenceStart() == null
+                    ? singleResponses.get(entry.eventId())
+                    : occurrenceResponses.next());
+        }
+        return responses;
+    }
+
+    private List<EventResponse> mapToOccurrenceResponses(List<EventOccurrenceService.Occurrence> occurrences) {
+        if (occurrences.isEmpty()) {
+            return List.of();
+        }
+
+        // One grouped count covering every occurrence shown
+        Map<String, Event> series = new LinkedHashMap<>();
+        LocalDateTime first = null;
+        LocalDateTime last = null;
+        for (EventOccurrenceService.Occurrence occurrence : occurrences) {
+            series.putIfAbsent(occurrence.event().getId(), occurrence.event());
+            LocalDateTime start = occurrence.occurrenceStart();
+            first = first == null || start.isBefore(first) ? start : first;
+            last = last == null || start.isAfter(last) ? start : last;
+        }
+        Map<OccurrenceKey, Map<AttendanceStatus, Integer>> counts = new HashMap<>();
+        List<Event> seriesEvents = new ArrayList<>(series.values());
+        for (int from = 0; from < seriesEvents.size(); from += countChunkSize) {
+            List<Event> chunk = seriesEvents.subList(from, Math.min(from + countChunkSize, seriesEvents.size()));
+            for (Object[] result : eventAttendanceRepository.countByOccurrencesGroupedByStatus(chunk, first, last)) {
+                OccurrenceKey key = new OccurrenceKey((String) result[0], (LocalDateTime) result[1]);
+                counts.computeIfAbsent(key, k -> new EnumMap<>(AttendanceStatus.class))
+                        .put((AttendanceStatus) result[2], ((Long) result[3]).intValue());
+            }
+        }
+
+        List<EventResponse> responses = new ArrayList<>(occurrences.size());
+        for (EventOccurrenceService.Occurrence occurrence : occurrences) {
+            EventResponse response = mapToEventResponse(occurrence.event(),
+                    counts.get(new OccurrenceKey(occurrence.event().getId(), occurrence.occurrenceStart())));
+            response.setOccurrenceStart(occurrence.occurrenceStart());
+            response.setTitle(occurrence.title());
+            response.setLocation(occurrence.location());
+            response.setStartTime(occurrence.startTime());
+            response.setEndTime(occurrence.endTime());
+            if (occurrence.cancelled()) {
+                response.setStatus(EventStatus.CANCELLED);
+            }
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    private List<EventResponse> mapToEventResponses(List<Event> events) {
+        Map<String, Map<AttendanceStatus, Integer>> counts = countAttendance(events);
+        return events.stream()
+                .map(event -> mapToEventResponse(event, counts.get(event.getId())))
+                .collect(Collectors.toList());
+    }
+
+    private EventResponse mapToEventResponse(Event event, Map<AttendanceStatus, Integer> attendanceCounts) {
+        Map<AttendanceStatus, Integer> counts = attendanceCounts != null ? attendanceCounts : new EnumMap<>(AttendanceStatus.class);
+        for (AttendanceStatus status : AttendanceStatus.values()) {
+            counts.putIfAbsent(status, 0);
+        }
+
         return EventResponse.builder()
                 .id(event.getId())
                 .title(event.getTitle())
@@ -139,41 +658,73 @@ public class EventService {
                 .startTime(event.getStartTime())
                 .endTime(event.getEndTime())
                 .location(event.getLocation())
+                .latitude(event.getLatitude())
+                .longitude(event.getLongitude())
                 .maxParticipants(event.getMaxParticipants())
+                .currentParticipants(counts.get(AttendanceStatus.REGISTERED) + counts.get(AttendanceStatus.ATTENDED))
+                .waitlistEnabled(event.getWaitlistEnabled())
+                .recurrenceRule(event.getRecurrenceRule())
                 .status(event.getStatus())
                 .createdAt(event.getCreatedAt())
-                .participants(participants.stream()
-                        .map(this::mapToParticipantResponse)
-                        .collect(Collectors.toList()))
+                .attendanceCounts(counts)
                 .build();
     }
 
+    /**
+     * Attendance counts per status for the given events, from one grouped query per chunk of events.
+     * A recurring event only has counts per occurrence, so its series row counts nothing.
+     */
+    private Map<String, Map<AttendanceStatus, Integer>> countAttendance(List<Event> events) {
+        Map<String, Map<AttendanceStatus, Integer>> counts = new HashMap<>();
+        for (int from = 0; from < events.size(); from += countChunkSize) {
+            List<Event> chunk = events.subList(from, Math.min(from + countChunkSize, events.size()));
+            for (Object[] result : eventAttendanceRepository.countByEventsGroupedByStatus(chunk)) {
+                String eventId = (String) result[0];
+                AttendanceStatus status = (AttendanceStatus) result[1];
+                Long count = (Long) result[2];
+                counts.computeIfAbsent(eventId, id -> new EnumMap<>(AttendanceStatus.class))
+                        .put(status, count.intValue());
+            }
+        }
+        return counts;
+    }
+
     private EventParticipantResponse mapToParticipantResponse(EventAttendance participant) {
+        User user = participant.getUser();
         return EventParticipantResponse.builder()
                 .id(participant.getId())
-                .userId(participant.getUser() != null ? participant.getUser().getId() : null)
+                .userId(user != null ? user.getId() : null)
+                .userEmail(user != null ? user.getEmail() : null)
+                .userFullName(user != null ? user.getFullName() : null)
+                .userProfilePicture(user != null ? user.getProfilePicture() : null)
+                .occurrenceStart(participant.getOccurrenceStart())
                 .status(participant.getStatus())
+                .registeredAt(participant.getCreatedAt())
                 .build();
     }
 
-    public List<Event> getUpcomingEventsForReminders(LocalDateTime now) {
-        LocalDateTime weekFromNow = now.plusWeeks(1);
-        return eventRepository.findByStartTimeBetween(now, weekFromNow);
-    }
-
-    public List<Event> getActiveEvents(LocalDateTime now) {
-        return eventRepository.findByStartTimeAfter(now);
-    }
-
     @Transactional
     public EventResponse updateEventTime(String id, LocalDateTime newStartTime, LocalDateTime newEndTime) {
         Event event = eventRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Event", "id", id));
 
+        boolean timeChanged = !newStartTime.equals(event.getStartTime()) || !newEndTime.equals(event.getEndTime());
+        Duration shift = Duration.between(event.getStartTime(), newStartTime);
         event.setStartTime(newStartTime);
         event.setEndTime(newEndTime);
+        if (event.isRecurring()) {
+            eventOccurrenceService.applyRecurrence(event, event.getRecurrenceRule());
+        }
 
         Event updatedEvent = eventRepository.save(event);
+        if (updatedEvent.isRecurring() && !shift.isZero()) {
+            shiftOccurrences(updatedEvent, shift);
+            eventCheckInService.invalidate(id);
+        }
+        if (timeChanged) {
+            upcomingEventIndex.update(updatedEvent);
+            onTimeChanged(updatedEvent);
+        }
         return mapToEventResponse(updatedEvent);
     }
 
@@ -184,24 +735,25 @@ public class EventService {
 
         event.setMaxParticipants(newMaxParticipants);
 
-        Event updatedEvent = eventRepository.save(event);
+        Event updatedEvent = eventRepository.saveAndFlush(event);
+        promoteFromWaitlist(updatedEvent);
+        eventCheckInService.invalidate(id);
         return mapToEventResponse(updatedEvent);
     }
 
     // ========== ADMIN METHODS ==========
     
     public List<EventResponse> getAllEvents() {
-        List<Event> events = eventRepository.findAll();
-        return events.stream()
-                .map(this::mapToEventResponse)
-                .collect(Collectors.toList());
+        return mapToEventResponses(eventRepository.findAll());
     }
     
     public List<EventResponse> getRecentEvents(int limit) {
-        List<Event> events = eventRepository.findTop10ByOrderByCreatedAtDesc();
-        return events.stream()
+        List<Event> events = eventRepository.findTop10ByOrderByCreatedAtDesc().stream()
                 .limit(limit)
-                .map(this::mapToEventResponse)
                 .collect(Collectors.toList());
+        return mapToEventResponses(events);
+    }
+
+    private record OccurrenceKey(String eventId, LocalDateTime occurrenceStart) {
     }
-} 
\ No newline at end of file
+}
@@ -1,6 +1,10 @@
 package com.mahiberawi.service;
 
+import com.mahiberawi.dto.payment.GroupPaymentMode;
 import com.mahiberawi.dto.payment.GroupPaymentRequest;
+import com.mahiberawi.dto.payment.GroupPaymentStatisticsResponse;
+import com.mahiberawi.dto.payment.GroupPaymentStatisticsResponse.Totals;
+import com.mahiberawi.dto.payment.GroupPaymentSummary;
 import com.mahiberawi.dto.payment.PaymentRequest;
 import com.mahiberawi.dto.payment.PaymentResponse;
 import com.mahiberawi.entity.*;
@@ -12,14 +16,26 @@ import com.mahiberawi.exception.UnauthorizedException;
 import com.mahiberawi.repository.GroupMemberRepository;
 import com.mahiberawi.repository.GroupRepository;
 import com.mahiberawi.repository.PaymentRepository;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.time.LocalDateTime;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -31,10 +47,32 @@ public class GroupPaymentService {
     private final GroupMemberRepository groupMemberRepository;
     private final PaymentRepository paymentRepository;
     private final PaymentService paymentService;
-    private final NotificationService notificationService;
+    private final GroupPaymentTotalsService groupPaymentTotalsService;
+    private final PaymentBatchWriter paymentBatchWriter;
+    private final PlatformTransactionManager transactionManager;
 
-    @Transactional
-    public List<PaymentResponse> createGroupPaymentRequest(GroupPaymentRequest request, User admin) {
+    // Members written per batch insert
+    @Value("${app.payments.group-requests.chunk-size:500}")
+    private int chunkSize;
+
+    // Larger requests return counts without the created payments
+    @Value("${app.payments.group-requests.max-listed-payments:100}")
+    private int maxListedPayments;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Create one pending payment and one notification per targeted member. Rows are
+     * written with JDBC batch inserts, a chunk of members at a time. In ALL_OR_NOTHING
+     * mode all chunks share one transaction; in RESUMABLE mode each chunk commits on its
+     * own and a failure stops the request, which can be resumed with its batch id.
+     */
+    public GroupPaymentSummary createGroupPaymentRequest(GroupPaymentRequest request, User admin) {
         // Validate group exists
         Group group = groupRepository.findById(request.getGroupId())
                 .orElseThrow(() -> new ResourceNotFoundException("Group not found with id: " + request.getGroupId()));
@@ -47,56 +85,73 @@ public class GroupPaymentService {
             throw new UnauthorizedException("Only admins and moderators can create group payment requests");
         }
 
-        // Get all active members of the group
-        List<GroupMember> activeMembers = groupMemberRepository.findByGroupAndStatus(group, GroupMemberStatus.ACTIVE);
-
-        // Filter members if specific targetUserIds are provided
-        List<GroupMember> targetMembers = activeMembers;
+        // Active members, narrowed to targetUserIds when given
+        List<String> targetUserIds = groupMemberRepository.findUserIdsByGroupIdAndStatus(group.getId(), GroupMemberStatus.ACTIVE);
         if (request.getTargetUserIds() != null && !request.getTargetUserIds().isEmpty()) {
-            targetMembers = activeMembers.stream()
-                    .filter(member -> request.getTargetUserIds().contains(member.getUser().getId()))
-                    .collect(Collectors.toList());
+            Set<String> requested = new HashSet<>(request.getTargetUserIds());
+            targetUserIds = targetUserIds.stream().filter(requested::contains).collect(Collectors.toList());
         }
 
-        List<PaymentResponse> createdPayments = new ArrayList<>();
-
-        // Create individual payment records for each member
-        for (GroupMember member : targetMembers) {
-            try {
-                Payment payment = new Payment();
-                payment.setAmount(request.getAmount());
-                payment.setMethod(request.getMethod());
-                payment.setStatus(PaymentStatus.PENDING);
-                payment.setPayer(member.getUser());
-                payment.setGroup(group);
-                payment.setDescription(request.getDescription());
-                payment.setTransactionId(generateTransactionId());
-                
-                // Set due date if provided
-                if (request.getDueDate() != null) {
-                    // You might want to add a dueDate field to Payment entity
-                    // For now, we'll store it in description
-                    payment.setDescription(payment.getDescription() + " (Due: " + request.getDueDate() + ")");
-                }
-
-                Payment savedPayment = paymentRepository.save(payment);
-                PaymentResponse paymentResponse = paymentService.mapToPaymentResponse(savedPayment);
-                createdPayments.add(paymentResponse);
-
-                // Send notification to member about the payment request
-                sendPaymentRequestNotification(member.getUser(), group, request);
+        GroupPaymentMode mode = request.getMode() != null ? request.getMode() : GroupPaymentMode.ALL_OR_NOTHING;
+        String batchId = request.getBatchId() != null ? request.getBatchId() : UUID.randomUUID().toString();
+        Set<String> alreadyCreated = request.getBatchId() != null
+                ? new HashSet<>(paymentRepository.findPayerIdsByRequestBatch(batchId, group.getId()))
+                : Set.of();
+        List<String> pending = targetUserIds.stream()
+                .filter(userId -> !alreadyCreated.contains(userId))
+                .collect(Collectors.toList());
 
-                log.info("Created payment request for user {} in group {}: {}", 
-                    member.getUser().getId(), group.getId(), payment.getTransactionId());
+        String notification = paymentRequestMessage(group, request);
+        PaymentBatchWriter.PendingPayments payments = PaymentBatchWriter.PendingPayments.builder()
+                .groupId(group.getId())
+                .requestBatchId(batchId)
+                .amount(request.getAmount())
+                .method(request.getMethod())
+                .description(paymentDescription(request))
+                .notification(userId -> notification)
+                .build();
 
-            } catch (Exception e) {
-                log.error("Failed to create payment for user {} in group {}: {}", 
-                    member.getUser().getId(), group.getId(), e.getMessage());
+        int created = 0;
+        int createdConcurrently = 0;
+        String error = null;
+        if (mode == GroupPaymentMode.ALL_OR_NOTHING) {
+            transactionTemplate.executeWithoutResult(status -> paymentBatchWriter.insertPending(payments, pending, chunkSize));
+            created = pending.size();
+        } else {
+            for (int from = 0; from < pending.size(); from += chunkSize) {
+                List<String> chunk = pending.subList(from, Math.min(from + chunkSize, pending.size()));
+                try {
+                    int inserted = insertChunk(payments, chunk);
+                    created += inserted;
+                    createdConcurrently += chunk.size() - inserted;
+                } catch (DataAccessException e) {
+                    log.error("Group payment request {} for group {} stopped after {} of {} members: {}",
+                            batchId, group.getId(), created, pending.size(), e.getMessage());
+                    error = "Stopped after " + created + " of " + pending.size() + " members; resume with the batch id";
+                    break;
+                }
             }
         }
 
-        log.info("Created {} payment requests for group {}", createdPayments.size(), group.getId());
-        return createdPayments;
+        log.info("Created {} payment requests for group {} (batch {})", created, group.getId(), batchId);
+
+        int total = alreadyCreated.size() + createdConcurrently + created;
+        return GroupPaymentSummary.builder()
+                .batchId(batchId)
+                .groupId(group.getId())
+                .mode(mode)
+                .targeted(targetUserIds.size())
+                .created(created)
+                .alreadyCreated(alreadyCreated.size() + createdConcurrently)
+                .remaining(pending.size() - createdConcurrently - created)
+                .complete(createdConcurrently + created == pending.size())
+                .error(error)
+                .payments(total > 0 && total <= maxListedPayments
+                        ? paymentRepository.findByRequestBatchIdWithPayer(batchId).stream()
+                                .map(paymentService::mapToPaymentResponse)
+                                .collect(Collectors.toList())
+                        : null)
+                .build();
     }
 
     @Transactional(readOnly = true)
@@ -123,8 +178,70 @@ public class GroupPaymentService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Payment counts and amounts for a group per status, method, month and member.
+     * Totals per status come from the running group totals; the breakdowns are
+     * grouped aggregates computed by the database.
+     */
+    @Transactional(readOnly = true)
+    public GroupPaymentStatisticsResponse getGroupPaymentStatistics(String groupId, User currentUser) {
+        requireAdminOrModerator(groupId, currentUser);
+
+        Map<PaymentMethod, Map<PaymentStatus, Totals>> byMethod = new EnumMap<>(PaymentMethod.class);
+        for (PaymentRepository.MethodTotals row : paymentRepository.sumByMethodAndStatus(groupId)) {
+            if (row.getMethod() == null) {
+                // Billed dues and equb payments not paid yet; counted in the status totals only
+                continue;
+            }
+            byMethod.computeIfAbsent(row.getMethod(), key -> new EnumMap<>(PaymentStatus.class))
+                    .put(row.getStatus(), totals(row.getPaymentCount(), row.getAmountTotal()));
+        }
+
+        Map<String, Map<PaymentStatus, Totals>> byMonth = new TreeMap<>();
+        for (PaymentRepository.MonthTotals row : paymentRepository.sumByMonthAndStatus(groupId)) {
+            byMonth.computeIfAbsent(String.format("%04d-%02d", row.getPaymentYear(), row.getPaymentMonth()),
+                            key -> new EnumMap<>(PaymentStatus.class))
+                    .put(row.getStatus(), totals(row.getPaymentCount(), row.getAmountTotal()));
+        }
+
+        Map<String, GroupPaymentStatisticsResponse.MemberTotals> byMember = new LinkedHashMap<>();
+        for (PaymentRepository.MemberTotals row : paymentRepository.sumByPayerAndStatus(groupId)) {
+            byMember.computeIfAbsent(row.getUserId(), key -> GroupPaymentStatisticsResponse.MemberTotals.builder()
+                            .userId(row.getUserId())
+                            .name(row.getFirstName() + " " + row.getLastName())
+                            .byStatus(new EnumMap<>(PaymentStatus.class))
+                            .build())
+                    .getByStatus().put(row.getStatus(), totals(row.getPaymentCount(), row.getAmountTotal()));
+        }
+
+        GroupPaymentStatisticsResponse statistics = summarize(groupId);
+        statistics.setByMethod(byMethod);
+        statistics.setByMonth(byMonth);
+        statistics.setByMember(new ArrayList<>(byMember.values()));
+        return statistics;
+    }
+
+    /**
+     * Payment counts and amounts per status, read from the running group totals
+     * without touching the payments table.
+     */
     @Transactional(readOnly = true)
-    public List<PaymentResponse> getGroupPaymentStatistics(String groupId, User currentUser) {
+    public GroupPaymentStatisticsResponse getGroupPaymentSummary(String groupId, User currentUser) {
+        requireAdminOrModerator(groupId, currentUser);
+        return summarize(groupId);
+    }
+
+    private GroupPaymentStatisticsResponse summarize(String groupId) {
+        Map<PaymentStatus, Totals> byStatus = groupPaymentTotalsService.getTotals(groupId);
+        return GroupPaymentStatisticsResponse.builder()
+                .groupId(groupId)
+                .totalCount(byStatus.values().stream().mapToLong(Totals::getCount).sum())
+                .totalAmount(byStatus.values().stream().map(Totals::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add))
+                .byStatus(byStatus)
+                .build();
+    }
+
+    private void requireAdminOrModerator(String groupId, User currentUser) {
         Group group = groupRepository.findById(groupId)
                 .orElseThrow(() -> new ResourceNotFoundException("Group not found with id: " + groupId));
 
@@ -135,50 +252,47 @@ public class GroupPaymentService {
         if (member.getRole() != GroupMemberRole.ADMIN && member.getRole() != GroupMemberRole.MODERATOR) {
             throw new UnauthorizedException("Only admins and moderators can view payment statistics");
         }
+    }
 
-        List<Payment> groupPayments = paymentRepository.findByGroupId(groupId);
-        
-        // Group payments by status
-        long pendingCount = groupPayments.stream()
-                .filter(p -> p.getStatus() == PaymentStatus.PENDING)
-                .count();
-        
-        long completedCount = groupPayments.stream()
-                .filter(p -> p.getStatus() == PaymentStatus.COMPLETED)
-                .count();
-        
-        long cancelledCount = groupPayments.stream()
-                .filter(p -> p.getStatus() == PaymentStatus.CANCELLED)
-                .count();
-
-        log.info("Group {} payment statistics - Pending: {}, Completed: {}, Cancelled: {}", 
-            groupId, pendingCount, completedCount, cancelledCount);
-
-        return groupPayments.stream()
-                .map(paymentService::mapToPaymentResponse)
-                .collect(Collectors.toList());
+    private static Totals totals(Long count, BigDecimal amount) {
+        return new Totals(count != null ? count : 0, amount != null ? amount : BigDecimal.ZERO);
     }
 
-    private void sendPaymentRequestNotification(User user, Group group, GroupPaymentRequest request) {
+    /**
+     * Bill a chunk of a resumable request in its own transaction. Payments are unique per
+     * batch and member, so if a concurrent resume of the batch billed some of the members
+     * first, the chunk is retried without them. Returns the number of members billed.
+     */
+    private int insertChunk(PaymentBatchWriter.PendingPayments payments, List<String> chunk) {
         try {
-            String message = String.format(
-                "New payment request in group '%s': %s - Amount: %s %s. Due: %s",
-                group.getName(),
-                request.getDescription(),
-                request.getAmount(),
-                request.getMethod(),
-                request.getDueDate() != null ? request.getDueDate() : "No due date"
-            );
-
-            notificationService.createGroupNotification(user, group, message);
-            
-            log.info("Sent payment request notification to user {} for group {}", user.getId(), group.getId());
-        } catch (Exception e) {
-            log.error("Failed to send payment request notification to user {}: {}", user.getId(), e.getMessage());
+            transactionTemplate.executeWithoutResult(status -> paymentBatchWriter.insertPending(payments, chunk, chunkSize));
+            return chunk.size();
+        } catch (DuplicateKeyException e) {
+            Set<String> billed = new HashSet<>(paymentRepository.findPayerIdsByRequestBatch(payments.requestBatchId(),
+                    payments.groupId()));
+            List<String> rest = chunk.stream().filter(userId -> !billed.contains(userId)).collect(Collectors.toList());
+            transactionTemplate.executeWithoutResult(status -> paymentBatchWriter.insertPending(payments, rest, chunkSize));
+            return rest.size();
         }
     }
 
-    private String generateTransactionId() {
-        return UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+    private String paymentDescription(GroupPaymentRequest request) {
+        // There is no due date column on payments, so it is kept in the description
+        if (request.getDueDate() != null) {
+            return request.getDescription() + " (Due: " + request.getDueDate() + ")";
+        }
+        return request.getDescription();
+    }
+
+    private String paymentRequestMessage(Group group, GroupPaymentRequest request) {
+        return String.format(
+            "New payment request in group '%s': %s - Amount: %s %s. Due: %s",
+            group.getName(),
+            request.getDescription(),
+            request.getAmount(),
+            request.getMethod(),
+            request.getDueDate() != null ? request.getDueDate() : "No due date"
+        );
     }
-} 
\ No newline at end of file
+
+}
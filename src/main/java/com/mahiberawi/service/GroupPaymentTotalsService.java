@@ -0,0 +1,110 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.config.OneTimeMigrations;
+import com.mahiberawi.dto.payment.GroupPaymentStatisticsResponse.Totals;
+import com.mahiberawi.entity.PaymentStatus;
+import com.mahiberawi.util.JdbcInserts;
+import com.mahiberawi.util.TimeOrderedIds;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains group_payment_totals, the running count and amount of each group's
+ * payments per status. Payment entity writes are applied through PaymentChangeListener;
+ * batch inserts and bulk status updates report their changes here directly. Deltas are
+ * applied in the caller's transaction, so they commit or roll back with the payments.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GroupPaymentTotalsService implements SmartInitializingSingleton {
+
+    private static final String ADD = "UPDATE group_payment_totals SET payment_count = payment_count + ?, " +
+            "amount_total = amount_total + ?, updated_at = ? WHERE group_id = ? AND status = ?";
+    private static final String INSERT = "INSERT INTO group_payment_totals " +
+            "(id, group_id, status, payment_count, amount_total, updated_at) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_IF_ABSENT = "INSERT INTO group_payment_totals " +
+            "(id, group_id, status, payment_count, amount_total, updated_at) SELECT ?, ?, ?, 0, 0, ? WHERE NOT EXISTS " +
+            "(SELECT 1 FROM group_payment_totals WHERE group_id = ? AND status = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OneTimeMigrations oneTimeMigrations;
+
+    public void add(String groupId, PaymentStatus status, long count, BigDecimal amount) {
+        if (groupId == null || count == 0) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        BigDecimal delta = amount != null ? amount : BigDecimal.ZERO;
+        if (jdbcTemplate.update(ADD, count, delta, now, groupId, status.name()) == 0) {
+            createRow(groupId, status);
+            jdbcTemplate.update(ADD, count, delta, now, groupId, status.name());
+        }
+    }
+
+    public void move(String groupId, PaymentStatus from, PaymentStatus to, long count, BigDecimal amount) {
+        if (from == to) {
+            return;
+        }
+        add(groupId, from, -count, amount != null ? amount.negate() : null);
+        add(groupId, to, count, amount);
+    }
+
+    public Map<PaymentStatus, Totals> getTotals(String groupId) {
+        Map<PaymentStatus, Totals> totals = new EnumMap<>(PaymentStatus.class);
+        jdbcTemplate.query("SELECT status, payment_count, amount_total FROM group_payment_totals WHERE group_id = ?",
+                row -> {
+                    if (row.getLong("payment_count") != 0) {
+                        totals.put(PaymentStatus.valueOf(row.getString("status")),
+                                new Totals(row.getLong("payment_count"), row.getBigDecimal("amount_total")));
+                    }
+                }, groupId);
+        return totals;
+    }
+
+    /**
+     * Fill the table from the payments once per database, before the application takes
+     * traffic. Groups that already have totals are left alone.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        oneTimeMigrations.runOnce("backfill_group_payment_totals", this::backfill);
+    }
+
+    private void backfill() {
+        Set<String> counted = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT DISTINCT group_id FROM group_payment_totals", String.class));
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> totals = new ArrayList<>();
+        jdbcTemplate.query("SELECT group_id, status, COUNT(*), COALESCE(SUM(amount), 0) FROM payments " +
+                        "WHERE group_id IS NOT NULL GROUP BY group_id, status",
+                row -> {
+                    if (!counted.contains(row.getString(1))) {
+                        totals.add(new Object[]{TimeOrderedIds.uuid(), row.getString(1), row.getString(2),
+                                row.getLong(3), row.getBigDecimal(4), now});
+                    }
+                });
+        if (!totals.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT, totals);
+            log.info("Backfilled {} group payment totals", totals.size());
+        }
+    }
+
+    private void createRow(String groupId, PaymentStatus status) {
+        JdbcInserts.insertIfAbsent(jdbcTemplate, INSERT_IF_ABSENT, TimeOrderedIds.uuid(), groupId, status.name(),
+                Timestamp.valueOf(LocalDateTime.now()), groupId, status.name());
+    }
+}
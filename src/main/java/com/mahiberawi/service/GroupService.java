@@ -13,6 +13,7 @@ import com.mahiberawi.exception.ResourceNotFoundException;
 import com.mahiberawi.exception.UnauthorizedException;
 import com.mahiberawi.repository.*;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -32,6 +33,7 @@ import com.mahiberawi.repository.EventRepository;
 import com.mahiberawi.repository.MessageRepository;
 import com.mahiberawi.repository.PaymentRepository;
 import com.mahiberawi.repository.PostReactionRepository;
+import com.mahiberawi.util.TransactionIdGenerator;
 
 @Service
 @RequiredArgsConstructor
@@ -44,9 +46,17 @@ public class GroupService {
     private final NotificationService notificationService;
     private final EmailService emailService;
     private final EventRepository eventRepository;
+    private final EventReminderScheduler eventReminderScheduler;
+    private final UpcomingEventIndex upcomingEventIndex;
+    private final EventOccurrenceService eventOccurrenceService;
     private final MessageRepository messageRepository;
     private final PaymentRepository paymentRepository;
     private final PostReactionRepository postReactionRepository;
+    private final TransactionIdGenerator transactionIdGenerator;
+
+    // How far ahead recurring events are expanded in the group event lists
+    @Value("${app.events.recurrence.default-window-days:90}")
+    private long defaultWindowDays;
 
     @Transactional
     public GroupResponse createGroup(GroupRequest request, User creator) {
@@ -75,6 +85,7 @@ public class GroupService {
             group.setPaymentRequired(settings.getPaymentRequired());
             group.setRequireApproval(settings.getRequireApproval());
             group.setMonthlyDues(settings.getMonthlyDues());
+            group.setDuesBillingDay(settings.getDuesBillingDay());
         }
 
         group = groupRepository.save(group);
@@ -189,6 +200,7 @@ public class GroupService {
             group.setPaymentRequired(settings.getPaymentRequired());
             group.setRequireApproval(settings.getRequireApproval());
             group.setMonthlyDues(settings.getMonthlyDues());
+            group.setDuesBillingDay(settings.getDuesBillingDay());
         }
         
         group = groupRepository.save(group);
@@ -365,6 +377,7 @@ public class GroupService {
                 .paymentRequired(group.getPaymentRequired())
                 .requireApproval(group.getRequireApproval())
                 .monthlyDues(group.getMonthlyDues())
+                .duesBillingDay(group.getDuesBillingDay())
                 .build();
     }
 
@@ -1151,10 +1164,7 @@ public class GroupService {
         }
 
         // Use repository to fetch events directly instead of lazy loading
-        List<Event> events = eventRepository.findByGroupId(groupId);
-        return events.stream()
-                .map(this::mapToEventResponse)
-                .collect(Collectors.toList());
+        return mapWithOccurrences(eventRepository.findByGroupId(groupId));
     }
 
     @Transactional
@@ -1177,6 +1187,8 @@ public class GroupService {
             event.setCreator(currentUser);
 
             Event savedEvent = eventRepository.save(event);
+            eventReminderScheduler.scheduleReminders(savedEvent);
+            upcomingEventIndex.update(savedEvent);
             return mapToEventResponse(savedEvent);
         }
 
@@ -1206,6 +1218,8 @@ public class GroupService {
         event.setCreator(currentUser);
 
         Event savedEvent = eventRepository.save(event);
+        eventReminderScheduler.scheduleReminders(savedEvent);
+        upcomingEventIndex.update(savedEvent);
         return mapToEventResponse(savedEvent);
     }
 
@@ -1309,7 +1323,7 @@ public class GroupService {
             payment.setPayer(currentUser);
             payment.setGroup(group);
             payment.setDescription(request.getDescription());
-            payment.setTransactionId(generateTransactionId());
+            payment.setTransactionId(transactionIdGenerator.next());
 
             Payment savedPayment = paymentRepository.save(payment);
             return mapToPaymentResponse(savedPayment);
@@ -1332,7 +1346,7 @@ public class GroupService {
         payment.setPayer(currentUser);
         payment.setGroup(group);
         payment.setDescription(request.getDescription());
-        payment.setTransactionId(generateTransactionId());
+        payment.setTransactionId(transactionIdGenerator.next());
 
         Payment savedPayment = paymentRepository.save(payment);
         return mapToPaymentResponse(savedPayment);
@@ -1551,9 +1565,7 @@ public class GroupService {
             allEvents.addAll(groupEvents);
         }
         
-        return allEvents.stream()
-                .map(this::mapToEventResponse)
-                .collect(Collectors.toList());
+        return mapWithOccurrences(allEvents);
     }
 
     @Transactional(readOnly = true)
@@ -1606,10 +1618,43 @@ public class GroupService {
                 .creatorName(event.getCreator() != null ? event.getCreator().getName() : "Unknown")
                 .createdAt(event.getCreatedAt())
                 .status(event.getStatus())
-                .participants(null) // Set to null to avoid lazy loading issues
                 .build();
     }
 
+    /**
+     * Single events as they are, and recurring events as their occurrences from now over the
+     * default window rather than as the series row, in start order.
+     */
+    private List<com.mahiberawi.dto.event.EventResponse> mapWithOccurrences(List<Event> events) {
+        LocalDateTime from = LocalDateTime.now();
+        LocalDateTime to = from.plusDays(defaultWindowDays);
+
+        List<com.mahiberawi.dto.event.EventResponse> responses = new ArrayList<>();
+        List<Event> series = new ArrayList<>();
+        for (Event event : events) {
+            if (!event.isRecurring()) {
+                responses.add(mapToEventResponse(event));
+            } else if (event.getStartTime().isBefore(to)
+                    && (event.getRecurrenceUntil() == null || !event.getRecurrenceUntil().isBefore(from))) {
+                series.add(event);
+            }
+        }
+        for (EventOccurrenceService.Occurrence occurrence : eventOccurrenceService.expand(series, from, to)) {
+            com.mahiberawi.dto.event.EventResponse response = mapToEventResponse(occurrence.event());
+            response.setOccurrenceStart(occurrence.occurrenceStart());
+            response.setTitle(occurrence.title());
+            response.setLocation(occurrence.location());
+            response.setStartTime(occurrence.startTime());
+            response.setEndTime(occurrence.endTime());
+            if (occurrence.cancelled()) {
+                response.setStatus(EventStatus.CANCELLED);
+            }
+            responses.add(response);
+        }
+        responses.sort(Comparator.comparing(com.mahiberawi.dto.event.EventResponse::getStartTime));
+        return responses;
+    }
+
     private com.mahiberawi.dto.message.MessageResponse mapToMessageResponse(Message message) {
         // Get reaction counts
         List<Object[]> reactionCounts = postReactionRepository.getReactionCountsByPost(message.getId());
@@ -1653,9 +1698,6 @@ public class GroupService {
                 .build();
     }
 
-    private String generateTransactionId() {
-        return UUID.randomUUID().toString().replace("-", "").substring(0, 12);
-    }
 
     // ========== PERMISSION CHECKING METHODS ==========
 
@@ -1764,10 +1806,8 @@ public class GroupService {
             group.getAllowEventCreation();
 
         // Use repository to fetch events directly instead of lazy loading
-        List<Event> events = eventRepository.findByGroupId(groupId);
-        List<com.mahiberawi.dto.event.EventResponse> eventResponses = events.stream()
-                .map(this::mapToEventResponse)
-                .collect(Collectors.toList());
+        List<com.mahiberawi.dto.event.EventResponse> eventResponses =
+                mapWithOccurrences(eventRepository.findByGroupId(groupId));
 
         return GroupEventsResponse.builder()
                 .groupId(groupId)
@@ -1861,6 +1901,8 @@ public class GroupService {
         event.setCreator(currentUser);
 
         Event savedEvent = eventRepository.save(event);
+        eventReminderScheduler.scheduleReminders(savedEvent);
+        upcomingEventIndex.update(savedEvent);
         return mapToEventResponse(savedEvent);
     }
 
@@ -1911,7 +1953,7 @@ public class GroupService {
         payment.setPayer(currentUser);
         payment.setGroup(group);
         payment.setDescription(request.getDescription());
-        payment.setTransactionId(generateTransactionId());
+        payment.setTransactionId(transactionIdGenerator.next());
 
         Payment savedPayment = paymentRepository.save(payment);
         return mapToPaymentResponse(savedPayment);
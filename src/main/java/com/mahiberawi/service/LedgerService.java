@@ -0,0 +1,441 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.config.OneTimeMigrations;
+import com.mahiberawi.dto.ledger.LedgerBalanceResponse;
+import com.mahiberawi.entity.EqubRound;
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.entity.GroupMember;
+import com.mahiberawi.entity.LedgerAccountType;
+import com.mahiberawi.entity.LedgerEntryType;
+import com.mahiberawi.entity.PaymentStatus;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.entity.enums.GroupMemberRole;
+import com.mahiberawi.exception.ResourceNotFoundException;
+import com.mahiberawi.exception.UnauthorizedException;
+import com.mahiberawi.repository.GroupMemberRepository;
+import com.mahiberawi.repository.GroupRepository;
+import com.mahiberawi.util.JdbcInserts;
+import com.mahiberawi.util.TimeOrderedIds;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Double-entry ledger of group finances. Every change is posted as a journal of lines
+ * that sum to zero; lines are only ever appended. Current balances are kept per account
+ * in ledger_balances, in the same transaction as the lines, and balances at an earlier
+ * time are read from the latest periodic snapshot plus the lines posted after it.
+ *
+ * A group payment's amount sits in the account matching its status: billed to the
+ * member's receivable while pending, in the group's cash once completed, and back with
+ * the group's billed charges when cancelled, failed or refunded. A status change posts
+ * one transfer between those accounts.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LedgerService implements SmartInitializingSingleton {
+
+    private static final String INSERT_ENTRY = "INSERT INTO ledger_entries (id, journal_id, entry_type, account_key, " +
+            "account_type, group_id, user_id, amount, source_id, posted_at, account_sequence) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String ADD_BALANCE = "UPDATE ledger_balances SET balance = balance + ?, " +
+            "last_sequence = last_sequence + ?, updated_at = ? WHERE account_key = ?";
+    private static final String INSERT_BALANCE_IF_ABSENT = "INSERT INTO ledger_balances " +
+            "(id, account_key, account_type, group_id, user_id, balance, last_sequence, updated_at) " +
+            "SELECT ?, ?, ?, ?, ?, 0, 0, ? WHERE NOT EXISTS (SELECT 1 FROM ledger_balances WHERE account_key = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OneTimeMigrations oneTimeMigrations;
+    private final GroupRepository groupRepository;
+    private final GroupMemberRepository groupMemberRepository;
+
+    // Transfers posted per batch when backfilling
+    @Value("${app.ledger.backfill-chunk-size:500}")
+    private int backfillChunkSize;
+
+    /**
+     * Transfer for a group payment moving from one status to another; from is null for
+     * a new payment and to is null for a removed one. Null if no account changes.
+     */
+    public Transfer paymentTransfer(String paymentId, String groupId, String payerId,
+                                    PaymentStatus from, PaymentStatus to, BigDecimal amount) {
+        LedgerAccountType source = holding(from);
+        LedgerAccountType target = holding(to);
+        if (groupId == null || amount == null || source == target) {
+            return null;
+        }
+        LedgerEntryType type = switch (target) {
+            case MEMBER_RECEIVABLE -> LedgerEntryType.PAYMENT_BILLED;
+            case GROUP_CASH -> LedgerEntryType.PAYMENT_COLLECTED;
+            default -> source == LedgerAccountType.GROUP_CASH
+                    ? LedgerEntryType.PAYMENT_REFUNDED
+                    : LedgerEntryType.PAYMENT_CANCELLED;
+        };
+        return new Transfer(type, groupId, payerId, target, source, amount, paymentId, LocalDateTime.now());
+    }
+
+    public void postPaymentChange(String paymentId, String groupId, String payerId,
+                                  PaymentStatus from, PaymentStatus to, BigDecimal amount, BigDecimal penalty) {
+        List<Transfer> transfers = new ArrayList<>(2);
+        Transfer transfer = paymentTransfer(paymentId, groupId, payerId, from, to, amount);
+        if (transfer != null) {
+            transfers.add(transfer);
+        }
+        Transfer settlement = penaltySettlement(paymentId, groupId, payerId, from, to, penalty);
+        if (settlement != null) {
+            transfers.add(settlement);
+        }
+        if (!transfers.isEmpty()) {
+            post(transfers);
+        }
+    }
+
+    public void postEqubPayout(EqubRound round) {
+        if (round.getWinner() == null || round.getTotalAmount() == null) {
+            return;
+        }
+        post(List.of(new Transfer(LedgerEntryType.EQUB_PAYOUT, round.getGroup().getId(), round.getWinner().getId(),
+                LedgerAccountType.MEMBER_PAYOUTS, LedgerAccountType.GROUP_CASH, round.getTotalAmount(),
+                round.getId(), LocalDateTime.now())));
+    }
+
+    /**
+     * A late payment penalty charged to the member, owed on top of the payment itself.
+     */
+    public Transfer penaltyTransfer(String paymentId, String groupId, String payerId, BigDecimal amount) {
+        return new Transfer(LedgerEntryType.LATE_PENALTY, groupId, payerId, LedgerAccountType.MEMBER_RECEIVABLE,
+                LedgerAccountType.GROUP_BILLED, amount, paymentId, LocalDateTime.now());
+    }
+
+    /**
+     * Transfer for the late penalty charged on a payment moving from one status to
+     * another. The penalty follows the payment: collected into the group's cash with it,
+     * refunded with it, and waived back to the group's billed charges when it is
+     * cancelled, fails or is removed. Null if there is no penalty or no account changes.
+     */
+    public Transfer penaltySettlement(String paymentId, String groupId, String payerId,
+                                      PaymentStatus from, PaymentStatus to, BigDecimal penalty) {
+        LedgerAccountType source = holding(from);
+        LedgerAccountType target = holding(to);
+        // Penalties are only charged on pending payments, never on new ones
+        if (groupId == null || from == null || penalty == null || penalty.signum() <= 0 || source == target) {
+            return null;
+        }
+        LedgerEntryType type = switch (target) {
+            case MEMBER_RECEIVABLE -> LedgerEntryType.LATE_PENALTY;
+            case GROUP_CASH -> LedgerEntryType.PENALTY_COLLECTED;
+            default -> source == LedgerAccountType.GROUP_CASH
+                    ? LedgerEntryType.PENALTY_REFUNDED
+                    : LedgerEntryType.PENALTY_WAIVED;
+        };
+        return new Transfer(type, groupId, payerId, target, source, penalty, paymentId, LocalDateTime.now());
+    }
+
+    /**
+     * Append the transfers as journals of two lines each and update the balances of
+     * the accounts they touch. Runs in the caller's transaction.
+     *
+     * Each line is numbered in its account's sequence, taken from the account's balance
+     * row. That row stays locked until the posting commits, so an account's lines are
+     * numbered in commit order and a snapshot can be cut at a sequence number.
+     */
+    public void post(List<Transfer> transfers) {
+        if (transfers.isEmpty()) {
+            return;
+        }
+        List<Object[]> lines = new ArrayList<>(transfers.size() * 2);
+        // Sorted so concurrent postings lock balance rows in the same order
+        Map<String, AccountDelta> deltas = new TreeMap<>();
+        for (Transfer transfer : transfers) {
+            String journalId = TimeOrderedIds.uuid();
+            addLine(lines, deltas, journalId, transfer, transfer.debit(), transfer.amount());
+            addLine(lines, deltas, journalId, transfer, transfer.credit(), transfer.amount().negate());
+        }
+        Map<String, Long> nextSequence = applyBalances(new ArrayList<>(deltas.values()));
+        for (Object[] line : lines) {
+            line[10] = nextSequence.merge((String) line[3], 1L, Long::sum) - 1;
+        }
+        jdbcTemplate.batchUpdate(INSERT_ENTRY, lines);
+    }
+
+    /**
+     * Balances of a group's own accounts, with the members' outstanding total when
+     * asOf is null. Admins and moderators only.
+     */
+    public LedgerBalanceResponse getGroupBalances(String groupId, LocalDateTime asOf, User currentUser) {
+        GroupMember member = requireMember(groupId, currentUser);
+        if (!isAdminOrModerator(member)) {
+            throw new UnauthorizedException("Only admins and moderators can view group balances");
+        }
+        return LedgerBalanceResponse.builder()
+                .groupId(groupId)
+                .asOf(asOf)
+                .balances(balances(groupId, null, asOf))
+                .outstanding(asOf == null ? jdbcTemplate.queryForObject(
+                        "SELECT COALESCE(SUM(balance), 0) FROM ledger_balances WHERE group_id = ? AND account_type = ?",
+                        BigDecimal.class, groupId, LedgerAccountType.MEMBER_RECEIVABLE.name()) : null)
+                .build();
+    }
+
+    /**
+     * Balances of a member's accounts in a group. Members can see their own; admins and
+     * moderators can see anyone's.
+     */
+    public LedgerBalanceResponse getMemberBalances(String groupId, String userId, LocalDateTime asOf, User currentUser) {
+        GroupMember member = requireMember(groupId, currentUser);
+        if (!currentUser.getId().equals(userId) && !isAdminOrModerator(member)) {
+            throw new UnauthorizedException("You can only view your own balances");
+        }
+        Map<LedgerAccountType, BigDecimal> balances = balances(groupId, userId, asOf);
+        return LedgerBalanceResponse.builder()
+                .groupId(groupId)
+                .userId(userId)
+                .asOf(asOf)
+                .balances(balances)
+                .outstanding(balances.get(LedgerAccountType.MEMBER_RECEIVABLE))
+                .build();
+    }
+
+    /**
+     * Snapshot every account that changed since its previous snapshot. Each snapshot is
+     * the account's committed balance with the sequence number of its last line.
+     */
+    @Scheduled(cron = "${app.ledger.snapshot-cron:0 15 1 * * *}")
+    public void snapshotBalances() {
+        LocalDateTime asOf = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        Timestamp latest = jdbcTemplate.queryForObject("SELECT MAX(as_of) FROM ledger_balance_snapshots", Timestamp.class);
+        if (latest != null && !asOf.isAfter(latest.toLocalDateTime())) {
+            return;
+        }
+        List<Object[]> snapshots = jdbcTemplate.query(
+                "SELECT b.account_key, b.balance, b.last_sequence FROM ledger_balances b " +
+                "WHERE b.last_sequence > COALESCE((SELECT MAX(s.through_sequence) FROM ledger_balance_snapshots s " +
+                "WHERE s.account_key = b.account_key), 0)",
+                (row, rowNum) -> new Object[]{TimeOrderedIds.uuid(), row.getString(1), Timestamp.valueOf(asOf),
+                        row.getBigDecimal(2), row.getLong(3)});
+        jdbcTemplate.batchUpdate("INSERT INTO ledger_balance_snapshots (id, account_key, as_of, balance, through_sequence) " +
+                "VALUES (?, ?, ?, ?, ?)", snapshots);
+        log.info("Snapshotted {} ledger balances as of {}", snapshots.size(), asOf);
+    }
+
+    /**
+     * Number the lines posted before accounts had sequences, then post opening balances
+     * for existing group payments and equb payouts of groups without ledger lines. Both
+     * run once per database, before the application takes traffic.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        oneTimeMigrations.runOnce("sequence_ledger_entries", this::sequenceExistingEntries);
+        oneTimeMigrations.runOnce("backfill_ledger", this::backfill);
+    }
+
+    private void sequenceExistingEntries() {
+        jdbcTemplate.update("UPDATE ledger_entries SET account_sequence = (SELECT COUNT(*) FROM ledger_entries e " +
+                "WHERE e.account_key = ledger_entries.account_key AND (e.posted_at < ledger_entries.posted_at " +
+                "OR (e.posted_at = ledger_entries.posted_at AND e.id <= ledger_entries.id))) " +
+                "WHERE account_sequence IS NULL");
+        jdbcTemplate.update("UPDATE ledger_balances SET last_sequence = (SELECT COUNT(*) FROM ledger_entries e " +
+                "WHERE e.account_key = ledger_balances.account_key)");
+        // Cut on posted_at, which does not follow commit order; the next run snapshots again
+        jdbcTemplate.update("DELETE FROM ledger_balance_snapshots WHERE through_sequence IS NULL");
+    }
+
+    private void backfill() {
+        Set<String> posted = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT DISTINCT group_id FROM ledger_entries", String.class));
+        // Rows stream in pages of a chunk and each chunk is posted as soon as it fills,
+        // so the backfill holds one chunk of transfers however many payments there are
+        JdbcTemplate rows = new JdbcTemplate(jdbcTemplate.getDataSource());
+        rows.setFetchSize(backfillChunkSize);
+        BackfillChunk chunk = new BackfillChunk();
+        rows.query("SELECT id, group_id, payer_id, status, amount, created_at FROM payments " +
+                "WHERE group_id IS NOT NULL", row -> {
+            LedgerAccountType holding = holding(PaymentStatus.valueOf(row.getString("status")));
+            if (holding != LedgerAccountType.GROUP_BILLED && !posted.contains(row.getString("group_id"))) {
+                chunk.add(new Transfer(LedgerEntryType.OPENING_BALANCE, row.getString("group_id"),
+                        row.getString("payer_id"), holding, LedgerAccountType.GROUP_BILLED,
+                        row.getBigDecimal("amount"), row.getString("id"),
+                        row.getTimestamp("created_at").toLocalDateTime()));
+            }
+        });
+        rows.query("SELECT id, group_id, winner_id, total_amount, winner_selected_at FROM equb_rounds " +
+                "WHERE winner_id IS NOT NULL AND total_amount IS NOT NULL AND winner_selected_at IS NOT NULL", row -> {
+            if (!posted.contains(row.getString("group_id"))) {
+                chunk.add(new Transfer(LedgerEntryType.EQUB_PAYOUT, row.getString("group_id"),
+                        row.getString("winner_id"), LedgerAccountType.MEMBER_PAYOUTS, LedgerAccountType.GROUP_CASH,
+                        row.getBigDecimal("total_amount"), row.getString("id"),
+                        row.getTimestamp("winner_selected_at").toLocalDateTime()));
+            }
+        });
+        chunk.post();
+        if (chunk.posted > 0) {
+            log.info("Backfilled the ledger with {} opening journals", chunk.posted);
+        }
+    }
+
+    private class BackfillChunk {
+        final List<Transfer> transfers = new ArrayList<>(backfillChunkSize);
+        int posted;
+
+        void add(Transfer transfer) {
+            transfers.add(transfer);
+            if (transfers.size() == backfillChunkSize) {
+                post();
+            }
+        }
+
+        void post() {
+            LedgerService.this.post(transfers);
+            posted += transfers.size();
+            transfers.clear();
+        }
+    }
+
+    private Map<LedgerAccountType, BigDecimal> balances(String groupId, String userId, LocalDateTime asOf) {
+        Map<LedgerAccountType, BigDecimal> balances = new EnumMap<>(LedgerAccountType.class);
+        for (LedgerAccountType type : LedgerAccountType.values()) {
+            if (type.isMemberAccount() == (userId != null)) {
+                String key = type.key(groupId, userId);
+                balances.put(type, asOf == null ? currentBalance(key) : balanceAt(key, asOf));
+            }
+        }
+        return balances;
+    }
+
+    private BigDecimal currentBalance(String accountKey) {
+        List<BigDecimal> balance = jdbcTemplate.queryForList(
+                "SELECT balance FROM ledger_balances WHERE account_key = ?", BigDecimal.class, accountKey);
+        return balance.isEmpty() ? BigDecimal.ZERO : balance.get(0);
+    }
+
+    private BigDecimal balanceAt(String accountKey, LocalDateTime asOf) {
+        // Lines after the snapshot's sequence committed after it, however early they were stamped
+        List<Object[]> snapshot = jdbcTemplate.query(
+                "SELECT through_sequence, balance FROM ledger_balance_snapshots WHERE account_key = ? AND as_of <= ? " +
+                "ORDER BY as_of DESC LIMIT 1",
+                (row, rowNum) -> new Object[]{row.getLong(1), row.getBigDecimal(2)},
+                accountKey, Timestamp.valueOf(asOf));
+        long since = snapshot.isEmpty() ? 0 : (Long) snapshot.get(0)[0];
+        BigDecimal base = snapshot.isEmpty() ? BigDecimal.ZERO : (BigDecimal) snapshot.get(0)[1];
+        BigDecimal tail = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM ledger_entries " +
+                "WHERE account_key = ? AND account_sequence > ? AND posted_at <= ?",
+                BigDecimal.class, accountKey, since, Timestamp.valueOf(asOf));
+        return base.add(tail);
+    }
+
+    private void addLine(List<Object[]> lines, Map<String, AccountDelta> deltas, String journalId,
+                         Transfer transfer, LedgerAccountType account, BigDecimal amount) {
+        String userId = account.isMemberAccount() ? transfer.userId() : null;
+        String key = account.key(transfer.groupId(), userId);
+        // The account sequence is filled in once the balance update has reserved it
+        lines.add(new Object[]{TimeOrderedIds.uuid(), journalId, transfer.type().name(), key, account.name(),
+                transfer.groupId(), userId, amount, transfer.sourceId(), Timestamp.valueOf(transfer.postedAt()), null});
+        AccountDelta delta = deltas.computeIfAbsent(key, k -> new AccountDelta(k, account, transfer.groupId(), userId));
+        delta.amount = delta.amount.add(amount);
+        delta.lines++;
+    }
+
+    // Returns the first sequence number reserved in each account
+    private Map<String, Long> applyBalances(List<AccountDelta> deltas) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int[][] counts = jdbcTemplate.batchUpdate(ADD_BALANCE, deltas, deltas.size(), (statement, delta) -> {
+            statement.setBigDecimal(1, delta.amount);
+            statement.setLong(2, delta.lines);
+            statement.setTimestamp(3, now);
+            statement.setString(4, delta.key);
+        });
+        int[] updated = Arrays.stream(counts).flatMapToInt(Arrays::stream).toArray();
+        for (int i = 0; i < deltas.size(); i++) {
+            if (updated[i] == 0) {
+                AccountDelta delta = deltas.get(i);
+                createAccount(delta);
+                jdbcTemplate.update(ADD_BALANCE, delta.amount, delta.lines, now, delta.key);
+            } else if (updated[i] != Statement.SUCCESS_NO_INFO && updated[i] != 1) {
+                log.warn("Unexpected update count {} for ledger account {}", updated[i], deltas.get(i).key);
+            }
+        }
+
+        Map<String, Long> lines = new HashMap<>();
+        deltas.forEach(delta -> lines.put(delta.key, (long) delta.lines));
+        Map<String, Long> first = new HashMap<>();
+        jdbcTemplate.query("SELECT account_key, last_sequence FROM ledger_balances WHERE account_key IN (" +
+                        String.join(", ", Collections.nCopies(deltas.size(), "?")) + ")",
+                row -> {
+                    first.put(row.getString(1), row.getLong(2) - lines.get(row.getString(1)) + 1);
+                }, lines.keySet().toArray());
+        return first;
+    }
+
+    private void createAccount(AccountDelta account) {
+        JdbcInserts.insertIfAbsent(jdbcTemplate, INSERT_BALANCE_IF_ABSENT, TimeOrderedIds.uuid(), account.key,
+                account.type.name(), account.groupId, account.userId, Timestamp.valueOf(LocalDateTime.now()), account.key);
+    }
+
+    private GroupMember requireMember(String groupId, User currentUser) {
+        Group group = groupRepository.findById(groupId)
+                .orElseThrow(() -> new ResourceNotFoundException("Group not found with id: " + groupId));
+        return groupMemberRepository.findByGroupAndUser(group, currentUser)
+                .orElseThrow(() -> new UnauthorizedException("You are not a member of this group"));
+    }
+
+    private static boolean isAdminOrModerator(GroupMember member) {
+        return member.getRole() == GroupMemberRole.ADMIN || member.getRole() == GroupMemberRole.MODERATOR;
+    }
+
+    // Account a group payment's amount sits in while it has the given status
+    private static LedgerAccountType holding(PaymentStatus status) {
+        if (status == PaymentStatus.PENDING) {
+            return LedgerAccountType.MEMBER_RECEIVABLE;
+        }
+        if (status == PaymentStatus.COMPLETED) {
+            return LedgerAccountType.GROUP_CASH;
+        }
+        return LedgerAccountType.GROUP_BILLED;
+    }
+
+    private static final class AccountDelta {
+        final String key;
+        final LedgerAccountType type;
+        final String groupId;
+        final String userId;
+        BigDecimal amount = BigDecimal.ZERO;
+        int lines;
+
+        AccountDelta(String key, LedgerAccountType type, String groupId, String userId) {
+            this.key = key;
+            this.type = type;
+            this.groupId = groupId;
+            this.userId = userId;
+        }
+    }
+
+    /**
+     * Movement of an amount from the credit account to the debit account. userId names
+     * the member whose account is on either side.
+     */
+    public record Transfer(LedgerEntryType type, String groupId, String userId, LedgerAccountType debit,
+                           LedgerAccountType credit, BigDecimal amount, String sourceId, LocalDateTime postedAt) {
+    }
+}
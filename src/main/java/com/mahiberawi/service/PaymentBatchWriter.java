@@ -0,0 +1,199 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.entity.NotificationType;
+import com.mahiberawi.entity.PaymentMethod;
+import com.mahiberawi.entity.PaymentStatus;
+import com.mahiberawi.repository.PaymentRepository;
+import com.mahiberawi.repository.PaymentRepository.PendingGroupPayment;
+import com.mahiberawi.util.TimeOrderedIds;
+import com.mahiberawi.util.TransactionIdGenerator;
+import lombok.Builder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Writes payments in bulk with JDBC batches: new pending payments with one notification
+ * per payer, status changes and late flags. These writes bypass PaymentChangeListener,
+ * so the group totals, ledger and equb round progress it would move are posted here
+ * instead. Everything runs in the caller's transaction.
+ */
+@Service
+@RequiredArgsConstructor
+public class PaymentBatchWriter {
+
+    private static final String INSERT_PAYMENT = "INSERT INTO payments (id, amount, method, status, payer_id, group_id, " +
+            "description, transaction_id, request_batch_id, dues_period, equb_round, equb_round_id, is_equb_payment, " +
+            "is_late_payment, version, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0, ?, ?)";
+    private static final String FLAG_LATE = "UPDATE payments SET is_late_payment = TRUE, penalty_amount = ?, " +
+            "updated_at = ?, version = version + 1 WHERE id = ?";
+    private static final String INSERT_NOTIFICATION = "INSERT INTO notifications (id, user_id, type, content, read, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final PaymentRepository paymentRepository;
+    private final GroupPaymentTotalsService groupPaymentTotalsService;
+    private final EqubRoundProgressService equbRoundProgressService;
+    private final LedgerService ledgerService;
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * What the pending payments of one bulk request share. Only the fields of the kind
+     * of request are set: a group payment request, a month of dues or an equb round.
+     * Dues and equb payments have no method until the member pays.
+     */
+    @Builder
+    public record PendingPayments(String groupId, BigDecimal amount, PaymentMethod method, String description,
+                                  String requestBatchId, String duesPeriod, String equbRoundId, Integer equbRound,
+                                  Function<String, String> notification) {
+    }
+
+    /**
+     * Insert one pending payment and one notification for each payer, chunkSize payers
+     * per batch, and post them to the group totals and ledger. Returns the payment ids
+     * in payer order.
+     */
+    public List<String> insertPending(PendingPayments payments, List<String> payerIds, int chunkSize) {
+        List<String> ids = new ArrayList<>(payerIds.size());
+        for (int from = 0; from < payerIds.size(); from += chunkSize) {
+            ids.addAll(insertChunk(payments, payerIds.subList(from, Math.min(from + chunkSize, payerIds.size()))));
+        }
+        return ids;
+    }
+
+    private List<String> insertChunk(PendingPayments payments, List<String> payerIds) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<NewPayment> rows = new ArrayList<>(payerIds.size());
+        List<LedgerService.Transfer> billed = new ArrayList<>(payerIds.size());
+        for (String payerId : payerIds) {
+            NewPayment row = new NewPayment(TimeOrderedIds.uuid(), payerId);
+            rows.add(row);
+            billed.add(ledgerService.paymentTransfer(row.id(), payments.groupId(), payerId, null, PaymentStatus.PENDING,
+                    payments.amount()));
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_PAYMENT, rows, rows.size(), (statement, row) -> {
+            statement.setString(1, row.id());
+            statement.setBigDecimal(2, payments.amount());
+            statement.setString(3, payments.method() != null ? payments.method().name() : null);
+            statement.setString(4, PaymentStatus.PENDING.name());
+            statement.setString(5, row.payerId());
+            statement.setString(6, payments.groupId());
+            statement.setString(7, payments.description());
+            statement.setString(8, transactionIdGenerator.next());
+            statement.setString(9, payments.requestBatchId());
+            statement.setString(10, payments.duesPeriod());
+            statement.setObject(11, payments.equbRound(), Types.INTEGER);
+            statement.setString(12, payments.equbRoundId());
+            statement.setBoolean(13, payments.equbRoundId() != null);
+            statement.setBoolean(14, false);
+            statement.setTimestamp(15, now);
+            statement.setTimestamp(16, now);
+        });
+        notify(payerIds, payments.notification());
+
+        groupPaymentTotalsService.add(payments.groupId(), PaymentStatus.PENDING, payerIds.size(),
+                payments.amount().multiply(BigDecimal.valueOf(payerIds.size())));
+        ledgerService.post(billed);
+        return rows.stream().map(NewPayment::id).toList();
+    }
+
+    /**
+     * Move the still-pending payments among ids to status, with any late penalties on
+     * them. Only the pending rows are locked and changed, and only those are posted.
+     * Returns the number changed.
+     */
+    public int movePending(Collection<String> ids, PaymentStatus status) {
+        List<PendingGroupPayment> groupPayments = paymentRepository.lockPendingGroupPayments(ids);
+        int updated = paymentRepository.updatePendingStatus(ids, status, LocalDateTime.now());
+
+        Map<String, List<BigDecimal>> amountsByGroup = new HashMap<>();
+        Map<String, List<BigDecimal>> amountsByRound = new HashMap<>();
+        List<LedgerService.Transfer> transfers = new ArrayList<>(groupPayments.size());
+        for (PendingGroupPayment payment : groupPayments) {
+            amountsByGroup.computeIfAbsent(payment.getGroupId(), key -> new ArrayList<>()).add(payment.getAmount());
+            if (payment.getEqubRoundId() != null) {
+                amountsByRound.computeIfAbsent(payment.getEqubRoundId(), key -> new ArrayList<>()).add(payment.getAmount());
+            }
+            LedgerService.Transfer transfer = ledgerService.paymentTransfer(payment.getId(), payment.getGroupId(),
+                    payment.getPayerId(), PaymentStatus.PENDING, status, payment.getAmount());
+            if (transfer != null) {
+                transfers.add(transfer);
+            }
+            LedgerService.Transfer settlement = ledgerService.penaltySettlement(payment.getId(), payment.getGroupId(),
+                    payment.getPayerId(), PaymentStatus.PENDING, status, payment.getPenaltyAmount());
+            if (settlement != null) {
+                transfers.add(settlement);
+            }
+        }
+        amountsByGroup.forEach((groupId, amounts) -> groupPaymentTotalsService.move(groupId,
+                PaymentStatus.PENDING, status, amounts.size(), sum(amounts)));
+        amountsByRound.forEach((roundId, amounts) -> equbRoundProgressService.statusChanged(roundId,
+                PaymentStatus.PENDING, status, amounts.size(), sum(amounts)));
+        ledgerService.post(transfers);
+        return updated;
+    }
+
+    /**
+     * Flag locked pending payments as late with the penalty for each, and post the
+     * penalties and round progress. Returns the penalties charged.
+     */
+    public BigDecimal flagLate(String groupId, List<PendingGroupPayment> payments,
+                               Function<PendingGroupPayment, BigDecimal> penalty) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(FLAG_LATE, payments, payments.size(), (statement, payment) -> {
+            statement.setBigDecimal(1, penalty.apply(payment));
+            statement.setTimestamp(2, now);
+            statement.setString(3, payment.getId());
+        });
+
+        Map<String, Integer> flaggedByRound = new HashMap<>();
+        List<LedgerService.Transfer> penalties = new ArrayList<>();
+        BigDecimal total = BigDecimal.ZERO;
+        for (PendingGroupPayment payment : payments) {
+            flaggedByRound.merge(payment.getEqubRoundId(), 1, Integer::sum);
+            BigDecimal amount = penalty.apply(payment);
+            if (amount.signum() > 0) {
+                penalties.add(ledgerService.penaltyTransfer(payment.getId(), groupId, payment.getPayerId(), amount));
+                total = total.add(amount);
+            }
+        }
+        flaggedByRound.forEach(equbRoundProgressService::lateChanged);
+        ledgerService.post(penalties);
+        return total;
+    }
+
+    /**
+     * One unread group notification per user, with the content message gives for them.
+     */
+    public void notify(List<String> userIds, Function<String, String> message) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_NOTIFICATION, userIds, userIds.size(), (statement, userId) -> {
+            statement.setString(1, TimeOrderedIds.uuid());
+            statement.setString(2, userId);
+            statement.setString(3, NotificationType.GROUP.name());
+            statement.setString(4, message.apply(userId));
+            statement.setBoolean(5, false);
+            statement.setTimestamp(6, now);
+        });
+    }
+
+    private record NewPayment(String id, String payerId) {
+    }
+
+    private static BigDecimal sum(List<BigDecimal> amounts) {
+        return amounts.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
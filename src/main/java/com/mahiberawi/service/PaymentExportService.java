@@ -0,0 +1,180 @@
+package com.mahiberawi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mahiberawi.dto.payment.PaymentExportFormat;
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.entity.GroupMember;
+import com.mahiberawi.entity.PaymentStatus;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.entity.enums.GroupMemberRole;
+import com.mahiberawi.exception.ResourceNotFoundException;
+import com.mahiberawi.exception.UnauthorizedException;
+import com.mahiberawi.repository.GroupMemberRepository;
+import com.mahiberawi.repository.GroupRepository;
+import com.mahiberawi.repository.PaymentRepository;
+import com.mahiberawi.repository.PaymentRepository.PaymentExportRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes payment history as CSV or JSON lines straight from a database cursor, one
+ * row at a time, so an export uses the same memory whatever its size.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PaymentExportService {
+
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(9999, 1, 1, 0, 0);
+
+    private static final List<Column> COLUMNS = List.of(
+            new Column("id", PaymentExportRow::getId),
+            new Column("transactionId", PaymentExportRow::getTransactionId),
+            new Column("createdAt", PaymentExportRow::getCreatedAt),
+            new Column("updatedAt", PaymentExportRow::getUpdatedAt),
+            new Column("status", PaymentExportRow::getStatus),
+            new Column("method", PaymentExportRow::getMethod),
+            new Column("amount", PaymentExportRow::getAmount),
+            new Column("description", PaymentExportRow::getDescription),
+            new Column("payerId", PaymentExportRow::getPayerId),
+            new Column("payerName", row -> row.getPayerFirstName() + " " + row.getPayerLastName()),
+            new Column("payerEmail", PaymentExportRow::getPayerEmail),
+            new Column("groupId", PaymentExportRow::getGroupId),
+            new Column("eventId", PaymentExportRow::getEventId),
+            new Column("eventTitle", PaymentExportRow::getEventTitle));
+
+    private final PaymentRepository paymentRepository;
+    private final GroupRepository groupRepository;
+    private final GroupMemberRepository groupMemberRepository;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Checked before the response starts, so a refusal is still sent as an error.
+     */
+    @Transactional(readOnly = true)
+    public void checkGroupExport(String groupId, User currentUser) {
+        Group group = groupRepository.findById(groupId)
+                .orElseThrow(() -> new ResourceNotFoundException("Group not found with id: " + groupId));
+        if (userService.isSuperAdmin(currentUser)) {
+            return;
+        }
+        GroupMember member = groupMemberRepository.findByGroupAndUser(group, currentUser)
+                .orElseThrow(() -> new UnauthorizedException("You are not a member of this group"));
+        if (member.getRole() != GroupMemberRole.ADMIN && member.getRole() != GroupMemberRole.MODERATOR) {
+            throw new UnauthorizedException("Only admins and moderators can export group payments");
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void write(Filter filter, PaymentExportFormat format, boolean gzip, OutputStream out) throws IOException {
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, 8192) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(compressed != null ? compressed : out, StandardCharsets.UTF_8));
+
+        long rows = 0;
+        if (format == PaymentExportFormat.CSV) {
+            writer.write(String.join(",", COLUMNS.stream().map(Column::name).toList()));
+            writer.write("\r\n");
+        }
+        try (Stream<PaymentExportRow> payments = paymentRepository.streamForExport(filter.groupId(),
+                filter.statuses(), filter.from(), filter.to())) {
+            Iterator<PaymentExportRow> iterator = payments.iterator();
+            while (iterator.hasNext()) {
+                PaymentExportRow row = iterator.next();
+                if (format == PaymentExportFormat.CSV) {
+                    writeCsv(writer, row);
+                } else {
+                    writeJson(writer, row);
+                }
+                rows++;
+            }
+        }
+
+        writer.flush();
+        if (compressed != null) {
+            compressed.finish();
+        }
+        log.info("Exported {} payments{} as {}", rows, filter.groupId() != null ? " of group " + filter.groupId() : "", format);
+    }
+
+    private void writeCsv(Writer writer, PaymentExportRow row) throws IOException {
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            Object value = COLUMNS.get(i).value().apply(row);
+            if (value != null) {
+                writer.write(csvCell(value.toString()));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeJson(Writer writer, PaymentExportRow row) throws IOException {
+        Map<String, Object> line = new LinkedHashMap<>();
+        for (Column column : COLUMNS) {
+            line.put(column.name(), column.value().apply(row));
+        }
+        writer.write(objectMapper.writeValueAsString(line));
+        writer.write('\n');
+    }
+
+    private static String csvCell(String value) {
+        // Cells a spreadsheet would run as a formula are written as text
+        if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0 && !isNumber(value)) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+
+    private static boolean isNumber(String value) {
+        try {
+            new BigDecimal(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private record Column(String name, Function<PaymentExportRow, Object> value) {
+    }
+
+    /**
+     * Payments to export: one group's or all when groupId is null, with the given
+     * statuses (all when empty), created on or after from and on or before to.
+     */
+    public record Filter(String groupId, Collection<PaymentStatus> statuses, LocalDateTime from, LocalDateTime to) {
+
+        public static Filter of(String groupId, Collection<PaymentStatus> statuses, LocalDate from, LocalDate to) {
+            return new Filter(groupId,
+                    statuses == null || statuses.isEmpty() ? EnumSet.allOf(PaymentStatus.class) : EnumSet.copyOf(statuses),
+                    from != null ? from.atStartOfDay() : BEGINNING,
+                    to != null ? to.plusDays(1).atStartOfDay() : END);
+        }
+    }
+}
@@ -7,10 +7,13 @@ import com.mahiberawi.dto.payment.VippsPaymentResponse;
 import com.mahiberawi.entity.Payment;
 import com.mahiberawi.entity.PaymentMethod;
 import com.mahiberawi.entity.User;
+import com.mahiberawi.util.GatewayClient;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -60,4 +63,8 @@ public class PaymentGatewayService {
     public PaymentResponse getPaymentStatus(String paymentId) {
         return paymentService.getPayment(paymentId);
     }
+
+    public List<GatewayClient.Metrics> getGatewayMetrics() {
+        return List.of(teleBirrService.getClientMetrics(), vippsService.getClientMetrics());
+    }
 } 
\ No newline at end of file
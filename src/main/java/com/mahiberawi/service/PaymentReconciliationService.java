@@ -0,0 +1,236 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.config.PaymentReconciliationConfig;
+import com.mahiberawi.entity.PaymentMethod;
+import com.mahiberawi.entity.PaymentStatus;
+import com.mahiberawi.exception.GatewayUnavailableException;
+import com.mahiberawi.repository.PaymentRepository;
+import com.mahiberawi.repository.PaymentRepository.PendingPaymentKey;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Settles gateway payments that stayed PENDING because no callback arrived. A pass
+ * pages through stale pending payments oldest first, asks each gateway for their
+ * status with a bounded number of calls in flight per gateway, and writes the
+ * statuses that changed back in one update per page and status. A gateway whose
+ * client turns calls away is skipped for the rest of the pass.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PaymentReconciliationService {
+
+    private static final LocalDateTime FIRST_PAGE = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentBatchWriter paymentBatchWriter;
+    private final TeleBirrService teleBirrService;
+    private final VippsService vippsService;
+    private final PaymentReconciliationConfig reconciliationConfig;
+    private final PlatformTransactionManager transactionManager;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Map<PaymentMethod, ExecutorService> pools = new EnumMap<>(PaymentMethod.class);
+    private TransactionTemplate transactionTemplate;
+    private volatile Report lastReport;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        pools.put(PaymentMethod.TELEBIRR, pool("telebirr", reconciliationConfig.getTeleBirrConcurrency()));
+        pools.put(PaymentMethod.VIPPS, pool("vipps", reconciliationConfig.getVippsConcurrency()));
+    }
+
+    @PreDestroy
+    public void stop() {
+        pools.values().forEach(ExecutorService::shutdownNow);
+    }
+
+    @Scheduled(fixedDelayString = "${app.payments.reconciliation.interval-ms:600000}",
+               initialDelayString = "${app.payments.reconciliation.initial-delay-ms:120000}")
+    public void reconcileStalePayments() {
+        if (reconciliationConfig.isEnabled()) {
+            reconcile();
+        }
+    }
+
+    /**
+     * Run one reconciliation pass now. Returns null if a pass is already running.
+     */
+    public Report reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            Report report = runPass();
+            lastReport = report;
+            log.info("Payment reconciliation checked {} payments in {} ms ({} per second): {} mismatches, " +
+                            "{} updated, {} still pending, {} errors, {} skipped",
+                    report.checked(), report.durationMillis(), report.paymentsPerSecond(), report.mismatches(),
+                    report.updated(), report.stillPending(), report.errors(), report.skipped());
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    private Report runPass() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long startNanos = System.nanoTime();
+        LocalDateTime createdBefore = startedAt.minus(reconciliationConfig.getStaleAfter());
+
+        Set<PaymentMethod> gateways = EnumSet.copyOf(pools.keySet());
+        Set<PaymentMethod> unavailable = ConcurrentHashMap.newKeySet();
+        Tally tally = new Tally();
+
+        LocalDateTime afterCreatedAt = FIRST_PAGE;
+        String afterId = "";
+        while (true) {
+            gateways.removeAll(unavailable);
+            if (gateways.isEmpty()) {
+                break;
+            }
+            List<PendingPaymentKey> page = paymentRepository.findPendingPage(gateways, createdBefore,
+                    afterCreatedAt, afterId, PageRequest.of(0, reconciliationConfig.getPageSize()));
+            if (page.isEmpty()) {
+                break;
+            }
+
+            applyPage(checkPage(page, unavailable, tally), tally);
+
+            PendingPaymentKey last = page.get(page.size() - 1);
+            afterCreatedAt = last.getCreatedAt();
+            afterId = last.getId();
+            if (page.size() < reconciliationConfig.getPageSize()) {
+                break;
+            }
+        }
+
+        long durationMillis = Math.max((System.nanoTime() - startNanos) / 1_000_000, 1);
+        int checked = tally.checked.get();
+        return new Report(startedAt, durationMillis, checked, tally.mismatches.get(), tally.updated.get(),
+                tally.stillPending.get(), tally.errors.get(), tally.skipped.get(), checked * 1000L / durationMillis,
+                tally.mismatchesByGateway(), List.copyOf(unavailable));
+    }
+
+    // Gateway status of every payment on the page, grouped by the status to write
+    private Map<PaymentStatus, List<String>> checkPage(List<PendingPaymentKey> page, Set<PaymentMethod> unavailable,
+                                                       Tally tally) {
+        List<CompletableFuture<Void>> checks = new ArrayList<>(page.size());
+        Map<PaymentStatus, List<String>> changes = new EnumMap<>(PaymentStatus.class);
+        for (PendingPaymentKey payment : page) {
+            checks.add(CompletableFuture.runAsync(() -> {
+                if (unavailable.contains(payment.getMethod())) {
+                    tally.skipped.incrementAndGet();
+                    return;
+                }
+                try {
+                    PaymentStatus status = fetchStatus(payment);
+                    tally.checked.incrementAndGet();
+                    if (status == null || status == PaymentStatus.PENDING) {
+                        tally.stillPending.incrementAndGet();
+                    } else {
+                        tally.mismatch(payment.getMethod());
+                        synchronized (changes) {
+                            changes.computeIfAbsent(status, key -> new ArrayList<>()).add(payment.getId());
+                        }
+                    }
+                } catch (GatewayUnavailableException e) {
+                    if (unavailable.add(payment.getMethod())) {
+                        log.warn("Skipping {} for the rest of the reconciliation pass: {}", payment.getMethod(), e.getMessage());
+                    }
+                    tally.skipped.incrementAndGet();
+                } catch (Exception e) {
+                    log.debug("Could not check payment {}: {}", payment.getTransactionId(), e.getMessage());
+                    tally.errors.incrementAndGet();
+                }
+            }, pools.get(payment.getMethod())));
+        }
+        CompletableFuture.allOf(checks.toArray(CompletableFuture[]::new)).join();
+        return changes;
+    }
+
+    private void applyPage(Map<PaymentStatus, List<String>> changes, Tally tally) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(transaction -> changes.forEach((status, ids) ->
+                tally.updated.addAndGet(paymentBatchWriter.movePending(ids, status))));
+    }
+
+    private PaymentStatus fetchStatus(PendingPaymentKey payment) {
+        return payment.getMethod() == PaymentMethod.VIPPS
+                ? vippsService.fetchStatus(payment.getTransactionId())
+                : teleBirrService.fetchStatus(payment.getTransactionId());
+    }
+
+    private static ExecutorService pool(String gateway, int size) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(size, runnable -> {
+            Thread thread = new Thread(runnable, "payment-reconcile-" + gateway + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static class Tally {
+        final AtomicInteger checked = new AtomicInteger();
+        final AtomicInteger mismatches = new AtomicInteger();
+        final AtomicInteger updated = new AtomicInteger();
+        final AtomicInteger stillPending = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final Map<PaymentMethod, AtomicInteger> byGateway = new ConcurrentHashMap<>();
+
+        void mismatch(PaymentMethod gateway) {
+            mismatches.incrementAndGet();
+            byGateway.computeIfAbsent(gateway, key -> new AtomicInteger()).incrementAndGet();
+        }
+
+        Map<PaymentMethod, Integer> mismatchesByGateway() {
+            Map<PaymentMethod, Integer> counts = new EnumMap<>(PaymentMethod.class);
+            byGateway.forEach((gateway, count) -> counts.put(gateway, count.get()));
+            return counts;
+        }
+    }
+
+    /**
+     * Outcome of one pass. A mismatch is a payment the gateway reports as settled while
+     * it is still pending here; updated counts those written back, which can be fewer if
+     * a callback settled the payment in the meantime.
+     */
+    public record Report(LocalDateTime startedAt, long durationMillis, int checked, int mismatches, int updated,
+                         int stillPending, int errors, int skipped, long paymentsPerSecond,
+                         Map<PaymentMethod, Integer> mismatchesByGateway, List<PaymentMethod> unavailableGateways) {
+    }
+}
@@ -13,13 +13,13 @@ import com.mahiberawi.exception.ResourceNotFoundException;
 import com.mahiberawi.repository.EventRepository;
 import com.mahiberawi.repository.MembershipRepository;
 import com.mahiberawi.repository.PaymentRepository;
+import com.mahiberawi.util.TransactionIdGenerator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.List;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,6 +28,7 @@ public class PaymentService {
     private final PaymentRepository paymentRepository;
     private final EventRepository eventRepository;
     private final MembershipRepository membershipRepository;
+    private final TransactionIdGenerator transactionIdGenerator;
 
     @Transactional
     public PaymentResponse createPayment(PaymentRequest request, User payer) {
@@ -37,7 +38,7 @@ public class PaymentService {
         payment.setStatus(PaymentStatus.PENDING);
         payment.setPayer(payer);
         payment.setDescription(request.getDescription());
-        payment.setTransactionId(generateTransactionId());
+        payment.setTransactionId(transactionIdGenerator.next());
 
         if (request.getEventId() != null) {
             Event event = eventRepository.findById(request.getEventId())
@@ -124,7 +125,7 @@ public class PaymentService {
         payment.setStatus(PaymentStatus.PENDING);
         payment.setPayer(payer);
         payment.setDescription(request.getDescription());
-        payment.setTransactionId(generateTransactionId());
+        payment.setTransactionId(transactionIdGenerator.next());
 
         if (request.getEventId() != null) {
             Event event = eventRepository.findById(request.getEventId())
@@ -148,9 +149,6 @@ public class PaymentService {
                 .collect(Collectors.toList());
     }
 
-    private String generateTransactionId() {
-        return UUID.randomUUID().toString().replace("-", "").substring(0, 12);
-    }
 
     public PaymentResponse mapToPaymentResponse(Payment payment) {
         return PaymentResponse.builder()
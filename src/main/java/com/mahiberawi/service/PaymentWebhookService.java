@@ -0,0 +1,385 @@
+package com.mahiberawi.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mahiberawi.config.PaymentWebhookConfig;
+import com.mahiberawi.config.TeleBirrConfig;
+import com.mahiberawi.config.VippsConfig;
+import com.mahiberawi.entity.Payment;
+import com.mahiberawi.entity.PaymentMethod;
+import com.mahiberawi.entity.PaymentStatus;
+import com.mahiberawi.entity.PaymentWebhook;
+import com.mahiberawi.entity.PaymentWebhookOutcome;
+import com.mahiberawi.repository.PaymentRepository;
+import com.mahiberawi.repository.PaymentWebhookRepository;
+import com.mahiberawi.util.TimeOrderedIds;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ingests payment gateway callbacks. A callback is verified, stored with its
+ * idempotency key in a single insert that skips duplicates, and acknowledged; the
+ * status change it reports is applied to the payment afterwards by a worker. All
+ * callbacks of one transaction go to the same worker, so they are applied in the
+ * order they arrived. Callbacks that were stored but not applied, e.g. because the
+ * application stopped, are picked up again by a periodic sweep. When a worker's queue
+ * is full, the transaction is deferred: its later callbacks are left for the sweep as
+ * well, which queues them all in arrival order once there is room.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PaymentWebhookService {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final long POLL_INTERVAL_MS = 500;
+
+    public enum Receipt {
+        ACCEPTED,
+        DUPLICATE,
+        INVALID_SIGNATURE,
+        MALFORMED
+    }
+
+    private final PaymentWebhookRepository paymentWebhookRepository;
+    private final PaymentRepository paymentRepository;
+    private final PaymentWebhookConfig webhookConfig;
+    private final TeleBirrConfig teleBirrConfig;
+    private final VippsConfig vippsConfig;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    // Webhook ids queued or being applied, so the sweep does not queue them twice
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    // Transactions with callbacks that could not be queued; guarded by itself
+    private final Set<String> deferred = new HashSet<>();
+    private Set<String> recentKeys;
+    private List<BlockingQueue<String>> queues;
+    private ExecutorService workers;
+    private TransactionTemplate transactionTemplate;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        int recentKeyCapacity = webhookConfig.getRecentKeyCapacity();
+        recentKeys = Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > recentKeyCapacity;
+            }
+        }));
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        running = true;
+        warnIfSecretMissing(PaymentMethod.TELEBIRR, teleBirrConfig.getWebhookSecret());
+        warnIfSecretMissing(PaymentMethod.VIPPS, vippsConfig.getWebhookSecret());
+
+        int workerCount = webhookConfig.getWorkerCount();
+        queues = new ArrayList<>(workerCount);
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "payment-webhooks-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            BlockingQueue<String> queue = new ArrayBlockingQueue<>(webhookConfig.getQueueCapacityPerWorker());
+            queues.add(queue);
+            workers.submit(() -> runWorker(queue));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Verify and store one callback. The status change is applied after this returns;
+     * a callback already received is reported as a duplicate and not stored again.
+     */
+    public Receipt receive(PaymentMethod gateway, String body, String signature) {
+        if (!signatureMatches(gateway, body, signature)) {
+            log.warn("Rejected {} callback with an invalid signature", gateway);
+            return Receipt.INVALID_SIGNATURE;
+        }
+
+        Callback callback = parse(gateway, body);
+        if (callback == null) {
+            log.warn("Rejected malformed {} callback", gateway);
+            return Receipt.MALFORMED;
+        }
+
+        String recentKey = gateway + ":" + callback.idempotencyKey();
+        if (recentKeys.contains(recentKey)) {
+            return Receipt.DUPLICATE;
+        }
+
+        String id = TimeOrderedIds.uuid();
+        int inserted;
+        try {
+            inserted = paymentWebhookRepository.insertIfAbsent(id, gateway.name(), callback.idempotencyKey(),
+                    callback.transactionId(), callback.status(), body, LocalDateTime.now());
+        } catch (DataIntegrityViolationException e) {
+            // A copy stored concurrently violates the idempotency key; anything else is a real failure
+            if (!paymentWebhookRepository.existsByGatewayAndIdempotencyKey(gateway, callback.idempotencyKey())) {
+                throw e;
+            }
+            inserted = 0;
+        }
+        recentKeys.add(recentKey);
+        if (inserted == 0) {
+            return Receipt.DUPLICATE;
+        }
+
+        synchronized (deferred) {
+            // Earlier callbacks of the transaction wait for the sweep, and this one must not overtake them
+            if (!deferred.contains(callback.transactionId())) {
+                enqueueOrDefer(id, callback.transactionId());
+            }
+        }
+        return Receipt.ACCEPTED;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverOnStartup() {
+        sweep(LocalDateTime.now());
+    }
+
+    // Callbacks that could not be queued when they arrived
+    @Scheduled(fixedDelayString = "${app.payments.webhooks.sweep-delay-ms:60000}",
+               initialDelayString = "${app.payments.webhooks.sweep-delay-ms:60000}")
+    public void sweepUnprocessed() {
+        sweep(LocalDateTime.now().minus(Duration.ofMillis(webhookConfig.getSweepDelayMs())));
+    }
+
+    private void sweep(LocalDateTime receivedBefore) {
+        int queued = 0;
+        synchronized (deferred) {
+            // All callbacks of a deferred transaction, however recent, so they are queued in order
+            for (Iterator<String> iterator = deferred.iterator(); iterator.hasNext(); ) {
+                String transactionId = iterator.next();
+                boolean all = true;
+                for (PaymentWebhook webhook : paymentWebhookRepository.findUnprocessedByTransactionId(transactionId)) {
+                    if (inFlight.contains(webhook.getId())) {
+                        continue;
+                    }
+                    if (!enqueue(webhook.getId(), transactionId)) {
+                        all = false;
+                        break;
+                    }
+                    queued++;
+                }
+                if (all) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        List<PaymentWebhook> pending = paymentWebhookRepository.findUnprocessed(receivedBefore,
+                PageRequest.of(0, webhookConfig.getSweepBatchSize()));
+        for (PaymentWebhook webhook : pending) {
+            synchronized (deferred) {
+                if (!deferred.contains(webhook.getTransactionId()) && !inFlight.contains(webhook.getId())
+                        && enqueueOrDefer(webhook.getId(), webhook.getTransactionId())) {
+                    queued++;
+                }
+            }
+        }
+        if (queued > 0) {
+            log.info("Queued {} unprocessed payment callbacks", queued);
+        }
+    }
+
+    // Called holding the deferred lock
+    private boolean enqueueOrDefer(String webhookId, String transactionId) {
+        if (enqueue(webhookId, transactionId)) {
+            return true;
+        }
+        if (running) {
+            deferred.add(transactionId);
+            log.warn("Payment callback queue is full, {} and later callbacks of its transaction are left for the sweep",
+                    webhookId);
+        }
+        return false;
+    }
+
+    private boolean enqueue(String webhookId, String transactionId) {
+        if (!running || !inFlight.add(webhookId)) {
+            return false;
+        }
+        BlockingQueue<String> queue = queues.get(Math.floorMod(transactionId.hashCode(), queues.size()));
+        if (!queue.offer(webhookId)) {
+            inFlight.remove(webhookId);
+            return false;
+        }
+        return true;
+    }
+
+    private void runWorker(BlockingQueue<String> queue) {
+        try {
+            while (running || !queue.isEmpty()) {
+                String webhookId = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (webhookId == null) {
+                    continue;
+                }
+                try {
+                    transactionTemplate.executeWithoutResult(status -> apply(webhookId));
+                } catch (Exception e) {
+                    log.error("Could not apply payment callback {}", webhookId, e);
+                } finally {
+                    inFlight.remove(webhookId);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void apply(String webhookId) {
+        PaymentWebhook webhook = paymentWebhookRepository.findById(webhookId).orElse(null);
+        if (webhook == null || webhook.getProcessedAt() != null) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        PaymentStatus reported = webhook.getGateway() == PaymentMethod.VIPPS
+                ? VippsService.toPaymentStatus(webhook.getReportedStatus())
+                : TeleBirrService.toPaymentStatus(webhook.getReportedStatus());
+        Payment payment = paymentRepository.findByTransactionIdForUpdate(webhook.getTransactionId())
+                .filter(found -> found.getMethod() == webhook.getGateway())
+                .orElse(null);
+
+        PaymentWebhookOutcome outcome;
+        if (reported == null) {
+            outcome = PaymentWebhookOutcome.UNKNOWN_STATUS;
+        } else if (payment == null) {
+            outcome = PaymentWebhookOutcome.UNKNOWN_PAYMENT;
+        } else if (canTransition(payment.getStatus(), reported)) {
+            log.info("Payment {} moved from {} to {} by {} callback",
+                    payment.getTransactionId(), payment.getStatus(), reported, webhook.getGateway());
+            payment.setStatus(reported);
+            payment.setUpdatedAt(now);
+            paymentRepository.save(payment);
+            outcome = PaymentWebhookOutcome.APPLIED;
+        } else {
+            outcome = PaymentWebhookOutcome.IGNORED;
+        }
+
+        paymentWebhookRepository.markProcessed(webhookId, outcome, now);
+    }
+
+    private static boolean canTransition(PaymentStatus from, PaymentStatus to) {
+        return switch (from) {
+            case PENDING -> to != PaymentStatus.PENDING && to != PaymentStatus.REFUNDED;
+            case COMPLETED -> to == PaymentStatus.REFUNDED;
+            default -> false;
+        };
+    }
+
+    /**
+     * The transaction, reported status and idempotency key of a callback. A gateway
+     * retrying the same notification produces the same key.
+     */
+    private Callback parse(PaymentMethod gateway, String body) {
+        try {
+            JsonNode root = objectMapper.readTree(body);
+            String transactionId;
+            String status;
+            String reference;
+            if (gateway == PaymentMethod.VIPPS) {
+                JsonNode transactionInfo = root.path("transactionInfo");
+                transactionId = root.path("orderId").asText(null);
+                status = transactionInfo.path("status").asText(null);
+                reference = transactionInfo.path("transactionId").asText("");
+            } else {
+                transactionId = root.path("outTradeNo").asText(null);
+                status = root.path("tradeStatus").asText(null);
+                reference = root.path("transactionNo").asText("");
+            }
+            if (transactionId == null || transactionId.isBlank() || status == null || status.isBlank()) {
+                return null;
+            }
+            return new Callback(transactionId, status, transactionId + ":" + status.toUpperCase() + ":" + reference);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static void warnIfSecretMissing(PaymentMethod gateway, String secret) {
+        if (secret == null || secret.isBlank()) {
+            log.warn("No webhook secret is configured for {}, so all of its callbacks are rejected", gateway);
+        }
+    }
+
+    // Without a secret nothing can be verified, so every callback is rejected
+    private boolean signatureMatches(PaymentMethod gateway, String body, String signature) {
+        String secret = gateway == PaymentMethod.VIPPS ? vippsConfig.getWebhookSecret() : teleBirrConfig.getWebhookSecret();
+        if (secret == null || secret.isBlank() || signature == null || signature.isBlank()) {
+            return false;
+        }
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            byte[] expected = mac.doFinal(body.getBytes(StandardCharsets.UTF_8));
+            return MessageDigest.isEqual(expected, decodeSignature(signature.trim()));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Hex or Base64, optionally prefixed with the algorithm name
+    private static byte[] decodeSignature(String signature) {
+        String value = signature.startsWith("sha256=") ? signature.substring("sha256=".length()) : signature;
+        if (value.length() == 64 && value.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            return HexFormat.of().parseHex(value);
+        }
+        return Base64.getDecoder().decode(value);
+    }
+
+    private record Callback(String transactionId, String status, String idempotencyKey) {
+    }
+}
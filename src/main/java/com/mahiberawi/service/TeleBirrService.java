@@ -5,13 +5,20 @@ import com.mahiberawi.config.TeleBirrConfig;
 import com.mahiberawi.dto.payment.TeleBirrPaymentRequest;
 import com.mahiberawi.dto.payment.TeleBirrPaymentResponse;
 import com.mahiberawi.entity.Payment;
+import com.mahiberawi.entity.PaymentStatus;
+import com.mahiberawi.exception.GatewayUnavailableException;
+import com.mahiberawi.util.GatewayClient;
+import com.mahiberawi.util.OAuthTokenCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 
-import java.time.LocalDateTime;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
@@ -21,13 +28,31 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class TeleBirrService {
     private final TeleBirrConfig teleBirrConfig;
-    private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
 
+    private GatewayClient gatewayClient;
+    private RestTemplate restTemplate;
+    private OAuthTokenCache tokenCache;
+
+    @PostConstruct
+    public void start() {
+        gatewayClient = new GatewayClient("telebirr", teleBirrConfig.getClient());
+        restTemplate = gatewayClient.getRestTemplate();
+        tokenCache = new OAuthTokenCache("telebirr", this::fetchAccessToken, teleBirrConfig.getTokenRefreshMargin());
+    }
+
+    @PreDestroy
+    public void stop() {
+        tokenCache.close();
+        gatewayClient.close();
+    }
+
+    public GatewayClient.Metrics getClientMetrics() {
+        return gatewayClient.getMetrics();
+    }
+
     public TeleBirrPaymentResponse initiatePayment(Payment payment) {
         try {
-            String accessToken = getAccessToken();
-            
             TeleBirrPaymentRequest request = TeleBirrPaymentRequest.builder()
                     .outTradeNo(payment.getTransactionId())
                     .totalAmount(payment.getAmount().toString())
@@ -36,24 +61,21 @@ public class TeleBirrService {
                     .returnUrl(teleBirrConfig.getReturnUrl())
                     .build();
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(accessToken);
-
-            HttpEntity<TeleBirrPaymentRequest> entity = new HttpEntity<>(request, headers);
-
-            ResponseEntity<TeleBirrPaymentResponse> response = restTemplate.exchange(
+            ResponseEntity<TeleBirrPaymentResponse> response = tokenCache.call(accessToken -> restTemplate.exchange(
                     teleBirrConfig.getPaymentUrl(),
                     HttpMethod.POST,
-                    entity,
+                    new HttpEntity<>(request, bearerHeaders(accessToken)),
                     TeleBirrPaymentResponse.class
-            );
+            ));
 
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
                 return response.getBody();
             }
 
             throw new RuntimeException("Failed to initiate TeleBirr payment");
+        } catch (GatewayUnavailableException e) {
+            log.warn("TeleBirr payment not initiated: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Error initiating TeleBirr payment: {}", e.getMessage());
             throw new RuntimeException("Failed to initiate TeleBirr payment", e);
@@ -62,37 +84,58 @@ public class TeleBirrService {
 
     public boolean verifyPayment(String transactionId) {
         try {
-            String accessToken = getAccessToken();
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(accessToken);
-
-            Map<String, String> request = new HashMap<>();
-            request.put("outTradeNo", transactionId);
-
-            HttpEntity<Map<String, String>> entity = new HttpEntity<>(request, headers);
-
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    teleBirrConfig.getVerifyUrl(),
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
-
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                Map<String, Object> responseBody = response.getBody();
-                return "SUCCESS".equals(responseBody.get("status"));
-            }
-
-            return false;
+            return fetchStatus(transactionId) == PaymentStatus.COMPLETED;
         } catch (Exception e) {
             log.error("Error verifying TeleBirr payment: {}", e.getMessage());
             return false;
         }
     }
 
-    private String getAccessToken() {
+    /**
+     * The status TeleBirr reports for a transaction, or null while it has no final
+     * status. Gateway errors are thrown to the caller.
+     */
+    public PaymentStatus fetchStatus(String transactionId) {
+        Map<String, String> request = new HashMap<>();
+        request.put("outTradeNo", transactionId);
+
+        ResponseEntity<Map> response = tokenCache.call(accessToken -> restTemplate.exchange(
+                teleBirrConfig.getVerifyUrl(),
+                HttpMethod.POST,
+                new HttpEntity<>(request, bearerHeaders(accessToken)),
+                Map.class
+        ));
+
+        if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
+            Object status = response.getBody().get("status");
+            return status != null ? toPaymentStatus(status.toString()) : null;
+        }
+
+        return null;
+    }
+
+    /**
+     * Maps a TeleBirr trade status to a payment status; null for statuses that are not final.
+     */
+    public static PaymentStatus toPaymentStatus(String reported) {
+        return switch (reported.trim().toUpperCase()) {
+            case "SUCCESS", "COMPLETED", "PAID" -> PaymentStatus.COMPLETED;
+            case "FAILED", "FAILURE" -> PaymentStatus.FAILED;
+            case "CANCELLED", "CANCELED", "EXPIRED" -> PaymentStatus.CANCELLED;
+            case "REFUNDED" -> PaymentStatus.REFUNDED;
+            default -> null;
+        };
+    }
+
+    private HttpHeaders bearerHeaders(String accessToken) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(accessToken);
+        return headers;
+    }
+
+    // Called by the token cache, only when it has no usable token
+    private OAuthTokenCache.AccessToken fetchAccessToken() {
         try {
             String credentials = teleBirrConfig.getAppKey() + ":" + teleBirrConfig.getAppSecret();
             String encodedCredentials = Base64.getEncoder().encodeToString(credentials.getBytes());
@@ -101,10 +144,10 @@ public class TeleBirrService {
             headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
             headers.setBasicAuth(encodedCredentials);
 
-            Map<String, String> request = new HashMap<>();
-            request.put("grant_type", "client_credentials");
+            MultiValueMap<String, String> request = new LinkedMultiValueMap<>();
+            request.add("grant_type", "client_credentials");
 
-            HttpEntity<Map<String, String>> entity = new HttpEntity<>(request, headers);
+            HttpEntity<MultiValueMap<String, String>> entity = new HttpEntity<>(request, headers);
 
             ResponseEntity<Map> response = restTemplate.exchange(
                     teleBirrConfig.getTokenUrl(),
@@ -114,10 +157,13 @@ public class TeleBirrService {
             );
 
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                return (String) response.getBody().get("access_token");
+                return OAuthTokenCache.AccessToken.of((String) response.getBody().get("access_token"),
+                        response.getBody().get("expires_in"), teleBirrConfig.getTokenDefaultLifetime());
             }
 
             throw new RuntimeException("Failed to get TeleBirr access token");
+        } catch (GatewayUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error getting TeleBirr access token: {}", e.getMessage());
             throw new RuntimeException("Failed to get TeleBirr access token", e);
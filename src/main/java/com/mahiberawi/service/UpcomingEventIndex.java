@@ -0,0 +1,440 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.entity.Event;
+import com.mahiberawi.repository.EventRepository;
+import com.mahiberawi.util.AfterCommit;
+import com.mahiberawi.util.GeoHash;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory read model of upcoming events, bucketed by start day. It holds every
+ * upcoming single event and the occurrences of recurring events up to a horizon, and
+ * is kept current by the event writes, so listing upcoming events walks a few buckets
+ * instead of range-scanning the events table. Rebuilt at startup and daily to roll the
+ * horizon forward; until the first build, and for windows starting before the last build
+ * or ending past the horizon, queries are answered from the database.
+ *
+ * <p>Each instance holds its own index. Writes made through other instances are picked up
+ * every few seconds by re-indexing the events whose updated_at moved since the last
+ * refresh. Deleted events are not seen by the refresh; they stay indexed until the next
+ * rebuild but are dropped when listed, since their rows are gone.
+ *
+ * <p>Entries of events with coordinates are also keyed by geohash, so a nearby search
+ * range-scans the few cells around a point and only measures distances for those.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UpcomingEventIndex {
+    private static final Comparator<Entry> ORDER = Comparator.comparing(Entry::startTime)
+            .thenComparing(Entry::eventId)
+            .thenComparing(Entry::occurrenceStart, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final EventRepository eventRepository;
+    private final EventOccurrenceService eventOccurrenceService;
+
+    @Value("${app.events.recurrence.default-window-days:90}")
+    private long windowDays;
+
+    // How far back each refresh reads, so a change stamped before the last refresh but
+    // committed after it is still picked up; re-indexing an event twice is harmless
+    private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private NavigableMap<LocalDate, NavigableSet<Entry>> buckets = new TreeMap<>();
+    private Map<String, List<Entry>> entriesByEvent = new HashMap<>();
+    // Located entries by geohash, event id and occurrence; a cell is a key prefix range
+    private NavigableMap<String, Entry> byLocation = new TreeMap<>();
+    // Events and occurrences are indexed from here, the time of the last build, and
+    // occurrences up to the horizon; both null until the first build
+    private LocalDateTime indexedFrom;
+    private LocalDateTime seriesHorizon;
+    // Changes made while a rebuild reads the database, replayed onto the rebuilt index
+    private Map<String, List<Entry>> changedDuringRebuild;
+    // Start of the last build or refresh; events changed since then are re-indexed
+    private LocalDateTime refreshedAt;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.events.index.rebuild-cron:0 5 0 * * *}")
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        // A day past the window, so the daily rebuild always covers a full window from now
+        LocalDateTime horizon = now.toLocalDate().plusDays(windowDays + 2).atStartOfDay();
+        List<Entry> loaded;
+        try {
+            loaded = loadFromDatabase(now, null, horizon);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.error("Error building the upcoming events index", e);
+            return;
+        }
+
+        NavigableMap<LocalDate, NavigableSet<Entry>> newBuckets = new TreeMap<>();
+        Map<String, List<Entry>> newEntriesByEvent = new HashMap<>();
+        NavigableMap<String, Entry> newByLocation = new TreeMap<>();
+        for (Entry entry : loaded) {
+            add(newBuckets, newEntriesByEvent, newByLocation, entry);
+        }
+
+        lock.writeLock().lock();
+        try {
+            Map<String, List<Entry>> changed = changedDuringRebuild;
+            changedDuringRebuild = null;
+            buckets = newBuckets;
+            entriesByEvent = newEntriesByEvent;
+            byLocation = newByLocation;
+            indexedFrom = now;
+            seriesHorizon = horizon;
+            refreshedAt = now;
+            changed.forEach(this::replace);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Indexed {} upcoming events and occurrences in {} day buckets", loaded.size(), newBuckets.size());
+    }
+
+    /**
+     * Re-index an event after it was created or changed. Its entries are computed in the
+     * caller's transaction and swapped in once that commits.
+     */
+    public void update(Event event) {
+        List<Entry> entries = entriesOf(List.of(event)).getOrDefault(event.getId(), List.of());
+        AfterCommit.run(() -> apply(event.getId(), entries));
+    }
+
+    /**
+     * Re-index the events created or changed since the last refresh, including those
+     * written through other instances.
+     */
+    @Scheduled(fixedDelayString = "${app.events.index.refresh-ms:10000}")
+    @Transactional(readOnly = true)
+    public void refresh() {
+        LocalDateTime since;
+        lock.readLock().lock();
+        try {
+            since = refreshedAt;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (since == null) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            List<Event> changed = eventRepository.findByUpdatedAtAfter(since.minus(REFRESH_OVERLAP));
+            Map<String, List<Entry>> entries = entriesOf(changed);
+            for (Event event : changed) {
+                apply(event.getId(), entries.getOrDefault(event.getId(), List.of()));
+            }
+        } catch (RuntimeException e) {
+            log.error("Error refreshing the upcoming events index", e);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            // A rebuild that started meanwhile already read everything up to its own start
+            if (refreshedAt.isBefore(now)) {
+                refreshedAt = now;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String eventId) {
+        AfterCommit.run(() -> apply(eventId, List.of()));
+    }
+
+    /**
+     * Upcoming events and occurrences in start order, starting at {@code from} (or after the
+     * cursor entry) and up to {@code to}. Without {@code to}, single events are unbounded and
+     * occurrences end after the default window. Limited to the given groups when not null.
+     */
+    public List<Entry> find(LocalDateTime from, LocalDateTime to, Collection<String> groupIds, Entry after, int limit) {
+        LocalDateTime seriesEnd = to != null ? to : from.plusDays(windowDays);
+
+        lock.readLock().lock();
+        try {
+            if (covers(from, seriesEnd)) {
+                LocalDateTime start = after != null && after.startTime().isAfter(from) ? after.startTime() : from;
+                if (to != null && to.isBefore(start)) {
+                    return List.of();
+                }
+                NavigableMap<LocalDate, NavigableSet<Entry>> days = to != null
+                        ? buckets.subMap(start.toLocalDate(), true, to.toLocalDate(), true)
+                        : buckets.tailMap(start.toLocalDate(), true);
+
+                List<Entry> result = new ArrayList<>();
+                for (NavigableSet<Entry> day : days.values()) {
+                    if (select(day, from, to, seriesEnd, groupIds, after, limit, result)) {
+                        break;
+                    }
+                }
+                return result;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Entry> result = new ArrayList<>();
+        select(new TreeSet<>(loadFromDatabase(from, to, seriesEnd)), from, to, seriesEnd, groupIds, after, limit, result);
+        return result;
+    }
+
+    /**
+     * Located events and occurrences starting within [from, to) and within the radius of
+     * the point, nearest first and then by start.
+     */
+    public List<Nearby> findNear(double latitude, double longitude, double radiusKm,
+                                 LocalDateTime from, LocalDateTime to, int limit) {
+        List<Nearby> result = new ArrayList<>();
+        boolean indexed;
+        lock.readLock().lock();
+        try {
+            indexed = covers(from, to);
+            if (indexed) {
+                for (String cell : GeoHash.coveringCells(latitude, longitude, radiusKm)) {
+                    for (Entry entry : byLocation.subMap(cell, true, cell + Character.MAX_VALUE, false).values()) {
+                        addIfNear(entry, latitude, longitude, radiusKm, from, to, result);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!indexed) {
+            for (Entry entry : loadFromDatabase(from, to, to)) {
+                addIfNear(entry, latitude, longitude, radiusKm, from, to, result);
+            }
+        }
+
+        result.sort(Comparator.comparingDouble(Nearby::distanceKm).thenComparing(Nearby::entry));
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    // Whether the index holds everything starting within [from, to); called under the read lock
+    private boolean covers(LocalDateTime from, LocalDateTime to) {
+        return indexedFrom != null && !from.isBefore(indexedFrom) && !to.isAfter(seriesHorizon);
+    }
+
+    public static String encodeCursor(Entry entry) {
+        String value = entry.startTime() + "|" + entry.eventId() + "|"
+                + (entry.occurrenceStart() != null ? entry.occurrenceStart() : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Entry decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new Entry(LocalDateTime.parse(parts[0]), parts[1],
+                    parts[2].isEmpty() ? null : LocalDateTime.parse(parts[2]), null, null, null, null, false, null, null);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    // Adds matching entries of one day; returns true once the limit is reached
+    private boolean select(NavigableSet<Entry> entries, LocalDateTime from, LocalDateTime to, LocalDateTime seriesEnd,
+                           Collection<String> groupIds, Entry after, int limit, List<Entry> result) {
+        for (Entry entry : after != null ? entries.tailSet(after, false) : entries) {
+            if (entry.startTime().isBefore(from)) {
+                continue;
+            }
+            if (to != null && !entry.startTime().isBefore(to)) {
+                return true;
+            }
+            if (entry.occurrenceStart() != null && !entry.startTime().isBefore(seriesEnd)) {
+                continue;
+            }
+            if (groupIds != null && !groupIds.contains(entry.groupId())) {
+                continue;
+            }
+            result.add(entry);
+            if (result.size() >= limit) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addIfNear(Entry entry, double latitude, double longitude, double radiusKm,
+                                  LocalDateTime from, LocalDateTime to, List<Nearby> result) {
+        if (!entry.located() || entry.startTime().isBefore(from) || !entry.startTime().isBefore(to)) {
+            return;
+        }
+        double distance = GeoHash.distanceKm(latitude, longitude, entry.latitude(), entry.longitude());
+        if (distance <= radiusKm) {
+            result.add(new Nearby(entry, distance));
+        }
+    }
+
+    // Entries of the given events by event id, over the same window as the rest of the index
+    private Map<String, List<Entry>> entriesOf(List<Event> events) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime from;
+        LocalDateTime horizon;
+        lock.readLock().lock();
+        try {
+            // From the same lower bound as the rest of the index, so an edit does not drop
+            // the event's entries that started since the last build
+            from = indexedFrom != null ? indexedFrom : now;
+            horizon = seriesHorizon != null ? seriesHorizon : now.plusDays(windowDays);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Map<String, List<Entry>> entries = new HashMap<>();
+        List<Event> series = new ArrayList<>();
+        for (Event event : events) {
+            if (event.isRecurring()) {
+                series.add(event);
+            } else if (!event.getStartTime().isBefore(from)) {
+                entries.computeIfAbsent(event.getId(), id -> new ArrayList<>()).add(new Entry(event.getStartTime(),
+                        event.getId(), null, groupIdOf(event), null, null, null, false,
+                        event.getLatitude(), event.getLongitude()));
+            }
+        }
+        for (EventOccurrenceService.Occurrence occurrence : eventOccurrenceService.expand(series, from, horizon)) {
+            entries.computeIfAbsent(occurrence.event().getId(), id -> new ArrayList<>()).add(Entry.of(occurrence));
+        }
+        return entries;
+    }
+
+    private List<Entry> loadFromDatabase(LocalDateTime from, LocalDateTime to, LocalDateTime seriesEnd) {
+        List<Entry> entries = new ArrayList<>();
+        List<EventRepository.UpcomingEventKey> single = to != null
+                ? eventRepository.findUpcomingEventKeysBefore(from, to)
+                : eventRepository.findUpcomingEventKeys(from);
+        for (EventRepository.UpcomingEventKey key : single) {
+            entries.add(new Entry(key.getStartTime(), key.getId(), null, key.getGroupId(), null, null, null, false,
+                    key.getLatitude(), key.getLongitude()));
+        }
+        for (EventOccurrenceService.Occurrence occurrence :
+                eventOccurrenceService.expand(eventRepository.findSeriesInWindow(from, seriesEnd), from, seriesEnd)) {
+            entries.add(Entry.of(occurrence));
+        }
+        return entries;
+    }
+
+    private void apply(String eventId, List<Entry> entries) {
+        lock.writeLock().lock();
+        try {
+            replace(eventId, entries);
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.put(eventId, entries);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void replace(String eventId, List<Entry> entries) {
+        List<Entry> previous = entriesByEvent.remove(eventId);
+        if (previous != null) {
+            for (Entry entry : previous) {
+                NavigableSet<Entry> day = buckets.get(entry.startTime().toLocalDate());
+                if (day != null && day.remove(entry) && day.isEmpty()) {
+                    buckets.remove(entry.startTime().toLocalDate());
+                }
+                if (entry.located()) {
+                    byLocation.remove(locationKey(entry));
+                }
+            }
+        }
+        for (Entry entry : entries) {
+            add(buckets, entriesByEvent, byLocation, entry);
+        }
+    }
+
+    private static void add(NavigableMap<LocalDate, NavigableSet<Entry>> buckets,
+                            Map<String, List<Entry>> entriesByEvent, NavigableMap<String, Entry> byLocation,
+                            Entry entry) {
+        buckets.computeIfAbsent(entry.startTime().toLocalDate(), day -> new TreeSet<>(ORDER)).add(entry);
+        entriesByEvent.computeIfAbsent(entry.eventId(), id -> new ArrayList<>()).add(entry);
+        if (entry.located()) {
+            byLocation.put(locationKey(entry), entry);
+        }
+    }
+
+    private static String locationKey(Entry entry) {
+        return GeoHash.encode(entry.latitude(), entry.longitude(), GeoHash.MAX_PRECISION)
+                + "|" + entry.eventId() + "|" + (entry.occurrenceStart() != null ? entry.occurrenceStart() : "");
+    }
+
+    private static String groupIdOf(Event event) {
+        return event.getGroup() != null ? event.getGroup().getId() : null;
+    }
+
+    /**
+     * One indexed event or occurrence. Occurrences carry their own time, title, location
+     * and cancellation since those can differ from the series; a single event is read
+     * fresh from the database when listed. Coordinates are those of the event.
+     */
+    public record Entry(LocalDateTime startTime, String eventId, LocalDateTime occurrenceStart, String groupId,
+                        LocalDateTime endTime, String title, String location, boolean cancelled,
+                        Double latitude, Double longitude)
+            implements Comparable<Entry> {
+
+        static Entry of(EventOccurrenceService.Occurrence occurrence) {
+            Event event = occurrence.event();
+            return new Entry(occurrence.startTime(), event.getId(), occurrence.occurrenceStart(),
+                    groupIdOf(event), occurrence.endTime(), occurrence.title(), occurrence.location(),
+                    occurrence.cancelled(), event.getLatitude(), event.getLongitude());
+        }
+
+        boolean located() {
+            return latitude != null && longitude != null;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    public record Nearby(Entry entry, double distanceKm) {
+    }
+}
@@ -0,0 +1,200 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.entity.EmailVerificationCode;
+import com.mahiberawi.repository.EmailVerificationCodeRepository;
+import com.mahiberawi.util.AfterCommit;
+import com.mahiberawi.util.TimingWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the active verification and reset codes in memory so verifying a
+ * correct code does not query email_verification_codes. Writes go through to
+ * the table, which stays authoritative: the store is warmed from it at
+ * startup. Each code is placed on a timing wheel at its expiry and its row is
+ * deleted when the wheel passes it.
+ *
+ * Changes to the in-memory codes are applied only once the surrounding
+ * transaction commits, so a rollback leaves memory and table in step. A code
+ * that is not in memory, such as one saved through another instance, is
+ * looked up in the table instead, and an hourly sweep deletes the expired
+ * rows that no instance's wheel holds.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VerificationCodeStore {
+
+    private final EmailVerificationCodeRepository emailVerificationCodeRepository;
+
+    @Value("${app.email.verification.wheel-tick-ms:1000}")
+    private long wheelTickMs;
+
+    @Value("${app.email.verification.wheel-slots:1024}")
+    private int wheelSlots;
+
+    // email -> (code -> entry); the inner maps are only touched inside compute calls
+    private final Map<String, Map<String, ActiveCode>> activeCodes = new ConcurrentHashMap<>();
+    private TimingWheel<ActiveCode> expiryWheel;
+    private ScheduledExecutorService ticker;
+
+    @PostConstruct
+    public void start() {
+        expiryWheel = new TimingWheel<>(wheelTickMs, wheelSlots, System.currentTimeMillis());
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "verification-code-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::expireDueCodes, wheelTickMs, wheelTickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * Load the codes that are still active and drop the rows that expired while the application was down.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void loadActiveCodes() {
+        LocalDateTime now = LocalDateTime.now();
+        int deleted = emailVerificationCodeRepository.deleteExpiredCodes(now);
+        List<EmailVerificationCode> codes = emailVerificationCodeRepository.findByUsedFalseAndExpiresAtAfter(now);
+        codes.forEach(this::track);
+        log.info("Loaded {} active verification codes, deleted {} expired", codes.size(), deleted);
+    }
+
+    /**
+     * Persist a new code. It becomes verifiable once the surrounding transaction commits.
+     */
+    public EmailVerificationCode save(EmailVerificationCode verificationCode) {
+        EmailVerificationCode saved = emailVerificationCodeRepository.save(verificationCode);
+        AfterCommit.run(() -> track(saved));
+        return saved;
+    }
+
+    /**
+     * Check a code and, if it is valid, use up every active code for the email.
+     */
+    public boolean consume(String email, String code) {
+        long now = System.currentTimeMillis();
+        List<ActiveCode> seen = new ArrayList<>();
+        activeCodes.computeIfPresent(email, (key, codes) -> {
+            seen.addAll(codes.values());
+            return codes;
+        });
+        boolean cached = seen.stream().anyMatch(active -> active.code().equals(code) && active.expiresAtMillis() > now);
+        // Codes saved through another instance are only in the table
+        if (!cached && emailVerificationCodeRepository
+                .findByEmailAndCodeAndUsedFalseAndExpiresAtAfter(email, code, LocalDateTime.now())
+                .isEmpty()) {
+            return false;
+        }
+
+        // The row update decides between concurrent attempts, so each code is used once
+        if (emailVerificationCodeRepository.markAllCodesAsUsedForEmail(email) == 0) {
+            return false;
+        }
+        AfterCommit.run(() -> forget(email, seen));
+        return true;
+    }
+
+    /**
+     * Mark every active code for the email as used.
+     */
+    public void invalidate(String email) {
+        List<ActiveCode> seen = new ArrayList<>();
+        activeCodes.computeIfPresent(email, (key, codes) -> {
+            seen.addAll(codes.values());
+            return codes;
+        });
+        emailVerificationCodeRepository.markAllCodesAsUsedForEmail(email);
+        AfterCommit.run(() -> forget(email, seen));
+    }
+
+    /**
+     * Delete the expired codes, including those saved through other instances (runs every hour)
+     */
+    @Scheduled(cron = "0 0 * * * *")
+    @Transactional
+    public void deleteExpiredCodes() {
+        try {
+            int deleted = emailVerificationCodeRepository.deleteExpiredCodes(LocalDateTime.now());
+            log.debug("Deleted {} expired verification codes", deleted);
+        } catch (Exception e) {
+            log.error("Error deleting expired verification codes", e);
+        }
+    }
+
+    public int getActiveCount() {
+        return activeCodes.values().stream().mapToInt(Map::size).sum();
+    }
+
+    // Codes saved after these were seen, such as a resent code, are kept
+    private void forget(String email, List<ActiveCode> codes) {
+        activeCodes.computeIfPresent(email, (key, active) -> {
+            codes.forEach(code -> active.remove(code.code(), code));
+            return active.isEmpty() ? null : active;
+        });
+    }
+
+    private void track(EmailVerificationCode verificationCode) {
+        long expiresAtMillis = verificationCode.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        ActiveCode active = new ActiveCode(verificationCode.getId(), verificationCode.getEmail(),
+                verificationCode.getCode(), expiresAtMillis);
+
+        activeCodes.compute(active.email(), (key, codes) -> {
+            Map<String, ActiveCode> updated = codes != null ? codes : new HashMap<>();
+            updated.put(active.code(), active);
+            return updated;
+        });
+        expiryWheel.schedule(active, expiresAtMillis);
+    }
+
+    private void expireDueCodes() {
+        try {
+            List<ActiveCode> expired = expiryWheel.advance(System.currentTimeMillis());
+            if (expired.isEmpty()) {
+                return;
+            }
+
+            List<String> ids = new ArrayList<>(expired.size());
+            for (ActiveCode active : expired) {
+                activeCodes.computeIfPresent(active.email(), (key, codes) -> {
+                    codes.remove(active.code(), active);
+                    return codes.isEmpty() ? null : codes;
+                });
+                ids.add(active.id());
+            }
+            emailVerificationCodeRepository.deleteAllByIdInBatch(ids);
+            log.debug("Expired {} verification codes", ids.size());
+        } catch (Exception e) {
+            log.error("Error expiring verification codes", e);
+        }
+    }
+
+    private record ActiveCode(String id, String email, String code, long expiresAtMillis) {
+    }
+}
@@ -5,10 +5,18 @@ import com.mahiberawi.config.VippsConfig;
 import com.mahiberawi.dto.payment.VippsPaymentRequest;
 import com.mahiberawi.dto.payment.VippsPaymentResponse;
 import com.mahiberawi.entity.Payment;
+import com.mahiberawi.entity.PaymentStatus;
+import com.mahiberawi.exception.GatewayUnavailableException;
+import com.mahiberawi.util.GatewayClient;
+import com.mahiberawi.util.OAuthTokenCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.HashMap;
@@ -19,13 +27,31 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class VippsService {
     private final VippsConfig vippsConfig;
-    private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
 
+    private GatewayClient gatewayClient;
+    private RestTemplate restTemplate;
+    private OAuthTokenCache tokenCache;
+
+    @PostConstruct
+    public void start() {
+        gatewayClient = new GatewayClient("vipps", vippsConfig.getClient());
+        restTemplate = gatewayClient.getRestTemplate();
+        tokenCache = new OAuthTokenCache("vipps", this::fetchAccessToken, vippsConfig.getTokenRefreshMargin());
+    }
+
+    @PreDestroy
+    public void stop() {
+        tokenCache.close();
+        gatewayClient.close();
+    }
+
+    public GatewayClient.Metrics getClientMetrics() {
+        return gatewayClient.getMetrics();
+    }
+
     public VippsPaymentResponse initiatePayment(Payment payment) {
         try {
-            String accessToken = getAccessToken();
-            
             // Build Vipps payment request
             Map<String, Object> merchantInfo = new HashMap<>();
             merchantInfo.put("merchantId", vippsConfig.getMerchantId());
@@ -53,20 +79,12 @@ public class VippsService {
             requestBody.put("customerInfo", customerInfo);
             requestBody.put("transaction", transaction);
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + accessToken);
-            headers.set("X-Request-Id", payment.getTransactionId());
-            headers.set("Ocp-Apim-Subscription-Key", vippsConfig.getSubscriptionKey());
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-
-            ResponseEntity<Map> response = restTemplate.exchange(
+            ResponseEntity<Map> response = tokenCache.call(accessToken -> restTemplate.exchange(
                     vippsConfig.getPaymentUrl(),
                     HttpMethod.POST,
-                    entity,
+                    new HttpEntity<>(requestBody, apiHeaders(accessToken, payment.getTransactionId())),
                     Map.class
-            );
+            ));
 
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
                 Map<String, Object> responseBody = response.getBody();
@@ -82,6 +100,9 @@ public class VippsService {
             }
 
             throw new RuntimeException("Failed to initiate Vipps payment");
+        } catch (GatewayUnavailableException e) {
+            log.warn("Vipps payment not initiated: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Error initiating Vipps payment: {}", e.getMessage());
             throw new RuntimeException("Failed to initiate Vipps payment", e);
@@ -90,46 +111,70 @@ public class VippsService {
 
     public boolean verifyPayment(String transactionId) {
         try {
-            String accessToken = getAccessToken();
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + accessToken);
-            headers.set("X-Request-Id", transactionId);
-            headers.set("Ocp-Apim-Subscription-Key", vippsConfig.getSubscriptionKey());
-
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    vippsConfig.getPaymentUrl() + "/" + transactionId + "/status",
-                    HttpMethod.GET,
-                    new HttpEntity<>(headers),
-                    Map.class
-            );
-
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                Map<String, Object> responseBody = response.getBody();
-                return "RESERVED".equals(responseBody.get("transactionInfo")) || 
-                       "SALE".equals(responseBody.get("transactionInfo"));
-            }
-
-            return false;
+            return fetchStatus(transactionId) == PaymentStatus.COMPLETED;
         } catch (Exception e) {
             log.error("Error verifying Vipps payment: {}", e.getMessage());
             return false;
         }
     }
 
-    private String getAccessToken() {
+    /**
+     * The status Vipps reports for an order, or null while it has no final status.
+     * Gateway errors are thrown to the caller.
+     */
+    public PaymentStatus fetchStatus(String transactionId) {
+        ResponseEntity<Map> response = tokenCache.call(accessToken -> restTemplate.exchange(
+                vippsConfig.getPaymentUrl() + "/" + transactionId + "/status",
+                HttpMethod.GET,
+                new HttpEntity<>(apiHeaders(accessToken, transactionId)),
+                Map.class
+        ));
+
+        if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
+            // transactionInfo is an object with a status, or the bare status in older responses
+            Object transactionInfo = response.getBody().get("transactionInfo");
+            Object status = transactionInfo instanceof Map<?, ?> info ? info.get("status") : transactionInfo;
+            return status != null ? toPaymentStatus(status.toString()) : null;
+        }
+
+        return null;
+    }
+
+    /**
+     * Maps a Vipps transaction status to a payment status; null for statuses that are not final.
+     */
+    public static PaymentStatus toPaymentStatus(String reported) {
+        return switch (reported.trim().toUpperCase()) {
+            case "RESERVE", "RESERVED", "SALE", "CAPTURE", "CAPTURED" -> PaymentStatus.COMPLETED;
+            case "REJECTED", "FAILED" -> PaymentStatus.FAILED;
+            case "CANCELLED", "VOID", "EXPIRED" -> PaymentStatus.CANCELLED;
+            case "REFUND", "REFUNDED" -> PaymentStatus.REFUNDED;
+            default -> null;
+        };
+    }
+
+    private HttpHeaders apiHeaders(String accessToken, String requestId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("Authorization", "Bearer " + accessToken);
+        headers.set("X-Request-Id", requestId);
+        headers.set("Ocp-Apim-Subscription-Key", vippsConfig.getSubscriptionKey());
+        return headers;
+    }
+
+    // Called by the token cache, only when it has no usable token
+    private OAuthTokenCache.AccessToken fetchAccessToken() {
         try {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
             headers.set("Ocp-Apim-Subscription-Key", vippsConfig.getSubscriptionKey());
 
-            Map<String, String> request = new HashMap<>();
-            request.put("grant_type", "client_credentials");
-            request.put("client_id", vippsConfig.getClientId());
-            request.put("client_secret", vippsConfig.getClientSecret());
+            MultiValueMap<String, String> request = new LinkedMultiValueMap<>();
+            request.add("grant_type", "client_credentials");
+            request.add("client_id", vippsConfig.getClientId());
+            request.add("client_secret", vippsConfig.getClientSecret());
 
-            HttpEntity<Map<String, String>> entity = new HttpEntity<>(request, headers);
+            HttpEntity<MultiValueMap<String, String>> entity = new HttpEntity<>(request, headers);
 
             ResponseEntity<Map> response = restTemplate.exchange(
                     vippsConfig.getBaseUrl() + "/accessToken/get",
@@ -139,10 +184,13 @@ public class VippsService {
             );
 
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                return (String) response.getBody().get("access_token");
+                return OAuthTokenCache.AccessToken.of((String) response.getBody().get("access_token"),
+                        response.getBody().get("expires_in"), vippsConfig.getTokenDefaultLifetime());
             }
 
             throw new RuntimeException("Failed to get Vipps access token");
+        } catch (GatewayUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error getting Vipps access token: {}", e.getMessage());
             throw new RuntimeException("Failed to get Vipps access token", e);
@@ -0,0 +1,195 @@
+package com.mahiberawi.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parsed email template. Supports {{variable}} placeholders and
+ * {{#name}}...{{/name}} sections that are only rendered when the value is present.
+ * Templates are parsed once; {@link #bind(Map)} inlines values that never change
+ * (app name, expiry settings) so per-send rendering only touches the dynamic parts.
+ */
+public final class EmailTemplate {
+
+    private final List<Segment> segments;
+    private final boolean escapeHtml;
+    private final int literalLength;
+
+    private EmailTemplate(List<Segment> segments, boolean escapeHtml) {
+        this.segments = segments;
+        this.escapeHtml = escapeHtml;
+        this.literalLength = literalLength(segments);
+    }
+
+    public static EmailTemplate compile(String source, boolean escapeHtml) {
+        Deque<List<Segment>> stack = new ArrayDeque<>();
+        Deque<String> openSections = new ArrayDeque<>();
+        List<Segment> current = new ArrayList<>();
+
+        int position = 0;
+        while (position < source.length()) {
+            int open = source.indexOf("{{", position);
+            if (open < 0) {
+                current.add(new Literal(source.substring(position)));
+                break;
+            }
+            int close = source.indexOf("}}", open + 2);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed tag at offset " + open);
+            }
+            if (open > position) {
+                current.add(new Literal(source.substring(position, open)));
+            }
+
+            String tag = source.substring(open + 2, close).trim();
+            if (tag.startsWith("#")) {
+                stack.push(current);
+                openSections.push(tag.substring(1).trim());
+                current = new ArrayList<>();
+            } else if (tag.startsWith("/")) {
+                String name = tag.substring(1).trim();
+                if (openSections.isEmpty() || !openSections.peek().equals(name)) {
+                    throw new IllegalArgumentException("Unexpected section end: " + name);
+                }
+                List<Segment> body = merge(current);
+                current = stack.pop();
+                current.add(new Section(openSections.pop(), body));
+            } else {
+                current.add(new Variable(tag));
+            }
+            position = close + 2;
+        }
+
+        if (!openSections.isEmpty()) {
+            throw new IllegalArgumentException("Unclosed section: " + openSections.peek());
+        }
+        return new EmailTemplate(merge(current), escapeHtml);
+    }
+
+    /**
+     * Returns a copy of this template with the given values rendered into literal text.
+     * Placeholders not present in {@code values} are kept for {@link #render(Map)}.
+     */
+    public EmailTemplate bind(Map<String, ?> values) {
+        return new EmailTemplate(merge(bindSegments(segments, values)), escapeHtml);
+    }
+
+    public String render(Map<String, ?> values) {
+        StringBuilder out = new StringBuilder(literalLength + 16 * values.size());
+        renderSegments(segments, values, out);
+        return out.toString();
+    }
+
+    private List<Segment> bindSegments(List<Segment> source, Map<String, ?> values) {
+        List<Segment> bound = new ArrayList<>(source.size());
+        for (Segment segment : source) {
+            if (segment instanceof Variable variable && values.containsKey(variable.name())) {
+                StringBuilder text = new StringBuilder();
+                appendValue(values.get(variable.name()), text);
+                bound.add(new Literal(text.toString()));
+            } else if (segment instanceof Section section) {
+                if (values.containsKey(section.name())) {
+                    if (isPresent(values.get(section.name()))) {
+                        bound.addAll(bindSegments(section.body(), values));
+                    }
+                } else {
+                    bound.add(new Section(section.name(), merge(bindSegments(section.body(), values))));
+                }
+            } else {
+                bound.add(segment);
+            }
+        }
+        return bound;
+    }
+
+    private void renderSegments(List<Segment> source, Map<String, ?> values, StringBuilder out) {
+        for (Segment segment : source) {
+            if (segment instanceof Literal literal) {
+                out.append(literal.text());
+            } else if (segment instanceof Variable variable) {
+                appendValue(values.get(variable.name()), out);
+            } else if (segment instanceof Section section && isPresent(values.get(section.name()))) {
+                renderSegments(section.body(), values, out);
+            }
+        }
+    }
+
+    private void appendValue(Object value, StringBuilder out) {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        if (!escapeHtml) {
+            out.append(text);
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '&' -> out.append("&amp;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    private static boolean isPresent(Object value) {
+        if (value == null || Boolean.FALSE.equals(value)) {
+            return false;
+        }
+        return !(value instanceof String text) || !text.isBlank();
+    }
+
+    private static List<Segment> merge(List<Segment> source) {
+        List<Segment> merged = new ArrayList<>(source.size());
+        StringBuilder pending = null;
+        for (Segment segment : source) {
+            if (segment instanceof Literal literal) {
+                if (pending == null) {
+                    pending = new StringBuilder();
+                }
+                pending.append(literal.text());
+            } else {
+                if (pending != null) {
+                    merged.add(new Literal(pending.toString()));
+                    pending = null;
+                }
+                merged.add(segment);
+            }
+        }
+        if (pending != null) {
+            merged.add(new Literal(pending.toString()));
+        }
+        return List.copyOf(merged);
+    }
+
+    private static int literalLength(List<Segment> source) {
+        int length = 0;
+        for (Segment segment : source) {
+            if (segment instanceof Literal literal) {
+                length += literal.text().length();
+            } else if (segment instanceof Section section) {
+                length += literalLength(section.body());
+            }
+        }
+        return length;
+    }
+
+    private sealed interface Segment permits Literal, Variable, Section {
+    }
+
+    private record Literal(String text) implements Segment {
+    }
+
+    private record Variable(String name) implements Segment {
+    }
+
+    private record Section(String name, List<Segment> body) implements Segment {
+    }
+}
@@ -0,0 +1,160 @@
+package com.mahiberawi.util;
+
+import com.mahiberawi.config.GatewayClientSettings;
+import com.mahiberawi.exception.GatewayUnavailableException;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP client of one payment gateway. Each gateway gets its own connection pool with
+ * connect and read timeouts, a bulkhead that caps the calls in flight, and a circuit
+ * breaker, so a slow or failing provider cannot hold on to threads meant for the others.
+ * Calls that are turned away fail with {@link GatewayUnavailableException}.
+ */
+public class GatewayClient implements ClientHttpRequestInterceptor, AutoCloseable {
+
+    private final String name;
+    private final long maxWaitMillis;
+    private final ExecutorService httpExecutor;
+    private final RestTemplate restTemplate;
+    private final Semaphore bulkhead;
+    private final int maxConcurrentCalls;
+    private final CircuitBreaker circuitBreaker;
+
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalLatencyMillis = new LongAdder();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+    public GatewayClient(String name, GatewayClientSettings settings) {
+        this.name = name;
+        this.maxWaitMillis = settings.getMaxWait().toMillis();
+        this.maxConcurrentCalls = settings.getMaxConcurrentCalls();
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.circuitBreaker = new CircuitBreaker(settings.getFailureThreshold(), settings.getOpenDuration());
+
+        // The JDK client keeps its idle connections alive for reuse; one client per gateway keeps the pools apart
+        this.httpExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, name + "-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(settings.getConnectTimeout())
+                .executor(httpExecutor)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(settings.getReadTimeout());
+
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.restTemplate.getInterceptors().add(this);
+    }
+
+    public RestTemplate getRestTemplate() {
+        return restTemplate;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        if (!circuitBreaker.tryAcquire()) {
+            rejected.increment();
+            throw new GatewayUnavailableException(name + " gateway is unavailable, calls are suspended");
+        }
+        if (!acquireSlot()) {
+            circuitBreaker.onIgnored();
+            rejected.increment();
+            throw new GatewayUnavailableException(name + " gateway is busy, too many calls in flight");
+        }
+
+        long start = System.nanoTime();
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            // Client errors mean the gateway answered; only server errors count against its health
+            if (response.getStatusCode().is5xxServerError()) {
+                recordFailure(start);
+            } else {
+                recordSuccess(start);
+            }
+            return response;
+        } catch (CancellationException e) {
+            // The request factory cancels a call past the read timeout, and depending on timing the
+            // cancellation escapes instead of a timeout; report it as the timeout it is
+            recordFailure(start);
+            throw new HttpTimeoutException(name + " gateway call timed out");
+        } catch (IOException | RuntimeException e) {
+            recordFailure(start);
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    public Metrics getMetrics() {
+        long succeeded = successes.sum();
+        long failed = failures.sum();
+        long completed = succeeded + failed;
+        return new Metrics(
+                name,
+                circuitBreaker.getState().name(),
+                maxConcurrentCalls - bulkhead.availablePermits(),
+                succeeded,
+                failed,
+                rejected.sum(),
+                completed == 0 ? 0 : totalLatencyMillis.sum() / completed,
+                maxLatencyMillis.get()
+        );
+    }
+
+    @Override
+    public void close() {
+        httpExecutor.shutdownNow();
+    }
+
+    private boolean acquireSlot() {
+        try {
+            return bulkhead.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void recordSuccess(long startNanos) {
+        circuitBreaker.onSuccess();
+        successes.increment();
+        recordLatency(startNanos);
+    }
+
+    private void recordFailure(long startNanos) {
+        circuitBreaker.onFailure();
+        failures.increment();
+        recordLatency(startNanos);
+    }
+
+    private void recordLatency(long startNanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        totalLatencyMillis.add(millis);
+        maxLatencyMillis.accumulateAndGet(millis, Math::max);
+    }
+
+    public record Metrics(String gateway, String circuitState, int callsInFlight, long successes,
+                          long failures, long rejected, long averageLatencyMillis, long maxLatencyMillis) {
+    }
+}
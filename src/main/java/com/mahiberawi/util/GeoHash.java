@@ -0,0 +1,110 @@
+package com.mahiberawi.util;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Geohash encoding and the distance helpers used by the nearby-events index. A geohash
+ * is a prefix code: every point inside a cell has a hash starting with the cell's hash,
+ * so a cell is searched with a prefix range over hashes stored in sorted order.
+ */
+public final class GeoHash {
+
+    public static final int MAX_PRECISION = 9;
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+
+    private GeoHash() {
+    }
+
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int ch = 0;
+
+        while (hash.length() < precision) {
+            if (evenBit) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLon = mid;
+                } else {
+                    ch <<= 1;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLat = mid;
+                } else {
+                    ch <<= 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+            if (++bit == 5) {
+                hash.append(BASE32[ch]);
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    /**
+     * The cells at the coarsest precision that still lets a 3x3 block of cells around the
+     * point contain every point within the radius: the point's cell and its eight neighbours.
+     */
+    public static Set<String> coveringCells(double latitude, double longitude, double radiusKm) {
+        int precision = precisionFor(latitude, radiusKm);
+        double cellHeight = cellHeightDegrees(precision);
+        double cellWidth = cellWidthDegrees(precision);
+
+        Set<String> cells = new LinkedHashSet<>();
+        for (int dLat = -1; dLat <= 1; dLat++) {
+            double lat = Math.max(-90, Math.min(90, latitude + dLat * cellHeight));
+            for (int dLon = -1; dLon <= 1; dLon++) {
+                double lon = longitude + dLon * cellWidth;
+                // Wrap around the antimeridian
+                lon = lon >= 180 ? lon - 360 : lon < -180 ? lon + 360 : lon;
+                cells.add(encode(Math.min(lat, 89.999999), lon, precision));
+            }
+        }
+        return cells;
+    }
+
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static int precisionFor(double latitude, double radiusKm) {
+        // Cells narrow towards the poles, so measure the width at the edge nearest a pole
+        double edgeLatitude = Math.min(89, Math.abs(latitude) + radiusKm / KM_PER_DEGREE);
+        double kmPerLonDegree = KM_PER_DEGREE * Math.cos(Math.toRadians(edgeLatitude));
+        for (int precision = MAX_PRECISION; precision > 1; precision--) {
+            if (cellHeightDegrees(precision) * KM_PER_DEGREE >= radiusKm
+                    && cellWidthDegrees(precision) * kmPerLonDegree >= radiusKm) {
+                return precision;
+            }
+        }
+        return 1;
+    }
+
+    private static double cellHeightDegrees(int precision) {
+        return 180 / Math.pow(2, (5 * precision) / 2);
+    }
+
+    private static double cellWidthDegrees(int precision) {
+        return 360 / Math.pow(2, (5 * precision + 1) / 2);
+    }
+}
@@ -0,0 +1,134 @@
+package com.mahiberawi.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Writes an iCalendar (RFC 5545) document one event at a time, so a feed can be
+ * streamed straight to the response. Text values are escaped and lines are folded
+ * at 75 octets as the format requires. Recurring events are written as one event with
+ * an RRULE and EXDATEs, followed by RECURRENCE-ID events for changed occurrences.
+ */
+public class ICalendarWriter {
+
+    private static final DateTimeFormatter UTC_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final int MAX_LINE_OCTETS = 75;
+
+    private final Writer writer;
+    private final String uidDomain;
+    private final String dtStamp;
+
+    public ICalendarWriter(Writer writer, String uidDomain) {
+        this.writer = writer;
+        this.uidDomain = uidDomain;
+        this.dtStamp = UTC_FORMAT.format(LocalDateTime.now(ZoneOffset.UTC));
+    }
+
+    public void begin(String calendarName) throws IOException {
+        line("BEGIN:VCALENDAR");
+        line("VERSION:2.0");
+        line("PRODID:-//" + uidDomain + "//Events//EN");
+        line("CALSCALE:GREGORIAN");
+        line("METHOD:PUBLISH");
+        if (calendarName != null) {
+            line("X-WR-CALNAME:" + escape(calendarName));
+        }
+    }
+
+    public void event(CalendarEvent event) throws IOException {
+        line("BEGIN:VEVENT");
+        line("UID:" + event.id() + "@" + uidDomain);
+        line("DTSTAMP:" + dtStamp);
+        line("DTSTART:" + utc(event.start()));
+        if (event.end() != null) {
+            line("DTEND:" + utc(event.end()));
+        }
+        if (event.recurrenceId() != null) {
+            line("RECURRENCE-ID:" + utc(event.recurrenceId()));
+        }
+        if (event.recurrenceRule() != null) {
+            line("RRULE:" + event.recurrenceRule());
+        }
+        if (event.excludedStarts() != null && !event.excludedStarts().isEmpty()) {
+            StringBuilder exdate = new StringBuilder("EXDATE:");
+            for (int i = 0; i < event.excludedStarts().size(); i++) {
+                exdate.append(i > 0 ? "," : "").append(utc(event.excludedStarts().get(i)));
+            }
+            line(exdate.toString());
+        }
+        line("SUMMARY:" + escape(event.title()));
+        if (event.description() != null && !event.description().isBlank()) {
+            line("DESCRIPTION:" + escape(event.description()));
+        }
+        if (event.location() != null && !event.location().isBlank()) {
+            line("LOCATION:" + escape(event.location()));
+        }
+        if (event.cancelled()) {
+            line("STATUS:CANCELLED");
+        }
+        if (event.lastModified() != null) {
+            line("LAST-MODIFIED:" + utc(event.lastModified()));
+        }
+        line("END:VEVENT");
+    }
+
+    public void end() throws IOException {
+        line("END:VCALENDAR");
+        writer.flush();
+    }
+
+    private String utc(LocalDateTime time) {
+        return UTC_FORMAT.format(time.atZone(ZoneId.systemDefault()).withZoneSameInstant(ZoneOffset.UTC));
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 16);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> escaped.append("\\\\");
+                case ';' -> escaped.append("\\;");
+                case ',' -> escaped.append("\\,");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> { }
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private void line(String content) throws IOException {
+        int octets = 0;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            int width = Character.isHighSurrogate(c) ? 4 : c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+            if (octets + width > MAX_LINE_OCTETS) {
+                writer.write("\r\n ");
+                octets = 1;
+            }
+            writer.write(c);
+            if (Character.isHighSurrogate(c) && i + 1 < content.length()) {
+                writer.write(content.charAt(++i));
+            }
+            octets += width;
+        }
+        writer.write("\r\n");
+    }
+
+    public record CalendarEvent(String id, String title, String description, String location,
+                                LocalDateTime start, LocalDateTime end, boolean cancelled,
+                                LocalDateTime lastModified, String recurrenceRule,
+                                List<LocalDateTime> excludedStarts, LocalDateTime recurrenceId) {
+
+        public CalendarEvent(String id, String title, String description, String location,
+                             LocalDateTime start, LocalDateTime end, boolean cancelled,
+                             LocalDateTime lastModified) {
+            this(id, title, description, location, start, end, cancelled, lastModified, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.mahiberawi.util;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Node ids claimed from the database for instances without a configured one. Each
+ * claim is a row in id_node_leases keyed by the node id, so two instances cannot hold
+ * the same node at once. The holder renews its lease; a lease left unrenewed for
+ * {@link #EXPIRY}, such as one of an instance that crashed, can be claimed again.
+ */
+@Component
+@RequiredArgsConstructor
+public class IdNodeLease {
+
+    public static final Duration EXPIRY = Duration.ofMinutes(10);
+
+    private static final String INSERT_IF_ABSENT = "INSERT INTO id_node_leases (node_id, instance_id, renewed_at) " +
+            "SELECT ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM id_node_leases WHERE node_id = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /**
+     * Claim the lowest node id, up to maxNode, that is free or whose lease expired.
+     */
+    public int claim(int maxNode) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS id_node_leases " +
+                "(node_id INT PRIMARY KEY, instance_id VARCHAR(36) NOT NULL, renewed_at TIMESTAMP NOT NULL)");
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp expired = Timestamp.valueOf(LocalDateTime.now().minus(EXPIRY));
+        Set<Integer> held = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT node_id FROM id_node_leases WHERE renewed_at >= ?", Integer.class, expired));
+        for (int node = 0; node <= maxNode; node++) {
+            if (held.contains(node)) {
+                continue;
+            }
+            // Another instance starting at the same time may take the node first; try the next one
+            if (JdbcInserts.insertIfAbsent(jdbcTemplate, INSERT_IF_ABSENT, node, instanceId, now, node)
+                    || jdbcTemplate.update("UPDATE id_node_leases SET instance_id = ?, renewed_at = ? " +
+                    "WHERE node_id = ? AND renewed_at < ?", instanceId, now, node, expired) > 0) {
+                return node;
+            }
+        }
+        throw new IllegalStateException("All " + (maxNode + 1) + " node ids are leased by running instances");
+    }
+
+    /**
+     * Extend the lease on node. Returns false if the lease expired and another instance
+     * has claimed the node since.
+     */
+    public boolean renew(int node) {
+        return jdbcTemplate.update("UPDATE id_node_leases SET renewed_at = ? WHERE node_id = ? AND instance_id = ?",
+                Timestamp.valueOf(LocalDateTime.now()), node, instanceId) > 0;
+    }
+
+    public void release(int node) {
+        jdbcTemplate.update("DELETE FROM id_node_leases WHERE node_id = ? AND instance_id = ?", node, instanceId);
+    }
+}
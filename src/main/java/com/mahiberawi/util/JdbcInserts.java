@@ -0,0 +1,54 @@
+package com.mahiberawi.util;
+
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+/**
+ * Inserts of rows that concurrent transactions may create at the same time, such as
+ * per-key counters created on first use. The insert runs on the caller's connection
+ * under a savepoint: if a concurrent transaction inserts the same key first, the
+ * unique key violation only rolls back the savepoint, and the caller's transaction
+ * carries on and finds the other row once it has committed.
+ */
+public final class JdbcInserts {
+
+    // SQLSTATE class of unique key and other constraint violations
+    private static final String INTEGRITY_VIOLATION = "23";
+
+    private JdbcInserts() {
+    }
+
+    /**
+     * Run sql, an INSERT ... WHERE NOT EXISTS, with args. Returns false if the row was
+     * already there or was inserted concurrently.
+     */
+    public static boolean insertIfAbsent(JdbcTemplate jdbcTemplate, String sql, Object... args) {
+        Boolean inserted = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+            int rows;
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                new ArgumentPreparedStatementSetter(args).setValues(statement);
+                rows = statement.executeUpdate();
+            } catch (SQLException e) {
+                if (savepoint != null) {
+                    connection.rollback(savepoint);
+                }
+                String state = e.getSQLState();
+                if (state == null || !state.startsWith(INTEGRITY_VIOLATION)) {
+                    throw e;
+                }
+                return false;
+            }
+            if (savepoint != null) {
+                connection.releaseSavepoint(savepoint);
+            }
+            return rows > 0;
+        });
+        return Boolean.TRUE.equals(inserted);
+    }
+}
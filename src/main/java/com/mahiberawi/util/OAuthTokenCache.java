@@ -0,0 +1,172 @@
+package com.mahiberawi.util;
+
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Caches a client-credentials access token until shortly before it expires. Callers
+ * that find no usable token share one in-flight fetch instead of each starting their
+ * own, and a token that is in use is refreshed in the background ahead of its expiry,
+ * so gateway calls normally never wait for the token endpoint.
+ */
+public class OAuthTokenCache implements AutoCloseable {
+
+    private final Supplier<AccessToken> fetcher;
+    private final Duration refreshMargin;
+    private final ScheduledExecutorService refresher;
+    private final AtomicReference<AccessToken> current = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<AccessToken>> inFlight = new AtomicReference<>();
+    // Only tokens that were used since they were fetched are refreshed ahead of time
+    private volatile boolean usedSinceFetch;
+
+    public OAuthTokenCache(String name, Supplier<AccessToken> fetcher, Duration refreshMargin) {
+        this.fetcher = fetcher;
+        this.refreshMargin = refreshMargin;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A valid access token, fetching one first if none is cached or it has expired.
+     */
+    public String get() {
+        AccessToken token = current.get();
+        Instant now = Instant.now();
+        if (token != null && now.isBefore(token.expiresAt())) {
+            usedSinceFetch = true;
+            if (!now.isBefore(refreshAt(token))) {
+                // The scheduled refresh has not replaced it yet; do it without making this caller wait
+                refresh(true);
+            }
+            return token.value();
+        }
+        return await(refresh(false)).value();
+    }
+
+    /**
+     * Run a gateway call with the current token. If the gateway rejects the token as
+     * unauthorized, it is dropped and the call is retried once with a fresh one.
+     */
+    public <T> T call(Function<String, T> request) {
+        String token = get();
+        try {
+            return request.apply(token);
+        } catch (HttpClientErrorException.Unauthorized e) {
+            invalidate(token);
+            return request.apply(get());
+        }
+    }
+
+    /**
+     * Drop the given token if it is still the cached one, e.g. after the gateway revoked it.
+     */
+    public void invalidate(String value) {
+        AccessToken token = current.get();
+        if (token != null && token.value().equals(value)) {
+            current.compareAndSet(token, null);
+        }
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    private CompletableFuture<AccessToken> refresh(boolean inBackground) {
+        while (true) {
+            CompletableFuture<AccessToken> running = inFlight.get();
+            if (running != null) {
+                return running;
+            }
+            CompletableFuture<AccessToken> future = new CompletableFuture<>();
+            if (!inFlight.compareAndSet(null, future)) {
+                continue;
+            }
+
+            Runnable fetch = () -> {
+                try {
+                    AccessToken token = fetcher.get();
+                    current.set(token);
+                    usedSinceFetch = false;
+                    scheduleRefresh(token);
+                    inFlight.set(null);
+                    future.complete(token);
+                } catch (RuntimeException e) {
+                    inFlight.set(null);
+                    future.completeExceptionally(e);
+                }
+            };
+            if (inBackground) {
+                refresher.execute(fetch);
+            } else {
+                fetch.run();
+            }
+            return future;
+        }
+    }
+
+    private void scheduleRefresh(AccessToken token) {
+        long delay = Duration.between(Instant.now(), refreshAt(token)).toMillis();
+        refresher.schedule(() -> {
+            if (usedSinceFetch && current.get() == token) {
+                try {
+                    await(refresh(false));
+                } catch (RuntimeException e) {
+                    // The cached token stays usable until it expires; callers fetch on demand after that
+                }
+            }
+        }, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+    }
+
+    // Refresh within the margin of expiry, or halfway through a token that lives shorter than two margins
+    private Instant refreshAt(AccessToken token) {
+        Duration margin = refreshMargin;
+        Duration lifetime = Duration.between(token.fetchedAt(), token.expiresAt());
+        if (lifetime.compareTo(margin.multipliedBy(2)) < 0) {
+            margin = lifetime.dividedBy(2);
+        }
+        return token.expiresAt().minus(margin);
+    }
+
+    private static AccessToken await(CompletableFuture<AccessToken> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public record AccessToken(String value, Instant fetchedAt, Instant expiresAt) {
+
+        /**
+         * A token from a token endpoint response that gives its lifetime in seconds; the
+         * default lifetime is used when the gateway leaves it out.
+         */
+        public static AccessToken of(String value, Object expiresInSeconds, Duration defaultLifetime) {
+            Instant now = Instant.now();
+            Duration lifetime = defaultLifetime;
+            if (expiresInSeconds instanceof Number seconds) {
+                lifetime = Duration.ofSeconds(seconds.longValue());
+            } else if (expiresInSeconds instanceof String seconds && !seconds.isBlank()) {
+                lifetime = Duration.ofSeconds(Long.parseLong(seconds.trim()));
+            }
+            return new AccessToken(value, now, now.plus(lifetime));
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.mahiberawi.util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The subset of the iCalendar RRULE format used for recurring events:
+ * FREQ=DAILY|WEEKLY|MONTHLY with optional INTERVAL, BYDAY (weekly only), COUNT and UNTIL.
+ * Occurrences are produced lazily, and without COUNT the iteration jumps straight to
+ * the requested window, so expanding a window costs the same for a new series and
+ * one that has been running for years.
+ */
+public final class RecurrenceRule {
+
+    public enum Frequency { DAILY, WEEKLY, MONTHLY }
+
+    private static final int MAX_COUNT = 1000;
+    // Stops a rule such as "every 12 months on the 30th" starting in February from looping forever
+    private static final int MAX_EMPTY_PERIODS = 1000;
+    private static final DateTimeFormatter LOCAL_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final DateTimeFormatter UTC_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final Frequency frequency;
+    private final int interval;
+    private final Integer count;
+    private final LocalDateTime until;
+    private final List<DayOfWeek> byDay;
+
+    private RecurrenceRule(Frequency frequency, int interval, Integer count, LocalDateTime until, List<DayOfWeek> byDay) {
+        this.frequency = frequency;
+        this.interval = interval;
+        this.count = count;
+        this.until = until;
+        this.byDay = byDay;
+    }
+
+    public static RecurrenceRule parse(String rule) {
+        if (rule == null || rule.isBlank()) {
+            throw new IllegalArgumentException("Recurrence rule is empty");
+        }
+
+        Frequency frequency = null;
+        int interval = 1;
+        Integer count = null;
+        LocalDateTime until = null;
+        Set<DayOfWeek> byDay = EnumSet.noneOf(DayOfWeek.class);
+
+        String source = rule.trim();
+        if (source.regionMatches(true, 0, "RRULE:", 0, 6)) {
+            source = source.substring(6);
+        }
+        for (String part : source.split(";")) {
+            String[] keyValue = part.split("=", 2);
+            if (keyValue.length != 2) {
+                throw new IllegalArgumentException("Invalid recurrence rule part: " + part);
+            }
+            String value = keyValue[1].trim().toUpperCase(Locale.ROOT);
+            try {
+                switch (keyValue[0].trim().toUpperCase(Locale.ROOT)) {
+                    case "FREQ" -> frequency = Frequency.valueOf(value);
+                    case "INTERVAL" -> interval = Integer.parseInt(value);
+                    case "COUNT" -> count = Integer.parseInt(value);
+                    case "UNTIL" -> until = parseUntil(value);
+                    case "BYDAY" -> {
+                        for (String day : value.split(",")) {
+                            byDay.add(parseDay(day.trim()));
+                        }
+                    }
+                    default -> throw new IllegalArgumentException("Unsupported recurrence rule part: " + keyValue[0]);
+                }
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid recurrence rule part: " + part);
+            }
+        }
+
+        if (frequency == null) {
+            throw new IllegalArgumentException("Recurrence rule needs FREQ");
+        }
+        if (interval < 1) {
+            throw new IllegalArgumentException("Recurrence INTERVAL must be positive");
+        }
+        if (count != null && (count < 1 || count > MAX_COUNT)) {
+            throw new IllegalArgumentException("Recurrence COUNT must be between 1 and " + MAX_COUNT);
+        }
+        if (count != null && until != null) {
+            throw new IllegalArgumentException("Recurrence rule cannot have both COUNT and UNTIL");
+        }
+        if (!byDay.isEmpty() && frequency != Frequency.WEEKLY) {
+            throw new IllegalArgumentException("BYDAY is only supported for weekly recurrence");
+        }
+        return new RecurrenceRule(frequency, interval, count, until, List.copyOf(byDay));
+    }
+
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * Latest possible occurrence start for a series, or null if it never ends.
+     */
+    public LocalDateTime lastStart(LocalDateTime seriesStart) {
+        if (until != null) {
+            return until;
+        }
+        if (count == null) {
+            return null;
+        }
+        LocalDateTime last = null;
+        Iterator<LocalDateTime> starts = startsFrom(seriesStart, seriesStart);
+        while (starts.hasNext()) {
+            last = starts.next();
+        }
+        return last;
+    }
+
+    /**
+     * Occurrence starts of the series that are not before {@code from}, in order.
+     */
+    public Iterator<LocalDateTime> startsFrom(LocalDateTime seriesStart, LocalDateTime from) {
+        return new OccurrenceIterator(seriesStart, from);
+    }
+
+    public boolean isOccurrence(LocalDateTime seriesStart, LocalDateTime candidate) {
+        Iterator<LocalDateTime> starts = startsFrom(seriesStart, candidate);
+        return starts.hasNext() && starts.next().equals(candidate);
+    }
+
+    /**
+     * The rule in iCalendar form, with UNTIL converted to UTC as RFC 5545 requires for UTC start times.
+     */
+    public String toICalendar(ZoneId zone) {
+        return format(until != null ? UTC_FORMAT.format(until.atZone(zone).withZoneSameInstant(ZoneOffset.UTC)) : null);
+    }
+
+    @Override
+    public String toString() {
+        return format(until != null ? LOCAL_FORMAT.format(until) : null);
+    }
+
+    private String format(String untilValue) {
+        StringBuilder rule = new StringBuilder("FREQ=").append(frequency);
+        if (interval != 1) {
+            rule.append(";INTERVAL=").append(interval);
+        }
+        if (!byDay.isEmpty()) {
+            rule.append(";BYDAY=");
+            for (int i = 0; i < byDay.size(); i++) {
+                rule.append(i > 0 ? "," : "").append(byDay.get(i).name(), 0, 2);
+            }
+        }
+        if (count != null) {
+            rule.append(";COUNT=").append(count);
+        }
+        if (untilValue != null) {
+            rule.append(";UNTIL=").append(untilValue);
+        }
+        return rule.toString();
+    }
+
+    private static LocalDateTime parseUntil(String value) {
+        if (value.length() == 8) {
+            return LocalDate.parse(value, DATE_FORMAT).atTime(23, 59, 59);
+        }
+        if (value.endsWith("Z")) {
+            return LocalDateTime.parse(value, UTC_FORMAT).atOffset(ZoneOffset.UTC)
+                    .atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        }
+        return LocalDateTime.parse(value, LOCAL_FORMAT);
+    }
+
+    private static DayOfWeek parseDay(String day) {
+        for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+            if (dayOfWeek.name().startsWith(day) && day.length() == 2) {
+                return dayOfWeek;
+            }
+        }
+        throw new IllegalArgumentException("Invalid BYDAY value: " + day);
+    }
+
+    private final class OccurrenceIterator implements Iterator<LocalDateTime> {
+        private final LocalDateTime seriesStart;
+        private final LocalDateTime from;
+        private final Deque<LocalDateTime> buffer = new ArrayDeque<>();
+        private long period;
+        private int emitted;
+        private boolean finished;
+
+        private OccurrenceIterator(LocalDateTime seriesStart, LocalDateTime from) {
+            this.seriesStart = seriesStart;
+            this.from = from;
+            // COUNT needs every earlier occurrence counted, so only open-ended rules can skip ahead
+            this.period = count == null ? firstPeriodNear(from) : 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            int emptyPeriods = 0;
+            while (buffer.isEmpty() && !finished) {
+                List<LocalDateTime> starts = periodStarts(period++);
+                if (starts.isEmpty() && ++emptyPeriods > MAX_EMPTY_PERIODS) {
+                    finished = true;
+                }
+                for (LocalDateTime start : starts) {
+                    if (start.isBefore(seriesStart)) {
+                        continue;
+                    }
+                    if ((until != null && start.isAfter(until)) || (count != null && emitted >= count)) {
+                        finished = true;
+                        break;
+                    }
+                    emitted++;
+                    if (!start.isBefore(from)) {
+                        buffer.add(start);
+                    }
+                }
+            }
+            return !buffer.isEmpty();
+        }
+
+        @Override
+        public LocalDateTime next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return buffer.poll();
+        }
+
+        private long firstPeriodNear(LocalDateTime target) {
+            if (!target.isAfter(seriesStart)) {
+                return 0;
+            }
+            long units = switch (frequency) {
+                case DAILY -> ChronoUnit.DAYS.between(seriesStart.toLocalDate(), target.toLocalDate());
+                case WEEKLY -> ChronoUnit.WEEKS.between(weekStart(seriesStart.toLocalDate()), target.toLocalDate());
+                case MONTHLY -> ChronoUnit.MONTHS.between(YearMonth.from(seriesStart), YearMonth.from(target));
+            };
+            return Math.max(0, units / interval - 1);
+        }
+
+        private List<LocalDateTime> periodStarts(long index) {
+            long offset = index * interval;
+            return switch (frequency) {
+                case DAILY -> List.of(seriesStart.plusDays(offset));
+                case WEEKLY -> {
+                    if (byDay.isEmpty()) {
+                        yield List.of(seriesStart.plusWeeks(offset));
+                    }
+                    LocalDate monday = weekStart(seriesStart.toLocalDate()).plusWeeks(offset);
+                    List<LocalDateTime> starts = new ArrayList<>(byDay.size());
+                    for (DayOfWeek day : byDay) {
+                        starts.add(monday.plusDays(day.getValue() - 1L).atTime(seriesStart.toLocalTime()));
+                    }
+                    yield starts;
+                }
+                case MONTHLY -> {
+                    LocalDateTime start = seriesStart.plusMonths(offset);
+                    // Months without the day (e.g. the 31st) are skipped rather than clamped
+                    yield start.getDayOfMonth() == seriesStart.getDayOfMonth() ? List.of(start) : List.of();
+                }
+            };
+        }
+
+        private LocalDate weekStart(LocalDate date) {
+            return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+    }
+}
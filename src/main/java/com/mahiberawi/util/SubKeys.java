@@ -0,0 +1,43 @@
+package com.mahiberawi.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+/**
+ * Derives a separate signing key for each use of a shared secret with HKDF-SHA256
+ * (RFC 5869), so a token signed for one purpose, such as a calendar feed, can never
+ * be passed off as another, such as a login token signed with the secret itself.
+ */
+public final class SubKeys {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int HASH_LENGTH = 32;
+
+    private SubKeys() {
+    }
+
+    /**
+     * A 32-byte key for the given label, such as "calendar-feed".
+     */
+    public static byte[] derive(String secret, String label) {
+        // Extract with the default all-zero salt, then expand a single block
+        byte[] pseudoRandomKey = hmac(new byte[HASH_LENGTH], secret.getBytes(StandardCharsets.UTF_8));
+        byte[] labelBytes = label.getBytes(StandardCharsets.UTF_8);
+        byte[] info = new byte[labelBytes.length + 1];
+        System.arraycopy(labelBytes, 0, info, 0, labelBytes.length);
+        info[labelBytes.length] = 1;
+        return hmac(pseudoRandomKey, info);
+    }
+
+    private static byte[] hmac(byte[] key, byte[] data) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(key, HMAC_ALGORITHM));
+            return mac.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not derive key", e);
+        }
+    }
+}
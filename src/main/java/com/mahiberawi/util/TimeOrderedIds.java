@@ -0,0 +1,58 @@
+package com.mahiberawi.util;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * Version 7 UUIDs (RFC 9562): a 48-bit Unix millisecond timestamp followed by random
+ * bits, so ids created later sort after earlier ones and inserts land at the right
+ * edge of a primary key index instead of at random pages. Within one millisecond the
+ * 12 bits after the version act as a counter, keeping ids from this process strictly
+ * increasing; if the counter runs out or the clock steps back, the timestamp is
+ * carried forward instead.
+ */
+public final class TimeOrderedIds {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int MAX_SEQUENCE = 0xFFF;
+
+    private static long lastMillis;
+    private static int sequence;
+
+    private TimeOrderedIds() {
+    }
+
+    public static String uuid() {
+        return next().toString();
+    }
+
+    public static UUID next() {
+        long millis;
+        int counter;
+        synchronized (TimeOrderedIds.class) {
+            long now = System.currentTimeMillis();
+            if (now > lastMillis) {
+                lastMillis = now;
+                // Start low in the range so a busy millisecond has room to count up
+                sequence = RANDOM.nextInt(MAX_SEQUENCE + 1) >> 1;
+            } else if (sequence < MAX_SEQUENCE) {
+                sequence++;
+            } else {
+                lastMillis++;
+                sequence = 0;
+            }
+            millis = lastMillis;
+            counter = sequence;
+        }
+        long mostSignificant = (millis & 0xFFFF_FFFF_FFFFL) << 16 | 0x7000L | counter;
+        long leastSignificant = RANDOM.nextLong() & 0x3FFF_FFFF_FFFF_FFFFL | 0x8000_0000_0000_0000L;
+        return new UUID(mostSignificant, leastSignificant);
+    }
+
+    /**
+     * Milliseconds since the epoch at which a version 7 id was created.
+     */
+    public static long timestamp(UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+}
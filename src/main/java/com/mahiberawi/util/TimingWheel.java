@@ -0,0 +1,103 @@
+package com.mahiberawi.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed timing wheel. Items are placed in the slot of their deadline tick and
+ * returned by {@link #advance(long)} once that tick has passed, so expiring an
+ * item costs O(1) instead of a scan over everything that is scheduled.
+ * Deadlines further out than one rotation simply stay in their slot until the
+ * wheel comes round to the right tick.
+ */
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final List<List<Entry<T>>> slots;
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, int slotCount, long startMillis) {
+        if (tickMillis <= 0 || slotCount <= 0) {
+            throw new IllegalArgumentException("Tick duration and slot count must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new ArrayList<>());
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    public synchronized void schedule(T item, long deadlineMillis) {
+        long tick = Math.max(ceilTick(deadlineMillis), currentTick);
+        slotFor(tick).add(new Entry<>(item, tick));
+        size++;
+    }
+
+    public synchronized boolean cancel(T item, long deadlineMillis) {
+        long tick = Math.max(ceilTick(deadlineMillis), currentTick);
+        Iterator<Entry<T>> iterator = slotFor(tick).iterator();
+        while (iterator.hasNext()) {
+            Entry<T> entry = iterator.next();
+            if (entry.item().equals(item)) {
+                iterator.remove();
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves the wheel forward to {@code nowMillis} and returns every item whose deadline has passed.
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        List<T> expired = new ArrayList<>();
+        if (targetTick < currentTick) {
+            return expired;
+        }
+
+        if (targetTick - currentTick >= slots.size()) {
+            for (List<Entry<T>> slot : slots) {
+                collect(slot, targetTick, expired);
+            }
+        } else {
+            for (long tick = currentTick; tick <= targetTick; tick++) {
+                collect(slotFor(tick), targetTick, expired);
+            }
+        }
+
+        currentTick = targetTick;
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void collect(List<Entry<T>> slot, long targetTick, List<T> expired) {
+        Iterator<Entry<T>> iterator = slot.iterator();
+        while (iterator.hasNext()) {
+            Entry<T> entry = iterator.next();
+            if (entry.tick() <= targetTick) {
+                expired.add(entry.item());
+                iterator.remove();
+                size--;
+            }
+        }
+    }
+
+    private long ceilTick(long millis) {
+        return (millis + tickMillis - 1) / tickMillis;
+    }
+
+    private List<Entry<T>> slotFor(long tick) {
+        return slots.get((int) Math.floorMod(tick, (long) slots.size()));
+    }
+
+    private record Entry<T>(T item, long tick) {
+    }
+}
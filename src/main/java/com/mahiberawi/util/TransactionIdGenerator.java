@@ -0,0 +1,107 @@
+package com.mahiberawi.util;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Payment transaction ids in the Snowflake layout: 41 bits of milliseconds since
+ * 2024-01-01, a 10-bit node id and a 12-bit per-millisecond sequence, written as 13
+ * Crockford base32 characters. Ids from one node are strictly increasing and ids from
+ * nodes with different node ids never collide. An instance uses app.ids.node-id when
+ * set and otherwise leases a node id from the database at startup, so instances never
+ * share one; configure node ids on every instance or on none. The clock going
+ * backwards or a full millisecond carries the timestamp forward rather than waiting.
+ */
+@Slf4j
+@Component
+public class TransactionIdGenerator {
+
+    private static final long EPOCH = 1_704_067_200_000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final int MAX_SEQUENCE = (1 << SEQUENCE_BITS) - 1;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int LENGTH = 13;
+
+    private final IdNodeLease lease;
+    private volatile int nodeId;
+    private long lastMillis;
+    private int sequence;
+
+    @Autowired
+    public TransactionIdGenerator(@Value("${app.ids.node-id:-1}") int nodeId, IdNodeLease lease) {
+        if (nodeId > MAX_NODE) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE);
+        }
+        if (nodeId < 0) {
+            this.lease = lease;
+            this.nodeId = lease.claim(MAX_NODE);
+            log.info("No app.ids.node-id configured; leased node id {}", this.nodeId);
+        } else {
+            this.lease = null;
+            this.nodeId = nodeId;
+        }
+    }
+
+    TransactionIdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE);
+        }
+        this.lease = null;
+        this.nodeId = nodeId;
+    }
+
+    // Well inside IdNodeLease.EXPIRY, so a database hiccup does not cost the lease
+    @Scheduled(fixedDelay = 60_000, initialDelay = 60_000)
+    public void renewLease() {
+        if (lease != null && !lease.renew(nodeId)) {
+            int lost = nodeId;
+            nodeId = lease.claim(MAX_NODE);
+            log.warn("The lease on node id {} expired and was claimed by another instance; leased node id {}",
+                    lost, nodeId);
+        }
+    }
+
+    @PreDestroy
+    public void releaseLease() {
+        if (lease != null) {
+            lease.release(nodeId);
+        }
+    }
+
+    public String next() {
+        long millis;
+        int counter;
+        synchronized (this) {
+            long now = System.currentTimeMillis() - EPOCH;
+            if (now > lastMillis) {
+                lastMillis = now;
+                sequence = 0;
+            } else if (sequence < MAX_SEQUENCE) {
+                sequence++;
+            } else {
+                lastMillis++;
+                sequence = 0;
+            }
+            millis = lastMillis;
+            counter = sequence;
+        }
+        long id = millis << (NODE_BITS + SEQUENCE_BITS) | (long) nodeId << SEQUENCE_BITS | counter;
+
+        char[] chars = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+}
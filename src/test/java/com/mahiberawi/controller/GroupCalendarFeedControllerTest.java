@@ -0,0 +1,123 @@
+package com.mahiberawi.controller;
+
+import com.mahiberawi.entity.Event;
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.repository.EventRepository;
+import com.mahiberawi.service.CalendarFeedService;
+import com.mahiberawi.service.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.time.LocalDateTime;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(TestFixtures.class)
+class GroupCalendarFeedControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private CalendarFeedService calendarFeedService;
+
+    @Test
+    void streamsTheFeedAndAnswersConditionalRequestsWithNotModified() throws Exception {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 0);
+        createEvent(group, admin, "Monthly meeting");
+
+        MvcResult started = mockMvc.perform(get("/groups/{groupId}/events.ics", group.getId()).with(as(admin)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult feed = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/calendar"))
+                .andExpect(content().string(containsString("BEGIN:VCALENDAR")))
+                .andExpect(content().string(containsString("SUMMARY:Monthly meeting")))
+                .andReturn();
+        String etag = feed.getResponse().getHeader(HttpHeaders.ETAG);
+        String lastModified = feed.getResponse().getHeader(HttpHeaders.LAST_MODIFIED);
+        assertNotNull(etag);
+        assertNotNull(lastModified);
+
+        mockMvc.perform(get("/groups/{groupId}/events.ics", group.getId()).with(as(admin))
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+
+        mockMvc.perform(get("/groups/{groupId}/events.ics", group.getId()).with(as(admin))
+                        .header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(status().isNotModified());
+
+        // A new event changes the ETag, so the old one no longer matches
+        createEvent(group, admin, "Annual meeting");
+        mockMvc.perform(get("/groups/{groupId}/events.ics", group.getId()).with(as(admin))
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void calendarClientsReadTheFeedsWithTheFeedToken() throws Exception {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 0);
+        createEvent(group, admin, "Feed token meeting");
+        String token = calendarFeedService.getFeedToken(admin);
+
+        MvcResult started = mockMvc.perform(get("/groups/{groupId}/events.ics", group.getId()).param("token", token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("SUMMARY:Feed token meeting")));
+        mockMvc.perform(get("/groups/user/events.ics").param("token", token))
+                .andExpect(request().asyncStarted());
+
+        String forged = token.substring(0, token.indexOf('.') + 1) + "AAAA";
+        mockMvc.perform(get("/groups/{groupId}/events.ics", group.getId()).param("token", forged))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/groups/user/events.ics"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private RequestPostProcessor as(User user) {
+        return authentication(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    private void createEvent(Group group, User creator, String title) {
+        Event event = new Event();
+        event.setTitle(title);
+        event.setStartTime(LocalDateTime.now().plusDays(7));
+        event.setEndTime(LocalDateTime.now().plusDays(7).plusHours(2));
+        event.setGroup(group);
+        event.setCreator(creator);
+        eventRepository.save(event);
+    }
+}
@@ -0,0 +1,141 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.entity.Payment;
+import com.mahiberawi.entity.PaymentStatus;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.entity.enums.GroupMemberRole;
+import com.mahiberawi.entity.enums.GroupMemberStatus;
+import com.mahiberawi.repository.PaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(properties = {
+        "app.dues.billing.enabled=false",
+        "app.dues.billing.chunk-size=2"
+})
+@Import(TestFixtures.class)
+class DuesBillingServiceTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private DuesBillingService duesBillingService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void billsEachActiveMemberOncePerMonthFromTheBillingDay() {
+        User admin = fixtures.user();
+        Group group = createDuesGroup(admin, 4);
+        fixtures.addMember(group, fixtures.user(), GroupMemberRole.MEMBER, GroupMemberStatus.INACTIVE);
+
+        assertNotNull(duesBillingService.run(LocalDate.of(2026, 3, 5)));
+        assertEquals(0, duesPayments(group, "2026-03").size());
+
+        assertNotNull(duesBillingService.run(LocalDate.of(2026, 3, 12)));
+        assertNotNull(duesBillingService.run(LocalDate.of(2026, 3, 20)));
+
+        List<Payment> march = duesPayments(group, "2026-03");
+        assertEquals(5, march.size());
+        for (Payment payment : march) {
+            assertEquals(PaymentStatus.PENDING, payment.getStatus());
+            assertNull(payment.getMethod());
+            assertEquals(0, new BigDecimal("50.00").compareTo(payment.getAmount()));
+            assertEquals(1, reminders(payment.getPayer().getId(), "March 2026"));
+        }
+    }
+
+    @Test
+    void remindsMembersOfEarlierUnpaidDues() {
+        User admin = fixtures.user();
+        Group group = createDuesGroup(admin, 2);
+        duesBillingService.run(LocalDate.of(2026, 5, 10));
+
+        Payment paid = duesPayments(group, "2026-05").get(0);
+        fixtures.updatePayment(paid.getId(), payment -> payment.setStatus(PaymentStatus.COMPLETED));
+
+        duesBillingService.run(LocalDate.of(2026, 6, 10));
+
+        List<Payment> june = duesPayments(group, "2026-06");
+        assertEquals(3, june.size());
+        for (Payment payment : june) {
+            String payerId = payment.getPayer().getId();
+            boolean paidMay = payerId.equals(paid.getPayer().getId());
+            assertEquals(1, reminders(payerId, "June 2026"));
+            assertEquals(paidMay ? 0 : 1, reminders(payerId, "unpaid earlier month"));
+            assertEquals(0, new BigDecimal(paidMay ? "50.00" : "100.00").compareTo(
+                    ledgerService.getMemberBalances(group.getId(), payerId, null, admin).getOutstanding()));
+        }
+    }
+
+    @Test
+    void followsUpOnDuesLeftUnpaid() {
+        User admin = fixtures.user();
+        Group group = createDuesGroup(admin, 2);
+        duesBillingService.run(LocalDate.of(2026, 7, 10));
+        jdbcTemplate.update("UPDATE payments SET created_at = ? WHERE group_id = ?",
+                Timestamp.valueOf(LocalDate.of(2026, 7, 10).atStartOfDay()), group.getId());
+
+        Payment paid = duesPayments(group, "2026-07").get(0);
+        fixtures.updatePayment(paid.getId(), payment -> payment.setStatus(PaymentStatus.COMPLETED));
+
+        assertEquals(2, duesBillingService.run(LocalDate.of(2026, 7, 18)).followUps());
+        // Reminded once per interval
+        duesBillingService.run(LocalDate.of(2026, 7, 20));
+        for (Payment payment : duesPayments(group, "2026-07")) {
+            String payerId = payment.getPayer().getId();
+            boolean paidJuly = payerId.equals(paid.getPayer().getId());
+            assertEquals(paidJuly ? 0 : 1, reminders(payerId, "1 unpaid month of dues"));
+        }
+
+        // and again once the next interval has passed
+        duesBillingService.run(LocalDate.of(2026, 7, 26));
+        String unpaidPayerId = duesPayments(group, "2026-07").stream()
+                .map(payment -> payment.getPayer().getId())
+                .filter(payerId -> !payerId.equals(paid.getPayer().getId()))
+                .findFirst().orElseThrow();
+        assertEquals(2, reminders(unpaidPayerId, "1 unpaid month of dues"));
+        assertEquals(0, reminders(paid.getPayer().getId(), "unpaid month"));
+    }
+
+    private List<Payment> duesPayments(Group group, String period) {
+        return paymentRepository.findByGroupId(group.getId()).stream()
+                .filter(payment -> period.equals(payment.getDuesPeriod()))
+                .toList();
+    }
+
+    private int reminders(String userId, String text) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM notifications WHERE user_id = ? AND content LIKE ?", Integer.class,
+                userId, "%" + text + "%");
+        return count != null ? count : 0;
+    }
+
+    private Group createDuesGroup(User admin, int members) {
+        return fixtures.group(fixtures.groupBuilder(admin)
+                .paymentRequired(true)
+                .monthlyDues(new BigDecimal("50.00"))
+                .duesBillingDay(10), admin, members);
+    }
+}
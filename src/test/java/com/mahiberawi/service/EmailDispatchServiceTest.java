@@ -0,0 +1,82 @@
+package com.mahiberawi.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.mahiberawi.config.EmailDispatchConfig;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmailDispatchServiceTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private EmailDispatchService dispatchService;
+
+    @BeforeEach
+    void setUp() {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+
+        EmailDispatchConfig config = new EmailDispatchConfig();
+        config.setWorkerCount(2);
+        config.setBatchSize(5);
+        config.setInitialBackoffMs(50);
+
+        dispatchService = new EmailDispatchService(mailSender, config);
+        dispatchService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatchService.stop();
+    }
+
+    @Test
+    void deliversQueuedMessagesInBatches() {
+        for (int i = 0; i < 12; i++) {
+            assertTrue(dispatchService.dispatch(message("member" + i + "@example.com")));
+        }
+
+        assertTrue(greenMail.waitForIncomingEmail(5000, 12));
+        assertEquals(12, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    void holdsMessagesUntilTransactionCommits() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            dispatchService.dispatch(message("new.user@example.com"));
+            Thread.sleep(300);
+            assertEquals(0, greenMail.getReceivedMessages().length);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertTrue(greenMail.waitForIncomingEmail(5000, 1));
+        MimeMessage received = greenMail.getReceivedMessages()[0];
+        assertEquals("Verify Your Email - Dewel", received.getSubject());
+    }
+
+    private SimpleMailMessage message(String to) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom("noreply@example.com");
+        message.setTo(to);
+        message.setSubject("Verify Your Email - Dewel");
+        message.setText("Verification Code: 123456");
+        return message;
+    }
+}
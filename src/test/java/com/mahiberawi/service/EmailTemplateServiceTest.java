@@ -0,0 +1,93 @@
+package com.mahiberawi.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+class EmailTemplateServiceTest {
+
+    private EmailTemplateService templateService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        templateService = new EmailTemplateService();
+        ReflectionTestUtils.setField(templateService, "appName", "Dewel");
+        ReflectionTestUtils.setField(templateService, "verificationCodeExpiryMinutes", 15);
+        ReflectionTestUtils.setField(templateService, "invitationVerifyUrl", "https://dewel.com/verify-invitation");
+        templateService.loadTemplates();
+    }
+
+    @Test
+    void rendersTextAndHtmlParts() {
+        EmailTemplateService.RenderedEmail email = templateService.render("verification", Locale.ENGLISH,
+                Map.of("userName", "Abebe <Admin>", "code", "482913"));
+
+        assertTrue(email.text().startsWith("Hello Abebe <Admin>,"));
+        assertTrue(email.text().contains("Verification Code: 482913"));
+        assertTrue(email.text().contains("expire in 15 minutes"));
+        assertTrue(email.text().endsWith("The Dewel Team"));
+
+        assertNotNull(email.html());
+        assertTrue(email.html().contains("Hello Abebe &lt;Admin&gt;,"));
+    }
+
+    @Test
+    void omitsEmptyOptionalSections() {
+        Map<String, Object> variables = invitationVariables(0);
+        variables.put("customMessage", " ");
+        String withoutMessage = templateService.render("enhanced-invitation", Locale.ENGLISH, variables).text();
+        assertFalse(withoutMessage.contains("Message from"));
+
+        variables.put("customMessage", "See you Sunday");
+        String withMessage = templateService.render("enhanced-invitation", Locale.ENGLISH, variables).text();
+        assertTrue(withMessage.contains("Message from Selam: See you Sunday"));
+    }
+
+    /**
+     * Rough throughput check for a mass invitation send; logs the per-message cost.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void massInvitationRendering() {
+        int warmup = 5_000;
+        int messages = 50_000;
+        for (int i = 0; i < warmup; i++) {
+            templateService.render("enhanced-invitation", Locale.ENGLISH, invitationVariables(i));
+        }
+
+        long start = System.nanoTime();
+        long totalChars = 0;
+        for (int i = 0; i < messages; i++) {
+            EmailTemplateService.RenderedEmail email =
+                    templateService.render("enhanced-invitation", Locale.ENGLISH, invitationVariables(i));
+            totalChars += email.text().length() + email.html().length();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        log.info("Rendered {} invitations (text + html) in {} ms, {} ns/message, {} chars",
+                messages, elapsed / 1_000_000, elapsed / messages, totalChars);
+        assertTrue(totalChars > 0);
+    }
+
+    private Map<String, Object> invitationVariables(int i) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("inviterName", "Selam");
+        variables.put("groupName", "Addis Savings Circle");
+        variables.put("invitationCode", "INV" + i);
+        variables.put("expiresAt", LocalDateTime.of(2026, 11, 1, 12, 0));
+        variables.put("customMessage", null);
+        return variables;
+    }
+}
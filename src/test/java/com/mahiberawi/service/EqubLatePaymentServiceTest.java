@@ -0,0 +1,115 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.entity.EqubRound;
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.entity.LedgerAccountType;
+import com.mahiberawi.entity.Payment;
+import com.mahiberawi.entity.PaymentStatus;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.repository.PaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "app.equb.late-payments.enabled=false",
+        "app.equb.late-payments.chunk-size=2"
+})
+@Import(TestFixtures.class)
+class EqubLatePaymentServiceTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private EqubLatePaymentService equbLatePaymentService;
+
+    @Autowired
+    private EqubService equbService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void flagsOverduePaymentsOnceAndRemindsEachMemberOnce() {
+        User admin = fixtures.user();
+        Group group = fixtures.group(fixtures.equbGroupBuilder(admin)
+                .equbPenaltyAmount(new BigDecimal("25.00")), admin, 4);
+        EqubRound round = equbService.startNewRound(group.getId(), admin);
+
+        List<Payment> payments = paymentRepository.findByEqubRoundEntity(round);
+        Payment paid = payments.get(0);
+        fixtures.updatePayment(paid.getId(), payment -> payment.setStatus(PaymentStatus.COMPLETED));
+        jdbcTemplate.update("UPDATE equb_rounds SET payment_deadline = ?, grace_period_days = 1 WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(3)), round.getId());
+
+        EqubLatePaymentService.Report first = equbLatePaymentService.run();
+        assertNotNull(first);
+        assertTrue(first.finished());
+        EqubLatePaymentService.Report second = equbLatePaymentService.run();
+        assertNotNull(second);
+
+        for (Payment payment : paymentRepository.findByEqubRoundEntity(round)) {
+            String payerId = payment.getPayer().getId();
+            if (payment.getId().equals(paid.getId())) {
+                assertFalse(Boolean.TRUE.equals(payment.getIsLatePayment()));
+                assertEquals(0, reminders(payerId));
+            } else {
+                assertTrue(payment.getIsLatePayment());
+                assertEquals(0, new BigDecimal("25.00").compareTo(payment.getPenaltyAmount()));
+                assertEquals(1, reminders(payerId));
+                assertEquals(0, new BigDecimal("125.00").compareTo(
+                        ledgerService.getMemberBalances(group.getId(), payerId, null, admin).getOutstanding()));
+            }
+        }
+        assertEquals(4, equbService.getCurrentRoundProgress(group.getId(), admin).getLateCount());
+    }
+
+    @Test
+    void penaltiesAreCollectedOrWaivedWithTheirPayments() {
+        User admin = fixtures.user();
+        Group group = fixtures.group(fixtures.equbGroupBuilder(admin)
+                .equbPenaltyAmount(new BigDecimal("25.00")), admin, 1);
+        EqubRound round = equbService.startNewRound(group.getId(), admin);
+        jdbcTemplate.update("UPDATE equb_rounds SET payment_deadline = ?, grace_period_days = 1 WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(3)), round.getId());
+        assertNotNull(equbLatePaymentService.run());
+
+        List<Payment> payments = paymentRepository.findByEqubRoundEntity(round);
+        fixtures.updatePayment(payments.get(0).getId(), payment -> payment.setStatus(PaymentStatus.COMPLETED));
+        fixtures.updatePayment(payments.get(1).getId(), payment -> payment.setStatus(PaymentStatus.CANCELLED));
+
+        for (Payment payment : payments) {
+            assertEquals(0, BigDecimal.ZERO.compareTo(ledgerService.getMemberBalances(group.getId(),
+                    payment.getPayer().getId(), null, admin).getOutstanding()));
+        }
+        Map<LedgerAccountType, BigDecimal> balances = ledgerService.getGroupBalances(group.getId(), null, admin).getBalances();
+        assertEquals(0, new BigDecimal("125.00").compareTo(balances.get(LedgerAccountType.GROUP_CASH)));
+        assertEquals(0, new BigDecimal("-125.00").compareTo(balances.get(LedgerAccountType.GROUP_BILLED)));
+    }
+
+    private int reminders(String userId) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM notifications WHERE user_id = ? AND content LIKE '%overdue%'", Integer.class, userId);
+        return count != null ? count : 0;
+    }
+}
@@ -0,0 +1,135 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.dto.equb.EqubProjectionResponse;
+import com.mahiberawi.dto.equb.EqubProjectionResponse.MemberSchedule;
+import com.mahiberawi.dto.equb.EqubProjectionResponse.RoundPhase;
+import com.mahiberawi.dto.equb.EqubWhatIfRequest;
+import com.mahiberawi.entity.enums.EqubRoundStatus;
+import com.mahiberawi.entity.enums.EqubSelectionMethod;
+import com.mahiberawi.service.EqubProjectionService.Inputs;
+import com.mahiberawi.service.EqubProjectionService.Member;
+import com.mahiberawi.service.EqubProjectionService.Round;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+class EqubProjectionServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 9, 0);
+
+    @Test
+    void fixedTurnsPayRemainingMembersInOrder() {
+        // Round 1 went to b; round 2 is under way
+        Inputs inputs = inputs(EqubSelectionMethod.FIXED_TURN, 4, List.of(
+                completed(1, "b"),
+                new Round(2, EqubRoundStatus.ACTIVE, null, START.plusDays(15), START.plusDays(30), null, null)));
+
+        EqubProjectionResponse projection = EqubProjectionService.project(inputs, null, START);
+
+        assertEquals(4, projection.getCycleRounds());
+        assertEquals(1, projection.getCompletedRounds());
+        assertEquals(0, new BigDecimal("400").compareTo(projection.getPotPerRound()));
+        assertEquals(RoundPhase.CURRENT, projection.getRounds().get(1).getPhase());
+        assertEquals(List.of("b", "a", "c", "d"),
+                projection.getRounds().stream().map(EqubProjectionResponse.ProjectedRound::getWinnerId).toList());
+        assertEquals(START.plusDays(60), projection.getCycleEndDate());
+
+        MemberSchedule c = schedule(projection, "c");
+        assertEquals(3, c.getPayoutRound());
+        assertEquals(START.plusDays(45), c.getPayoutDate());
+        assertEquals(0, new BigDecimal("0").compareTo(c.getNetPosition()));
+        assertTrue(schedule(projection, "b").isReceived());
+    }
+
+    @Test
+    void lotteryGivesTheRangeOfRemainingRounds() {
+        Inputs inputs = inputs(EqubSelectionMethod.LOTTERY, 5, List.of(completed(1, "a")));
+
+        EqubProjectionResponse projection = EqubProjectionService.project(inputs, null, START.plusDays(20));
+
+        MemberSchedule e = schedule(projection, "e");
+        assertNull(e.getPayoutRound());
+        assertEquals(2, e.getEarliestPayoutRound());
+        assertEquals(5, e.getLatestPayoutRound());
+        assertEquals(3.5, e.getExpectedPayoutRound());
+        assertNull(projection.getRounds().get(1).getWinnerId());
+    }
+
+    @Test
+    void whatIfMembersLeaveOrPayLate() {
+        Inputs inputs = inputs(EqubSelectionMethod.FIXED_TURN, 4, List.of());
+        EqubWhatIfRequest whatIf = new EqubWhatIfRequest();
+        whatIf.setLeavingUserIds(Set.of("d"));
+        whatIf.setLateUserIds(Set.of("a"));
+
+        EqubProjectionResponse projection = EqubProjectionService.project(inputs, whatIf, START);
+
+        assertTrue(projection.isWhatIf());
+        assertEquals(3, projection.getMemberCount());
+        assertEquals(3, projection.getRemainingRounds());
+        assertEquals(0, new BigDecimal("300").compareTo(projection.getPotPerRound()));
+        // Late payers hold the draw until the grace period is over
+        assertEquals(START.plusDays(15 + 7), projection.getRounds().get(0).getPayoutDate());
+        assertEquals(0, new BigDecimal("30").compareTo(schedule(projection, "a").getProjectedPenalties()));
+        assertEquals(0, new BigDecimal("-30").compareTo(schedule(projection, "a").getNetPosition()));
+    }
+
+    @Test
+    void aNewCycleStartsOnceEveryoneHasReceivedThePot() {
+        List<Round> history = List.of(completed(1, "a"), completed(2, "b"), completed(3, "c"));
+
+        assertTrue(EqubProjectionService.currentCycle(List.of("a", "b", "c"), history).isEmpty());
+        assertEquals(3, EqubProjectionService.currentCycle(List.of("a", "b", "c", "d"), history).size());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void projectionTimePerGroup() {
+        for (int members : new int[]{50, 500, 5_000}) {
+            List<Round> history = new ArrayList<>();
+            for (int i = 0; i < members / 2; i++) {
+                history.add(completed(i + 1, "m" + i));
+            }
+            Inputs inputs = inputs(EqubSelectionMethod.FIXED_TURN, members, history);
+            for (int i = 0; i < 200; i++) {
+                EqubProjectionService.project(inputs, null, START);
+            }
+            int runs = 1_000;
+            long start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                EqubProjectionService.project(inputs, null, START);
+            }
+            log.info("Equb projection for {} members: {} us per group", members, (System.nanoTime() - start) / runs / 1_000);
+        }
+    }
+
+    private static MemberSchedule schedule(EqubProjectionResponse projection, String userId) {
+        return projection.getMembers().stream().filter(member -> member.getUserId().equals(userId)).findFirst().orElseThrow();
+    }
+
+    private static Round completed(int number, String winnerId) {
+        LocalDateTime start = START.plusDays((number - 1) * 15L);
+        return new Round(number, EqubRoundStatus.COMPLETED, winnerId, start, start.plusDays(15), start.plusDays(15),
+                new BigDecimal("400"));
+    }
+
+    private static Inputs inputs(EqubSelectionMethod method, int memberCount, List<Round> rounds) {
+        List<Member> members = new ArrayList<>(memberCount);
+        for (int i = 0; i < memberCount; i++) {
+            String id = memberCount <= 26 ? String.valueOf((char) ('a' + i)) : "m" + i;
+            members.add(new Member(id, "Member " + id));
+        }
+        return new Inputs("group", new BigDecimal("100"), new BigDecimal("10"), method, 15, 7, members, rounds);
+    }
+}
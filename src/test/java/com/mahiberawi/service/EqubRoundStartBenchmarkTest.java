@@ -0,0 +1,116 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.entity.GroupMember;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.entity.UserIntention;
+import com.mahiberawi.entity.UserRole;
+import com.mahiberawi.entity.UserStatus;
+import com.mahiberawi.entity.enums.EqubSelectionMethod;
+import com.mahiberawi.entity.enums.GroupMemberRole;
+import com.mahiberawi.entity.enums.GroupMemberStatus;
+import com.mahiberawi.entity.enums.GroupType;
+import com.mahiberawi.repository.GroupMemberRepository;
+import com.mahiberawi.repository.GroupRepository;
+import com.mahiberawi.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Time to start an equb round for circles of 50, 500 and 5,000 members, against the
+ * configured database. Each size starts two rounds and reports the second, so the
+ * first absorbs warm-up. Run with -Dbenchmark=true:
+ *
+ *   mvn test -Dtest=EqubRoundStartBenchmarkTest -Dbenchmark=true
+ */
+@Slf4j
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class EqubRoundStartBenchmarkTest {
+
+    @Autowired
+    private EqubService equbService;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private GroupMemberRepository groupMemberRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void startRoundsOfIncreasingSize() {
+        for (int members : new int[]{50, 500, 5_000}) {
+            User admin = userRepository.save(user());
+            Group group = createEqubGroup(admin, members);
+
+            equbService.startNewRound(group.getId(), admin);
+            long start = System.nanoTime();
+            equbService.startNewRound(group.getId(), admin);
+            long millis = Math.max((System.nanoTime() - start) / 1_000_000, 1);
+
+            log.info("Equb round start for {} members: {} ms, {} members/s", members, millis, members * 1000L / millis);
+        }
+    }
+
+    private Group createEqubGroup(User admin, int members) {
+        Group group = groupRepository.save(Group.builder()
+                .name("Equb benchmark group")
+                .type(GroupType.OTHER)
+                .code(UUID.randomUUID().toString().substring(0, 8))
+                .createdBy(admin.getId())
+                .creator(admin)
+                .isEqubGroup(true)
+                .equbAmount(new BigDecimal("100.00"))
+                .equbSelectionMethod(EqubSelectionMethod.LOTTERY)
+                .currentEqubRound(0)
+                .equbGracePeriodDays(7)
+                .equbPaymentDeadlineDays(15)
+                .build());
+
+        List<User> users = new ArrayList<>(members);
+        for (int i = 1; i < members; i++) {
+            users.add(user());
+        }
+        List<GroupMember> memberships = new ArrayList<>(members);
+        memberships.add(member(group, admin, GroupMemberRole.ADMIN));
+        for (User user : userRepository.saveAll(users)) {
+            memberships.add(member(group, user, GroupMemberRole.MEMBER));
+        }
+        groupMemberRepository.saveAll(memberships);
+        return group;
+    }
+
+    private static GroupMember member(Group group, User user, GroupMemberRole role) {
+        return GroupMember.builder()
+                .groupId(group.getId())
+                .userId(user.getId())
+                .role(role)
+                .status(GroupMemberStatus.ACTIVE)
+                .joinedAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static User user() {
+        return User.builder()
+                .firstName("Bench")
+                .lastName("User")
+                .email(UUID.randomUUID() + "@example.com")
+                .password("password")
+                .role(UserRole.MEMBER)
+                .intention(UserIntention.UNDECIDED)
+                .status(UserStatus.ACTIVE)
+                .build();
+    }
+}
@@ -0,0 +1,128 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.dto.equb.EqubRoundProgressResponse;
+import com.mahiberawi.entity.EqubRound;
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.entity.Payment;
+import com.mahiberawi.entity.PaymentStatus;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.repository.GroupRepository;
+import com.mahiberawi.repository.PaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "app.equb.round-start.chunk-size=5")
+@Import(TestFixtures.class)
+class EqubServiceTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private EqubService equbService;
+
+    @Autowired
+    private GroupPaymentTotalsService groupPaymentTotalsService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Test
+    void startingARoundBillsEveryMemberAcrossChunks() {
+        User admin = fixtures.user();
+        Group group = fixtures.equbGroup(admin, 11);
+
+        EqubRound round = equbService.startNewRound(group.getId(), admin);
+
+        assertEquals(1, round.getRoundNumber());
+        assertEquals(0, new BigDecimal("1200.00").compareTo(round.getExpectedAmount()));
+        assertEquals(1, groupRepository.findById(group.getId()).orElseThrow().getCurrentEqubRound());
+
+        List<Payment> payments = paymentRepository.findByEqubRoundEntity(round);
+        assertEquals(12, payments.size());
+        assertTrue(payments.stream().allMatch(p -> p.getStatus() == PaymentStatus.PENDING
+                && p.getIsEqubPayment() && p.getEqubRound() == 1 && p.getMethod() == null));
+        assertEquals(12, groupPaymentTotalsService.getTotals(group.getId()).get(PaymentStatus.PENDING).getCount());
+    }
+
+    @Test
+    void roundsAreNumberedInOrder() {
+        User admin = fixtures.user();
+        Group group = fixtures.equbGroup(admin, 2);
+
+        equbService.startNewRound(group.getId(), admin);
+        EqubRound second = equbService.startNewRound(group.getId(), admin);
+
+        assertEquals(2, second.getRoundNumber());
+        assertEquals(2, groupRepository.findById(group.getId()).orElseThrow().getCurrentEqubRound());
+        assertEquals(3, paymentRepository.findByEqubRoundEntity(second).size());
+    }
+
+    @Test
+    void progressCountersGateTheDraw() {
+        User admin = fixtures.user();
+        Group group = fixtures.equbGroup(admin, 2);
+        EqubRound round = equbService.startNewRound(group.getId(), admin);
+
+        List<Payment> payments = paymentRepository.findByEqubRoundEntity(round);
+        complete(payments.get(0));
+        fixtures.updatePayment(payments.get(1).getId(), payment -> {
+            payment.setIsLatePayment(true);
+            payment.setStatus(PaymentStatus.COMPLETED);
+        });
+
+        EqubRoundProgressResponse progress = equbService.getCurrentRoundProgress(group.getId(), admin);
+        assertEquals(3, progress.getMemberCount());
+        assertEquals(2, progress.getPaidCount());
+        assertEquals(1, progress.getUnpaidCount());
+        assertEquals(1, progress.getLateCount());
+        assertEquals(0, new BigDecimal("200.00").compareTo(progress.getCollectedAmount()));
+        assertFalse(progress.isReadyForDraw());
+        assertThrows(IllegalStateException.class, () -> equbService.selectWinner(group.getId(), admin));
+
+        complete(payments.get(2));
+        assertTrue(equbService.getCurrentRoundProgress(group.getId(), admin).isReadyForDraw());
+        assertNotNull(equbService.selectWinner(group.getId(), admin).getWinner());
+    }
+
+    @Test
+    void cancelledAndFailedPaymentsAreNotAwaitedForTheDraw() {
+        User admin = fixtures.user();
+        Group group = fixtures.equbGroup(admin, 2);
+        EqubRound round = equbService.startNewRound(group.getId(), admin);
+
+        List<Payment> payments = paymentRepository.findByEqubRoundEntity(round);
+        complete(payments.get(0));
+        fixtures.updatePayment(payments.get(1).getId(), payment -> payment.setStatus(PaymentStatus.CANCELLED));
+        fixtures.updatePayment(payments.get(2).getId(), payment -> payment.setStatus(PaymentStatus.FAILED));
+
+        EqubRoundProgressResponse progress = equbService.getCurrentRoundProgress(group.getId(), admin);
+        assertEquals(1, progress.getMemberCount());
+        assertEquals(0, progress.getUnpaidCount());
+        assertTrue(progress.isReadyForDraw());
+
+        fixtures.updatePayment(payments.get(1).getId(), payment -> payment.setStatus(PaymentStatus.PENDING));
+        progress = equbService.getCurrentRoundProgress(group.getId(), admin);
+        assertEquals(2, progress.getMemberCount());
+        assertFalse(progress.isReadyForDraw());
+        assertThrows(IllegalStateException.class, () -> equbService.selectWinner(group.getId(), admin));
+    }
+
+    private void complete(Payment paid) {
+        fixtures.updatePayment(paid.getId(), payment -> payment.setStatus(PaymentStatus.COMPLETED));
+    }
+}
@@ -0,0 +1,193 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.dto.event.EventResponse;
+import com.mahiberawi.entity.AttendanceStatus;
+import com.mahiberawi.entity.Event;
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.entity.UserIntention;
+import com.mahiberawi.entity.UserRole;
+import com.mahiberawi.entity.UserStatus;
+import com.mahiberawi.entity.enums.GroupType;
+import com.mahiberawi.repository.EventRepository;
+import com.mahiberawi.repository.GroupRepository;
+import com.mahiberawi.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Slf4j
+class EventCapacityConcurrencyTest {
+
+    private static final int CAPACITY = 10;
+    private static final int REGISTRANTS = 60;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentRegistrationsNeverExceedCapacity() throws Exception {
+        Event event = createEvent(false);
+        List<User> users = createUsers(REGISTRANTS);
+
+        AtomicInteger rejected = new AtomicInteger();
+        registerConcurrently(event, users, rejected);
+
+        EventResponse response = eventService.getEvent(event.getId());
+        assertEquals(CAPACITY, response.getAttendanceCounts().get(AttendanceStatus.REGISTERED));
+        assertEquals(REGISTRANTS - CAPACITY, rejected.get());
+        assertEquals(CAPACITY, eventRepository.findById(event.getId()).orElseThrow().getRegisteredCount());
+        assertEquals(1, capacityWarnings(event));
+
+        // Seats drop below the threshold and fill again, but the creator was already warned
+        String registered = eventService.getEventParticipants(event.getId(), 0, REGISTRANTS).getParticipants().get(0).getUserId();
+        eventService.updateParticipantStatus(event.getId(), registered, AttendanceStatus.CANCELLED);
+        eventService.updateParticipantStatus(event.getId(), registered, AttendanceStatus.REGISTERED);
+        assertEquals(CAPACITY, eventRepository.findById(event.getId()).orElseThrow().getRegisteredCount());
+        assertEquals(1, capacityWarnings(event));
+    }
+
+    @Test
+    void cancellationPromotesOldestWaitlistedParticipant() throws Exception {
+        Event event = createEvent(true);
+        List<User> users = createUsers(REGISTRANTS);
+
+        AtomicInteger rejected = new AtomicInteger();
+        registerConcurrently(event, users, rejected);
+
+        EventResponse full = eventService.getEvent(event.getId());
+        assertEquals(0, rejected.get());
+        assertEquals(CAPACITY, full.getAttendanceCounts().get(AttendanceStatus.REGISTERED));
+        assertEquals(REGISTRANTS - CAPACITY, full.getAttendanceCounts().get(AttendanceStatus.WAITLISTED));
+
+        // Cancel every registered participant at once; each freed seat must go to the waitlist
+        List<String> registered = eventService.getEventParticipants(event.getId(), 0, REGISTRANTS).getParticipants().stream()
+                .filter(participant -> participant.getStatus() == AttendanceStatus.REGISTERED)
+                .map(participant -> participant.getUserId())
+                .toList();
+        runConcurrently(registered.size(), i ->
+                eventService.updateParticipantStatus(event.getId(), registered.get(i), AttendanceStatus.CANCELLED));
+
+        EventResponse afterCancel = eventService.getEvent(event.getId());
+        assertEquals(CAPACITY, afterCancel.getAttendanceCounts().get(AttendanceStatus.REGISTERED));
+        assertEquals(CAPACITY, afterCancel.getAttendanceCounts().get(AttendanceStatus.CANCELLED));
+        assertEquals(REGISTRANTS - 2 * CAPACITY, afterCancel.getAttendanceCounts().get(AttendanceStatus.WAITLISTED));
+        assertEquals(CAPACITY, eventRepository.findById(event.getId()).orElseThrow().getRegisteredCount());
+    }
+
+    private int capacityWarnings(Event event) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM notifications WHERE event_id = ? AND type = 'EVENT_CAPACITY'", Integer.class,
+                event.getId());
+        return count != null ? count : 0;
+    }
+
+    private void registerConcurrently(Event event, List<User> users, AtomicInteger rejected) throws Exception {
+        long start = System.nanoTime();
+        runConcurrently(users.size(), i -> {
+            try {
+                eventService.registerParticipant(event.getId(), users.get(i));
+            } catch (IllegalStateException e) {
+                rejected.incrementAndGet();
+            }
+        });
+        if (Boolean.getBoolean("benchmark")) {
+            log.info("{} concurrent registrations in {} ms",
+                    users.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private void runConcurrently(int tasks, IndexedTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < tasks; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> {
+                    startSignal.await();
+                    task.run(index);
+                    return null;
+                }));
+            }
+            startSignal.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    private Event createEvent(boolean waitlistEnabled) {
+        User creator = createUsers(1).get(0);
+        Group group = groupRepository.save(Group.builder()
+                .name("Capacity test group")
+                .type(GroupType.OTHER)
+                .code(UUID.randomUUID().toString().substring(0, 8))
+                .createdBy(creator.getId())
+                .creator(creator)
+                .build());
+
+        Event event = new Event();
+        event.setTitle("Popular event");
+        event.setStartTime(LocalDateTime.now().plusDays(7));
+        event.setEndTime(LocalDateTime.now().plusDays(7).plusHours(2));
+        event.setMaxParticipants(CAPACITY);
+        event.setWaitlistEnabled(waitlistEnabled);
+        event.setGroup(group);
+        event.setCreator(creator);
+        return eventRepository.save(event);
+    }
+
+    private List<User> createUsers(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(User.builder()
+                    .firstName("Test")
+                    .lastName("User " + i)
+                    .email(UUID.randomUUID() + "@example.com")
+                    .password("password")
+                    .role(UserRole.MEMBER)
+                    .intention(UserIntention.UNDECIDED)
+                    .status(UserStatus.ACTIVE)
+                    .build());
+        }
+        return userRepository.saveAll(users);
+    }
+
+    @FunctionalInterface
+    private interface IndexedTask {
+        void run(int index) throws Exception;
+    }
+}
@@ -0,0 +1,132 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.dto.event.CheckInOutcome;
+import com.mahiberawi.dto.event.CheckInResponse;
+import com.mahiberawi.dto.event.CheckInStatsResponse;
+import com.mahiberawi.entity.AttendanceStatus;
+import com.mahiberawi.entity.Event;
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.exception.UnauthorizedException;
+import com.mahiberawi.repository.EventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Import(TestFixtures.class)
+class EventCheckInServiceTest {
+
+    @Autowired
+    private EventCheckInService eventCheckInService;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void batchChecksInEachRegistrationOnce() {
+        User organizer = fixtures.user();
+        Event event = createEvent(organizer);
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            User participant = fixtures.user();
+            eventService.registerParticipant(event.getId(), participant);
+            tokens.add(eventCheckInService.issueToken(event.getId(), null, participant).getToken());
+        }
+        String tampered = tokens.get(0).substring(0, tokens.get(0).length() - 2) + "AA";
+
+        CheckInStatsResponse before = eventCheckInService.getStats(event.getId(), null, organizer);
+        assertEquals(5, before.getExpected());
+        assertEquals(0, before.getCheckedIn());
+
+        CheckInResponse first = eventCheckInService.checkIn(event.getId(),
+                List.of(tokens.get(0), tokens.get(1), tokens.get(1), tampered), organizer);
+        assertEquals(List.of(CheckInOutcome.CHECKED_IN, CheckInOutcome.CHECKED_IN,
+                        CheckInOutcome.ALREADY_CHECKED_IN, CheckInOutcome.INVALID_TOKEN),
+                first.getResults().stream().map(CheckInResponse.Result::getOutcome).toList());
+        assertEquals(2, first.getCheckedIn());
+        assertEquals(2, first.getStats().get(0).getCheckedIn());
+
+        CheckInResponse second = eventCheckInService.checkIn(event.getId(), tokens, organizer);
+        assertEquals(3, second.getCheckedIn());
+
+        CheckInStatsResponse after = eventCheckInService.getStats(event.getId(), null, organizer);
+        assertEquals(5, after.getCheckedIn());
+        assertEquals(0, after.getRemaining());
+        assertEquals(5, eventService.getEvent(event.getId()).getAttendanceCounts().get(AttendanceStatus.ATTENDED));
+    }
+
+    @Test
+    void rejectsTokensOfOtherEventsAndNonOrganizers() {
+        User organizer = fixtures.user();
+        Event event = createEvent(organizer);
+        Event other = createEvent(organizer);
+        User participant = fixtures.user();
+        eventService.registerParticipant(other.getId(), participant);
+        String token = eventCheckInService.issueToken(other.getId(), null, participant).getToken();
+
+        CheckInResponse response = eventCheckInService.checkIn(event.getId(), List.of(token), organizer);
+        assertEquals(CheckInOutcome.WRONG_EVENT, response.getResults().get(0).getOutcome());
+        assertThrows(UnauthorizedException.class,
+                () -> eventCheckInService.checkIn(other.getId(), List.of(token), participant));
+    }
+
+    @Test
+    void sweepsStaleCountersAndReloadsThemWithTheLastCheckIn() {
+        User organizer = fixtures.user();
+        Event event = createEvent(organizer);
+        User participant = fixtures.user();
+        eventService.registerParticipant(event.getId(), participant);
+        String token = eventCheckInService.issueToken(event.getId(), null, participant).getToken();
+        eventCheckInService.checkIn(event.getId(), List.of(token), organizer);
+        LocalDateTime lastCheckInAt = eventCheckInService.getStats(event.getId(), null, organizer).getLastCheckInAt();
+        assertNotNull(lastCheckInAt);
+
+        Map<?, ?> counters = (Map<?, ?>) ReflectionTestUtils.getField(eventCheckInService, "counters");
+        long ttl = (long) ReflectionTestUtils.getField(eventCheckInService, "counterTtlSeconds");
+        eventCheckInService.evictStaleCounters();
+        assertEquals(1, counters.keySet().stream().filter(key -> key.toString().contains(event.getId())).count());
+
+        ReflectionTestUtils.setField(eventCheckInService, "counterTtlSeconds", 0L);
+        try {
+            eventCheckInService.evictStaleCounters();
+        } finally {
+            ReflectionTestUtils.setField(eventCheckInService, "counterTtlSeconds", ttl);
+        }
+        assertTrue(counters.keySet().stream().noneMatch(key -> key.toString().contains(event.getId())));
+
+        CheckInStatsResponse reloaded = eventCheckInService.getStats(event.getId(), null, organizer);
+        assertEquals(1, reloaded.getCheckedIn());
+        assertEquals(lastCheckInAt.withNano(0), reloaded.getLastCheckInAt().withNano(0));
+    }
+
+    private Event createEvent(User creator) {
+        Group group = fixtures.group(creator, 0);
+
+        Event event = new Event();
+        event.setTitle("Community gathering");
+        event.setStartTime(LocalDateTime.now().plusHours(1));
+        event.setEndTime(LocalDateTime.now().plusHours(4));
+        event.setGroup(group);
+        event.setCreator(creator);
+        return eventRepository.save(event);
+    }
+}
@@ -0,0 +1,198 @@
+package com.mahiberawi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mahiberawi.config.TeleBirrConfig;
+import com.mahiberawi.config.VippsConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the gateway services against a local stub that issues numbered tokens and only
+ * accepts the latest one.
+ */
+class GatewayAccessTokenTest {
+
+    private HttpServer gateway;
+    private ExecutorService gatewayExecutor;
+    private String baseUrl;
+    private final AtomicInteger tokensIssued = new AtomicInteger();
+    private volatile String validToken;
+    private volatile int expiresInSeconds = 3600;
+
+    @BeforeEach
+    void startGateway() throws IOException {
+        gateway = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        gatewayExecutor = Executors.newFixedThreadPool(16);
+        gateway.setExecutor(gatewayExecutor);
+        // TeleBirr's token URL is configured; Vipps asks for /accessToken/get and sends expires_in as a string
+        gateway.createContext("/token", exchange -> issueToken(exchange, String.valueOf(expiresInSeconds)));
+        gateway.createContext("/accessToken/get", exchange -> issueToken(exchange, "\"" + expiresInSeconds + "\""));
+        gateway.createContext("/verify", exchange -> {
+            boolean authorized = ("Bearer " + validToken).equals(exchange.getRequestHeaders().getFirst("Authorization"));
+            respond(exchange, authorized ? 200 : 401, authorized ? "{\"status\":\"SUCCESS\"}" : "{}");
+        });
+        gateway.createContext("/payments", exchange -> {
+            boolean authorized = ("Bearer " + validToken).equals(exchange.getRequestHeaders().getFirst("Authorization"));
+            respond(exchange, authorized ? 200 : 401, authorized ? "{\"transactionInfo\":\"SALE\"}" : "{}");
+        });
+        gateway.start();
+        baseUrl = "http://127.0.0.1:" + gateway.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopGateway() {
+        gateway.stop(0);
+        gatewayExecutor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsShareOneTokenFetch() throws Exception {
+        TeleBirrService teleBirr = teleBirrService(Duration.ofSeconds(60));
+        try {
+            List<Boolean> results = runConcurrently(32, teleBirr::verifyPayment);
+
+            assertTrue(results.stream().allMatch(Boolean::booleanValue));
+            assertEquals(1, tokensIssued.get());
+
+            runConcurrently(32, teleBirr::verifyPayment);
+            assertEquals(1, tokensIssued.get());
+        } finally {
+            teleBirr.stop();
+        }
+    }
+
+    @Test
+    void rejectedTokenIsReplacedAndTheCallRetried() {
+        VippsService vipps = vippsService();
+        try {
+            assertTrue(vipps.verifyPayment("tx-1"));
+            // The gateway revokes the cached token
+            validToken = "revoked";
+
+            assertTrue(vipps.verifyPayment("tx-2"));
+            assertEquals(2, tokensIssued.get());
+            assertTrue(vipps.verifyPayment("tx-3"));
+            assertEquals(2, tokensIssued.get());
+        } finally {
+            vipps.stop();
+        }
+    }
+
+    @Test
+    void tokenInUseIsRefreshedBeforeItExpires() throws Exception {
+        expiresInSeconds = 2;
+        TeleBirrService teleBirr = teleBirrService(Duration.ofSeconds(1));
+        try {
+            assertTrue(teleBirr.verifyPayment("tx-1"));
+            assertTrue(teleBirr.verifyPayment("tx-2"));
+            assertEquals(1, tokensIssued.get());
+
+            // Refreshed in the background one second before expiry, without a caller waiting
+            long deadline = System.currentTimeMillis() + 3000;
+            while (tokensIssued.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(2, tokensIssued.get());
+            assertTrue(teleBirr.verifyPayment("tx-3"));
+            assertEquals(2, tokensIssued.get());
+        } finally {
+            teleBirr.stop();
+        }
+    }
+
+    private TeleBirrService teleBirrService(Duration refreshMargin) {
+        TeleBirrConfig config = new TeleBirrConfig();
+        config.setAppKey("key");
+        config.setAppSecret("secret");
+        config.setTokenUrl(baseUrl + "/token");
+        config.setVerifyUrl(baseUrl + "/verify");
+        config.setTokenRefreshMargin(refreshMargin);
+        // Room for every concurrent caller, so the bulkhead does not turn any away
+        config.getClient().setMaxConcurrentCalls(64);
+        TeleBirrService service = new TeleBirrService(config, new ObjectMapper());
+        service.start();
+        return service;
+    }
+
+    private VippsService vippsService() {
+        VippsConfig config = new VippsConfig();
+        config.setClientId("client");
+        config.setClientSecret("secret");
+        config.setSubscriptionKey("subscription");
+        config.setBaseUrl(baseUrl);
+        config.setPaymentUrl(baseUrl + "/payments");
+        VippsService service = new VippsService(config, new ObjectMapper());
+        service.start();
+        return service;
+    }
+
+    private List<Boolean> runConcurrently(int calls, Verification verification) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(calls);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < calls; i++) {
+                String transactionId = "tx-" + i;
+                futures.add(executor.submit(() -> {
+                    startSignal.await();
+                    return verification.verify(transactionId);
+                }));
+            }
+            startSignal.countDown();
+            List<Boolean> results = new ArrayList<>();
+            for (Future<Boolean> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void issueToken(HttpExchange exchange, String expiresIn) throws IOException {
+        sleep(100);
+        String token = "token-" + tokensIssued.incrementAndGet();
+        validToken = token;
+        respond(exchange, 200, "{\"access_token\":\"" + token + "\",\"expires_in\":" + expiresIn + "}");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Verification {
+        boolean verify(String transactionId);
+    }
+}
@@ -0,0 +1,152 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.dto.event.EventOccurrenceRequest;
+import com.mahiberawi.dto.event.EventResponse;
+import com.mahiberawi.entity.Event;
+import com.mahiberawi.entity.EventAttendance;
+import com.mahiberawi.entity.EventStatus;
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.repository.EventAttendanceRepository;
+import com.mahiberawi.repository.EventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(properties = "app.events.recurrence.default-window-days=28")
+@Import(TestFixtures.class)
+class GroupEventListTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private GroupService groupService;
+
+    @Autowired
+    private EventOccurrenceService eventOccurrenceService;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private EventAttendanceRepository eventAttendanceRepository;
+
+    @Test
+    void listsRecurringEventsAsOccurrencesWithinTheWindow() {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 0);
+        LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(1);
+        Event weekly = createEvent(group, admin, "Weekly meeting", start, "FREQ=WEEKLY");
+
+        List<EventResponse> events = groupService.getGroupEvents(group.getId(), admin);
+
+        // start + 28 days falls outside the 28 day window that begins now
+        assertEquals(4, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(weekly.getId(), events.get(i).getId());
+            assertEquals(start.plusWeeks(i), events.get(i).getOccurrenceStart());
+            assertEquals(start.plusWeeks(i), events.get(i).getStartTime());
+            assertEquals("Weekly meeting", events.get(i).getTitle());
+            assertEquals(group.getId(), events.get(i).getGroupId());
+        }
+    }
+
+    @Test
+    void appliesOccurrenceExceptions() {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 0);
+        LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(1);
+        Event weekly = createEvent(group, admin, "Weekly meeting", start, "FREQ=WEEKLY");
+
+        EventOccurrenceRequest cancel = new EventOccurrenceRequest();
+        cancel.setCancelled(true);
+        eventOccurrenceService.updateOccurrence(weekly, start.plusWeeks(1), cancel);
+
+        EventOccurrenceRequest move = new EventOccurrenceRequest();
+        move.setTitle("Moved meeting");
+        move.setStartTime(start.plusWeeks(2).plusDays(1));
+        move.setEndTime(start.plusWeeks(2).plusDays(1).plusHours(2));
+        eventOccurrenceService.updateOccurrence(weekly, start.plusWeeks(2), move);
+
+        List<EventResponse> events = groupService.getGroupEventsWithPermissions(group.getId(), admin).getEvents();
+
+        assertEquals(4, events.size());
+        assertEquals(EventStatus.CANCELLED, events.get(1).getStatus());
+        assertEquals(start.plusWeeks(1), events.get(1).getOccurrenceStart());
+        assertEquals("Moved meeting", events.get(2).getTitle());
+        assertEquals(start.plusWeeks(2), events.get(2).getOccurrenceStart());
+        assertEquals(start.plusWeeks(2).plusDays(1), events.get(2).getStartTime());
+        assertEquals(EventStatus.UPCOMING, events.get(2).getStatus());
+    }
+
+    @Test
+    void exceptionsAndRegistrationsMoveWithTheSeriesStart() {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 0);
+        LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(1);
+        Event weekly = createEvent(group, admin, "Weekly meeting", start, "FREQ=WEEKLY");
+
+        EventOccurrenceRequest cancel = new EventOccurrenceRequest();
+        cancel.setCancelled(true);
+        eventOccurrenceService.updateOccurrence(weekly, start.plusWeeks(1), cancel);
+        EventOccurrenceRequest retitle = new EventOccurrenceRequest();
+        retitle.setTitle("Annual review");
+        eventOccurrenceService.updateOccurrence(weekly, start.plusWeeks(2), retitle);
+        eventService.registerParticipant(weekly.getId(), start.plusWeeks(2), admin);
+
+        // A whole week later, so each exception moves onto the key the next one had
+        LocalDateTime moved = start.plusWeeks(1);
+        eventService.updateEventTime(weekly.getId(), moved, moved.plusHours(2));
+
+        List<EventResponse> events = groupService.getGroupEvents(group.getId(), admin);
+        assertEquals(3, events.size());
+        assertEquals(moved, events.get(0).getOccurrenceStart());
+        assertEquals(EventStatus.UPCOMING, events.get(0).getStatus());
+        assertEquals(EventStatus.CANCELLED, events.get(1).getStatus());
+        assertEquals("Annual review", events.get(2).getTitle());
+
+        List<EventAttendance> attendance = eventAttendanceRepository.findByEvent(weekly);
+        assertEquals(1, attendance.size());
+        assertEquals(moved.plusWeeks(2), attendance.get(0).getOccurrenceStart());
+    }
+
+    @Test
+    void boundsSeriesButNotSingleEventsByTheWindow() {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 0);
+        LocalDateTime later = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(60);
+        createEvent(group, admin, "Later series", later, "FREQ=DAILY");
+        Event single = createEvent(group, admin, "Later single event", later, null);
+
+        List<EventResponse> events = groupService.getUserGroupEvents(admin).stream()
+                .filter(event -> group.getId().equals(event.getGroupId()))
+                .toList();
+
+        assertEquals(1, events.size());
+        assertEquals(single.getId(), events.get(0).getId());
+        assertNull(events.get(0).getOccurrenceStart());
+    }
+
+    private Event createEvent(Group group, User creator, String title, LocalDateTime start, String rule) {
+        Event event = new Event();
+        event.setTitle(title);
+        event.setStartTime(start);
+        event.setEndTime(start.plusHours(2));
+        event.setGroup(group);
+        event.setCreator(creator);
+        eventOccurrenceService.applyRecurrence(event, rule);
+        return eventRepository.save(event);
+    }
+}
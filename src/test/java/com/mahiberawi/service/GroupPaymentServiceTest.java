@@ -0,0 +1,156 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.dto.payment.GroupPaymentMode;
+import com.mahiberawi.dto.payment.GroupPaymentRequest;
+import com.mahiberawi.dto.payment.GroupPaymentStatisticsResponse;
+import com.mahiberawi.dto.payment.GroupPaymentSummary;
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.entity.Payment;
+import com.mahiberawi.entity.PaymentMethod;
+import com.mahiberawi.entity.PaymentStatus;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.repository.PaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "app.payments.group-requests.chunk-size=7",
+        "app.payments.group-requests.max-listed-payments=10"
+})
+@Import(TestFixtures.class)
+class GroupPaymentServiceTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private GroupPaymentService groupPaymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentBatchWriter paymentBatchWriter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void createsOnePaymentPerMemberAcrossChunks() {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 20);
+
+        GroupPaymentSummary summary = groupPaymentService.createGroupPaymentRequest(request(group, null), admin);
+
+        // The admin is an active member too
+        assertEquals(21, summary.getTargeted());
+        assertEquals(21, summary.getCreated());
+        assertEquals(0, summary.getRemaining());
+        assertTrue(summary.isComplete());
+        assertNull(summary.getPayments());
+        assertEquals(21, paymentRepository.findByGroupId(group.getId()).size());
+    }
+
+    @Test
+    void resumingABatchSkipsMembersItAlreadyCovers() {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 4);
+
+        GroupPaymentSummary first = groupPaymentService.createGroupPaymentRequest(request(group, null), admin);
+        assertEquals(5, first.getCreated());
+        assertEquals(5, first.getPayments().size());
+
+        GroupPaymentSummary resumed = groupPaymentService.createGroupPaymentRequest(request(group, first.getBatchId()), admin);
+        assertEquals(0, resumed.getCreated());
+        assertEquals(5, resumed.getAlreadyCreated());
+        assertTrue(resumed.isComplete());
+        assertEquals(5, paymentRepository.findByGroupId(group.getId()).size());
+    }
+
+    @Test
+    void aMemberIsBilledOncePerBatchEvenByConcurrentResumes() {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 2);
+        GroupPaymentSummary first = groupPaymentService.createGroupPaymentRequest(request(group, null), admin);
+
+        // What a second resume that read the batch before the first one committed would write
+        PaymentBatchWriter.PendingPayments again = PaymentBatchWriter.PendingPayments.builder()
+                .groupId(group.getId())
+                .requestBatchId(first.getBatchId())
+                .amount(new BigDecimal("100.00"))
+                .method(PaymentMethod.CASH)
+                .notification(userId -> "again")
+                .build();
+        assertThrows(DuplicateKeyException.class, () -> new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> paymentBatchWriter.insertPending(again, List.of(admin.getId()), 10)));
+        assertEquals(3, paymentRepository.findByGroupId(group.getId()).size());
+    }
+
+    @Test
+    void statisticsFollowStatusChanges() {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 3);
+        groupPaymentService.createGroupPaymentRequest(request(group, null), admin);
+
+        Payment paid = paymentRepository.findByGroupId(group.getId()).get(0);
+        fixtures.updatePayment(paid.getId(), payment -> payment.setStatus(PaymentStatus.COMPLETED));
+
+        GroupPaymentStatisticsResponse summary = groupPaymentService.getGroupPaymentSummary(group.getId(), admin);
+        assertEquals(4, summary.getTotalCount());
+        assertEquals(0, new BigDecimal("400.00").compareTo(summary.getTotalAmount()));
+        assertEquals(3, summary.getByStatus().get(PaymentStatus.PENDING).getCount());
+        assertEquals(1, summary.getByStatus().get(PaymentStatus.COMPLETED).getCount());
+
+        GroupPaymentStatisticsResponse statistics = groupPaymentService.getGroupPaymentStatistics(group.getId(), admin);
+        assertEquals(summary.getByStatus(), statistics.getByStatus());
+        assertEquals(3, statistics.getByMethod().get(PaymentMethod.CASH).get(PaymentStatus.PENDING).getCount());
+        assertEquals(1, statistics.getByMonth().size());
+        assertEquals(4, statistics.getByMember().size());
+    }
+
+    @Test
+    void aStatusChangeReadBeforeABulkUpdateIsRejected() {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 0);
+        groupPaymentService.createGroupPaymentRequest(request(group, null), admin);
+        String paymentId = paymentRepository.findByGroupId(group.getId()).get(0).getId();
+        TransactionTemplate concurrent = new TransactionTemplate(transactionManager);
+        concurrent.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> fixtures.updatePayment(paymentId, payment -> {
+            // Reconciliation moves the payment between this read and its write
+            concurrent.executeWithoutResult(status -> assertEquals(1, paymentRepository.updatePendingStatus(
+                    List.of(paymentId), PaymentStatus.FAILED, LocalDateTime.now())));
+            payment.setStatus(PaymentStatus.COMPLETED);
+        }));
+        assertEquals(PaymentStatus.FAILED, paymentRepository.findById(paymentId).orElseThrow().getStatus());
+        assertNull(groupPaymentService.getGroupPaymentSummary(group.getId(), admin).getByStatus().get(PaymentStatus.COMPLETED));
+    }
+
+    private GroupPaymentRequest request(Group group, String batchId) {
+        GroupPaymentRequest request = new GroupPaymentRequest();
+        request.setGroupId(group.getId());
+        request.setAmount(new BigDecimal("100.00"));
+        request.setMethod(PaymentMethod.CASH);
+        request.setDescription("Monthly dues");
+        request.setMode(GroupPaymentMode.RESUMABLE);
+        request.setBatchId(batchId);
+        return request;
+    }
+}
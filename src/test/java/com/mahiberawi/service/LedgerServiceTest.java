@@ -0,0 +1,124 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.dto.ledger.LedgerBalanceResponse;
+import com.mahiberawi.dto.payment.GroupPaymentMode;
+import com.mahiberawi.dto.payment.GroupPaymentRequest;
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.entity.LedgerAccountType;
+import com.mahiberawi.entity.LedgerEntryType;
+import com.mahiberawi.entity.Payment;
+import com.mahiberawi.entity.PaymentMethod;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.repository.PaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@Import(TestFixtures.class)
+class LedgerServiceTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private GroupPaymentService groupPaymentService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Test
+    void balancesFollowBillingAndCollection() throws InterruptedException {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 2);
+        groupPaymentService.createGroupPaymentRequest(request(group), admin);
+
+        Payment payment = paymentRepository.findByGroupId(group.getId()).stream()
+                .filter(p -> p.getPayer().getId().equals(admin.getId()))
+                .findFirst().orElseThrow();
+        assertAmount("100.00", ledgerService.getMemberBalances(group.getId(), admin.getId(), null, admin).getOutstanding());
+
+        Thread.sleep(20);
+        LocalDateTime beforeCollection = LocalDateTime.now();
+        Thread.sleep(20);
+        paymentService.processPayment(payment.getId());
+        ledgerService.snapshotBalances();
+
+        LedgerBalanceResponse member = ledgerService.getMemberBalances(group.getId(), admin.getId(), null, admin);
+        assertAmount("0.00", member.getOutstanding());
+
+        LedgerBalanceResponse groupNow = ledgerService.getGroupBalances(group.getId(), null, admin);
+        assertAmount("100.00", groupNow.getBalances().get(LedgerAccountType.GROUP_CASH));
+        assertAmount("-300.00", groupNow.getBalances().get(LedgerAccountType.GROUP_BILLED));
+        assertAmount("200.00", groupNow.getOutstanding());
+
+        // Balances before the payment was collected
+        LedgerBalanceResponse memberBefore = ledgerService.getMemberBalances(group.getId(), admin.getId(), beforeCollection, admin);
+        assertAmount("100.00", memberBefore.getOutstanding());
+        LedgerBalanceResponse groupBefore = ledgerService.getGroupBalances(group.getId(), beforeCollection, admin);
+        assertAmount("0.00", groupBefore.getBalances().get(LedgerAccountType.GROUP_CASH));
+    }
+
+    @Test
+    void cancellingAPaymentReversesItsCharge() {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 0);
+        groupPaymentService.createGroupPaymentRequest(request(group), admin);
+
+        Payment payment = paymentRepository.findByGroupId(group.getId()).get(0);
+        paymentService.cancelPayment(payment.getId());
+
+        LedgerBalanceResponse balances = ledgerService.getGroupBalances(group.getId(), null, admin);
+        assertAmount("0.00", balances.getBalances().get(LedgerAccountType.GROUP_BILLED));
+        assertAmount("0.00", balances.getOutstanding());
+    }
+
+    @Test
+    void linesStampedBeforeASnapshotButCommittedAfterItAreCounted() throws InterruptedException {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 0);
+        LocalDateTime stamped = LocalDateTime.now();
+        Thread.sleep(20);
+        ledgerService.snapshotBalances();
+
+        // Like a posting whose transaction was still open when the snapshot was cut
+        ledgerService.post(List.of(new LedgerService.Transfer(LedgerEntryType.PAYMENT_COLLECTED, group.getId(),
+                admin.getId(), LedgerAccountType.GROUP_CASH, LedgerAccountType.MEMBER_RECEIVABLE,
+                new BigDecimal("50.00"), "payment-1", stamped)));
+        Thread.sleep(20);
+        ledgerService.snapshotBalances();
+
+        LocalDateTime now = LocalDateTime.now();
+        assertAmount("50.00", ledgerService.getGroupBalances(group.getId(), now, admin)
+                .getBalances().get(LedgerAccountType.GROUP_CASH));
+        assertAmount("0.00", ledgerService.getGroupBalances(group.getId(), stamped.minusSeconds(1), admin)
+                .getBalances().get(LedgerAccountType.GROUP_CASH));
+    }
+
+    private static void assertAmount(String expected, BigDecimal actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual), "expected " + expected + " but was " + actual);
+    }
+
+    private GroupPaymentRequest request(Group group) {
+        GroupPaymentRequest request = new GroupPaymentRequest();
+        request.setGroupId(group.getId());
+        request.setAmount(new BigDecimal("100.00"));
+        request.setMethod(PaymentMethod.CASH);
+        request.setDescription("Monthly dues");
+        request.setMode(GroupPaymentMode.ALL_OR_NOTHING);
+        return request;
+    }
+}
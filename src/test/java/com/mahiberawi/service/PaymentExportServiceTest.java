@@ -0,0 +1,127 @@
+package com.mahiberawi.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mahiberawi.dto.payment.GroupPaymentMode;
+import com.mahiberawi.dto.payment.GroupPaymentRequest;
+import com.mahiberawi.dto.payment.PaymentExportFormat;
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.entity.Payment;
+import com.mahiberawi.entity.PaymentMethod;
+import com.mahiberawi.entity.PaymentStatus;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.entity.enums.GroupMemberRole;
+import com.mahiberawi.entity.enums.GroupMemberStatus;
+import com.mahiberawi.exception.UnauthorizedException;
+import com.mahiberawi.repository.PaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Import(TestFixtures.class)
+class PaymentExportServiceTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private PaymentExportService paymentExportService;
+
+    @Autowired
+    private GroupPaymentService groupPaymentService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void writesCsvWithQuotedCellsAndStatusFilter() throws Exception {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 2);
+        groupPaymentService.createGroupPaymentRequest(request(group, "Dues, March"), admin);
+        Payment payment = paymentRepository.findByGroupId(group.getId()).get(0);
+        paymentService.processPayment(payment.getId());
+
+        String all = export(PaymentExportService.Filter.of(group.getId(), null, null, null), PaymentExportFormat.CSV, false);
+        String[] lines = all.split("\r\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].startsWith("id,transactionId,createdAt"));
+        assertTrue(lines[1].contains("\"Dues, March\""));
+
+        String completed = export(PaymentExportService.Filter.of(group.getId(), List.of(PaymentStatus.COMPLETED), null, null),
+                PaymentExportFormat.CSV, false);
+        assertEquals(2, completed.split("\r\n").length);
+        assertTrue(completed.contains(payment.getId()));
+
+        String none = export(PaymentExportService.Filter.of(group.getId(), null, null, LocalDate.now().minusDays(1)),
+                PaymentExportFormat.CSV, false);
+        assertEquals(1, none.split("\r\n").length);
+    }
+
+    @Test
+    void writesGzippedJsonLines() throws Exception {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 1);
+        groupPaymentService.createGroupPaymentRequest(request(group, "Monthly dues"), admin);
+
+        String json = export(PaymentExportService.Filter.of(group.getId(), null, null, null), PaymentExportFormat.JSONL, true);
+        String[] lines = json.split("\n");
+        assertEquals(2, lines.length);
+        JsonNode row = objectMapper.readTree(lines[0]);
+        assertEquals(group.getId(), row.get("groupId").asText());
+        assertEquals("PENDING", row.get("status").asText());
+        assertEquals(0, new BigDecimal("100.00").compareTo(row.get("amount").decimalValue()));
+    }
+
+    @Test
+    void onlyAdminsAndModeratorsCanExportAGroup() {
+        User admin = fixtures.user();
+        Group group = fixtures.group(admin, 0);
+        User member = fixtures.user();
+        fixtures.addMember(group, member, GroupMemberRole.MEMBER, GroupMemberStatus.ACTIVE);
+
+        paymentExportService.checkGroupExport(group.getId(), admin);
+        assertThrows(UnauthorizedException.class, () -> paymentExportService.checkGroupExport(group.getId(), member));
+    }
+
+    private String export(PaymentExportService.Filter filter, PaymentExportFormat format, boolean gzip) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        paymentExportService.write(filter, format, gzip, out);
+        byte[] bytes = out.toByteArray();
+        if (gzip) {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+                bytes = in.readAllBytes();
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private GroupPaymentRequest request(Group group, String description) {
+        GroupPaymentRequest request = new GroupPaymentRequest();
+        request.setGroupId(group.getId());
+        request.setAmount(new BigDecimal("100.00"));
+        request.setMethod(PaymentMethod.CASH);
+        request.setDescription(description);
+        request.setMode(GroupPaymentMode.ALL_OR_NOTHING);
+        return request;
+    }
+}
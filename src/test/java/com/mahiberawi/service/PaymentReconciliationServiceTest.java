@@ -0,0 +1,165 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.entity.Payment;
+import com.mahiberawi.entity.PaymentMethod;
+import com.mahiberawi.entity.PaymentStatus;
+import com.mahiberawi.exception.GatewayUnavailableException;
+import com.mahiberawi.repository.PaymentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs reconciliation passes against stubbed gateways. The payments are backdated past
+ * the stale-after window, which keeps pending payments other tests leave in the shared
+ * database out of the passes.
+ */
+@SpringBootTest(properties = {
+        "app.payments.reconciliation.enabled=false",
+        "app.payments.reconciliation.stale-after=3650d",
+        "app.payments.reconciliation.page-size=2"
+})
+@Import(TestFixtures.class)
+class PaymentReconciliationServiceTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2001, 1, 1, 9, 0);
+
+    @Autowired
+    private PaymentReconciliationService reconciliationService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private TeleBirrService teleBirrService;
+
+    @MockitoBean
+    private VippsService vippsService;
+
+    @AfterEach
+    void cancelLeftoverPayments() {
+        jdbcTemplate.update("UPDATE payments SET status = 'CANCELLED' WHERE status = 'PENDING' AND created_at < ?",
+                Timestamp.valueOf(CREATED_AT.plusYears(1)));
+    }
+
+    @Test
+    void pagesThroughPaymentsThatShareACreationTimeAndCountsTheOutcomes() {
+        // Page size 2: the second page starts in the middle of the three payments created at the same time
+        Payment completed = payment(PaymentMethod.TELEBIRR, CREATED_AT);
+        Payment pending = payment(PaymentMethod.TELEBIRR, CREATED_AT.plusMinutes(1));
+        Payment failed = payment(PaymentMethod.TELEBIRR, CREATED_AT.plusMinutes(1));
+        Payment refunded = payment(PaymentMethod.TELEBIRR, CREATED_AT.plusMinutes(1));
+        Payment broken = payment(PaymentMethod.TELEBIRR, CREATED_AT.plusMinutes(2));
+        when(teleBirrService.fetchStatus(completed.getTransactionId())).thenReturn(PaymentStatus.COMPLETED);
+        when(teleBirrService.fetchStatus(pending.getTransactionId())).thenReturn(PaymentStatus.PENDING);
+        when(teleBirrService.fetchStatus(failed.getTransactionId())).thenReturn(PaymentStatus.FAILED);
+        when(teleBirrService.fetchStatus(refunded.getTransactionId())).thenReturn(PaymentStatus.REFUNDED);
+        when(teleBirrService.fetchStatus(broken.getTransactionId())).thenThrow(new IllegalStateException("timeout"));
+
+        PaymentReconciliationService.Report report = reconciliationService.reconcile();
+
+        for (Payment payment : List.of(completed, pending, failed, refunded, broken)) {
+            verify(teleBirrService, times(1)).fetchStatus(payment.getTransactionId());
+        }
+        assertEquals(4, report.checked());
+        assertEquals(3, report.mismatches());
+        assertEquals(3, report.updated());
+        assertEquals(1, report.stillPending());
+        assertEquals(1, report.errors());
+        assertEquals(0, report.skipped());
+        assertEquals(Map.of(PaymentMethod.TELEBIRR, 3), report.mismatchesByGateway());
+        assertEquals(List.of(), report.unavailableGateways());
+
+        assertEquals(PaymentStatus.COMPLETED, status(completed));
+        assertEquals(PaymentStatus.PENDING, status(pending));
+        assertEquals(PaymentStatus.FAILED, status(failed));
+        assertEquals(PaymentStatus.REFUNDED, status(refunded));
+        assertEquals(PaymentStatus.PENDING, status(broken));
+    }
+
+    @Test
+    void skipsAnUnavailableGatewayForTheRestOfThePass() {
+        Payment firstVipps = payment(PaymentMethod.VIPPS, CREATED_AT);
+        Payment secondVipps = payment(PaymentMethod.VIPPS, CREATED_AT.plusMinutes(1));
+        Payment firstTeleBirr = payment(PaymentMethod.TELEBIRR, CREATED_AT.plusMinutes(2));
+        Payment laterVipps = payment(PaymentMethod.VIPPS, CREATED_AT.plusMinutes(3));
+        Payment secondTeleBirr = payment(PaymentMethod.TELEBIRR, CREATED_AT.plusMinutes(4));
+        when(vippsService.fetchStatus(anyString())).thenThrow(new GatewayUnavailableException("circuit open"));
+        when(teleBirrService.fetchStatus(anyString())).thenReturn(PaymentStatus.COMPLETED);
+
+        PaymentReconciliationService.Report report = reconciliationService.reconcile();
+
+        verify(vippsService, never()).fetchStatus(laterVipps.getTransactionId());
+        assertEquals(List.of(PaymentMethod.VIPPS), report.unavailableGateways());
+        assertEquals(2, report.skipped());
+        assertEquals(2, report.checked());
+        assertEquals(2, report.updated());
+        assertEquals(0, report.errors());
+
+        assertEquals(PaymentStatus.PENDING, status(firstVipps));
+        assertEquals(PaymentStatus.PENDING, status(secondVipps));
+        assertEquals(PaymentStatus.PENDING, status(laterVipps));
+        assertEquals(PaymentStatus.COMPLETED, status(firstTeleBirr));
+        assertEquals(PaymentStatus.COMPLETED, status(secondTeleBirr));
+    }
+
+    @Test
+    void leavesPaymentsACallbackSettledDuringThePass() {
+        Payment settled = payment(PaymentMethod.TELEBIRR, CREATED_AT);
+        Payment stale = payment(PaymentMethod.TELEBIRR, CREATED_AT.plusMinutes(1));
+        // The callback for the first payment lands between the status check and the write
+        when(teleBirrService.fetchStatus(settled.getTransactionId())).thenAnswer(invocation -> {
+            fixtures.updatePayment(settled.getId(), payment -> payment.setStatus(PaymentStatus.COMPLETED));
+            return PaymentStatus.FAILED;
+        });
+        when(teleBirrService.fetchStatus(stale.getTransactionId())).thenReturn(PaymentStatus.FAILED);
+
+        PaymentReconciliationService.Report report = reconciliationService.reconcile();
+
+        assertEquals(2, report.mismatches());
+        assertEquals(1, report.updated());
+        assertEquals(PaymentStatus.COMPLETED, status(settled));
+        assertEquals(PaymentStatus.FAILED, status(stale));
+    }
+
+    private Payment payment(PaymentMethod method, LocalDateTime createdAt) {
+        Payment payment = new Payment();
+        payment.setAmount(new BigDecimal("250.00"));
+        payment.setMethod(method);
+        payment.setStatus(PaymentStatus.PENDING);
+        payment.setPayer(fixtures.user());
+        payment.setDescription("Reconciliation test payment");
+        payment.setTransactionId("recon-" + UUID.randomUUID());
+        payment = paymentRepository.save(payment);
+        jdbcTemplate.update("UPDATE payments SET created_at = ? WHERE id = ?", Timestamp.valueOf(createdAt), payment.getId());
+        return payment;
+    }
+
+    private PaymentStatus status(Payment payment) {
+        return paymentRepository.findById(payment.getId()).orElseThrow().getStatus();
+    }
+}
@@ -0,0 +1,133 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.config.TeleBirrConfig;
+import com.mahiberawi.dto.payment.PaymentRequest;
+import com.mahiberawi.entity.Payment;
+import com.mahiberawi.entity.PaymentMethod;
+import com.mahiberawi.entity.PaymentStatus;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.entity.UserIntention;
+import com.mahiberawi.entity.UserRole;
+import com.mahiberawi.entity.UserStatus;
+import com.mahiberawi.repository.PaymentRepository;
+import com.mahiberawi.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = "telebirr.webhook-secret=test-webhook-secret")
+class PaymentWebhookServiceTest {
+
+    @Autowired
+    private PaymentWebhookService paymentWebhookService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TeleBirrConfig teleBirrConfig;
+
+    @Test
+    void appliesEachCallbackOnceAndInOrder() throws Exception {
+        Payment payment = createPayment();
+        String success = callback(payment.getTransactionId(), "SUCCESS", "t-1");
+        String refund = callback(payment.getTransactionId(), "REFUNDED", "t-2");
+
+        assertEquals(PaymentWebhookService.Receipt.ACCEPTED, receive(success));
+        assertEquals(PaymentWebhookService.Receipt.ACCEPTED, receive(refund));
+        assertEquals(PaymentWebhookService.Receipt.DUPLICATE, receive(success));
+        assertEquals(PaymentWebhookService.Receipt.DUPLICATE, receive(refund));
+
+        assertEquals(PaymentStatus.REFUNDED, awaitStatus(payment, PaymentStatus.REFUNDED));
+    }
+
+    @Test
+    void rejectsUnsignedAndMalformedCallbacks() {
+        Payment payment = createPayment();
+        String body = callback(payment.getTransactionId(), "SUCCESS", "t-1");
+
+        assertEquals(PaymentWebhookService.Receipt.INVALID_SIGNATURE,
+                paymentWebhookService.receive(PaymentMethod.TELEBIRR, body, "0".repeat(64)));
+        assertEquals(PaymentWebhookService.Receipt.INVALID_SIGNATURE,
+                paymentWebhookService.receive(PaymentMethod.TELEBIRR, body, null));
+        assertEquals(PaymentWebhookService.Receipt.MALFORMED, receive("{\"tradeStatus\":\"SUCCESS\"}"));
+    }
+
+    @Test
+    void rejectsEveryCallbackWhileTheSecretIsBlank() {
+        Payment payment = createPayment();
+        String body = callback(payment.getTransactionId(), "SUCCESS", "t-1");
+        String signature = sign(body);
+
+        String secret = teleBirrConfig.getWebhookSecret();
+        teleBirrConfig.setWebhookSecret("");
+        try {
+            assertEquals(PaymentWebhookService.Receipt.INVALID_SIGNATURE,
+                    paymentWebhookService.receive(PaymentMethod.TELEBIRR, body, signature));
+        } finally {
+            teleBirrConfig.setWebhookSecret(secret);
+        }
+    }
+
+    private PaymentWebhookService.Receipt receive(String body) {
+        return paymentWebhookService.receive(PaymentMethod.TELEBIRR, body, sign(body));
+    }
+
+    private PaymentStatus awaitStatus(Payment payment, PaymentStatus expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        PaymentStatus status = payment.getStatus();
+        while (status != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            status = paymentRepository.findById(payment.getId()).orElseThrow().getStatus();
+        }
+        return status;
+    }
+
+    private static String callback(String transactionId, String status, String transactionNo) {
+        return "{\"outTradeNo\":\"" + transactionId + "\",\"tradeStatus\":\"" + status
+                + "\",\"transactionNo\":\"" + transactionNo + "\"}";
+    }
+
+    private String sign(String body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(teleBirrConfig.getWebhookSecret().getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Payment createPayment() {
+        User payer = userRepository.save(User.builder()
+                .firstName("Test")
+                .lastName("User")
+                .email(UUID.randomUUID() + "@example.com")
+                .password("password")
+                .role(UserRole.MEMBER)
+                .intention(UserIntention.UNDECIDED)
+                .status(UserStatus.ACTIVE)
+                .build());
+
+        PaymentRequest request = new PaymentRequest();
+        request.setAmount(new BigDecimal("250.00"));
+        request.setMethod(PaymentMethod.TELEBIRR);
+        request.setDescription("Webhook test payment");
+        return paymentService.createPaymentEntity(request, payer);
+    }
+}
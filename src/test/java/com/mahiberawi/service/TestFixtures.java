@@ -0,0 +1,118 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.entity.GroupMember;
+import com.mahiberawi.entity.Payment;
+import com.mahiberawi.entity.User;
+import com.mahiberawi.entity.UserIntention;
+import com.mahiberawi.entity.UserRole;
+import com.mahiberawi.entity.UserStatus;
+import com.mahiberawi.entity.enums.EqubSelectionMethod;
+import com.mahiberawi.entity.enums.GroupMemberRole;
+import com.mahiberawi.entity.enums.GroupMemberStatus;
+import com.mahiberawi.entity.enums.GroupType;
+import com.mahiberawi.repository.GroupMemberRepository;
+import com.mahiberawi.repository.GroupRepository;
+import com.mahiberawi.repository.PaymentRepository;
+import com.mahiberawi.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.test.context.TestComponent;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Users, groups and members for service tests. Import it into the test's context with
+ * {@code @Import(TestFixtures.class)}.
+ */
+@TestComponent
+@RequiredArgsConstructor
+public class TestFixtures {
+
+    private final UserRepository userRepository;
+    private final GroupRepository groupRepository;
+    private final GroupMemberRepository groupMemberRepository;
+    private final PaymentRepository paymentRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    public User user() {
+        return userRepository.save(User.builder()
+                .firstName("Test")
+                .lastName("User")
+                .email(UUID.randomUUID() + "@example.com")
+                .password("password")
+                .role(UserRole.MEMBER)
+                .intention(UserIntention.UNDECIDED)
+                .status(UserStatus.ACTIVE)
+                .build());
+    }
+
+    /**
+     * A group builder created by the given user, to add settings to before passing it to
+     * {@link #group(Group.GroupBuilder, User, int)}.
+     */
+    public Group.GroupBuilder groupBuilder(User creator) {
+        return Group.builder()
+                .name("Test group")
+                .type(GroupType.OTHER)
+                .code(UUID.randomUUID().toString().substring(0, 8))
+                .createdBy(creator.getId())
+                .creator(creator);
+    }
+
+    /**
+     * An equb group builder: 100.00 a round, lottery draws, 15 days to pay and 7 days' grace.
+     */
+    public Group.GroupBuilder equbGroupBuilder(User creator) {
+        return groupBuilder(creator)
+                .isEqubGroup(true)
+                .equbAmount(new BigDecimal("100.00"))
+                .equbSelectionMethod(EqubSelectionMethod.LOTTERY)
+                .currentEqubRound(0)
+                .equbGracePeriodDays(7)
+                .equbPaymentDeadlineDays(15);
+    }
+
+    /**
+     * A group with the admin and the given number of new members, all active.
+     */
+    public Group group(Group.GroupBuilder builder, User admin, int members) {
+        Group group = groupRepository.save(builder.build());
+        addMember(group, admin, GroupMemberRole.ADMIN, GroupMemberStatus.ACTIVE);
+        for (int i = 0; i < members; i++) {
+            addMember(group, user(), GroupMemberRole.MEMBER, GroupMemberStatus.ACTIVE);
+        }
+        return group;
+    }
+
+    public Group group(User admin, int members) {
+        return group(groupBuilder(admin), admin, members);
+    }
+
+    public Group equbGroup(User admin, int members) {
+        return group(equbGroupBuilder(admin), admin, members);
+    }
+
+    public GroupMember addMember(Group group, User user, GroupMemberRole role, GroupMemberStatus status) {
+        return groupMemberRepository.save(GroupMember.builder()
+                .groupId(group.getId())
+                .userId(user.getId())
+                .role(role)
+                .status(status)
+                .joinedAt(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * Change a payment in its own transaction, as the application does, rather than by
+     * saving a detached copy.
+     */
+    public void updatePayment(String paymentId, Consumer<Payment> change) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                change.accept(paymentRepository.findById(paymentId).orElseThrow()));
+    }
+}
@@ -0,0 +1,193 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.entity.Event;
+import com.mahiberawi.entity.Group;
+import com.mahiberawi.repository.EventOccurrenceExceptionRepository;
+import com.mahiberawi.repository.EventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UpcomingEventIndexTest {
+
+    private static final int WINDOW_DAYS = 28;
+
+    private final Group group = Group.builder().id("group-1").build();
+    private final LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(1);
+
+    private EventRepository eventRepository;
+    private EventOccurrenceService eventOccurrenceService;
+    private UpcomingEventIndex index;
+
+    @BeforeEach
+    void setUp() {
+        eventRepository = mock(EventRepository.class);
+        eventOccurrenceService = new EventOccurrenceService(mock(EventOccurrenceExceptionRepository.class), eventRepository);
+        index = new UpcomingEventIndex(eventRepository, eventOccurrenceService);
+        ReflectionTestUtils.setField(index, "windowDays", WINDOW_DAYS);
+    }
+
+    @Test
+    void rebuildIndexesSingleEventsAndOccurrencesInStartOrder() {
+        Event weekly = event("weekly", start, "FREQ=WEEKLY");
+        when(eventRepository.findUpcomingEventKeys(any())).thenReturn(List.of(
+                key("single-2", start.plusDays(2)), key("single-5", start.plusDays(5))));
+        when(eventRepository.findSeriesInWindow(any(), any())).thenReturn(List.of(weekly));
+
+        index.rebuild();
+        clearInvocations(eventRepository);
+        List<UpcomingEventIndex.Entry> entries = index.find(LocalDateTime.now(), null, null, null, 100);
+
+        assertEquals(List.of("weekly", "single-2", "single-5", "weekly", "weekly", "weekly"),
+                entries.stream().map(UpcomingEventIndex.Entry::eventId).toList());
+        assertEquals(start.plusWeeks(3), entries.get(5).occurrenceStart());
+        verify(eventRepository, never()).findUpcomingEventKeys(any());
+        verify(eventRepository, never()).findSeriesInWindow(any(), any());
+    }
+
+    @Test
+    void replaysChangesMadeWhileRebuilding() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(eventRepository.findUpcomingEventKeys(any())).thenAnswer(invocation -> {
+            loading.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            return List.of(key("deleted", start), key("kept", start.plusDays(1)));
+        });
+
+        CompletableFuture<Void> rebuild = CompletableFuture.runAsync(index::rebuild);
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+        // Written after the rebuild read the database, so missing from or stale in what it loads
+        index.update(event("created", start.plusDays(2), null));
+        index.remove("deleted");
+        release.countDown();
+        rebuild.get(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of("kept", "created"), index.find(LocalDateTime.now(), null, null, null, 100).stream()
+                .map(UpcomingEventIndex.Entry::eventId).toList());
+    }
+
+    @Test
+    void refreshPicksUpEventsChangedThroughOtherInstances() {
+        when(eventRepository.findUpcomingEventKeys(any())).thenReturn(List.of(key("moved", start)));
+        index.refresh();
+        verify(eventRepository, never()).findByUpdatedAtAfter(any());
+
+        index.rebuild();
+        // Written through another instance, so this index only learns of them from the table
+        when(eventRepository.findByUpdatedAtAfter(any())).thenReturn(List.of(
+                event("moved", start.plusDays(3), null), event("created", start.plusDays(1), null)));
+        index.refresh();
+
+        assertEquals(List.of("created", "moved"), index.find(LocalDateTime.now(), null, null, null, 100).stream()
+                .map(UpcomingEventIndex.Entry::eventId).toList());
+    }
+
+    @Test
+    void pagesByCursorWithoutGapsOrRepeats() {
+        List<EventRepository.UpcomingEventKey> keys = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            keys.add(key("event-" + i, start.plusHours(i * 12L)));
+        }
+        when(eventRepository.findUpcomingEventKeys(any())).thenReturn(keys);
+        index.rebuild();
+
+        List<String> seen = new ArrayList<>();
+        UpcomingEventIndex.Entry after = null;
+        do {
+            List<UpcomingEventIndex.Entry> page = index.find(LocalDateTime.now(), null, List.of(group.getId()), after, 3);
+            page.forEach(entry -> seen.add(entry.eventId()));
+            after = page.size() == 3 ? UpcomingEventIndex.decodeCursor(UpcomingEventIndex.encodeCursor(page.get(2))) : null;
+            if (seen.size() == 3) {
+                // An event added before the cursor does not shift the later pages
+                index.update(event("earlier", start.minusMinutes(30), null));
+            }
+        } while (after != null);
+
+        assertEquals(List.of("event-0", "event-1", "event-2", "event-3", "event-4", "event-5", "event-6"), seen);
+        assertTrue(index.find(LocalDateTime.now(), null, List.of("other-group"), null, 3).isEmpty());
+    }
+
+    @Test
+    void answersFromTheDatabaseOutsideTheIndexedRange() {
+        index.find(LocalDateTime.now(), null, null, null, 10);
+        verify(eventRepository).findUpcomingEventKeys(any());
+
+        index.rebuild();
+        LocalDateTime now = LocalDateTime.now();
+
+        clearInvocations(eventRepository);
+        index.find(now, now.plusDays(7), null, null, 10);
+        index.findNear(9.0, 38.7, 5, now, now.plusDays(7), 10);
+        verify(eventRepository, never()).findUpcomingEventKeysBefore(any(), any());
+        verify(eventRepository, never()).findSeriesInWindow(any(), any());
+
+        // Before the last build: events that started since then are no longer all indexed
+        index.find(now.minusDays(1), null, null, null, 10);
+        verify(eventRepository).findUpcomingEventKeys(now.minusDays(1));
+
+        // Past the horizon: occurrences there have not been expanded
+        index.find(now, now.plusDays(WINDOW_DAYS + 10), null, null, 10);
+        verify(eventRepository).findUpcomingEventKeysBefore(now, now.plusDays(WINDOW_DAYS + 10));
+
+        index.findNear(9.0, 38.7, 5, now.minusDays(1), now.plusDays(7), 10);
+        verify(eventRepository).findUpcomingEventKeysBefore(now.minusDays(1), now.plusDays(7));
+    }
+
+    private Event event(String id, LocalDateTime startTime, String rule) {
+        Event event = new Event();
+        event.setId(id);
+        event.setTitle(id);
+        event.setStartTime(startTime);
+        event.setEndTime(startTime.plusHours(2));
+        event.setGroup(group);
+        eventOccurrenceService.applyRecurrence(event, rule);
+        return event;
+    }
+
+    private EventRepository.UpcomingEventKey key(String id, LocalDateTime startTime) {
+        return new EventRepository.UpcomingEventKey() {
+            @Override
+            public String getId() {
+                return id;
+            }
+
+            @Override
+            public String getGroupId() {
+                return group.getId();
+            }
+
+            @Override
+            public LocalDateTime getStartTime() {
+                return startTime;
+            }
+
+            @Override
+            public Double getLatitude() {
+                return null;
+            }
+
+            @Override
+            public Double getLongitude() {
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,108 @@
+package com.mahiberawi.service;
+
+import com.mahiberawi.entity.EmailVerificationCode;
+import com.mahiberawi.repository.EmailVerificationCodeRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "app.email.verification.wheel-tick-ms=50")
+class VerificationCodeStoreTest {
+
+    @Autowired
+    private VerificationCodeStore verificationCodeStore;
+
+    @Autowired
+    private EmailVerificationCodeRepository emailVerificationCodeRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void aCodeIsUsedOnce() {
+        String email = email();
+        inTransaction(() -> verificationCodeStore.save(code(email, "111111", LocalDateTime.now().plusMinutes(5))));
+
+        assertFalse(inTransaction(() -> verificationCodeStore.consume(email, "222222")));
+        assertTrue(inTransaction(() -> verificationCodeStore.consume(email, "111111")));
+        assertFalse(inTransaction(() -> verificationCodeStore.consume(email, "111111")));
+    }
+
+    @Test
+    void rolledBackChangesLeaveTheStoreUnchanged() {
+        String email = email();
+        rolledBack(() -> verificationCodeStore.save(code(email, "333333", LocalDateTime.now().plusMinutes(5))));
+        assertFalse(inTransaction(() -> verificationCodeStore.consume(email, "333333")));
+
+        inTransaction(() -> verificationCodeStore.save(code(email, "444444", LocalDateTime.now().plusMinutes(5))));
+        rolledBack(() -> verificationCodeStore.consume(email, "444444"));
+        assertTrue(inTransaction(() -> verificationCodeStore.consume(email, "444444")));
+    }
+
+    @Test
+    void expiredCodesAreRejectedAndDeleted() throws InterruptedException {
+        String email = email();
+        EmailVerificationCode saved = inTransaction(() ->
+                verificationCodeStore.save(code(email, "555555", LocalDateTime.now().plusNanos(300_000_000))));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (emailVerificationCodeRepository.existsById(saved.getId()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertFalse(emailVerificationCodeRepository.existsById(saved.getId()));
+        assertFalse(inTransaction(() -> verificationCodeStore.consume(email, "555555")));
+    }
+
+    @Test
+    void codesSavedThroughAnotherInstanceAreLookedUpInTheTable() {
+        String email = email();
+        // Saved straight to the table, as another instance would
+        emailVerificationCodeRepository.save(code(email, "666666", LocalDateTime.now().plusMinutes(5)));
+
+        assertFalse(inTransaction(() -> verificationCodeStore.consume(email, "777777")));
+        assertTrue(inTransaction(() -> verificationCodeStore.consume(email, "666666")));
+        assertFalse(inTransaction(() -> verificationCodeStore.consume(email, "666666")));
+    }
+
+    @Test
+    void theSweepDeletesExpiredCodesTheWheelDoesNotHold() {
+        EmailVerificationCode expired = emailVerificationCodeRepository.save(
+                code(email(), "888888", LocalDateTime.now().minusMinutes(1)));
+
+        verificationCodeStore.deleteExpiredCodes();
+
+        assertFalse(emailVerificationCodeRepository.existsById(expired.getId()));
+    }
+
+    private <T> T inTransaction(Supplier<T> action) {
+        return new TransactionTemplate(transactionManager).execute(status -> action.get());
+    }
+
+    private void rolledBack(Runnable action) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            action.run();
+            status.setRollbackOnly();
+        });
+    }
+
+    private static EmailVerificationCode code(String email, String code, LocalDateTime expiresAt) {
+        return EmailVerificationCode.builder()
+                .email(email)
+                .code(code)
+                .expiresAt(expiresAt)
+                .build();
+    }
+
+    private static String email() {
+        return UUID.randomUUID() + "@example.com";
+    }
+}
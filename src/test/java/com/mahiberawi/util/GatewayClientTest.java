@@ -0,0 +1,169 @@
+package com.mahiberawi.util;
+
+import com.mahiberawi.config.GatewayClientSettings;
+import com.mahiberawi.exception.GatewayUnavailableException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the client against a local fake gateway whose latency and status can be changed
+ * between calls.
+ */
+class GatewayClientTest {
+
+    private HttpServer gateway;
+    private ExecutorService gatewayExecutor;
+    private String baseUrl;
+    private final AtomicInteger requestsReceived = new AtomicInteger();
+    private volatile long latencyMillis;
+    private volatile int status = 200;
+    private volatile CountDownLatch release;
+
+    @BeforeEach
+    void startGateway() throws IOException {
+        gateway = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        gatewayExecutor = Executors.newFixedThreadPool(16);
+        gateway.setExecutor(gatewayExecutor);
+        gateway.createContext("/pay", exchange -> {
+            requestsReceived.incrementAndGet();
+            CountDownLatch latch = release;
+            try {
+                if (latch != null) {
+                    latch.await(10, TimeUnit.SECONDS);
+                }
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, status, "{\"status\":\"SUCCESS\"}");
+        });
+        gateway.start();
+        baseUrl = "http://127.0.0.1:" + gateway.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopGateway() {
+        gateway.stop(0);
+        gatewayExecutor.shutdownNow();
+    }
+
+    @Test
+    void slowResponseTimesOut() {
+        GatewayClientSettings settings = new GatewayClientSettings();
+        settings.setReadTimeout(Duration.ofMillis(200));
+        try (GatewayClient client = new GatewayClient("fake", settings)) {
+            latencyMillis = 2000;
+
+            long start = System.currentTimeMillis();
+            assertThrows(ResourceAccessException.class, () -> call(client.getRestTemplate()));
+            assertTrue(System.currentTimeMillis() - start < 1500);
+            assertEquals(1, client.getMetrics().failures());
+        }
+    }
+
+    @Test
+    void callsBeyondTheBulkheadAreRejected() throws Exception {
+        GatewayClientSettings settings = new GatewayClientSettings();
+        settings.setMaxConcurrentCalls(2);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try (GatewayClient client = new GatewayClient("fake", settings)) {
+            release = new CountDownLatch(1);
+            Future<String> first = callers.submit(() -> call(client.getRestTemplate()));
+            Future<String> second = callers.submit(() -> call(client.getRestTemplate()));
+            awaitRequests(2);
+            assertEquals(2, client.getMetrics().callsInFlight());
+
+            assertThrows(GatewayUnavailableException.class, () -> call(client.getRestTemplate()));
+            assertEquals(2, requestsReceived.get());
+
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+            GatewayClient.Metrics metrics = client.getMetrics();
+            assertEquals(2, metrics.successes());
+            assertEquals(1, metrics.rejected());
+            assertEquals(0, metrics.callsInFlight());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void circuitOpensOnFailuresAndClosesAfterAHealthyProbe() throws Exception {
+        GatewayClientSettings settings = new GatewayClientSettings();
+        settings.setFailureThreshold(3);
+        settings.setOpenDuration(Duration.ofMillis(300));
+        try (GatewayClient client = new GatewayClient("fake", settings)) {
+            status = 503;
+            for (int i = 0; i < 3; i++) {
+                assertThrows(HttpServerErrorException.class, () -> call(client.getRestTemplate()));
+            }
+            assertEquals("OPEN", client.getMetrics().circuitState());
+
+            // Fails fast without reaching the gateway while open
+            assertThrows(GatewayUnavailableException.class, () -> call(client.getRestTemplate()));
+            assertEquals(3, requestsReceived.get());
+
+            status = 200;
+            Thread.sleep(400);
+            assertTrue(call(client.getRestTemplate()).contains("SUCCESS"));
+            assertEquals("CLOSED", client.getMetrics().circuitState());
+            assertEquals(4, requestsReceived.get());
+        }
+    }
+
+    @Test
+    void clientErrorsDoNotOpenTheCircuit() {
+        GatewayClientSettings settings = new GatewayClientSettings();
+        settings.setFailureThreshold(2);
+        try (GatewayClient client = new GatewayClient("fake", settings)) {
+            status = 400;
+            for (int i = 0; i < 4; i++) {
+                assertThrows(HttpClientErrorException.class, () -> call(client.getRestTemplate()));
+            }
+            assertEquals("CLOSED", client.getMetrics().circuitState());
+            assertEquals(4, requestsReceived.get());
+        }
+    }
+
+    private String call(RestTemplate restTemplate) {
+        return restTemplate.getForObject(baseUrl + "/pay", String.class);
+    }
+
+    private void awaitRequests(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (requestsReceived.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+}
@@ -0,0 +1,53 @@
+package com.mahiberawi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeoHashTest {
+
+    @Test
+    void encodesKnownPoints() {
+        assertEquals("ezs42", GeoHash.encode(42.6, -5.6, 5));
+        assertEquals("u4pruydqq", GeoHash.encode(57.64911, 10.40744, 9));
+    }
+
+    @Test
+    void measuresDistances() {
+        // Addis Ababa to Adama
+        double distance = GeoHash.distanceKm(9.0054, 38.7636, 8.5400, 39.2700);
+        assertTrue(distance > 74 && distance < 78, "was " + distance);
+        assertEquals(0, GeoHash.distanceKm(9.0, 38.7, 9.0, 38.7), 1e-9);
+    }
+
+    @Test
+    void coveringCellsContainEveryPointInTheRadius() {
+        Random random = new Random(42);
+        double[][] centres = {{9.0054, 38.7636}, {59.9, 10.75}, {-33.9, 151.2}, {0.0, 179.99}, {78.2, 15.6}};
+        double[] radii = {0.5, 10, 75, 200};
+
+        for (double[] centre : centres) {
+            for (double radius : radii) {
+                Set<String> cells = GeoHash.coveringCells(centre[0], centre[1], radius);
+                for (int i = 0; i < 500; i++) {
+                    double bearing = random.nextDouble() * 2 * Math.PI;
+                    double distance = radius * Math.sqrt(random.nextDouble());
+                    double lat = centre[0] + Math.toDegrees(distance / GeoHash.EARTH_RADIUS_KM) * Math.cos(bearing);
+                    double lon = centre[1] + Math.toDegrees(distance / GeoHash.EARTH_RADIUS_KM)
+                            * Math.sin(bearing) / Math.cos(Math.toRadians(centre[0]));
+                    lon = lon >= 180 ? lon - 360 : lon < -180 ? lon + 360 : lon;
+                    if (GeoHash.distanceKm(centre[0], centre[1], lat, lon) > radius) {
+                        continue;
+                    }
+                    String hash = GeoHash.encode(lat, lon, GeoHash.MAX_PRECISION);
+                    assertTrue(cells.stream().anyMatch(hash::startsWith),
+                            "point " + lat + "," + lon + " not covered for radius " + radius);
+                }
+            }
+        }
+    }
+}
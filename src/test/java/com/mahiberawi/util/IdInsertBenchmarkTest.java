@@ -0,0 +1,82 @@
+package com.mahiberawi.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Insert throughput and primary key index size with random (version 4) and
+ * time-ordered (version 7) string ids, against the configured database. Run with
+ * -Dbenchmark=true, and point DB_URL at PostgreSQL to get index sizes:
+ *
+ *   mvn test -Dtest=IdInsertBenchmarkTest -Dbenchmark=true -Dbenchmark.rows=1000000
+ */
+@Slf4j
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class IdInsertBenchmarkTest {
+
+    private static final int BATCH = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void compareRandomAndTimeOrderedIds() {
+        int rows = Integer.getInteger("benchmark.rows", 200_000);
+        Result random = run("bench_ids_random", rows, () -> UUID.randomUUID().toString());
+        Result ordered = run("bench_ids_ordered", rows, TimeOrderedIds::uuid);
+
+        log.info("{} rows: random ids {} rows/s, index {}; time-ordered ids {} rows/s, index {}",
+                rows, random.rowsPerSecond(), size(random.indexBytes()),
+                ordered.rowsPerSecond(), size(ordered.indexBytes()));
+    }
+
+    @AfterEach
+    void dropTables() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS bench_ids_random");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS bench_ids_ordered");
+    }
+
+    private Result run(String table, int rows, Supplier<String> ids) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + table);
+        jdbcTemplate.execute("CREATE TABLE " + table + " (id VARCHAR(255) PRIMARY KEY, payload VARCHAR(64))");
+
+        long start = System.nanoTime();
+        for (int done = 0; done < rows; done += BATCH) {
+            List<Object[]> batch = new ArrayList<>(BATCH);
+            for (int i = 0; i < Math.min(BATCH, rows - done); i++) {
+                batch.add(new Object[]{ids.get(), "row " + (done + i)});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO " + table + " (id, payload) VALUES (?, ?)", batch);
+        }
+        long millis = Math.max((System.nanoTime() - start) / 1_000_000, 1);
+        return new Result(rows * 1000L / millis, indexBytes(table));
+    }
+
+    private long indexBytes(String table) {
+        try {
+            Long bytes = jdbcTemplate.queryForObject("SELECT pg_relation_size(?::regclass)", Long.class, table + "_pkey");
+            return bytes != null ? bytes : -1;
+        } catch (Exception e) {
+            // Only PostgreSQL reports index sizes
+            return -1;
+        }
+    }
+
+    private static String size(long bytes) {
+        return bytes < 0 ? "n/a" : bytes / 1024 + " KiB";
+    }
+
+    private record Result(long rowsPerSecond, long indexBytes) {
+    }
+}
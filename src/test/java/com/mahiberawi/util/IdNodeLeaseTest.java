@@ -0,0 +1,57 @@
+package com.mahiberawi.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class IdNodeLeaseTest {
+
+    private static final int MAX_NODE = 1023;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionIdGenerator transactionIdGenerator;
+
+    @Test
+    void instancesWithoutANodeIdLeaseDistinctNodes() {
+        IdNodeLease first = new IdNodeLease(jdbcTemplate);
+        IdNodeLease second = new IdNodeLease(jdbcTemplate);
+
+        int firstNode = first.claim(MAX_NODE);
+        int secondNode = second.claim(MAX_NODE);
+
+        assertNotEquals(firstNode, secondNode);
+        assertNotEquals(transactionIdGenerator.getNodeId(), firstNode);
+        assertNotEquals(transactionIdGenerator.getNodeId(), secondNode);
+        first.release(firstNode);
+        second.release(secondNode);
+    }
+
+    @Test
+    void anExpiredLeaseIsClaimedAgainAndItsHolderLosesIt() {
+        IdNodeLease crashed = new IdNodeLease(jdbcTemplate);
+        IdNodeLease restarted = new IdNodeLease(jdbcTemplate);
+        int node = crashed.claim(MAX_NODE);
+        assertTrue(crashed.renew(node));
+
+        jdbcTemplate.update("UPDATE id_node_leases SET renewed_at = ? WHERE node_id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minus(IdNodeLease.EXPIRY).minusMinutes(1)), node);
+
+        assertEquals(node, restarted.claim(MAX_NODE));
+        assertFalse(crashed.renew(node));
+        assertTrue(restarted.renew(node));
+        restarted.release(node);
+    }
+}
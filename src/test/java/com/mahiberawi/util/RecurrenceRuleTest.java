@@ -0,0 +1,83 @@
+package com.mahiberawi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecurrenceRuleTest {
+
+    // A Saturday
+    private static final LocalDateTime SERIES_START = LocalDateTime.of(2025, 1, 4, 18, 0);
+
+    @Test
+    void weeklyByDayExpandsInOrder() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;BYDAY=SA,WE;COUNT=4");
+
+        assertEquals(List.of(
+                LocalDateTime.of(2025, 1, 4, 18, 0),
+                LocalDateTime.of(2025, 1, 8, 18, 0),
+                LocalDateTime.of(2025, 1, 11, 18, 0),
+                LocalDateTime.of(2025, 1, 15, 18, 0)),
+                take(rule.startsFrom(SERIES_START, SERIES_START), 10));
+        assertEquals(LocalDateTime.of(2025, 1, 15, 18, 0), rule.lastStart(SERIES_START));
+    }
+
+    @Test
+    void openEndedRuleJumpsToTheWindow() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;INTERVAL=2");
+        LocalDateTime from = LocalDateTime.of(2045, 6, 1, 0, 0);
+
+        List<LocalDateTime> starts = take(rule.startsFrom(SERIES_START, from), 2);
+
+        assertEquals(2, starts.size());
+        assertFalse(starts.get(0).isBefore(from));
+        assertTrue(starts.get(0).isBefore(from.plusWeeks(2)));
+        assertEquals(starts.get(0).plusWeeks(2), starts.get(1));
+        assertTrue(rule.isOccurrence(SERIES_START, starts.get(0)));
+        assertFalse(rule.isOccurrence(SERIES_START, starts.get(0).plusWeeks(1)));
+        assertNull(rule.lastStart(SERIES_START));
+    }
+
+    @Test
+    void monthlySkipsMonthsWithoutTheDay() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 31, 10, 0);
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=MONTHLY;UNTIL=20250630");
+
+        assertEquals(List.of(
+                LocalDateTime.of(2025, 1, 31, 10, 0),
+                LocalDateTime.of(2025, 3, 31, 10, 0),
+                LocalDateTime.of(2025, 5, 31, 10, 0)),
+                take(rule.startsFrom(start, start), 10));
+    }
+
+    @Test
+    void rejectsUnsupportedRules() {
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=YEARLY"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=MONTHLY;BYDAY=MO"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=DAILY;COUNT=3;UNTIL=20250101"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("INTERVAL=2"));
+    }
+
+    @Test
+    void normalizesTheRule() {
+        assertEquals("FREQ=WEEKLY;BYDAY=MO,SA;COUNT=5",
+                RecurrenceRule.parse("rrule:freq=weekly;byday=SA,MO;count=5").toString());
+    }
+
+    private static List<LocalDateTime> take(Iterator<LocalDateTime> iterator, int max) {
+        List<LocalDateTime> values = new ArrayList<>();
+        while (values.size() < max && iterator.hasNext()) {
+            values.add(iterator.next());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,25 @@
+package com.mahiberawi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class SubKeysTest {
+
+    @Test
+    void matchesTheHkdfTestVector() {
+        // RFC 5869 test case 3: 22 bytes of 0x0b, no salt, no info; the first 32 bytes of its output
+        String secret = "\u000b".repeat(22);
+        assertEquals("8da4e775a563c18f715f802a063c5a31b8a11f5c5ee1879ec3454e5f3c738d2d",
+                HexFormat.of().formatHex(SubKeys.derive(secret, "")));
+    }
+
+    @Test
+    void eachLabelGetsItsOwnKey() {
+        assertFalse(Arrays.equals(SubKeys.derive("secret", "calendar-feed"), SubKeys.derive("secret", "check-in")));
+    }
+}
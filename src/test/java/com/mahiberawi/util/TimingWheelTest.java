@@ -0,0 +1,62 @@
+package com.mahiberawi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    @Test
+    void returnsItemsOnceTheirTickHasPassed() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        wheel.schedule("a", 250);
+        wheel.schedule("b", 300);
+        wheel.schedule("past", -1_000);
+
+        assertEquals(List.of("past"), wheel.advance(0));
+        assertTrue(wheel.advance(200).isEmpty());
+        // Deadlines are rounded up to the next tick
+        assertEquals(List.of("a", "b"), wheel.advance(300));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void keepsLaterRotationsInTheirSlotUntilDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 4, 0);
+        // Tick 2 and tick 6 share a slot of the four-slot wheel
+        wheel.schedule("near", 200);
+        wheel.schedule("far", 600);
+
+        assertEquals(List.of("near"), wheel.advance(200));
+        assertTrue(wheel.advance(500).isEmpty());
+        assertEquals(List.of("far"), wheel.advance(600));
+    }
+
+    @Test
+    void advancingMoreThanARotationCollectsEverythingDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 4, 0);
+        wheel.schedule("a", 100);
+        wheel.schedule("b", 900);
+        wheel.schedule("c", 5_000);
+
+        assertEquals(List.of("a", "b"), wheel.advance(1_000).stream().sorted().toList());
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("c"), wheel.advance(5_000));
+    }
+
+    @Test
+    void cancelledItemsAreNotReturned() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        wheel.schedule("a", 300);
+        wheel.schedule("b", 300);
+
+        assertTrue(wheel.cancel("a", 300));
+        assertFalse(wheel.cancel("a", 300));
+        assertEquals(List.of("b"), wheel.advance(300));
+        assertTrue(wheel.advance(200).isEmpty());
+    }
+}
@@ -0,0 +1,46 @@
+package com.mahiberawi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionIdGeneratorTest {
+
+    @Test
+    void idsAreFixedLengthAndIncreasing() {
+        TransactionIdGenerator generator = new TransactionIdGenerator(3);
+        String previous = generator.next();
+        for (int i = 0; i < 100_000; i++) {
+            String id = generator.next();
+            assertEquals(13, id.length());
+            assertTrue(id.matches("[0-9A-HJKMNP-TV-Z]+"), id);
+            assertTrue(previous.compareTo(id) < 0, previous + " >= " + id);
+            previous = id;
+        }
+    }
+
+    @Test
+    void nodesNeverCollide() {
+        TransactionIdGenerator first = new TransactionIdGenerator(1);
+        TransactionIdGenerator second = new TransactionIdGenerator(2);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 100_000).parallel().forEach(i -> {
+            ids.add(first.next());
+            ids.add(second.next());
+        });
+        assertEquals(200_000, ids.size());
+    }
+
+    @Test
+    void rejectsNodeIdsOutsideTheTenBits() {
+        assertThrows(IllegalArgumentException.class, () -> new TransactionIdGenerator(1024));
+        assertThrows(IllegalArgumentException.class, () -> new TransactionIdGenerator(-1));
+        assertEquals(5, new TransactionIdGenerator(5).getNodeId());
+    }
+}